@@ -0,0 +1,71 @@
+package com.webservice.transactions.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+
+/*
+    "cars" con monto entre 5000.00 y 5010.00 (unas 0.1% de las transacciones
+    del tipo), hasta 100: con el índice por monto y filtrando los ids del tipo
+    uno por uno, que es lo que había que hacer antes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AmountRangeBenchmark {
+
+    private static final long MIN_AMOUNT = 500_000;
+    private static final long MAX_AMOUNT = 501_000;
+    private static final int LIMIT = 100;
+
+    @Param({"map", "columnar"})
+    public String type;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private TransactionRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = Repositories.load(type, TransactionGenerator.typed(size));
+    }
+
+    @Benchmark
+    public List<Transaction> amountIndex() {
+        return repository.findByTypeAndAmount("cars", MIN_AMOUNT, MAX_AMOUNT, LIMIT);
+    }
+
+    @Benchmark
+    public List<Transaction> typeScan() {
+        List<Transaction> found = new ArrayList<>();
+        for (Long id : repository.findIdsByType("cars")) {
+            Optional<Transaction> transaction = repository.findById(id);
+            if (transaction.isPresent() && transaction.get().getAmount() >= MIN_AMOUNT && transaction.get().getAmount() <= MAX_AMOUNT) {
+                found.add(transaction.get());
+            }
+        }
+        found.sort(TransactionRepository.BY_AMOUNT_AND_ID);
+        return found.size() > LIMIT ? found.subList(0, LIMIT) : found;
+    }
+}
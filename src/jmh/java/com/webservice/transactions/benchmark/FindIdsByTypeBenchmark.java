@@ -0,0 +1,70 @@
+package com.webservice.transactions.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.webservice.transactions.domain.TransactionRepository;
+
+/*
+    Lectura de un tipo grande: la mitad de las transacciones son "cars".
+    Compara la lista completa, una página del medio y el recorrido sin lista.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FindIdsByTypeBenchmark {
+
+    @Param({"map", "columnar"})
+    public String type;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private TransactionRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = Repositories.load(type, TransactionGenerator.typed(size));
+    }
+
+    @Benchmark
+    public List<Long> findIdsByType() {
+        return repository.findIdsByType("cars");
+    }
+
+    @Benchmark
+    public long findIdsByTypeAndIterate() {
+        long sum = 0;
+        for (Long id : repository.findIdsByType("cars")) {
+            sum += id;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public List<Long> findIdsByTypePage() {
+        return repository.findIdsByType("cars", size / 4, 1_000);
+    }
+
+    @Benchmark
+    public void forEachIdByType(Blackhole blackhole) {
+        repository.forEachIdByType("cars", blackhole::consume);
+    }
+}
@@ -0,0 +1,84 @@
+package com.webservice.transactions.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.webservice.transactions.application.DefaultTransactionService;
+import com.webservice.transactions.application.SubtreeSumCache;
+import com.webservice.transactions.application.SubtreeTraversal;
+import com.webservice.transactions.application.TransactionService;
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.TransactionRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/*
+    getSum de la raíz de un árbol de 10.000 transacciones, ancho, profundo o
+    sesgado. "materialized" lee la suma que mantiene el repositorio,
+    "traversal" la esconde y mide el recorrido del servicio, "cached" también
+    la esconde pero deja que el servicio cachee el recorrido; con parallelism
+    mayor a 1 el recorrido se reparte en un ForkJoinPool, por ejemplo:
+    -p sum=traversal -p size=1000000 -p parallelism=1,4
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GetSumBenchmark {
+
+    @Param({"wide", "deep", "skewed"})
+    public String shape;
+
+    @Param({"map", "columnar"})
+    public String type;
+
+    @Param({"materialized", "traversal", "cached"})
+    public String sum;
+
+    @Param({"10000"})
+    public int size;
+
+    @Param({"1"})
+    public int parallelism;
+
+    private SubtreeTraversal subtreeTraversal;
+    private TransactionService service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TransactionRepository repository = Repositories.load(type, TransactionGenerator.tree(shape, size));
+        if (!sum.equals("materialized")) {
+            repository = Repositories.withoutMaterializedSums(repository);
+        }
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        subtreeTraversal = new SubtreeTraversal(10_000, parallelism);
+        SubtreeSumCache subtreeSumCache = new SubtreeSumCache(sum.equals("cached") ? 10_000 : 0, meterRegistry);
+        service = new DefaultTransactionService(repository, new AmountScale(2), subtreeTraversal, subtreeSumCache, meterRegistry);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        subtreeTraversal.destroy();
+    }
+
+    @Benchmark
+    public BigDecimal getSumOfRoot() {
+        return service.getSum(TransactionGenerator.ROOT_ID);
+    }
+}
@@ -0,0 +1,124 @@
+package com.webservice.transactions.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.webservice.transactions.application.DefaultTransactionService;
+import com.webservice.transactions.application.SubtreeSumCache;
+import com.webservice.transactions.application.SubtreeTraversal;
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.TransactionRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/*
+    Lo que asignan los caminos de PUT y GET /sum por debajo del controller.
+    Se corre con el profiler de GC y se mira gc.alloc.rate.norm (bytes/op):
+    -prof gc HotPathAllocationBenchmark
+
+    - sumOfRoot: getSum de la raíz de un árbol ancho de "size" transacciones,
+      materializada o recorriendo el árbol. El BigDecimal de la respuesta es
+      lo único que tiene que quedar.
+    - subtreeSumOfLeaf y amountOfLeaf: los accesos primitivos del repositorio,
+      con el último id (fuera del rango que cachea Long.valueOf).
+    - create: createTransaction en cadenas de 8; incluye lo que el
+      repositorio guarda (la transacción misma), que no es basura.
+
+    Los repositorios van dentro de MeteredTransactionRepository, como los arma
+    la configuración: lo que asignen los Timers también cuenta.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HotPathAllocationBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("10.50");
+    private static final int CHAIN_LENGTH = 8;
+    /* Un repositorio nuevo cada tantas inserciones, para que no crezca sin límite */
+    private static final long IDS_PER_REPOSITORY = 1_000_000;
+
+    @Param({"map", "columnar"})
+    public String type;
+
+    @Param({"materialized", "traversal"})
+    public String sum;
+
+    @Param({"1000"})
+    public int size;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SubtreeTraversal subtreeTraversal;
+    private TransactionRepository repository;
+    private DefaultTransactionService readService;
+    private DefaultTransactionService writeService;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        subtreeTraversal = new SubtreeTraversal(10_000, 1);
+        repository = Repositories.load(type, TransactionGenerator.tree("wide", size));
+        if (sum.equals("traversal")) {
+            repository = Repositories.withoutMaterializedSums(repository);
+        }
+        repository = Repositories.metered(repository, meterRegistry);
+        readService = service(repository);
+    }
+
+    @Setup(Level.Iteration)
+    public void newWriteRepository() {
+        writeService = service(Repositories.metered(Repositories.create(type), meterRegistry));
+        nextId = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        subtreeTraversal.destroy();
+    }
+
+    private DefaultTransactionService service(TransactionRepository repository) {
+        return new DefaultTransactionService(repository, new AmountScale(2), subtreeTraversal,
+                new SubtreeSumCache(0, meterRegistry), meterRegistry);
+    }
+
+    @Benchmark
+    public BigDecimal sumOfRoot() {
+        return readService.getSum(TransactionGenerator.ROOT_ID);
+    }
+
+    @Benchmark
+    public long subtreeSumOfLeaf() {
+        return repository.subtreeSumOf(size);
+    }
+
+    @Benchmark
+    public long amountOfLeaf() {
+        return repository.amountOf(size);
+    }
+
+    @Benchmark
+    public void create() {
+        if (nextId == IDS_PER_REPOSITORY) {
+            newWriteRepository();
+        }
+        long id = nextId++;
+        writeService.createTransaction(id, AMOUNT, "cars", id % CHAIN_LENGTH == 0 ? null : id - 1);
+    }
+}
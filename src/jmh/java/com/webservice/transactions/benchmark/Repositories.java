@@ -0,0 +1,55 @@
+package com.webservice.transactions.benchmark;
+
+import java.util.List;
+import java.util.OptionalLong;
+
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.infrastructure.metrics.MeteredTransactionRepository;
+import com.webservice.transactions.infrastructure.persistence.ColumnarTransactionRepository;
+import com.webservice.transactions.infrastructure.persistence.ForwardingTransactionRepository;
+import com.webservice.transactions.infrastructure.persistence.InMemoryTransactionRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+final class Repositories {
+
+    private Repositories() {
+    }
+
+    static TransactionRepository create(String type) {
+        return switch (type) {
+            case "map" -> new InMemoryTransactionRepository();
+            case "columnar" -> new ColumnarTransactionRepository();
+            default -> throw new IllegalArgumentException("Unknown repository type: " + type);
+        };
+    }
+
+    static TransactionRepository load(String type, List<Transaction> transactions) {
+        TransactionRepository repository = create(type);
+        for (int from = 0; from < transactions.size(); from += 10_000) {
+            repository.saveAll(transactions.subList(from, Math.min(from + 10_000, transactions.size())));
+        }
+        return repository;
+    }
+
+    // El envoltorio que TransactionRepositoryConfiguration pone por fuera de todo
+    static TransactionRepository metered(TransactionRepository repository, MeterRegistry meterRegistry) {
+        return new MeteredTransactionRepository(repository, meterRegistry, 100);
+    }
+
+    // Esconde la suma materializada, para medir el recorrido del árbol en el servicio
+    static TransactionRepository withoutMaterializedSums(TransactionRepository repository) {
+        return new ForwardingTransactionRepository(repository) {
+            @Override
+            public OptionalLong findSubtreeSum(Long id) {
+                return OptionalLong.empty();
+            }
+
+            @Override
+            public long subtreeSumOf(long id) {
+                return ABSENT;
+            }
+        };
+    }
+}
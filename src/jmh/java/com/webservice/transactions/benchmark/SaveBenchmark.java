@@ -0,0 +1,93 @@
+package com.webservice.transactions.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+
+/*
+    save con 1, 4 y 16 escritores: cada iteración mide cuánto tarda cada hilo
+    en guardar BATCH transacciones en un repositorio vacío. Con un tiempo fijo
+    por iteración el repositorio crecía sin límite mientras los hilos se
+    esperaban entre sí, y el GC terminaba dominando la medición.
+
+    Cada hilo escribe cadenas de 8 transacciones en su propio rango de ids, así
+    la profundidad (y el costo de mantener las sumas) es la misma en todas las
+    corridas.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = SaveBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = SaveBenchmark.BATCH)
+@Fork(1)
+public class SaveBenchmark {
+
+    static final int BATCH = 20_000;
+    private static final int CHAIN_LENGTH = 8;
+
+    @State(Scope.Benchmark)
+    public static class Repository {
+
+        @Param({"map", "columnar"})
+        public String type;
+
+        TransactionRepository repository;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            repository = Repositories.create(type);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+
+        private static final AtomicLong RANGES = new AtomicLong();
+
+        private long nextId;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            nextId = RANGES.incrementAndGet() << 40;
+        }
+
+        Transaction next() {
+            long id = nextId++;
+            Long parentId = id % CHAIN_LENGTH == 0 ? null : id - 1;
+            return new Transaction(id, 1_000, TransactionGenerator.TYPES[(int) (id % TransactionGenerator.TYPES.length)], parentId);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void save1Thread(Repository state, Writer writer) {
+        state.repository.save(writer.next());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void save4Threads(Repository state, Writer writer) {
+        state.repository.save(writer.next());
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void save16Threads(Repository state, Writer writer) {
+        state.repository.save(writer.next());
+    }
+}
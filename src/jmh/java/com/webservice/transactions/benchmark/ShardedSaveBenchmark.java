@@ -0,0 +1,72 @@
+package com.webservice.transactions.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.infrastructure.persistence.ShardedTransactionRepository;
+
+/*
+    Igual que SaveBenchmark pero variando la cantidad de shards (1 es el
+    repositorio sin repartir). Cada escritor arma cadenas de 8 con raíces
+    nuevas, así las escrituras se reparten entre todos los shards. Para ver
+    cómo escala hay que correrlo en una máquina con al menos tantos cores como
+    hilos; en menos, los 4 y 16 hilos sólo miden la contención.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = SaveBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = SaveBenchmark.BATCH)
+@Fork(1)
+public class ShardedSaveBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Repository {
+
+        @Param({"map", "columnar"})
+        public String type;
+
+        @Param({"1", "4", "16"})
+        public int shards;
+
+        TransactionRepository repository;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            repository = shards == 1
+                    ? Repositories.create(type)
+                    : new ShardedTransactionRepository(shards, () -> Repositories.create(type));
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void save1Thread(Repository state, SaveBenchmark.Writer writer) {
+        state.repository.save(writer.next());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void save4Threads(Repository state, SaveBenchmark.Writer writer) {
+        state.repository.save(writer.next());
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void save16Threads(Repository state, SaveBenchmark.Writer writer) {
+        state.repository.save(writer.next());
+    }
+}
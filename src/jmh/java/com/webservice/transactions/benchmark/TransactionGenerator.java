@@ -0,0 +1,93 @@
+package com.webservice.transactions.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.webservice.transactions.domain.Transaction;
+
+/*
+    Datos reproducibles para los benchmarks: mismo seed, mismas transacciones.
+    Los ids van de 1 a n y cada padre aparece antes que sus hijos.
+ */
+final class TransactionGenerator {
+
+    static final long SEED = 42L;
+    static final long ROOT_ID = 1L;
+    static final String[] TYPES = {"cars", "shopping", "groceries", "travel", "rent"};
+
+    private TransactionGenerator() {
+    }
+
+    static List<Transaction> tree(String shape, int size) {
+        return switch (shape) {
+            case "wide" -> wide(size);
+            case "deep" -> deep(size);
+            case "skewed" -> skewed(size);
+            default -> throw new IllegalArgumentException("Unknown tree shape: " + shape);
+        };
+    }
+
+    // Una raíz con size - 1 hijos directos
+    static List<Transaction> wide(int size) {
+        Random random = new Random(SEED);
+        List<Transaction> transactions = new ArrayList<>(size);
+        transactions.add(transaction(random, ROOT_ID, null));
+        for (long id = 2; id <= size; id++) {
+            transactions.add(transaction(random, id, ROOT_ID));
+        }
+        return transactions;
+    }
+
+    // Una sola cadena de profundidad size
+    static List<Transaction> deep(int size) {
+        Random random = new Random(SEED);
+        List<Transaction> transactions = new ArrayList<>(size);
+        transactions.add(transaction(random, ROOT_ID, null));
+        for (long id = 2; id <= size; id++) {
+            transactions.add(transaction(random, id, id - 1));
+        }
+        return transactions;
+    }
+
+    /*
+        Preferential attachment: el padre de cada transacción nueva se elige con
+        probabilidad proporcional a los hijos que ya tiene, así unos pocos nodos
+        concentran la mayoría de los hijos y el resto forma ramas profundas.
+     */
+    static List<Transaction> skewed(int size) {
+        Random random = new Random(SEED);
+        List<Transaction> transactions = new ArrayList<>(size);
+        long[] candidates = new long[2 * size];
+        int candidateCount = 0;
+        transactions.add(transaction(random, ROOT_ID, null));
+        candidates[candidateCount++] = ROOT_ID;
+        for (long id = 2; id <= size; id++) {
+            long parentId = candidates[random.nextInt(candidateCount)];
+            transactions.add(transaction(random, id, parentId));
+            candidates[candidateCount++] = parentId;
+            candidates[candidateCount++] = id;
+        }
+        return transactions;
+    }
+
+    // Raíces sueltas repartidas entre los tipos; la mitad son "cars"
+    static List<Transaction> typed(int size) {
+        Random random = new Random(SEED);
+        List<Transaction> transactions = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            String type = id % 2 == 0 ? TYPES[0] : TYPES[1 + random.nextInt(TYPES.length - 1)];
+            transactions.add(new Transaction(id, amount(random), type, null));
+        }
+        return transactions;
+    }
+
+    private static Transaction transaction(Random random, long id, Long parentId) {
+        return new Transaction(id, amount(random), TYPES[random.nextInt(TYPES.length)], parentId);
+    }
+
+    // En centavos: hasta 9999.99
+    private static long amount(Random random) {
+        return random.nextInt(1_000_000);
+    }
+}
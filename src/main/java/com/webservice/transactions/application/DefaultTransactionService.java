@@ -1,46 +1,119 @@
 package com.webservice.transactions.application;
 
-import java.util.Deque;
+import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.function.LongConsumer;
 
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
 import com.webservice.transactions.application.exception.ParentTransactionNotFoundException;
+import com.webservice.transactions.application.exception.SumOverflowException;
 import com.webservice.transactions.application.exception.TransactionAlreadyExistsException;
 import com.webservice.transactions.application.exception.TransactionNotFoundException;
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.InsertResult;
 import com.webservice.transactions.domain.Transaction;
 import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.domain.TypeAggregate;
 
 @Service
 public class DefaultTransactionService implements TransactionService {
+
+    public static final int MAX_PAGE_SIZE = 10_000;
     
+    static final String SUM_NODES_SUMMARY = "transactions.sum.nodes";
+
     private final TransactionRepository transactionRepository;
+    private final AmountScale amountScale;
+    private final SubtreeTraversal subtreeTraversal;
+    private final SubtreeSumCache subtreeSumCache;
+    /* Nodos recorridos por getSum: 0 cuando la suma está materializada o cacheada */
+    private final DistributionSummary materializedSumNodes;
+    private final DistributionSummary cachedSumNodes;
+    private final DistributionSummary traversalSumNodes;
 
-    public DefaultTransactionService(TransactionRepository transactionRepository) {
+    public DefaultTransactionService(TransactionRepository transactionRepository, AmountScale amountScale,
+                                     SubtreeTraversal subtreeTraversal, SubtreeSumCache subtreeSumCache,
+                                     MeterRegistry meterRegistry) {
         this.transactionRepository = transactionRepository;
+        this.amountScale = amountScale;
+        this.subtreeTraversal = subtreeTraversal;
+        this.subtreeSumCache = subtreeSumCache;
+        this.materializedSumNodes = sumNodesSummary(meterRegistry, "materialized");
+        this.cachedSumNodes = sumNodesSummary(meterRegistry, "cached");
+        this.traversalSumNodes = sumNodesSummary(meterRegistry, "traversal");
     }
 
-    public void createTransaction(Long id, Double amount, String type, Long parentId){
-        
-        if(id == null || amount == null || type == null){
+    private static DistributionSummary sumNodesSummary(MeterRegistry meterRegistry, String path) {
+        return DistributionSummary.builder(SUM_NODES_SUMMARY)
+                .description("Transactions visited to compute a subtree sum")
+                .tag("path", path)
+                .register(meterRegistry);
+    }
+
+    public void createTransaction(Long id, BigDecimal amount, String type, Long parentId){
+        if(amount == null){
             throw new IllegalArgumentException("Transaction properties cannot be null");
         }
 
-        if(transactionRepository.findById(id).isPresent()){
-            throw new TransactionAlreadyExistsException(id);
+        validate(id, type, parentId);
+
+        Transaction transaction = new Transaction(id, amountScale.toMinorUnits(amount), type, parentId);
+
+        switch(transactionRepository.insertIfAbsent(transaction)){
+            case DUPLICATE_ID -> throw new TransactionAlreadyExistsException(id);
+            case PARENT_NOT_FOUND -> throw new ParentTransactionNotFoundException(parentId);
+            case INSERTED -> subtreeSumCache.invalidateAncestors(transactionRepository, parentId);
         }
+    }
+
+    public List<InsertResult> createTransactions(List<Transaction> transactions){
+        validateAll(transactions);
+
+        List<InsertResult> results = transactionRepository.saveAll(transactions);
+        for(int i = 0; i < results.size(); i++){
+            if(results.get(i) == InsertResult.INSERTED){
+                subtreeSumCache.invalidateAncestors(transactionRepository, transactions.get(i).getParentId());
+            }
+        }
+        return results;
+    }
 
-        if(parentId != null && transactionRepository.findById(parentId).isEmpty()){
-            throw new ParentTransactionNotFoundException(parentId);
+    /*
+        Un ítem inválido rechaza el lote entero, antes de escribir nada.
+     */
+    public void validateAll(List<Transaction> transactions){
+        if(transactions == null){
+            throw new IllegalArgumentException("Transactions cannot be null");
+        }
+
+        for(Transaction transaction : transactions){
+            if(transaction == null){
+                throw new IllegalArgumentException("Transaction properties cannot be null");
+            }
+            validate(transaction.getId(), transaction.getType(), transaction.getParentId());
+        }
+    }
+
+    private void validate(Long id, String type, Long parentId){
+        if(id == null || type == null){
+            throw new IllegalArgumentException("Transaction properties cannot be null");
+        }
+
+        if(type.isBlank()){
+            throw new IllegalArgumentException("Transaction type cannot be blank");
         }
 
         if(parentId != null && parentId.equals(id)){
             throw new IllegalArgumentException("Transaction cannot be its own parent");
         }
-        
-        Transaction transaction = new Transaction(id, amount, type, parentId);
-        
-        transactionRepository.save(transaction);
     }
 
     public List<Long> getTransactionIdsByType(String type){
@@ -51,31 +124,207 @@ public class DefaultTransactionService implements TransactionService {
         return transactionRepository.findIdsByType(type);
     }
 
-    public Double getSum(Long transactionId){ 
+    public TransactionIdPage getTransactionIdsByType(String type, long after, int limit){
+        if(type == null){
+            throw new IllegalArgumentException("Type cannot be null");
+        }
+
+        if(limit < 1 || limit > MAX_PAGE_SIZE){
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        if(after < 0){
+            throw new IllegalArgumentException("Cursor cannot be negative");
+        }
+
+        // Ninguna lista tiene más de Integer.MAX_VALUE posiciones
+        List<Long> ids = after > Integer.MAX_VALUE ? List.of() : transactionRepository.findIdsByType(type, (int) after, limit);
+        Long nextCursor = ids.size() == limit ? after + limit : null;
+        return new TransactionIdPage(ids, nextCursor);
+    }
+
+    public void forEachTransactionIdByType(String type, LongConsumer action){
+        if(type == null){
+            throw new IllegalArgumentException("Type cannot be null");
+        }
+
+        transactionRepository.forEachIdByType(type, action);
+    }
+
+    public BigDecimal getSum(Long transactionId){ 
+        BigDecimal sum = sumWithoutTraversal(transactionId);
+        if (sum != null) {
+            return sum;
+        }
+
+        if (transactionRepository.amountOf(transactionId) == TransactionRepository.ABSENT) {
+            throw new TransactionNotFoundException(transactionId);
+        }
+
+        long writesBeforeTraversal = subtreeSumCache.writes();
+        /* Si la suma materializada desbordó, el recorrido también desborda y termina acá */
+        SubtreeTotal total;
+        try {
+            total = subtreeTraversal.sum(transactionRepository, transactionId);
+        } catch (ArithmeticException e) {
+            throw new SumOverflowException(transactionId);
+        }
+        traversalSumNodes.record(total.getNodes());
+        subtreeSumCache.put(transactionId, total.getSum(), writesBeforeTraversal);
+        return amountScale.toDecimal(total.getSum());
+    }
+
+    public Optional<BigDecimal> findSumWithoutTraversal(Long transactionId){
+        return Optional.ofNullable(sumWithoutTraversal(transactionId));
+    }
+
+    // null si hay que recorrer el árbol. El camino más común no asigna nada más que el BigDecimal de la respuesta
+    private BigDecimal sumWithoutTraversal(Long transactionId){
         if (transactionId == null) {
             throw new IllegalArgumentException("Transaction ID cannot be null");
         }
 
-        if (transactionRepository.findById(transactionId).isEmpty()) {
+        long materializedSum = transactionRepository.subtreeSumOf(transactionId);
+        if (materializedSum != TransactionRepository.ABSENT) {
+            materializedSumNodes.record(0);
+            return amountScale.toDecimal(materializedSum);
+        }
+
+        OptionalLong cachedSum = subtreeSumCache.get(transactionId);
+        if (cachedSum.isPresent()) {
+            cachedSumNodes.record(0);
+            return amountScale.toDecimal(cachedSum.getAsLong());
+        }
+        return null;
+    }
+
+    public boolean readsBlock(){
+        return transactionRepository.blocking();
+    }
+
+    /*
+        Una lista vacía también es la respuesta para una raíz o una hoja: sólo
+        en ese caso se pregunta si la transacción existe.
+     */
+    public List<Long> getAncestorIds(Long transactionId){
+        requireId(transactionId);
+
+        List<Long> ancestorIds = transactionRepository.findAncestorIds(transactionId);
+        if(ancestorIds.isEmpty()){
+            requireExists(transactionId);
+        }
+        return ancestorIds;
+    }
+
+    public long getRootId(Long transactionId){
+        requireId(transactionId);
+
+        OptionalLong rootId = transactionRepository.findRootId(transactionId);
+        if(rootId.isEmpty()){
             throw new TransactionNotFoundException(transactionId);
         }
+        return rootId.getAsLong();
+    }
 
-        Deque<Long> stack = new java.util.ArrayDeque<>();
-        stack.push(transactionId);
+    public int getDepth(Long transactionId){
+        requireId(transactionId);
 
-        double sum = 0.0;
+        return requireExists(transactionId);
+    }
 
-        while(!stack.isEmpty()) {
-            Long currentId = stack.pop();
-            Transaction transaction = transactionRepository.findById(currentId).orElseThrow(() -> new TransactionNotFoundException(currentId));
+    public List<Long> getDescendantIdsAtDepth(Long transactionId, int depth){
+        requireId(transactionId);
 
-            sum += transaction.getAmount();
+        if(depth < 0){
+            throw new IllegalArgumentException("Depth cannot be negative");
+        }
 
-            for(Long childId : transactionRepository.findChildrenIds(currentId)) {
-                stack.push(childId);
-            }
+        List<Long> descendantIds = transactionRepository.findDescendantIdsAtDepth(transactionId, depth);
+        if(descendantIds.isEmpty()){
+            requireExists(transactionId);
+        }
+        return descendantIds;
+    }
+
+    private void requireId(Long transactionId){
+        if(transactionId == null){
+            throw new IllegalArgumentException("Transaction ID cannot be null");
+        }
+    }
+
+    // Devuelve la profundidad, que es la forma más barata de saber si existe
+    private int requireExists(Long transactionId){
+        OptionalInt depth = transactionRepository.findDepth(transactionId);
+        if(depth.isEmpty()){
+            throw new TransactionNotFoundException(transactionId);
+        }
+        return depth.getAsInt();
+    }
+
+    public TypeSummary getTypeSummary(String type){
+        if(type == null){
+            throw new IllegalArgumentException("Type cannot be null");
+        }
+
+        return summarize(type, transactionRepository.findTypeAggregate(type));
+    }
+
+    /*
+        Un agregado por tipo, ordenados por nombre. Cada uno es una lectura del
+        agregado que mantiene el repositorio, no un recorrido del tipo, y los
+        tipos del prefijo salen ordenados del diccionario del repositorio.
+     */
+    public List<TypeSummary> getTypeSummaries(String prefix){
+        if(prefix == null){
+            throw new IllegalArgumentException("Prefix cannot be null");
+        }
+        List<String> types = transactionRepository.findTypes(prefix);
+
+        List<TypeSummary> summaries = new ArrayList<>(types.size());
+        for(String type : types){
+            summaries.add(summarize(type, transactionRepository.findTypeAggregate(type)));
+        }
+        return summaries;
+    }
+
+    /*
+        Un rango del índice por monto del tipo: O(log n + limit) en los
+        repositorios en memoria, sin pasar por los ids del tipo.
+     */
+    public List<TransactionAmount> getTransactionsByAmount(String type, BigDecimal min, BigDecimal max, int limit){
+        if(type == null){
+            throw new IllegalArgumentException("Type cannot be null");
+        }
+
+        if(limit < 1 || limit > MAX_PAGE_SIZE){
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        long minAmount = min != null ? amountScale.toMinorUnits(min) : Long.MIN_VALUE;
+        long maxAmount = max != null ? amountScale.toMinorUnits(max) : Long.MAX_VALUE;
+        if(minAmount > maxAmount){
+            throw new IllegalArgumentException("Minimum amount cannot be greater than maximum amount");
+        }
+
+        List<Transaction> found = transactionRepository.findByTypeAndAmount(type, minAmount, maxAmount, limit);
+        List<TransactionAmount> transactions = new ArrayList<>(found.size());
+        for(Transaction transaction : found){
+            transactions.add(new TransactionAmount(transaction.getId(), amountScale.toDecimal(transaction.getAmount())));
+        }
+        return transactions;
+    }
+
+    private TypeSummary summarize(String type, Optional<TypeAggregate> found){
+        if(found.isEmpty()){
+            return new TypeSummary(type, 0, amountScale.toDecimal(0), null, null);
+        }
+
+        TypeAggregate aggregate = found.get();
+        if(aggregate.isSumOverflowed()){
+            throw new SumOverflowException(type);
         }
-        return sum;
+        return new TypeSummary(type, aggregate.getCount(), amountScale.toDecimal(aggregate.getSum()),
+                amountScale.toDecimal(aggregate.getMin()), amountScale.toDecimal(aggregate.getMax()));
     }
 
 }
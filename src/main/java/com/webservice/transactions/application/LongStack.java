@@ -0,0 +1,63 @@
+package com.webservice.transactions.application;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/*
+    Pila de longs sin boxing para SubtreeTraversal. Es el LongConsumer que se
+    le pasa a TransactionRepository.visit, así apilar los hijos no crea un
+    lambda por nodo.
+ */
+final class LongStack implements LongConsumer {
+
+    private long[] values;
+    private int size;
+
+    LongStack(int capacity) {
+        values = new long[Math.max(capacity, 8)];
+    }
+
+    public void accept(long value) {
+        push(value);
+    }
+
+    void push(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    long pop() {
+        return values[--size];
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return values.length;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /*
+        Saca los count valores de abajo (los primeros que se apilaron) y los
+        devuelve en otra pila, en el mismo orden.
+     */
+    LongStack removeBottom(int count) {
+        LongStack bottom = new LongStack(count);
+        System.arraycopy(values, 0, bottom.values, 0, count);
+        bottom.size = count;
+        System.arraycopy(values, count, values, 0, size - count);
+        size -= count;
+        return bottom;
+    }
+}
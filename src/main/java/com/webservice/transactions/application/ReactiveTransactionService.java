@@ -0,0 +1,112 @@
+package com.webservice.transactions.application;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/*
+    TransactionService en forma de Mono y Flux, para el router reactivo. No
+    cambia qué se hace, sólo en qué thread: nada de esto puede correr en un
+    event loop si bloquea, porque frena a todas las conexiones de ese loop.
+
+    Las escrituras van siempre a writeScheduler: con el log activado esperan
+    el fsync. Las lecturas sobre los repositorios en memoria no esperan nada y
+    corren en el mismo event loop; readScheduler es para cuando sí esperan
+    (con jdbc, o en modo cluster le preguntan a otro nodo). Una suma que no
+    está materializada ni cacheada recorre el árbol, y pasado el umbral espera
+    al pool de fork-join: esa parte va a traversalScheduler.
+ */
+public class ReactiveTransactionService {
+
+    public static final int STREAM_PAGE_SIZE = 1_000;
+
+    private final TransactionService transactionService;
+    private final Scheduler writeScheduler;
+    private final Scheduler readScheduler;
+    private final Scheduler traversalScheduler;
+
+    public ReactiveTransactionService(TransactionService transactionService, Scheduler writeScheduler, Scheduler readScheduler,
+                                      Scheduler traversalScheduler) {
+        this.transactionService = transactionService;
+        this.writeScheduler = writeScheduler;
+        this.readScheduler = readScheduler;
+        this.traversalScheduler = traversalScheduler;
+    }
+
+    public Mono<Void> createTransaction(Long id, BigDecimal amount, String type, Long parentId) {
+        return Mono.<Void>fromRunnable(() -> transactionService.createTransaction(id, amount, type, parentId))
+                .subscribeOn(writeScheduler);
+    }
+
+    public Mono<List<InsertResult>> createTransactions(List<Transaction> transactions) {
+        return Mono.fromCallable(() -> transactionService.createTransactions(transactions))
+                .subscribeOn(writeScheduler);
+    }
+
+    public Mono<List<Long>> getTransactionIdsByType(String type) {
+        return read(() -> transactionService.getTransactionIdsByType(type));
+    }
+
+    public Mono<TransactionIdPage> getTransactionIdsByType(String type, long after, int limit) {
+        return read(() -> transactionService.getTransactionIdsByType(type, after, limit));
+    }
+
+    /*
+        Lee el índice de a páginas de STREAM_PAGE_SIZE, y la próxima se pide
+        recién cuando el cliente consumió la anterior: por conexión queda a lo
+        sumo una página en memoria, por lento que lea.
+     */
+    public Flux<Long> streamTransactionIdsByType(String type) {
+        return getTransactionIdsByType(type, 0, STREAM_PAGE_SIZE)
+                .expand(page -> page.getNextCursor() != null
+                        ? getTransactionIdsByType(type, page.getNextCursor(), STREAM_PAGE_SIZE)
+                        : Mono.empty())
+                .concatMapIterable(TransactionIdPage::getIds, 1);
+    }
+
+    public Mono<BigDecimal> getSum(Long transactionId) {
+        return read(() -> transactionService.findSumWithoutTraversal(transactionId).orElse(null))
+                .switchIfEmpty(Mono.defer(() -> Mono.fromCallable(() -> transactionService.getSum(transactionId))
+                        .subscribeOn(traversalScheduler)));
+    }
+
+    public Mono<List<Long>> getAncestorIds(Long transactionId) {
+        return read(() -> transactionService.getAncestorIds(transactionId));
+    }
+
+    public Mono<Long> getRootId(Long transactionId) {
+        return read(() -> transactionService.getRootId(transactionId));
+    }
+
+    public Mono<Integer> getDepth(Long transactionId) {
+        return read(() -> transactionService.getDepth(transactionId));
+    }
+
+    public Mono<List<Long>> getDescendantIdsAtDepth(Long transactionId, int depth) {
+        return read(() -> transactionService.getDescendantIdsAtDepth(transactionId, depth));
+    }
+
+    public Mono<TypeSummary> getTypeSummary(String type) {
+        return read(() -> transactionService.getTypeSummary(type));
+    }
+
+    public Mono<List<TypeSummary>> getTypeSummaries(String prefix) {
+        return read(() -> transactionService.getTypeSummaries(prefix));
+    }
+
+    public Mono<List<TransactionAmount>> getTransactionsByAmount(String type, BigDecimal min, BigDecimal max, int limit) {
+        return read(() -> transactionService.getTransactionsByAmount(type, min, max, limit));
+    }
+
+    private <T> Mono<T> read(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(readScheduler);
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.webservice.transactions.application;
+
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/*
+    Sumas de subárbol ya recorridas, para repositorios que no las tienen
+    materializadas. Caffeine acota la cantidad de entradas (maxEntries, 0 lo
+    desactiva) y decide qué desalojar por frecuencia y recencia de uso.
+
+    Cuando se inserta una transacción cambian las sumas de todos sus
+    ancestros, así que se invalidan subiendo por parentId. Un recorrido que
+    corrió mientras se insertaba pudo no ver la transacción nueva: por eso
+    cada inserción incrementa writes antes de invalidar, y put descarta lo que
+    guardó si writes cambió desde que empezó el recorrido. Con escrituras
+    constantes se cachea menos, pero nunca queda una suma vieja.
+
+    Hits, misses, evictions y tamaño se publican como cache.* con
+    cache="transactions.sum".
+ */
+@Component
+public class SubtreeSumCache {
+
+    static final String CACHE_NAME = "transactions.sum";
+    static final String INVALIDATIONS_COUNTER = "transactions.sum.cache.invalidations";
+
+    private final Cache<Long, Long> sums;
+    private final AtomicLong writes = new AtomicLong();
+    private final Counter invalidations;
+
+    public SubtreeSumCache(@Value("${transactions.sum.cache.max-entries:10000}") long maxEntries,
+                           MeterRegistry meterRegistry) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("transactions.sum.cache.max-entries cannot be negative");
+        }
+        this.sums = maxEntries > 0
+                ? Caffeine.newBuilder().maximumSize(maxEntries).recordStats().build()
+                : null;
+        if (sums != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, sums, CACHE_NAME);
+        }
+        this.invalidations = Counter.builder(INVALIDATIONS_COUNTER)
+                .description("Cached subtree sums dropped because a descendant was inserted")
+                .register(meterRegistry);
+    }
+
+    public OptionalLong get(Long id) {
+        Long sum = sums != null ? sums.getIfPresent(id) : null;
+        return sum != null ? OptionalLong.of(sum) : OptionalLong.empty();
+    }
+
+    /*
+        Se lee antes de recorrer el subárbol y se le pasa a put.
+     */
+    public long writes() {
+        return writes.get();
+    }
+
+    public void put(Long id, long sum, long writesBeforeTraversal) {
+        if (sums == null) {
+            return;
+        }
+        sums.put(id, sum);
+        if (writes.get() != writesBeforeTraversal) {
+            sums.invalidate(id);
+        }
+    }
+
+    /*
+        Se llama después de que la transacción es visible en el repositorio,
+        con su parentId. Recorre la cadena entera: que un ancestro no esté
+        cacheado no dice nada de los que están más arriba.
+     */
+    public void invalidateAncestors(TransactionRepository repository, Long parentId) {
+        if (sums == null || parentId == null) {
+            return;
+        }
+        writes.incrementAndGet();
+        if (sums.estimatedSize() == 0) {
+            return;
+        }
+        Long ancestorId = parentId;
+        while (ancestorId != null) {
+            if (sums.asMap().remove(ancestorId) != null) {
+                invalidations.increment();
+            }
+            ancestorId = repository.findById(ancestorId).map(Transaction::getParentId).orElse(null);
+        }
+    }
+
+    // Caffeine desaloja en segundo plano; los tests lo fuerzan con esto
+    void cleanUp() {
+        if (sums != null) {
+            sums.cleanUp();
+        }
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.webservice.transactions.application;
+
+public class SubtreeTotal {
+
+    private final long sum;
+    private final long nodes;
+
+    public SubtreeTotal(long sum, long nodes) {
+        this.sum = sum;
+        this.nodes = nodes;
+    }
+
+    /*
+        En unidades mínimas de AmountScale.
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.webservice.transactions.application;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.webservice.transactions.application.exception.TransactionNotFoundException;
+import com.webservice.transactions.domain.TransactionRepository;
+
+/*
+    Suma de un subárbol recorriéndolo con findChildrenIds, para repositorios
+    que no la tienen materializada. No se sabe de antemano el tamaño del
+    subárbol, así que se empieza en el thread del request: si después de
+    "threshold" nodos todavía queda pila, el resto pasa a un ForkJoinPool
+    propio, donde cada tarea vuelve a partir su pila cada "threshold" nodos.
+
+    El pool tiene "parallelism" threads y lo comparten todas las consultas,
+    así una sola consulta enorme no puede ocupar más que eso. Con parallelism
+    menor a 2 todo se recorre en el thread del request.
+
+    Los montos son longs exactos, así que el orden de la suma no cambia el
+    resultado. Si la suma no entra en un long se lanza ArithmeticException.
+
+    Cada nodo se visita con repository.visit sobre una pila de longs que
+    cada thread reusa entre consultas: en un árbol ancho hacer crecer la pila
+    era casi todo lo que asignaba un recorrido. Una pila que pasó de
+    MAX_REUSED_STACK no se guarda, para no retener la del subárbol más grande.
+ */
+@Component
+public class SubtreeTraversal implements DisposableBean {
+
+    private static final int MAX_REUSED_STACK = 1 << 16;
+
+    private final int threshold;
+    private final ForkJoinPool pool;
+    private final ThreadLocal<LongStack> stacks = ThreadLocal.withInitial(() -> new LongStack(64));
+
+    public SubtreeTraversal(@Value("${transactions.sum.parallel-threshold:10000}") int threshold,
+                            @Value("${transactions.sum.parallelism:0}") int parallelism) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("transactions.sum.parallel-threshold must be positive");
+        }
+        this.threshold = threshold;
+        int workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors() / 2;
+        this.pool = workers >= 2 ? new ForkJoinPool(workers) : null;
+    }
+
+    public SubtreeTotal sum(TransactionRepository repository, Long rootId) {
+        LongStack stack = stacks.get();
+        // Un recorrido que terminó con una excepción pudo dejar ids en la pila
+        stack.clear();
+        stack.push(rootId);
+        long sum = 0;
+        long nodes = 0;
+
+        try {
+            while (!stack.isEmpty()) {
+                if (pool != null && nodes == threshold) {
+                    SubtreeTotal rest = pool.invoke(new SumTask(repository, stack));
+                    return new SubtreeTotal(Math.addExact(sum, rest.getSum()), nodes + rest.getNodes());
+                }
+                sum = Math.addExact(sum, visit(repository, stack));
+                nodes++;
+            }
+            return new SubtreeTotal(sum, nodes);
+        } finally {
+            if (stack.capacity() > MAX_REUSED_STACK) {
+                stacks.remove();
+            }
+        }
+    }
+
+    private static long visit(TransactionRepository repository, LongStack stack) {
+        long currentId = stack.pop();
+        long amount = repository.visit(currentId, stack);
+        if (amount == TransactionRepository.ABSENT) {
+            throw new TransactionNotFoundException(currentId);
+        }
+        return amount;
+    }
+
+    public void destroy() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    private final class SumTask extends RecursiveTask<SubtreeTotal> {
+
+        private final TransactionRepository repository;
+        private final LongStack stack;
+
+        private SumTask(TransactionRepository repository, LongStack stack) {
+            this.repository = repository;
+            this.stack = stack;
+        }
+
+        /*
+            Cada "threshold" nodos, la mitad de abajo de la pila (los nodos más
+            cercanos a la raíz, que suelen tener los subárboles más grandes) se
+            va a otra tarea. Los resultados se juntan en el orden en que se
+            crearon las tareas, así la suma no depende de qué thread terminó antes.
+         */
+        protected SubtreeTotal compute() {
+            List<SumTask> forked = new ArrayList<>();
+            long sum = 0;
+            long nodes = 0;
+            while (!stack.isEmpty()) {
+                if (nodes > 0 && nodes % threshold == 0 && stack.size() > 1) {
+                    SumTask task = new SumTask(repository, stack.removeBottom(stack.size() / 2));
+                    task.fork();
+                    forked.add(task);
+                }
+                sum = Math.addExact(sum, visit(repository, stack));
+                nodes++;
+            }
+            for (SumTask task : forked) {
+                SubtreeTotal total = task.join();
+                sum = Math.addExact(sum, total.getSum());
+                nodes += total.getNodes();
+            }
+            return new SubtreeTotal(sum, nodes);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.webservice.transactions.application;
+
+import java.math.BigDecimal;
+
+public class TransactionAmount {
+
+    private final long id;
+    private final BigDecimal amount;
+
+    public TransactionAmount(long id, BigDecimal amount) {
+        this.id = id;
+        this.amount = amount;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.webservice.transactions.application;
+
+import java.util.List;
+
+public class TransactionIdPage {
+
+    private final List<Long> ids;
+    private final Long nextCursor;
+
+    public TransactionIdPage(List<Long> ids, Long nextCursor) {
+        this.ids = ids;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    /*
+        Desde dónde sigue la próxima página, o null si esta fue la última. En
+        un nodo es la posición en la lista del tipo; en el cluster lleva
+        además el nodo.
+     */
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+}
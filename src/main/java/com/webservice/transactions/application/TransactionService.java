@@ -1,13 +1,54 @@
 package com.webservice.transactions.application;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.LongConsumer;
+
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
 
 public interface TransactionService {
 
-    void createTransaction(Long id, Double amount, String type, Long parentId);
+    void createTransaction(Long id, BigDecimal amount, String type, Long parentId);
+
+    List<InsertResult> createTransactions(List<Transaction> transactions);
 
     List<Long> getTransactionIdsByType(String type);
 
-    Double getSum(Long transactionId);
+    TransactionIdPage getTransactionIdsByType(String type, long after, int limit);
+
+    void forEachTransactionIdByType(String type, LongConsumer action);
+
+    BigDecimal getSum(Long transactionId);
+
+    /*
+        La suma si sale sin recorrer el árbol (materializada o cacheada); vacío
+        si hay que pedírsela a getSum.
+     */
+    Optional<BigDecimal> findSumWithoutTraversal(Long transactionId);
+
+    // true si las lecturas esperan E/S: una base de datos u otro nodo
+    boolean readsBlock();
+
+    List<Long> getAncestorIds(Long transactionId);
+
+    long getRootId(Long transactionId);
+
+    int getDepth(Long transactionId);
+
+    List<Long> getDescendantIdsAtDepth(Long transactionId, int depth);
+
+    TypeSummary getTypeSummary(String type);
+
+    // Ordenados por nombre; "" son todos los tipos
+    List<TypeSummary> getTypeSummaries(String prefix);
+
+    /*
+        Hasta limit transacciones del tipo con monto entre min y max (ambos
+        incluidos; null es sin límite), de menor a mayor monto y a igual monto
+        por id.
+     */
+    List<TransactionAmount> getTransactionsByAmount(String type, BigDecimal min, BigDecimal max, int limit);
     
 }
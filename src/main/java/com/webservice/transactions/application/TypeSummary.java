@@ -0,0 +1,44 @@
+package com.webservice.transactions.application;
+
+import java.math.BigDecimal;
+
+public class TypeSummary {
+
+    private final String type;
+    private final long count;
+    private final BigDecimal sum;
+    private final BigDecimal min;
+    private final BigDecimal max;
+
+    public TypeSummary(String type, long count, BigDecimal sum, BigDecimal min, BigDecimal max) {
+        this.type = type;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public BigDecimal getSum() {
+        return sum;
+    }
+
+    /*
+        min y max son null si el tipo no tiene transacciones.
+     */
+    public BigDecimal getMin() {
+        return min;
+    }
+
+    public BigDecimal getMax() {
+        return max;
+    }
+
+}
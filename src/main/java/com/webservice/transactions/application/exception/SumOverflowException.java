@@ -0,0 +1,12 @@
+package com.webservice.transactions.application.exception;
+
+public class SumOverflowException extends RuntimeException {
+
+    public SumOverflowException(Long id) {
+        super("Sum of transaction " + id + " is out of range");
+    }
+
+    public SumOverflowException(String type) {
+        super("Sum of type " + type + " is out of range");
+    }
+}
@@ -0,0 +1,67 @@
+package com.webservice.transactions.domain;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/*
+    Los montos se guardan como long en unidades mínimas: con scale 2, 12.34 se
+    guarda como 1234. Así las sumas son exactas y se hacen con aritmética de
+    enteros; BigDecimal queda sólo en los bordes (requests y respuestas).
+
+    Nunca se redondea: un monto con más decimales que scale, o que no entra en
+    un long, se rechaza. Long.MIN_VALUE tampoco se acepta, los repositorios lo
+    usan para marcar una suma que se desbordó.
+ */
+public final class AmountScale {
+
+    public static final int MAX_SCALE = 18;
+    private static final int MAX_INTEGER_DIGITS = 19;
+
+    private final int scale;
+
+    public AmountScale(int scale) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("Amount scale must be between 0 and " + MAX_SCALE);
+        }
+        this.scale = scale;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public long toMinorUnits(BigDecimal amount) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount cannot be null");
+        }
+        // Antes de setScale, que con un exponente enorme armaría un número de millones de dígitos
+        if (amount.precision() - amount.scale() > MAX_INTEGER_DIGITS) {
+            throw new IllegalArgumentException("Amount is out of range");
+        }
+        BigInteger units;
+        try {
+            units = amount.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount cannot have more than " + scale + " decimal places");
+        }
+        if (units.bitLength() > 63 || units.longValue() == Long.MIN_VALUE) {
+            throw new IllegalArgumentException("Amount is out of range");
+        }
+        return units.longValue();
+    }
+
+    public BigDecimal toDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, scale);
+    }
+
+    /*
+        Si sum = augend + addend (en long) se desbordó: pasa cuando los dos
+        operandos tienen el mismo signo y el resultado no. Es lo que usan las
+        sumas y agregados materializados, que no pueden pagar una excepción.
+     */
+    public static boolean sumOverflows(long augend, long addend, long sum) {
+        return ((augend ^ sum) & (addend ^ sum)) < 0;
+    }
+
+}
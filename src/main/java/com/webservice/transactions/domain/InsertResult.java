@@ -0,0 +1,7 @@
+package com.webservice.transactions.domain;
+
+public enum InsertResult {
+    INSERTED,
+    DUPLICATE_ID,
+    PARENT_NOT_FOUND
+}
@@ -4,11 +4,11 @@ import java.util.Objects;
 
 public class Transaction {
     private final Long id;
-    private final Double amount;
+    private final long amount;
     private final String type;
     private final Long parentId;
 
-    public Transaction(Long id, Double amount, String type, Long parentId) {
+    public Transaction(Long id, long amount, String type, Long parentId) {
         this.id = id;
         this.amount = amount;
         this.type = type;
@@ -19,7 +19,10 @@ public class Transaction {
         return id;
     }
 
-    public Double getAmount() {
+    /*
+        En unidades mínimas de AmountScale.
+     */
+    public long getAmount() {
         return amount;
     }
 
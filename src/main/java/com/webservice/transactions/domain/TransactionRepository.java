@@ -1,15 +1,245 @@
 package com.webservice.transactions.domain;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 public interface TransactionRepository {
 
+    /*
+        "No hay" para los accesos primitivos (amountOf, subtreeSumOf).
+        AmountScale nunca lo acepta como monto y las sumas materializadas lo
+        usan para marcar un desborde, así que no se confunde con un valor.
+     */
+    long ABSENT = Long.MIN_VALUE;
+
+    // El orden de findByTypeAndAmount
+    Comparator<Transaction> BY_AMOUNT_AND_ID = Comparator.comparingLong(Transaction::getAmount)
+            .thenComparingLong(Transaction::getId);
+
     void save(Transaction transaction);
 
+    /*
+        Valida e inserta en un solo paso atómico: el id no puede existir y el
+        padre (si tiene) sí. No modifica nada si el resultado no es INSERTED.
+     */
+    InsertResult insertIfAbsent(Transaction transaction);
+
+    /*
+        insertIfAbsent para cada transacción del lote, en orden, devolviendo un
+        resultado por cada una. Una transacción puede tener como padre a otra
+        que aparece antes en el mismo lote.
+     */
+    List<InsertResult> saveAll(List<Transaction> transactions);
+
+    /*
+        Carga de un snapshot al arrancar: cada transacción llega después de su
+        padre y con la suma de su subárbol ya calculada (ABSENT si se
+        desbordó). Los repositorios que mantienen sumas la guardan tal cual en
+        vez de sumar el monto a cada ancestro; este default la guarda con save.
+     */
+    default void load(Transaction transaction, long subtreeSum) {
+        save(transaction);
+    }
+
     Optional<Transaction> findById(Long id);
 
     List<Long> findIdsByType(String type);
 
+    /*
+        Los ids de un tipo se devuelven siempre en orden de inserción y el índice
+        sólo crece, así que una posición en esa lista es un cursor estable.
+     */
+    default List<Long> findIdsByType(String type, int from, int limit) {
+        List<Long> ids = findIdsByType(type);
+        if (from >= ids.size()) {
+            return List.of();
+        }
+        return ids.subList(from, from + Math.min(limit, ids.size() - from));
+    }
+
+    default void forEachIdByType(String type, LongConsumer action) {
+        for (Long id : findIdsByType(type)) {
+            action.accept(id);
+        }
+    }
+
+    /*
+        Los tipos que tienen al menos una transacción, sin orden definido.
+     */
+    List<String> findTypes();
+
+    /*
+        Los tipos que empiezan con prefix, ordenados por nombre ("" son todos).
+        Los repositorios en memoria los sacan de su diccionario de tipos.
+     */
+    default List<String> findTypes(String prefix) {
+        List<String> types = new ArrayList<>();
+        for (String type : findTypes()) {
+            if (type.startsWith(prefix)) {
+                types.add(type);
+            }
+        }
+        Collections.sort(types);
+        return types;
+    }
+
+    default int countIdsByType(String type) {
+        return findIdsByType(type).size();
+    }
+
+    /*
+        Agregado de los montos de un tipo, vacío si no tiene transacciones.
+        Los repositorios en memoria lo mantienen en cada inserción; este
+        default recorre el tipo entero.
+     */
+    default Optional<TypeAggregate> findTypeAggregate(String type) {
+        TypeAggregate aggregate = null;
+        for (Long id : findIdsByType(type)) {
+            Optional<Transaction> transaction = findById(id);
+            if (transaction.isPresent()) {
+                long amount = transaction.get().getAmount();
+                aggregate = aggregate == null ? TypeAggregate.of(amount) : aggregate.plus(amount);
+            }
+        }
+        return Optional.ofNullable(aggregate);
+    }
+
+    /*
+        Las transacciones de un tipo con monto entre minAmount y maxAmount
+        (ambos incluidos), ordenadas por BY_AMOUNT_AND_ID, hasta limit. Los
+        repositorios en memoria mantienen cada tipo ordenado por monto y esto
+        cuesta O(log n + limit); este default recorre el tipo entero.
+     */
+    default List<Transaction> findByTypeAndAmount(String type, long minAmount, long maxAmount, int limit) {
+        List<Transaction> found = new ArrayList<>();
+        for (Long id : findIdsByType(type)) {
+            Optional<Transaction> transaction = findById(id);
+            if (transaction.isPresent() && transaction.get().getAmount() >= minAmount && transaction.get().getAmount() <= maxAmount) {
+                found.add(transaction.get());
+            }
+        }
+        found.sort(BY_AMOUNT_AND_ID);
+        return found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+    }
+
     List<Long> findChildrenIds(Long parentId);
+
+    /*
+        Versiones primitivas de findById(id).getAmount() y findChildrenIds
+        para los caminos calientes (PUT y GET /sum): no arman Optional, listas
+        ni Longs por cada nodo. Los repositorios en memoria las implementan sin
+        asignar nada; estos defaults pasan por las otras.
+     */
+    default long amountOf(long id) {
+        Optional<Transaction> transaction = findById(id);
+        return transaction.isPresent() ? transaction.get().getAmount() : ABSENT;
+    }
+
+    /*
+        amountOf y los hijos en una sola llamada, para recorrer un subárbol:
+        le pasa cada hijo a childIds y devuelve el monto, o ABSENT sin pasar
+        ninguno si la transacción no existe.
+     */
+    default long visit(long id, LongConsumer childIds) {
+        long amount = amountOf(id);
+        if (amount != ABSENT) {
+            for (Long childId : findChildrenIds(id)) {
+                childIds.accept(childId);
+            }
+        }
+        return amount;
+    }
+
+    /*
+        Los ancestros de una transacción, de la raíz al padre. Vacío si es una
+        raíz o si no existe. Los repositorios en memoria guardan padre, raíz y
+        profundidad de cada transacción; estos defaults suben por findById.
+     */
+    default List<Long> findAncestorIds(Long id) {
+        List<Long> ancestorIds = new ArrayList<>();
+        Optional<Transaction> current = findById(id);
+        while (current.isPresent() && current.get().getParentId() != null) {
+            current = findById(current.get().getParentId());
+            current.ifPresent(ancestor -> ancestorIds.add(ancestor.getId()));
+        }
+        Collections.reverse(ancestorIds);
+        return ancestorIds;
+    }
+
+    default OptionalLong findRootId(Long id) {
+        if (findById(id).isEmpty()) {
+            return OptionalLong.empty();
+        }
+        List<Long> ancestorIds = findAncestorIds(id);
+        return OptionalLong.of(ancestorIds.isEmpty() ? id : ancestorIds.get(0));
+    }
+
+    /*
+        0 para una raíz, vacío si la transacción no existe.
+     */
+    default OptionalInt findDepth(Long id) {
+        if (findById(id).isEmpty()) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of(findAncestorIds(id).size());
+    }
+
+    /*
+        Los descendientes que están depth niveles por debajo (1 son los hijos,
+        0 la transacción misma), nivel por nivel en el orden de findChildrenIds.
+        Vacío si la transacción no existe.
+     */
+    default List<Long> findDescendantIdsAtDepth(Long id, int depth) {
+        if (findById(id).isEmpty()) {
+            return List.of();
+        }
+        List<Long> level = List.of(id);
+        for (int i = 0; i < depth && !level.isEmpty(); i++) {
+            List<Long> next = new ArrayList<>();
+            for (Long parentId : level) {
+                next.addAll(findChildrenIds(parentId));
+            }
+            level = next;
+        }
+        return level;
+    }
+
+    /*
+        Recorre todas las transacciones, en lo posible con cada padre antes que
+        sus hijos (quien las vuelve a cargar tiene que tolerar lo contrario).
+        Se usa para escribir snapshots; no es una vista consistente si hay
+        escrituras concurrentes.
+     */
+    void forEachTransaction(Consumer<Transaction> action);
+
+    /*
+        Suma de la transacción y todos sus descendientes, si el repositorio la
+        mantiene materializada. Vacío significa "no disponible" (tampoco si la
+        suma se desbordó): el llamador tiene que recorrer el árbol con
+        findChildrenIds.
+     */
+    default OptionalLong findSubtreeSum(Long id) {
+        return OptionalLong.empty();
+    }
+
+    // findSubtreeSum sin OptionalLong: ABSENT en vez de vacío
+    default long subtreeSumOf(long id) {
+        OptionalLong sum = findSubtreeSum(id);
+        return sum.isPresent() ? sum.getAsLong() : ABSENT;
+    }
+
+    /*
+        true si las lecturas esperan E/S (una base de datos): quien atiende
+        desde un event loop tiene que llamarlo desde otro thread.
+     */
+    default boolean blocking() {
+        return false;
+    }
 }
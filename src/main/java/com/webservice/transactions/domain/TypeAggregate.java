@@ -0,0 +1,69 @@
+package com.webservice.transactions.domain;
+
+/*
+    Cantidad, suma, mínimo y máximo de los montos (en unidades mínimas) de
+    las transacciones de un tipo. Es un valor inmutable: lo que devuelve
+    findTypeAggregate y lo que se junta por tipo en un lote. Los repositorios
+    en memoria no lo reemplazan en cada inserción, actualizan un
+    TypeAggregateCell en el lugar y arman un TypeAggregate recién al leerlo.
+
+    Si la suma no entra en un long queda marcada como desbordada para
+    siempre; cantidad, mínimo y máximo siguen siendo exactos.
+ */
+public final class TypeAggregate {
+
+    private final long count;
+    private final long sum;
+    private final boolean sumOverflowed;
+    private final long min;
+    private final long max;
+
+    private TypeAggregate(long count, long sum, boolean sumOverflowed, long min, long max) {
+        this.count = count;
+        this.sum = sum;
+        this.sumOverflowed = sumOverflowed;
+        this.min = min;
+        this.max = max;
+    }
+
+    public static TypeAggregate of(long amount) {
+        return new TypeAggregate(1, amount, false, amount, amount);
+    }
+
+    // Para los repositorios que acumulan los campos por su cuenta
+    public static TypeAggregate of(long count, long sum, boolean sumOverflowed, long min, long max) {
+        return new TypeAggregate(count, sumOverflowed ? 0 : sum, sumOverflowed, min, max);
+    }
+
+    public TypeAggregate plus(long amount) {
+        return combine(of(amount));
+    }
+
+    public TypeAggregate combine(TypeAggregate other) {
+        long combinedSum = sum + other.sum;
+        boolean overflowed = sumOverflowed || other.sumOverflowed || AmountScale.sumOverflows(sum, other.sum, combinedSum);
+        return new TypeAggregate(count + other.count, overflowed ? 0 : combinedSum, overflowed,
+                Math.min(min, other.min), Math.max(max, other.max));
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public boolean isSumOverflowed() {
+        return sumOverflowed;
+    }
+
+    public long getMin() {
+        return min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.webservice.transactions.infrastructure.cluster;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+
+import com.webservice.transactions.application.DefaultTransactionService;
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.TransactionRepository;
+
+@Configuration
+@ConditionalOnProperty("transactions.cluster.nodes")
+public class ClusterConfiguration {
+
+    /*
+        transactions.cluster.nodes es la lista de URLs de todos los nodos, igual
+        en todos, y transactions.cluster.node-index la posición de este en ella.
+        El servicio del cluster reemplaza al local para los controllers; el
+        local sigue siendo el que usa para lo que es de este nodo.
+     */
+    @Bean
+    public ClusterTopology clusterTopology(@Value("${transactions.cluster.nodes}") String nodes,
+                                           @Value("${transactions.cluster.node-index:0}") int nodeIndex,
+                                           @Value("${transactions.cluster.range-size:1000000}") long rangeSize) {
+        List<String> urls = Arrays.stream(nodes.split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toList();
+        return new ClusterTopology(urls, nodeIndex, rangeSize);
+    }
+
+    /*
+        transactions.cluster.secret lo comparten todos los nodos y es lo único
+        que deja entrar a /cluster; sin él cualquier cliente de la API podría
+        insertar en la partición de otro nodo o inventar aristas.
+     */
+    @Bean
+    public FilterRegistrationBean<ClusterSecretFilter> clusterSecretFilter(@Value("${transactions.cluster.secret:}") String secret) {
+        FilterRegistrationBean<ClusterSecretFilter> registration = new FilterRegistrationBean<>(new ClusterSecretFilter(requireSecret(secret)));
+        registration.addUrlPatterns("/cluster/*");
+        return registration;
+    }
+
+    @Bean
+    public PeerClient peerClient(ClusterTopology topology, AmountScale amountScale,
+                                 @Value("${transactions.cluster.secret:}") String secret) {
+        return new PeerClient(topology, amountScale, requireSecret(secret));
+    }
+
+    @Bean
+    @Primary
+    public ClusteredTransactionService clusteredTransactionService(DefaultTransactionService local, TransactionRepository transactionRepository,
+                                                                   ClusterTopology topology, PeerClient peers, AmountScale amountScale) {
+        return new ClusteredTransactionService(local, transactionRepository, topology, peers, amountScale);
+    }
+
+    private static String requireSecret(String secret) {
+        if (secret.isBlank()) {
+            throw new IllegalStateException("transactions.cluster.secret is required with transactions.cluster.nodes");
+        }
+        return secret;
+    }
+
+    // Con el servidor ya escuchando: otro nodo que arranque a la vez puede estar pidiéndole sus aristas
+    @EventListener(ApplicationReadyEvent.class)
+    public void restoreClusterLinks(ApplicationReadyEvent event) {
+        event.getApplicationContext().getBean(ClusteredTransactionService.class).restoreLinks();
+    }
+}
@@ -0,0 +1,12 @@
+package com.webservice.transactions.infrastructure.cluster;
+
+public class ClusterPeerException extends RuntimeException {
+
+    public ClusterPeerException(String message) {
+        super(message);
+    }
+
+    public ClusterPeerException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
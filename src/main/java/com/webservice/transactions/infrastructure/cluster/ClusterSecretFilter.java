@@ -0,0 +1,45 @@
+package com.webservice.transactions.infrastructure.cluster;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/*
+    Los endpoints /cluster comparten puerto con la API pública: sólo los
+    atiende quien manda el secreto del cluster, que PeerClient agrega a cada
+    llamada. La comparación no corta en el primer byte distinto, para no
+    dejar adivinar el secreto por el tiempo de respuesta.
+ */
+public class ClusterSecretFilter extends OncePerRequestFilter {
+
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    private final byte[] secret;
+
+    public ClusterSecretFilter(String secret) {
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String given = request.getHeader(SECRET_HEADER);
+        if (given == null || !MessageDigest.isEqual(secret, given.getBytes(StandardCharsets.UTF_8))) {
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"message\":\"Cluster endpoints are only for cluster nodes\"}");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+}
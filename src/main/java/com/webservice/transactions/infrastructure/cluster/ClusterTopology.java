@@ -0,0 +1,52 @@
+package com.webservice.transactions.infrastructure.cluster;
+
+import java.util.List;
+
+/*
+    Los nodos del cluster, en el mismo orden en todos, y cuál es este. Los ids
+    se reparten en rangos de rangeSize: el rango k es del nodo k % nodos, así
+    ids consecutivos (que suelen crearse juntos) quedan en el mismo nodo y
+    los rangos siguientes se reparten entre todos.
+ */
+public final class ClusterTopology {
+
+    private final List<String> nodeUrls;
+    private final int self;
+    private final long rangeSize;
+
+    public ClusterTopology(List<String> nodeUrls, int self, long rangeSize) {
+        if (nodeUrls.isEmpty()) {
+            throw new IllegalArgumentException("transactions.cluster.nodes cannot be empty");
+        }
+        if (self < 0 || self >= nodeUrls.size()) {
+            throw new IllegalArgumentException("transactions.cluster.node-index must be between 0 and " + (nodeUrls.size() - 1));
+        }
+        if (rangeSize < 1) {
+            throw new IllegalArgumentException("transactions.cluster.range-size must be at least 1");
+        }
+        this.nodeUrls = List.copyOf(nodeUrls);
+        this.self = self;
+        this.rangeSize = rangeSize;
+    }
+
+    public int ownerOf(long id) {
+        return (int) Math.floorMod(Math.floorDiv(id, rangeSize), (long) nodeUrls.size());
+    }
+
+    public boolean isLocal(long id) {
+        return ownerOf(id) == self;
+    }
+
+    public int self() {
+        return self;
+    }
+
+    public int size() {
+        return nodeUrls.size();
+    }
+
+    public String url(int node) {
+        return nodeUrls.get(node);
+    }
+
+}
@@ -0,0 +1,558 @@
+package com.webservice.transactions.infrastructure.cluster;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.webservice.transactions.application.DefaultTransactionService;
+import com.webservice.transactions.application.TransactionAmount;
+import com.webservice.transactions.application.TransactionIdPage;
+import com.webservice.transactions.application.TransactionService;
+import com.webservice.transactions.application.TypeSummary;
+import com.webservice.transactions.application.exception.ParentTransactionNotFoundException;
+import com.webservice.transactions.application.exception.SumOverflowException;
+import com.webservice.transactions.application.exception.TransactionAlreadyExistsException;
+import com.webservice.transactions.application.exception.TransactionNotFoundException;
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+
+/*
+    TransactionService de un nodo del cluster. Cada id tiene un dueño según
+    ClusterTopology: lo que es de este nodo se resuelve con el servicio local y
+    lo demás se le pregunta al dueño por PeerClient.
+
+    Un hijo puede quedar en otro nodo que su padre. En el nodo del hijo se
+    guarda con su padre (el repositorio, que no lo conoce, lo trata como
+    raíz) y se anota en remoteParentIds; en el nodo del padre la arista se
+    anota en remoteChildren. Con eso la suma, los ancestros, la raíz y la
+    profundidad siguen las aristas entre nodos. Como el padre queda guardado
+    en el hijo, un nodo reiniciado con transactions.wal.enabled rehace sus
+    aristas con restoreLinks.
+
+    Los listados por tipo y los resúmenes se piden a todos los nodos y se
+    juntan en el orden de los nodos (los rangos de montos, por monto). Las
+    páginas y los recorridos le piden a cada nodo sólo su tramo, con un
+    cursor que dice en qué nodo y en qué posición de su lista sigue.
+ */
+public class ClusteredTransactionService implements TransactionService {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusteredTransactionService.class);
+    private static final int INSERT_LOCKS = 64;
+    // Cursor de página: nodo en los bits altos, posición en su lista en los 40 bajos
+    private static final int CURSOR_NODE_SHIFT = 40;
+    private static final long CURSOR_POSITION_MASK = (1L << CURSOR_NODE_SHIFT) - 1;
+
+    private final DefaultTransactionService local;
+    private final TransactionRepository transactionRepository;
+    private final ClusterTopology topology;
+    private final PeerClient peers;
+    private final AmountScale amountScale;
+    // Raíz local -> padre en otro nodo
+    private final Map<Long, Long> remoteParentIds = new ConcurrentHashMap<>();
+    // Padre local -> hijos en otros nodos
+    private final Map<Long, Set<Long>> remoteChildren = new ConcurrentHashMap<>();
+    // Raíz local -> padres de su árbol que tienen hijos en otros nodos
+    private final Map<Long, Set<Long>> remoteParentsByRoot = new ConcurrentHashMap<>();
+    private final ReentrantLock[] insertLocks = new ReentrantLock[INSERT_LOCKS];
+
+    public ClusteredTransactionService(DefaultTransactionService local, TransactionRepository transactionRepository,
+                                       ClusterTopology topology, PeerClient peers, AmountScale amountScale) {
+        this.local = local;
+        this.transactionRepository = transactionRepository;
+        this.topology = topology;
+        this.peers = peers;
+        this.amountScale = amountScale;
+        for (int i = 0; i < insertLocks.length; i++) {
+            insertLocks[i] = new ReentrantLock();
+        }
+    }
+
+    public void createTransaction(Long id, BigDecimal amount, String type, Long parentId) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Transaction properties cannot be null");
+        }
+
+        Transaction transaction = new Transaction(id, amountScale.toMinorUnits(amount), type, parentId);
+        local.validateAll(List.of(transaction));
+
+        switch (insert(transaction)) {
+            case DUPLICATE_ID -> throw new TransactionAlreadyExistsException(id);
+            case PARENT_NOT_FOUND -> throw new ParentTransactionNotFoundException(parentId);
+            case INSERTED -> { }
+        }
+    }
+
+    /*
+        Ítem por ítem: cada uno puede tener otro dueño, y un hijo tiene que ver
+        insertado al padre que viene antes en el mismo lote.
+     */
+    public List<InsertResult> createTransactions(List<Transaction> transactions) {
+        local.validateAll(transactions);
+
+        List<InsertResult> results = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            results.add(insert(transaction));
+        }
+        return results;
+    }
+
+    private InsertResult insert(Transaction transaction) {
+        if (topology.isLocal(transaction.getId())) {
+            return insertOwned(transaction);
+        }
+        return peers.create(topology.ownerOf(transaction.getId()), transaction.getId(),
+                amountScale.toDecimal(transaction.getAmount()), transaction.getType(), transaction.getParentId());
+    }
+
+    /*
+        Inserta una transacción de la que este nodo es dueño. Con el padre en
+        otro nodo, la arista se registra allá antes de guardar: si el dueño del
+        padre no responde no queda nada a medias, y si lo que falla es el
+        guardado local la arista se vuelve a borrar. El hijo se guarda con su
+        padre remoto (el repositorio lo trata como raíz), así el log y los
+        snapshots conservan la arista para restoreLinks.
+
+        Las inserciones de un mismo id pasan de a una: entre ver que el id no
+        existe y guardarlo no puede entrar otra.
+     */
+    public InsertResult insertOwned(Transaction transaction) {
+        requireOwned(transaction.getId());
+        ReentrantLock lock = insertLocks[Math.floorMod(Long.hashCode(transaction.getId()), insertLocks.length)];
+        lock.lock();
+        try {
+            return insertOwnedLocked(transaction);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private InsertResult insertOwnedLocked(Transaction transaction) {
+        Long parentId = transaction.getParentId();
+        if (parentId == null || topology.isLocal(parentId)) {
+            return local.createTransactions(List.of(transaction)).get(0);
+        }
+
+        local.validateAll(List.of(transaction));
+        if (transactionRepository.findById(transaction.getId()).isPresent()) {
+            return InsertResult.DUPLICATE_ID;
+        }
+
+        int owner = topology.ownerOf(parentId);
+        try {
+            peers.link(owner, parentId, transaction.getId());
+        } catch (TransactionNotFoundException e) {
+            return InsertResult.PARENT_NOT_FOUND;
+        }
+
+        try {
+            transactionRepository.save(transaction);
+        } catch (RuntimeException e) {
+            try {
+                peers.unlink(owner, parentId, transaction.getId());
+            } catch (RuntimeException unlinkFailure) {
+                e.addSuppressed(unlinkFailure);
+            }
+            throw e;
+        }
+        remoteParentIds.put(transaction.getId(), parentId);
+        return InsertResult.INSERTED;
+    }
+
+    /*
+        Registra que childId, en otro nodo, es hijo de parentId, que es de este.
+     */
+    public void link(Long parentId, Long childId) {
+        requireLink(parentId, childId);
+        OptionalLong rootId = transactionRepository.findRootId(parentId);
+        if (rootId.isEmpty()) {
+            throw new TransactionNotFoundException(parentId);
+        }
+
+        remoteChildren.computeIfAbsent(parentId, k -> ConcurrentHashMap.newKeySet()).add(childId);
+        remoteParentsByRoot.computeIfAbsent(rootId.getAsLong(), k -> ConcurrentHashMap.newKeySet()).add(parentId);
+    }
+
+    // El padre queda en remoteParentsByRoot: sin hijos remotos no suma nada
+    public void unlink(Long parentId, Long childId) {
+        requireLink(parentId, childId);
+        Set<Long> childIds = remoteChildren.get(parentId);
+        if (childIds != null) {
+            childIds.remove(childId);
+        }
+    }
+
+    /*
+        Aristas guardadas en este nodo (hijo de acá, padre allá) cuyo padre es
+        del nodo owner, como pares [padre, hijo].
+     */
+    public List<List<Long>> getLinksTo(int owner) {
+        List<List<Long>> links = new ArrayList<>();
+        for (Map.Entry<Long, Long> link : remoteParentIds.entrySet()) {
+            if (topology.ownerOf(link.getValue()) == owner) {
+                links.add(List.of(link.getValue(), link.getKey()));
+            }
+        }
+        return links;
+    }
+
+    /*
+        Rehace las aristas entre nodos al arrancar. Las de los hijos de este
+        nodo salen de sus propias transacciones, y se le vuelven a anunciar al
+        dueño de cada padre por si él también se reinició. Las de los padres
+        de este nodo se les piden a los demás. Un nodo que todavía no responde
+        se saltea: cuando arranque, él mismo anuncia las suyas.
+     */
+    public void restoreLinks() {
+        transactionRepository.forEachTransaction(transaction -> {
+            Long parentId = transaction.getParentId();
+            if (parentId != null && !topology.isLocal(parentId)) {
+                remoteParentIds.put(transaction.getId(), parentId);
+            }
+        });
+
+        for (Map.Entry<Long, Long> link : remoteParentIds.entrySet()) {
+            try {
+                peers.link(topology.ownerOf(link.getValue()), link.getValue(), link.getKey());
+            } catch (ClusterPeerException | TransactionNotFoundException e) {
+                log.warn("Could not announce the link {} -> {}: {}", link.getValue(), link.getKey(), e.getMessage());
+            }
+        }
+
+        for (int node = 0; node < topology.size(); node++) {
+            if (node == topology.self()) {
+                continue;
+            }
+            try {
+                for (List<Long> link : peers.linksTo(node, topology.self())) {
+                    try {
+                        link(link.get(0), link.get(1));
+                    } catch (TransactionNotFoundException e) {
+                        log.warn("Node {} links {} to the missing transaction {}", node, link.get(1), link.get(0));
+                    }
+                }
+            } catch (ClusterPeerException e) {
+                log.warn("Could not get the links of node {}: {}", node, e.getMessage());
+            }
+        }
+    }
+
+    public List<Long> getTransactionIdsByType(String type) {
+        List<Long> ids = new ArrayList<>();
+        forEachTransactionIdByType(type, ids::add);
+        return ids;
+    }
+
+    /*
+        El cursor lleva el nodo en los bits altos y la posición en su lista en
+        los bajos, y cada nodo sólo devuelve lo que falta para completar la
+        página. Las posiciones de un nodo no cambian, así que las páginas no se
+        corren; lo que se agregue a un nodo que el cursor ya dejó atrás no
+        aparece en ese recorrido.
+     */
+    public TransactionIdPage getTransactionIdsByType(String type, long after, int limit) {
+        requireType(type);
+
+        if (limit < 1 || limit > DefaultTransactionService.MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + DefaultTransactionService.MAX_PAGE_SIZE);
+        }
+
+        if (after < 0) {
+            throw new IllegalArgumentException("Cursor cannot be negative");
+        }
+
+        int node = (int) (after >>> CURSOR_NODE_SHIFT);
+        long position = after & CURSOR_POSITION_MASK;
+        if (node >= topology.size()) {
+            throw new IllegalArgumentException("Unknown cursor " + after);
+        }
+
+        List<Long> ids = new ArrayList<>(limit);
+        for (; node < topology.size(); node++, position = 0) {
+            List<Long> nodeIds = getTransactionIdsByType(node, type, position, limit - ids.size());
+            ids.addAll(nodeIds);
+            if (ids.size() == limit) {
+                position += nodeIds.size();
+                break;
+            }
+        }
+        Long nextCursor = ids.size() == limit ? ((long) node << CURSOR_NODE_SHIFT) | position : null;
+        return new TransactionIdPage(ids, nextCursor);
+    }
+
+    public List<Long> getLocalTransactionIdsByType(String type, long after, int limit) {
+        return local.getTransactionIdsByType(type, after, limit).getIds();
+    }
+
+    private List<Long> getTransactionIdsByType(int node, String type, long after, int limit) {
+        return node == topology.self() ? getLocalTransactionIdsByType(type, after, limit) : peers.idsByType(node, type, after, limit);
+    }
+
+    /*
+        Lo de este nodo sale directo del índice; lo de los demás, de a páginas
+        de MAX_PAGE_SIZE, así que nunca hay más de una lista remota en memoria.
+     */
+    public void forEachTransactionIdByType(String type, LongConsumer action) {
+        requireType(type);
+
+        for (int node = 0; node < topology.size(); node++) {
+            if (node == topology.self()) {
+                local.forEachTransactionIdByType(type, action);
+                continue;
+            }
+
+            long position = 0;
+            List<Long> page;
+            do {
+                page = peers.idsByType(node, type, position, DefaultTransactionService.MAX_PAGE_SIZE);
+                for (Long id : page) {
+                    action.accept(id);
+                }
+                position += page.size();
+            } while (page.size() == DefaultTransactionService.MAX_PAGE_SIZE);
+        }
+    }
+
+    /*
+        La suma local más la de cada hijo en otro nodo que cuelgue del
+        subárbol: los padres con hijos remotos se buscan entre los del mismo
+        árbol local, y entran los que son transactionId o lo tienen de ancestro.
+     */
+    public BigDecimal getSum(Long transactionId) {
+        requireId(transactionId);
+
+        if (!topology.isLocal(transactionId)) {
+            return peers.sum(topology.ownerOf(transactionId), transactionId);
+        }
+
+        BigDecimal sum = local.getSum(transactionId);
+        OptionalLong rootId = transactionRepository.findRootId(transactionId);
+        Set<Long> parentIds = rootId.isPresent() ? remoteParentsByRoot.get(rootId.getAsLong()) : null;
+        if (parentIds == null) {
+            return sum;
+        }
+
+        for (Long parentId : parentIds) {
+            if (parentId.equals(transactionId) || transactionRepository.findAncestorIds(parentId).contains(transactionId)) {
+                for (Long childId : remoteChildren.get(parentId)) {
+                    sum = sum.add(peers.sum(topology.ownerOf(childId), childId));
+                }
+            }
+        }
+
+        // Cada parte entra en un long, pero el total puede no entrar
+        try {
+            amountScale.toMinorUnits(sum);
+        } catch (IllegalArgumentException e) {
+            throw new SumOverflowException(transactionId);
+        }
+        return sum;
+    }
+
+    // Una suma local puede sumar además la de hijos en otros nodos
+    public Optional<BigDecimal> findSumWithoutTraversal(Long transactionId) {
+        requireId(transactionId);
+        return Optional.empty();
+    }
+
+    public boolean readsBlock() {
+        return true;
+    }
+
+    public List<Long> getAncestorIds(Long transactionId) {
+        requireId(transactionId);
+
+        if (!topology.isLocal(transactionId)) {
+            return peers.ancestorIds(topology.ownerOf(transactionId), transactionId);
+        }
+
+        List<Long> localAncestorIds = local.getAncestorIds(transactionId);
+        Long localRootId = localAncestorIds.isEmpty() ? transactionId : localAncestorIds.get(0);
+        Long remoteParentId = remoteParentIds.get(localRootId);
+        if (remoteParentId == null) {
+            return localAncestorIds;
+        }
+
+        List<Long> ancestorIds = new ArrayList<>(peers.ancestorIds(topology.ownerOf(remoteParentId), remoteParentId));
+        ancestorIds.add(remoteParentId);
+        ancestorIds.addAll(localAncestorIds);
+        return ancestorIds;
+    }
+
+    public long getRootId(Long transactionId) {
+        requireId(transactionId);
+
+        if (!topology.isLocal(transactionId)) {
+            return peers.rootId(topology.ownerOf(transactionId), transactionId);
+        }
+
+        long localRootId = local.getRootId(transactionId);
+        Long remoteParentId = remoteParentIds.get(localRootId);
+        return remoteParentId != null ? peers.rootId(topology.ownerOf(remoteParentId), remoteParentId) : localRootId;
+    }
+
+    public int getDepth(Long transactionId) {
+        requireId(transactionId);
+
+        if (!topology.isLocal(transactionId)) {
+            return peers.depth(topology.ownerOf(transactionId), transactionId);
+        }
+
+        int localDepth = local.getDepth(transactionId);
+        Long remoteParentId = remoteParentIds.get(local.getRootId(transactionId));
+        return remoteParentId != null ? peers.depth(topology.ownerOf(remoteParentId), remoteParentId) + 1 + localDepth : localDepth;
+    }
+
+    /*
+        Nivel por nivel, pidiendo los hijos de cada id a su dueño. Son tantas
+        llamadas como ids remotos haya en los niveles intermedios.
+     */
+    public List<Long> getDescendantIdsAtDepth(Long transactionId, int depth) {
+        requireId(transactionId);
+
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth cannot be negative");
+        }
+
+        getDepth(transactionId);
+
+        List<Long> level = List.of(transactionId);
+        for (int i = 0; i < depth && !level.isEmpty(); i++) {
+            List<Long> next = new ArrayList<>();
+            for (Long id : level) {
+                next.addAll(topology.isLocal(id) ? getChildrenIds(id) : peers.childrenIds(topology.ownerOf(id), id));
+            }
+            level = next;
+        }
+        return level;
+    }
+
+    /*
+        Hijos de una transacción de este nodo, estén donde estén.
+     */
+    public List<Long> getChildrenIds(Long transactionId) {
+        requireOwned(transactionId);
+        List<Long> childrenIds = new ArrayList<>(transactionRepository.findChildrenIds(transactionId));
+        childrenIds.addAll(remoteChildren.getOrDefault(transactionId, Collections.emptySet()));
+        return childrenIds;
+    }
+
+    public TypeSummary getTypeSummary(String type) {
+        requireType(type);
+
+        TypeSummary summary = local.getTypeSummary(type);
+        for (int node = 0; node < topology.size(); node++) {
+            if (node != topology.self()) {
+                summary = combine(summary, peers.typeSummary(node, type));
+            }
+        }
+        requireInRange(summary);
+        return summary;
+    }
+
+    public TypeSummary getLocalTypeSummary(String type) {
+        return local.getTypeSummary(type);
+    }
+
+    public List<TypeSummary> getTypeSummaries(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix cannot be null");
+        }
+        Map<String, TypeSummary> summaries = new TreeMap<>();
+        for (int node = 0; node < topology.size(); node++) {
+            List<TypeSummary> nodeSummaries = node == topology.self() ? local.getTypeSummaries(prefix) : peers.typeSummaries(node, prefix);
+            for (TypeSummary summary : nodeSummaries) {
+                summaries.merge(summary.getType(), summary, ClusteredTransactionService::combine);
+            }
+        }
+        summaries.values().forEach(this::requireInRange);
+        return new ArrayList<>(summaries.values());
+    }
+
+    public List<TypeSummary> getLocalTypeSummaries(String prefix) {
+        return local.getTypeSummaries(prefix);
+    }
+
+    /*
+        Cada nodo devuelve sus primeros limit en orden; el resultado son los
+        primeros limit de todos, intercalados por monto y después por id.
+     */
+    public List<TransactionAmount> getTransactionsByAmount(String type, BigDecimal min, BigDecimal max, int limit) {
+        List<TransactionAmount> found = new ArrayList<>(local.getTransactionsByAmount(type, min, max, limit));
+        for (int node = 0; node < topology.size(); node++) {
+            if (node != topology.self()) {
+                found.addAll(peers.transactionsByAmount(node, type, min, max, limit));
+            }
+        }
+        found.sort(Comparator.comparing(TransactionAmount::getAmount).thenComparingLong(TransactionAmount::getId));
+        return found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+    }
+
+    public List<TransactionAmount> getLocalTransactionsByAmount(String type, BigDecimal min, BigDecimal max, int limit) {
+        return local.getTransactionsByAmount(type, min, max, limit);
+    }
+
+    private static TypeSummary combine(TypeSummary a, TypeSummary b) {
+        return new TypeSummary(a.getType(), a.getCount() + b.getCount(), a.getSum().add(b.getSum()),
+                extreme(a.getMin(), b.getMin(), false), extreme(a.getMax(), b.getMax(), true));
+    }
+
+    private static BigDecimal extreme(BigDecimal a, BigDecimal b, boolean max) {
+        if (a == null || b == null) {
+            return a != null ? a : b;
+        }
+        return max ? a.max(b) : a.min(b);
+    }
+
+    private void requireInRange(TypeSummary summary) {
+        try {
+            amountScale.toMinorUnits(summary.getSum());
+        } catch (IllegalArgumentException e) {
+            throw new SumOverflowException(summary.getType());
+        }
+    }
+
+    // Lo que llega por /cluster tiene que ser de este nodo: otro dueño es un error del que llama
+    private void requireOwned(Long transactionId) {
+        requireId(transactionId);
+        if (!topology.isLocal(transactionId)) {
+            throw new IllegalArgumentException("Transaction " + transactionId + " belongs to node " + topology.ownerOf(transactionId));
+        }
+    }
+
+    // Una arista entre nodos: el padre es de este y el hijo de otro
+    private void requireLink(Long parentId, Long childId) {
+        requireOwned(parentId);
+        requireId(childId);
+        if (topology.isLocal(childId)) {
+            throw new IllegalArgumentException("Transaction " + childId + " is not on another node");
+        }
+    }
+
+    private static void requireId(Long transactionId) {
+        if (transactionId == null) {
+            throw new IllegalArgumentException("Transaction ID cannot be null");
+        }
+    }
+
+    private static void requireType(String type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type cannot be null");
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+package com.webservice.transactions.infrastructure.cluster;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+
+import com.webservice.transactions.application.TransactionAmount;
+import com.webservice.transactions.application.TypeSummary;
+import com.webservice.transactions.application.exception.SumOverflowException;
+import com.webservice.transactions.application.exception.TransactionNotFoundException;
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.InsertResult;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+/*
+    Llamadas HTTP a los otros nodos. Las lecturas por id van a los endpoints
+    públicos del dueño, que las resuelve él mismo; lo que tiene que quedarse en
+    el nodo (su parte de un listado, una inserción que devuelve el resultado en
+    vez de un error) va a los endpoints internos /cluster, con el secreto del
+    cluster en cada llamada.
+
+    Las respuestas de error se vuelven a convertir en la excepción que las
+    generó, así el cliente recibe el mismo estado que si hubiera preguntado al
+    dueño. Un nodo que no responde, o que responde algo inesperado, es un
+    ClusterPeerException (502).
+ */
+public class PeerClient {
+
+    private final AmountScale amountScale;
+    private final RestClient[] clients;
+    // Montos como BigDecimal, para no perder la escala pasando por double
+    private final JsonMapper mapper = JsonMapper.builder()
+            .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+            .build();
+
+    public PeerClient(ClusterTopology topology, AmountScale amountScale, String secret) {
+        this.amountScale = amountScale;
+        this.clients = new RestClient[topology.size()];
+        for (int node = 0; node < clients.length; node++) {
+            clients[node] = RestClient.builder()
+                    .baseUrl(topology.url(node))
+                    .defaultHeader(ClusterSecretFilter.SECRET_HEADER, secret)
+                    .build();
+        }
+    }
+
+    public InsertResult create(int node, long id, BigDecimal amount, String type, Long parentId) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("amount", amount);
+        body.put("type", type);
+        body.put("parent_id", parentId);
+        JsonNode response = send(node, clients[node].put().uri("/cluster/transactions/{id}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(mapper.writeValueAsString(body)), id, null);
+        return switch (response.path("status").asString("")) {
+            case "ok" -> InsertResult.INSERTED;
+            case "already_exists" -> InsertResult.DUPLICATE_ID;
+            case "parent_not_found" -> InsertResult.PARENT_NOT_FOUND;
+            default -> throw new ClusterPeerException("Node " + node + " answered an unknown status for transaction " + id);
+        };
+    }
+
+    public void link(int node, long parentId, long childId) {
+        send(node, clients[node].put().uri("/cluster/children/{parentId}/{childId}", parentId, childId), parentId, null);
+    }
+
+    public void unlink(int node, long parentId, long childId) {
+        send(node, clients[node].delete().uri("/cluster/children/{parentId}/{childId}", parentId, childId), parentId, null);
+    }
+
+    // Pares [padre, hijo] de las aristas que node guarda hacia padres de owner
+    public List<List<Long>> linksTo(int node, int owner) {
+        List<List<Long>> links = new ArrayList<>();
+        for (JsonNode link : send(node, clients[node].get().uri("/cluster/links?owner={owner}", owner), null, null)) {
+            links.add(ids(link));
+        }
+        return links;
+    }
+
+    public List<Long> childrenIds(int node, long id) {
+        return ids(send(node, clients[node].get().uri("/cluster/children/{id}", id), id, null));
+    }
+
+    public List<Long> idsByType(int node, String type, long after, int limit) {
+        return ids(send(node, clients[node].get().uri("/cluster/types/{type}?after={after}&limit={limit}", type, after, limit), null, type));
+    }
+
+    public TypeSummary typeSummary(int node, String type) {
+        return typeSummary(send(node, clients[node].get().uri("/cluster/types/{type}/summary", type), null, type));
+    }
+
+    public List<TypeSummary> typeSummaries(int node, String prefix) {
+        List<TypeSummary> summaries = new ArrayList<>();
+        for (JsonNode summary : send(node, clients[node].get().uri("/cluster/types?prefix={prefix}", prefix), null, null)) {
+            summaries.add(typeSummary(summary));
+        }
+        return summaries;
+    }
+
+    public List<TransactionAmount> transactionsByAmount(int node, String type, BigDecimal min, BigDecimal max, int limit) {
+        JsonNode response = send(node, clients[node].get().uri(uri -> uri.path("/cluster/types/{type}/amounts")
+                .queryParamIfPresent("min", Optional.ofNullable(min))
+                .queryParamIfPresent("max", Optional.ofNullable(max))
+                .queryParam("limit", limit)
+                .build(type)), null, type);
+        List<TransactionAmount> transactions = new ArrayList<>(response.size());
+        for (JsonNode transaction : response) {
+            transactions.add(new TransactionAmount(transaction.path("id").asLong(), amount(transaction.path("amount"))));
+        }
+        return transactions;
+    }
+
+    public BigDecimal sum(int node, long id) {
+        return amount(send(node, clients[node].get().uri("/transactions/sum/{id}", id), id, null).path("sum"));
+    }
+
+    public List<Long> ancestorIds(int node, long id) {
+        return ids(send(node, clients[node].get().uri("/transactions/ancestors/{id}", id), id, null));
+    }
+
+    public long rootId(int node, long id) {
+        return send(node, clients[node].get().uri("/transactions/root/{id}", id), id, null).path("root_id").asLong();
+    }
+
+    public int depth(int node, long id) {
+        return send(node, clients[node].get().uri("/transactions/depth/{id}", id), id, null).path("depth").asInt();
+    }
+
+    private JsonNode send(int node, RestClient.RequestHeadersSpec<?> request, Long id, String type) {
+        try {
+            String body = request.retrieve()
+                    .onStatus(HttpStatusCode::isError, (ignored, response) -> {
+                        throw error(node, response, id, type);
+                    })
+                    .body(String.class);
+            return mapper.readTree(body);
+        } catch (ResourceAccessException e) {
+            throw new ClusterPeerException("Node " + node + " is unreachable", e);
+        }
+    }
+
+    private RuntimeException error(int node, ClientHttpResponse response, Long id, String type) throws IOException {
+        HttpStatusCode status = response.getStatusCode();
+        String message = message(response.getBody().readAllBytes());
+        if (status.isSameCodeAs(HttpStatus.NOT_FOUND) && id != null) {
+            return new TransactionNotFoundException(id);
+        }
+        if (status.isSameCodeAs(HttpStatus.UNPROCESSABLE_CONTENT)) {
+            return id != null ? new SumOverflowException(id) : new SumOverflowException(type);
+        }
+        if (status.isSameCodeAs(HttpStatus.BAD_REQUEST)) {
+            return new IllegalArgumentException(message);
+        }
+        return new ClusterPeerException("Node " + node + " answered " + status.value() + ": " + message);
+    }
+
+    private String message(byte[] body) {
+        try {
+            return mapper.readTree(body).path("message").asString("");
+        } catch (JacksonException e) {
+            return "";
+        }
+    }
+
+    private TypeSummary typeSummary(JsonNode summary) {
+        return new TypeSummary(summary.path("type").asString(), summary.path("count").asLong(),
+                amount(summary.path("sum")), amount(summary.path("min")), amount(summary.path("max")));
+    }
+
+    private BigDecimal amount(JsonNode value) {
+        return value.isNull() || value.isMissingNode() ? null : value.decimalValue().setScale(amountScale.getScale());
+    }
+
+    private static List<Long> ids(JsonNode array) {
+        List<Long> ids = new ArrayList<>(array.size());
+        for (JsonNode id : array) {
+            ids.add(id.asLong());
+        }
+        return ids;
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.webservice.transactions.infrastructure.metrics;
+
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.domain.TypeAggregate;
+import com.webservice.transactions.infrastructure.persistence.ForwardingTransactionRepository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/*
+    Mide cada llamada al repositorio con un Timer "transactions.repository"
+    por operación, y publica el tamaño del índice de cada tipo. Los tipos los
+    eligen los clientes, así que se publican como mucho maxTypeGauges para no
+    crear una serie por cada tipo nuevo.
+
+    amountOf y visit no se miden: un recorrido los llama una vez por nodo, y
+    el Timer costaría más que la llamada misma.
+ */
+public class MeteredTransactionRepository extends ForwardingTransactionRepository {
+
+    static final String OPERATION_TIMER = "transactions.repository";
+    static final String TYPE_SIZE_GAUGE = "transactions.type.size";
+
+    private final MeterRegistry registry;
+    private final int maxTypeGauges;
+    private final Set<String> typesWithGauge = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger gaugeSlotsTaken = new AtomicInteger();
+
+    private final Timer save;
+    private final Timer insertIfAbsent;
+    private final Timer saveAll;
+    private final Timer findById;
+    private final Timer findIdsByType;
+    private final Timer forEachIdByType;
+    private final Timer findTypeAggregate;
+    private final Timer findByTypeAndAmount;
+    private final Timer findChildrenIds;
+    private final Timer findAncestorIds;
+    private final Timer findRootId;
+    private final Timer findDepth;
+    private final Timer findDescendantIdsAtDepth;
+    private final Timer findSubtreeSum;
+    private final Timer subtreeSumOf;
+
+    public MeteredTransactionRepository(TransactionRepository delegate, MeterRegistry registry, int maxTypeGauges){
+        super(delegate);
+        this.registry = registry;
+        this.maxTypeGauges = maxTypeGauges;
+        save = timer("save");
+        insertIfAbsent = timer("insertIfAbsent");
+        saveAll = timer("saveAll");
+        findById = timer("findById");
+        findIdsByType = timer("findIdsByType");
+        forEachIdByType = timer("forEachIdByType");
+        findTypeAggregate = timer("findTypeAggregate");
+        findByTypeAndAmount = timer("findByTypeAndAmount");
+        findChildrenIds = timer("findChildrenIds");
+        findAncestorIds = timer("findAncestorIds");
+        findRootId = timer("findRootId");
+        findDepth = timer("findDepth");
+        findDescendantIdsAtDepth = timer("findDescendantIdsAtDepth");
+        findSubtreeSum = timer("findSubtreeSum");
+        subtreeSumOf = timer("subtreeSumOf");
+        // Lo que ya estaba (por ejemplo, reproducido del log) también tiene su gauge
+        delegate.findTypes().forEach(this::registerTypeGauge);
+    }
+
+    private Timer timer(String operation){
+        return Timer.builder(OPERATION_TIMER)
+                .description("Time spent in transaction repository calls")
+                .tag("operation", operation)
+                .register(registry);
+    }
+
+    /*
+        El lugar se reserva con un compareAndSet antes de agregar el tipo: con
+        size() y add por separado, varios tipos nuevos a la vez pasaban el
+        límite. Si otro hilo ya agregó el mismo tipo, el lugar se devuelve.
+     */
+    private void registerTypeGauge(String type){
+        if(typesWithGauge.contains(type)){
+            return;
+        }
+        int reserved;
+        do{
+            reserved = gaugeSlotsTaken.get();
+            if(reserved >= maxTypeGauges){
+                return;
+            }
+        }while(!gaugeSlotsTaken.compareAndSet(reserved, reserved + 1));
+        if(!typesWithGauge.add(type)){
+            gaugeSlotsTaken.decrementAndGet();
+            return;
+        }
+        Gauge.builder(TYPE_SIZE_GAUGE, delegate, repository -> repository.countIdsByType(type))
+                .description("Transactions indexed under each type")
+                .tag("type", type)
+                .strongReference(true)
+                .register(registry);
+    }
+
+    public void save(Transaction transaction){
+        save.record(() -> delegate.save(transaction));
+        registerTypeGauge(transaction.getType());
+    }
+
+    public InsertResult insertIfAbsent(Transaction transaction){
+        InsertResult result = insertIfAbsent.record(() -> delegate.insertIfAbsent(transaction));
+        if(result == InsertResult.INSERTED){
+            registerTypeGauge(transaction.getType());
+        }
+        return result;
+    }
+
+    public List<InsertResult> saveAll(List<Transaction> transactions){
+        List<InsertResult> results = saveAll.record(() -> delegate.saveAll(transactions));
+        for(int i = 0; i < results.size(); i++){
+            if(results.get(i) == InsertResult.INSERTED){
+                registerTypeGauge(transactions.get(i).getType());
+            }
+        }
+        return results;
+    }
+
+    public Optional<Transaction> findById(Long id){
+        return findById.record(() -> delegate.findById(id));
+    }
+
+    public List<Long> findIdsByType(String type){
+        return findIdsByType.record(() -> delegate.findIdsByType(type));
+    }
+
+    public List<Long> findIdsByType(String type, int from, int limit){
+        return findIdsByType.record(() -> delegate.findIdsByType(type, from, limit));
+    }
+
+    public void forEachIdByType(String type, LongConsumer action){
+        forEachIdByType.record(() -> delegate.forEachIdByType(type, action));
+    }
+
+    public Optional<TypeAggregate> findTypeAggregate(String type){
+        return findTypeAggregate.record(() -> delegate.findTypeAggregate(type));
+    }
+
+    public List<Transaction> findByTypeAndAmount(String type, long minAmount, long maxAmount, int limit){
+        return findByTypeAndAmount.record(() -> delegate.findByTypeAndAmount(type, minAmount, maxAmount, limit));
+    }
+
+    public List<Long> findChildrenIds(Long parentId){
+        return findChildrenIds.record(() -> delegate.findChildrenIds(parentId));
+    }
+
+    public List<Long> findAncestorIds(Long id){
+        return findAncestorIds.record(() -> delegate.findAncestorIds(id));
+    }
+
+    public OptionalLong findRootId(Long id){
+        return findRootId.record(() -> delegate.findRootId(id));
+    }
+
+    public OptionalInt findDepth(Long id){
+        return findDepth.record(() -> delegate.findDepth(id));
+    }
+
+    public List<Long> findDescendantIdsAtDepth(Long id, int depth){
+        return findDescendantIdsAtDepth.record(() -> delegate.findDescendantIdsAtDepth(id, depth));
+    }
+
+    public OptionalLong findSubtreeSum(Long id){
+        return findSubtreeSum.record(() -> delegate.findSubtreeSum(id));
+    }
+
+    // record(LongSupplier): el resultado no se envuelve en un Long
+    public long subtreeSumOf(long id){
+        return subtreeSumOf.record(() -> delegate.subtreeSumOf(id));
+    }
+}
@@ -0,0 +1,84 @@
+package com.webservice.transactions.infrastructure.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.infrastructure.persistence.LockWaitStats;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/*
+    Métricas del repositorio que no salen de medir llamadas: cantidad total,
+    heap usado por transacción (heap usado / cantidad, incluye todo lo demás
+    que vive en el heap, así que es una cota superior) y la espera por los
+    locks de escritura.
+
+    Contar recorre todos los tipos, así que la cantidad se guarda por
+    countRefresh: los dos gauges de un mismo scrape cuentan una sola vez.
+ */
+@Component
+public class TransactionMetrics implements MeterBinder {
+
+    private final TransactionRepository transactionRepository;
+    private final LockWaitStats lockWaits;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final long countRefreshNanos;
+    private long countedAt;
+    private double count = Double.NaN;
+
+    public TransactionMetrics(TransactionRepository transactionRepository, LockWaitStats lockWaits,
+                              @Value("${transactions.metrics.count-refresh:PT10S}") Duration countRefresh) {
+        this.transactionRepository = transactionRepository;
+        this.lockWaits = lockWaits;
+        this.countRefreshNanos = countRefresh.toNanos();
+    }
+
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("transactions.count", this, TransactionMetrics::count)
+                .description("Transactions stored in the repository")
+                .register(registry);
+
+        Gauge.builder("transactions.heap.per.transaction", this, TransactionMetrics::heapPerTransaction)
+                .description("Used heap divided by the number of stored transactions")
+                .baseUnit("bytes")
+                .register(registry);
+
+        FunctionTimer.builder("transactions.repository.lock.wait", lockWaits,
+                        LockWaitStats::contendedAcquisitions, stats -> stats.waitTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)
+                .description("Time writers waited for a repository lock that was already held")
+                .register(registry);
+    }
+
+    // Los scrapes son pocos: el lock no le cuesta nada a las requests
+    private synchronized double count() {
+        long now = System.nanoTime();
+        if (Double.isNaN(count) || now - countedAt >= countRefreshNanos) {
+            count = countAll();
+            countedAt = now;
+        }
+        return count;
+    }
+
+    // Cada transacción está en el índice de exactamente un tipo
+    private double countAll() {
+        long count = 0;
+        for (String type : transactionRepository.findTypes()) {
+            count += transactionRepository.countIdsByType(type);
+        }
+        return count;
+    }
+
+    private double heapPerTransaction() {
+        double count = count();
+        return count == 0 ? Double.NaN : memory.getHeapMemoryUsage().getUsed() / count;
+    }
+}
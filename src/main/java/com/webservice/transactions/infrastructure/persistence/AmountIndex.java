@@ -0,0 +1,294 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/*
+    Los ids de un tipo ordenados por (monto, id), para las consultas por rango
+    de montos. Son chunks ordenados de hasta CHUNK_CAPACITY pares, guardados
+    en dos columnas long (16 bytes por transacción más lo libre de cada
+    chunk): un rango se ubica con una búsqueda binaria sobre los chunks y otra
+    dentro del primero, y se recorre en orden, así que leer k ids cuesta
+    O(log n + k) sin importar cuántas transacciones tenga el tipo.
+
+    Admite un único escritor a la vez (el llamador sincroniza los add).
+    Insertar corre los pares mayores dentro de su chunk; un chunk lleno se
+    parte en dos, o si se está agregando al final se empieza uno nuevo, y el
+    directorio de chunks se reemplaza entero.
+
+    Los lectores no toman lock. Cada chunk se lee con un seqlock, como
+    TypeAggregateCell, y siempre desde el último par leído: si el directorio
+    cambió en el medio se sigue en el nuevo, sin perder ni repetir pares. Un
+    par que se inserta durante la lectura puede aparecer o no.
+ */
+public final class AmountIndex {
+
+    private static final int FIRST_CHUNK_CAPACITY = 8;
+    private static final int CHUNK_CAPACITY = 256;
+
+    private volatile Chunk[] chunks = new Chunk[0];
+
+    public void add(long amount, long id) {
+        Chunk[] current = chunks;
+        if (current.length == 0) {
+            chunks = new Chunk[] {Chunk.of(amount, id)};
+            return;
+        }
+        int index = chunkFor(current, amount, id);
+        Chunk chunk = current[index];
+        if (chunk.size == CHUNK_CAPACITY) {
+            boolean last = index == current.length - 1;
+            if (last && compare(amount, id, chunk.amounts[chunk.size - 1], chunk.ids[chunk.size - 1]) > 0) {
+                chunks = withChunk(current, index + 1, Chunk.of(amount, id));
+                return;
+            }
+            // La mitad de arriba queda en los dos chunks hasta truncar: los lectores la saltean por clave
+            Chunk upper = chunk.copyUpperHalf();
+            chunks = withChunk(current, index + 1, upper);
+            chunk.truncateToLowerHalf();
+            if (compare(amount, id, upper.amounts[0], upper.ids[0]) > 0) {
+                chunk = upper;
+            }
+        }
+        chunk.insert(amount, id);
+    }
+
+    /*
+        Pasa a action los ids con monto entre minAmount y maxAmount (ambos
+        incluidos), de menor a mayor monto y a igual monto por id, hasta limit.
+        Junta los ids antes de pasarlos, así action nunca ve una lectura que
+        después se descartó.
+     */
+    public void forEachId(long minAmount, long maxAmount, int limit, LongConsumer action) {
+        if (minAmount > maxAmount || limit <= 0) {
+            return;
+        }
+        long[] found = new long[Math.min(limit, FIRST_CHUNK_CAPACITY)];
+        int count = 0;
+        // Se lee desde (fromAmount, fromId), inclusive hasta leer el primer par
+        long fromAmount = minAmount;
+        long fromId = Long.MIN_VALUE;
+        boolean exclusive = false;
+
+        Chunk[] directory;
+        int index;
+        do {
+            directory = chunks;
+            index = firstChunkFrom(directory, fromAmount, fromId, exclusive);
+        } while (directory != chunks);
+
+        while (index < directory.length && count < limit) {
+            Chunk chunk = directory[index];
+            long version = chunk.beginRead();
+            long[] amounts = chunk.amounts;
+            long[] ids = chunk.ids;
+            int size = Math.min(chunk.size, Math.min(amounts.length, ids.length));
+            int i = lowerBound(amounts, ids, size, fromAmount, fromId, exclusive);
+            int needed = count + Math.min(limit - count, size - i);
+            if (needed > found.length) {
+                found = Arrays.copyOf(found, Math.max(needed, (int) Math.min(limit, 2L * found.length)));
+            }
+            int read = 0;
+            boolean pastMax = false;
+            long lastAmount = 0;
+            long lastId = 0;
+            for (; i < size && count + read < limit; i++) {
+                if (amounts[i] > maxAmount) {
+                    pastMax = true;
+                    break;
+                }
+                lastAmount = amounts[i];
+                lastId = ids[i];
+                found[count + read] = lastId;
+                read++;
+            }
+            if (!chunk.validate(version)) {
+                continue;
+            }
+
+            count += read;
+            if (read > 0) {
+                fromAmount = lastAmount;
+                fromId = lastId;
+                exclusive = true;
+            }
+            if (pastMax) {
+                break;
+            }
+            Chunk[] latest = chunks;
+            if (latest != directory) {
+                directory = latest;
+                index = firstChunkFrom(directory, fromAmount, fromId, exclusive);
+            } else {
+                index++;
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            action.accept(found[i]);
+        }
+    }
+
+    // El primer chunk cuyo último par es mayor, o el último: ahí va el par nuevo (sólo el escritor)
+    private static int chunkFor(Chunk[] directory, long amount, long id) {
+        int low = 0;
+        int high = directory.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Chunk chunk = directory[middle];
+            if (compare(chunk.amounts[chunk.size - 1], chunk.ids[chunk.size - 1], amount, id) > 0) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    // El primer chunk que tiene algún par desde (amount, id), o directory.length
+    private static int firstChunkFrom(Chunk[] directory, long amount, long id, boolean exclusive) {
+        int low = 0;
+        int high = directory.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int last = directory[middle].compareLastTo(amount, id);
+            if (last > 0 || (last == 0 && !exclusive)) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private static int lowerBound(long[] amounts, long[] ids, int size, long amount, long id, boolean exclusive) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(amounts[middle], ids[middle], amount, id);
+            if (comparison > 0 || (comparison == 0 && !exclusive)) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private static Chunk[] withChunk(Chunk[] directory, int position, Chunk chunk) {
+        Chunk[] result = new Chunk[directory.length + 1];
+        System.arraycopy(directory, 0, result, 0, position);
+        result[position] = chunk;
+        System.arraycopy(directory, position, result, position + 1, directory.length - position);
+        return result;
+    }
+
+    private static int compare(long amount, long id, long otherAmount, long otherId) {
+        int byAmount = Long.compare(amount, otherAmount);
+        return byAmount != 0 ? byAmount : Long.compare(id, otherId);
+    }
+
+    /*
+        version es impar mientras el escritor cambia el chunk. Los campos no
+        son volatile: un lector puede ver cualquier mezcla, por eso acota todo
+        por el largo de los arrays y descarta lo leído si version cambió.
+     */
+    private static final class Chunk {
+
+        private static final VarHandle VERSION;
+
+        static {
+            try {
+                VERSION = MethodHandles.lookup().findVarHandle(Chunk.class, "version", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private long version;
+        private long[] amounts;
+        private long[] ids;
+        private int size;
+
+        private Chunk(int capacity) {
+            amounts = new long[capacity];
+            ids = new long[capacity];
+        }
+
+        private static Chunk of(long amount, long id) {
+            Chunk chunk = new Chunk(FIRST_CHUNK_CAPACITY);
+            chunk.amounts[0] = amount;
+            chunk.ids[0] = id;
+            chunk.size = 1;
+            return chunk;
+        }
+
+        private void insert(long amount, long id) {
+            long current = beginWrite();
+            int position = lowerBound(amounts, ids, size, amount, id, false);
+            if (size == amounts.length) {
+                amounts = Arrays.copyOf(amounts, Math.min(amounts.length * 2, CHUNK_CAPACITY));
+                ids = Arrays.copyOf(ids, amounts.length);
+            }
+            System.arraycopy(amounts, position, amounts, position + 1, size - position);
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            amounts[position] = amount;
+            ids[position] = id;
+            size++;
+            VERSION.setRelease(this, current + 2);
+        }
+
+        private Chunk copyUpperHalf() {
+            int half = size / 2;
+            Chunk upper = new Chunk(CHUNK_CAPACITY);
+            System.arraycopy(amounts, half, upper.amounts, 0, size - half);
+            System.arraycopy(ids, half, upper.ids, 0, size - half);
+            upper.size = size - half;
+            return upper;
+        }
+
+        private void truncateToLowerHalf() {
+            long current = beginWrite();
+            size = size / 2;
+            VERSION.setRelease(this, current + 2);
+        }
+
+        private long beginWrite() {
+            long current = version;
+            VERSION.setOpaque(this, current + 1);
+            VarHandle.storeStoreFence();
+            return current;
+        }
+
+        private long beginRead() {
+            while (true) {
+                long current = (long) VERSION.getAcquire(this);
+                if ((current & 1) == 0) {
+                    return current;
+                }
+                Thread.onSpinWait();
+            }
+        }
+
+        private boolean validate(long readVersion) {
+            VarHandle.loadLoadFence();
+            return (long) VERSION.getOpaque(this) == readVersion;
+        }
+
+        private int compareLastTo(long amount, long id) {
+            while (true) {
+                long readVersion = beginRead();
+                long[] readAmounts = amounts;
+                long[] readIds = ids;
+                int last = Math.min(size, Math.min(readAmounts.length, readIds.length)) - 1;
+                int comparison = last >= 0 ? compare(readAmounts[last], readIds[last], amount, id) : -1;
+                if (validate(readVersion)) {
+                    return comparison;
+                }
+            }
+        }
+    }
+}
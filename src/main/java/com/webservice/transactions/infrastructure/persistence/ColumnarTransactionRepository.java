@@ -0,0 +1,508 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.domain.TypeAggregate;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+public class ColumnarTransactionRepository implements TransactionRepository {
+
+    private static final int CHUNK_SHIFT = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_INDEX_CAPACITY = 1 << 10;
+
+    private static final VarHandle LONG_ELEMENT = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /*
+        Struct-of-arrays: cada transacción ocupa un slot y sus campos viven en
+        columnas primitivas partidas en chunks, así crecer no copia las columnas
+        enteras. Las referencias padre/hijo se guardan como slot + 1 (0 = ninguno)
+        para recorrer el árbol sin pasar por el índice de ids. La profundidad y
+        el slot de la raíz se fijan al insertar, a partir de los del padre.
+
+        Un solo escritor a la vez (lock). Los lectores no toman el lock: "size" es
+        el punto de publicación y una fila es visible sólo si su slot < size, por
+        eso todo lo que se escribe antes de incrementar size queda visible para
+        quien lo lea después.
+     */
+    private long[][] ids = new long[0][];
+    private long[][] amounts = new long[0][];
+    private int[][] typeCodes = new int[0][];
+    private long[][] parentIds = new long[0][];
+    private int[][] parentSlots = new int[0][];
+    private int[][] firstChildSlots = new int[0][];
+    private int[][] lastChildSlots = new int[0][];
+    private int[][] nextSiblingSlots = new int[0][];
+    private long[][] subtreeSums = new long[0][];
+    private int[][] depths = new int[0][];
+    private int[][] rootSlots = new int[0][];
+
+    /*
+        Open addressing id -> slot + 1; la clave se lee de la columna de ids.
+        volatile porque resizeIndex lo reemplaza mientras los lectores buscan:
+        quien ve la tabla nueva ve también las entradas copiadas en ella.
+     */
+    private volatile int[] index = new int[INITIAL_INDEX_CAPACITY];
+
+    private final TypeDictionary<SlotList> types = new TypeDictionary<>(SlotList::new);
+
+    private volatile int size;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LockWaitStats lockWaits;
+
+    public ColumnarTransactionRepository(){
+        this(new LockWaitStats());
+    }
+
+    public ColumnarTransactionRepository(LockWaitStats lockWaits){
+        this.lockWaits = lockWaits;
+    }
+
+    public void save(Transaction transaction){
+        insert(transaction, false);
+    }
+
+    public InsertResult insertIfAbsent(Transaction transaction){
+        return insert(transaction, true);
+    }
+
+    public List<InsertResult> saveAll(List<Transaction> transactions){
+        List<InsertResult> results = new ArrayList<>(transactions.size());
+        lockWaits.lock(lock);
+        try{
+            for(Transaction transaction : transactions){
+                results.add(insertLocked(transaction, true));
+            }
+        }finally{
+            lock.unlock();
+        }
+        return results;
+    }
+
+    // La suma ya incluye a los descendientes del snapshot: no se suma nada a los ancestros
+    public void load(Transaction transaction, long subtreeSum){
+        lockWaits.lock(lock);
+        try{
+            insertLocked(transaction, false, subtreeSum, false);
+        }finally{
+            lock.unlock();
+        }
+    }
+
+    private InsertResult insert(Transaction transaction, boolean requireParent){
+        lockWaits.lock(lock);
+        try{
+            return insertLocked(transaction, requireParent);
+        }finally{
+            lock.unlock();
+        }
+    }
+
+    private InsertResult insertLocked(Transaction transaction, boolean requireParent){
+        return insertLocked(transaction, requireParent, transaction.getAmount(), true);
+    }
+
+    private InsertResult insertLocked(Transaction transaction, boolean requireParent, long subtreeSum, boolean addToAncestors){
+        long id = transaction.getId();
+        if(findSlot(id, size) >= 0){
+            return InsertResult.DUPLICATE_ID;
+        }
+
+        int slot = size;
+        int parentSlot = -1;
+        if(transaction.getParentId() != null){
+            parentSlot = findSlot(transaction.getParentId(), slot);
+            if(parentSlot < 0 && requireParent){
+                return InsertResult.PARENT_NOT_FOUND;
+            }
+        }
+
+        ensureCapacity(slot);
+
+        int chunk = slot >>> CHUNK_SHIFT;
+        int offset = slot & CHUNK_MASK;
+        int typeCode = types.add(transaction.getType());
+        ids[chunk][offset] = id;
+        amounts[chunk][offset] = transaction.getAmount();
+        typeCodes[chunk][offset] = typeCode;
+        subtreeSums[chunk][offset] = subtreeSum;
+
+        if(transaction.getParentId() != null){
+            parentIds[chunk][offset] = transaction.getParentId();
+            // -1 marca un padre declarado que no está en el repositorio
+            parentSlots[chunk][offset] = parentSlot >= 0 ? parentSlot + 1 : -1;
+            if(parentSlot >= 0){
+                linkChild(parentSlot, slot);
+            }
+        }
+        depths[chunk][offset] = parentSlot >= 0 ? intAt(depths, parentSlot) + 1 : 0;
+        rootSlots[chunk][offset] = parentSlot >= 0 ? intAt(rootSlots, parentSlot) : slot;
+
+        types.entry(typeCode).add(slot, transaction.getAmount());
+        putIndex(id, slot);
+
+        size = slot + 1;
+        // Después de publicar la fila: quien ve el id en el índice por monto y lee size después, ve su slot
+        types.entry(typeCode).amounts.add(transaction.getAmount(), id);
+
+        if(addToAncestors){
+            addToAncestorSums(parentSlot, transaction.getAmount());
+        }
+        return InsertResult.INSERTED;
+    }
+
+    public Optional<Transaction> findById(Long id){
+        int slot = findSlot(id, size);
+        return slot >= 0 ? Optional.of(toTransaction(slot)) : Optional.empty();
+    }
+
+    public List<Long> findIdsByType(String type){
+        SlotList slots = types.get(type);
+        if(slots == null){
+            return Collections.emptyList();
+        }
+        int visible = size;
+        return slots.ids(visible);
+    }
+
+    public List<Long> findIdsByType(String type, int from, int limit){
+        SlotList slots = types.get(type);
+        if(slots == null){
+            return Collections.emptyList();
+        }
+        int visible = size;
+        return slots.ids(visible, from, limit);
+    }
+
+    public void forEachIdByType(String type, LongConsumer action){
+        SlotList slots = types.get(type);
+        if(slots != null){
+            int visible = size;
+            slots.forEachId(visible, action);
+        }
+    }
+
+    public List<String> findTypes(){
+        return types.names();
+    }
+
+    public List<String> findTypes(String prefix){
+        return types.namesWithPrefix(prefix);
+    }
+
+    public int countIdsByType(String type){
+        SlotList slots = types.get(type);
+        return slots != null ? slots.count : 0;
+    }
+
+    public Optional<TypeAggregate> findTypeAggregate(String type){
+        SlotList slots = types.get(type);
+        return slots != null ? Optional.ofNullable(slots.aggregate.snapshot()) : Optional.empty();
+    }
+
+    public List<Transaction> findByTypeAndAmount(String type, long minAmount, long maxAmount, int limit){
+        SlotList slots = types.get(type);
+        if(slots == null){
+            return Collections.emptyList();
+        }
+        List<Transaction> found = new ArrayList<>();
+        // size se lee por id, después de recorrer el índice: uno leído antes podría no cubrir un id recién agregado
+        slots.amounts.forEachId(minAmount, maxAmount, limit, id -> found.add(toTransaction(findSlot(id, size))));
+        return found;
+    }
+
+    public List<Long> findChildrenIds(Long parentId){
+        int visible = size;
+        int parentSlot = findSlot(parentId, visible);
+        if(parentSlot < 0){
+            return Collections.emptyList();
+        }
+
+        List<Long> childIds = new ArrayList<>();
+        int child = intAt(firstChildSlots, parentSlot) - 1;
+        while(child >= 0 && child < visible){
+            childIds.add(longAt(ids, child));
+            child = intAt(nextSiblingSlots, child) - 1;
+        }
+        return childIds;
+    }
+
+    // Cada ancestro va en la posición de su profundidad: la raíz primero, el padre último
+    public List<Long> findAncestorIds(Long id){
+        int slot = findSlot(id, size);
+        if(slot < 0){
+            return Collections.emptyList();
+        }
+        Long[] ancestorIds = new Long[intAt(depths, slot)];
+        for(int ancestor = intAt(parentSlots, slot) - 1; ancestor >= 0; ancestor = intAt(parentSlots, ancestor) - 1){
+            ancestorIds[intAt(depths, ancestor)] = longAt(ids, ancestor);
+        }
+        return List.of(ancestorIds);
+    }
+
+    public OptionalLong findRootId(Long id){
+        int slot = findSlot(id, size);
+        return slot >= 0 ? OptionalLong.of(longAt(ids, intAt(rootSlots, slot))) : OptionalLong.empty();
+    }
+
+    public OptionalInt findDepth(Long id){
+        int slot = findSlot(id, size);
+        return slot >= 0 ? OptionalInt.of(intAt(depths, slot)) : OptionalInt.empty();
+    }
+
+    /*
+        Baja nivel por nivel por las listas de hijos. Cada nivel queda en orden
+        de slot dentro de cada padre, igual que findChildrenIds.
+     */
+    public List<Long> findDescendantIdsAtDepth(Long id, int depth){
+        int visible = size;
+        int slot = findSlot(id, visible);
+        if(slot < 0){
+            return Collections.emptyList();
+        }
+        int[] level = {slot};
+        int levelSize = 1;
+        for(int i = 0; i < depth && levelSize > 0; i++){
+            int[] next = new int[Math.max(8, levelSize)];
+            int nextSize = 0;
+            for(int j = 0; j < levelSize; j++){
+                int child = intAt(firstChildSlots, level[j]) - 1;
+                while(child >= 0 && child < visible){
+                    if(nextSize == next.length){
+                        next = Arrays.copyOf(next, nextSize * 2);
+                    }
+                    next[nextSize++] = child;
+                    child = intAt(nextSiblingSlots, child) - 1;
+                }
+            }
+            level = next;
+            levelSize = nextSize;
+        }
+        List<Long> descendantIds = new ArrayList<>(levelSize);
+        for(int j = 0; j < levelSize; j++){
+            descendantIds.add(longAt(ids, level[j]));
+        }
+        return descendantIds;
+    }
+
+    public OptionalLong findSubtreeSum(Long id){
+        long sum = subtreeSumOf(id);
+        return sum != ABSENT ? OptionalLong.of(sum) : OptionalLong.empty();
+    }
+
+    // Los accesos primitivos no asignan: el índice es por long y los hijos se siguen por slot
+    public long amountOf(long id){
+        int slot = findSlot(id, size);
+        return slot >= 0 ? longAt(amounts, slot) : ABSENT;
+    }
+
+    public long visit(long id, LongConsumer childIds){
+        int visible = size;
+        int slot = findSlot(id, visible);
+        if(slot < 0){
+            return ABSENT;
+        }
+        int child = intAt(firstChildSlots, slot) - 1;
+        while(child >= 0 && child < visible){
+            childIds.accept(longAt(ids, child));
+            child = intAt(nextSiblingSlots, child) - 1;
+        }
+        return longAt(amounts, slot);
+    }
+
+    public long subtreeSumOf(long id){
+        int slot = findSlot(id, size);
+        return slot >= 0 ? subtreeSumAt(slot) : ABSENT;
+    }
+
+    // En orden de slot, que es el orden de inserción
+    public void forEachTransaction(Consumer<Transaction> action){
+        int visible = size;
+        for(int slot = 0; slot < visible; slot++){
+            action.accept(toTransaction(slot));
+        }
+    }
+
+    public int size(){
+        return size;
+    }
+
+    private Transaction toTransaction(int slot){
+        int parentSlot = intAt(parentSlots, slot);
+        Long parentId = parentSlot != 0 ? longAt(parentIds, slot) : null;
+        return new Transaction(
+            longAt(ids, slot),
+            longAt(amounts, slot),
+            types.name(intAt(typeCodes, slot)),
+            parentId
+        );
+    }
+
+    private int findSlot(long id, int visible){
+        int[] table = index;
+        int mask = table.length - 1;
+        int i = hash(id) & mask;
+        int entry;
+        while((entry = table[i]) != 0){
+            int slot = entry - 1;
+            if(slot < visible && longAt(ids, slot) == id){
+                return slot;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void putIndex(long id, int slot){
+        int[] table = index;
+        if((size + 1) * 2 > table.length){
+            table = resizeIndex(table);
+        }
+        insertInto(table, id, slot);
+    }
+
+    private int[] resizeIndex(int[] current){
+        int[] table = new int[current.length * 2];
+        for(int slot = 0; slot < size; slot++){
+            insertInto(table, longAt(ids, slot), slot);
+        }
+        index = table;
+        return table;
+    }
+
+    private static void insertInto(int[] table, long id, int slot){
+        int mask = table.length - 1;
+        int i = hash(id) & mask;
+        while(table[i] != 0){
+            i = (i + 1) & mask;
+        }
+        table[i] = slot + 1;
+    }
+
+    private static int hash(long id){
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void linkChild(int parentSlot, int childSlot){
+        int parentChunk = parentSlot >>> CHUNK_SHIFT;
+        int parentOffset = parentSlot & CHUNK_MASK;
+        int last = lastChildSlots[parentChunk][parentOffset] - 1;
+        if(last >= 0){
+            nextSiblingSlots[last >>> CHUNK_SHIFT][last & CHUNK_MASK] = childSlot + 1;
+        }else{
+            firstChildSlots[parentChunk][parentOffset] = childSlot + 1;
+        }
+        lastChildSlots[parentChunk][parentOffset] = childSlot + 1;
+    }
+
+    private void addToAncestorSums(int parentSlot, long amount){
+        int ancestor = parentSlot;
+        while(ancestor >= 0){
+            long[] chunk = subtreeSums[ancestor >>> CHUNK_SHIFT];
+            int offset = ancestor & CHUNK_MASK;
+            LONG_ELEMENT.setVolatile(chunk, offset, SubtreeSums.add((long) LONG_ELEMENT.getVolatile(chunk, offset), amount));
+            ancestor = intAt(parentSlots, ancestor) - 1;
+        }
+    }
+
+    private long subtreeSumAt(int slot){
+        return (long) LONG_ELEMENT.getVolatile(subtreeSums[slot >>> CHUNK_SHIFT], slot & CHUNK_MASK);
+    }
+
+    private void ensureCapacity(int slot){
+        int chunk = slot >>> CHUNK_SHIFT;
+        if(chunk < ids.length){
+            return;
+        }
+        ids = Arrays.copyOf(ids, chunk + 1);
+        ids[chunk] = new long[CHUNK_SIZE];
+        amounts = Arrays.copyOf(amounts, chunk + 1);
+        amounts[chunk] = new long[CHUNK_SIZE];
+        typeCodes = Arrays.copyOf(typeCodes, chunk + 1);
+        typeCodes[chunk] = new int[CHUNK_SIZE];
+        parentIds = Arrays.copyOf(parentIds, chunk + 1);
+        parentIds[chunk] = new long[CHUNK_SIZE];
+        parentSlots = Arrays.copyOf(parentSlots, chunk + 1);
+        parentSlots[chunk] = new int[CHUNK_SIZE];
+        firstChildSlots = Arrays.copyOf(firstChildSlots, chunk + 1);
+        firstChildSlots[chunk] = new int[CHUNK_SIZE];
+        lastChildSlots = Arrays.copyOf(lastChildSlots, chunk + 1);
+        lastChildSlots[chunk] = new int[CHUNK_SIZE];
+        nextSiblingSlots = Arrays.copyOf(nextSiblingSlots, chunk + 1);
+        nextSiblingSlots[chunk] = new int[CHUNK_SIZE];
+        subtreeSums = Arrays.copyOf(subtreeSums, chunk + 1);
+        subtreeSums[chunk] = new long[CHUNK_SIZE];
+        depths = Arrays.copyOf(depths, chunk + 1);
+        depths[chunk] = new int[CHUNK_SIZE];
+        rootSlots = Arrays.copyOf(rootSlots, chunk + 1);
+        rootSlots[chunk] = new int[CHUNK_SIZE];
+    }
+
+    private static long longAt(long[][] column, int slot){
+        return column[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK];
+    }
+
+    private static int intAt(int[][] column, int slot){
+        return column[slot >>> CHUNK_SHIFT][slot & CHUNK_MASK];
+    }
+
+    /*
+        Slots de un tipo en orden de inserción. Mismo esquema de publicación:
+        el array nuevo se asigna antes de incrementar count.
+     */
+    private final class SlotList {
+        private volatile int[] slots = new int[8];
+        private volatile int count;
+        private final TypeAggregateCell aggregate = new TypeAggregateCell();
+        private final AmountIndex amounts = new AmountIndex();
+
+        void add(int slot, long amount){
+            int[] current = slots;
+            if(count == current.length){
+                current = Arrays.copyOf(current, current.length * 2);
+                slots = current;
+            }
+            current[count] = slot;
+            aggregate.add(amount);
+            count = count + 1;
+        }
+
+        List<Long> ids(int visible){
+            return ids(visible, 0, Integer.MAX_VALUE);
+        }
+
+        List<Long> ids(int visible, int from, int limit){
+            int n = count;
+            int[] current = slots;
+            int to = from + Math.min(limit, Math.max(0, n - from));
+            List<Long> result = new ArrayList<>(to - from);
+            for(int i = from; i < to && current[i] < visible; i++){
+                result.add(longAt(ids, current[i]));
+            }
+            return result;
+        }
+
+        void forEachId(int visible, LongConsumer action){
+            int n = count;
+            int[] current = slots;
+            for(int i = 0; i < n && current[i] < visible; i++){
+                action.accept(longAt(ids, current[i]));
+            }
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+    Repositorio durable: cada transacción insertada se agrega al WriteAheadLog
+    y la llamada retorna recién cuando el registro es durable. Al arrancar, el
+    repositorio se reconstruye reproduciendo el log.
+
+    Primero se escribe al log y recién cuando es durable se aplica en el
+    repositorio, así nadie lee (ni cuelga un hijo de) una transacción que no
+    sobreviviría a una caída, y si el log falla no queda nada en memoria.
+    Para decidir antes de escribir, cada escritura reserva sus ids en
+    pendingIds: otra escritura del mismo id espera a que la primera termine,
+    y duplicados y padres se deciden contra lo ya aplicado. Un padre todavía
+    reservado no existe para sus hijos, por eso un hijo siempre queda en el
+    log después que su padre.
+
+    El replay igual tolera hijos antes que su padre (logs anteriores y save
+    con un padre que no existía) guardando al hijo hasta que aparece el padre.
+ */
+public class DurableTransactionRepository extends ForwardingTransactionRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(DurableTransactionRepository.class);
+
+    private final WriteAheadLog writeAheadLog;
+    private final int amountScale;
+    private final Path snapshotPath;
+    private final ScheduledExecutorService snapshots;
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final Map<Long, CountDownLatch> pendingIds = new ConcurrentHashMap<>();
+    // Las escrituras lo toman compartido entre el log y el repositorio; snapshot, exclusivo para leer la posición
+    private final ReentrantReadWriteLock publishing = new ReentrantReadWriteLock();
+    private long snapshotPosition = -1;
+
+    private DurableTransactionRepository(TransactionRepository delegate, WriteAheadLog writeAheadLog, int amountScale,
+                                         Path snapshotPath, long snapshotIntervalNanos){
+        super(delegate);
+        this.writeAheadLog = writeAheadLog;
+        this.amountScale = amountScale;
+        this.snapshotPath = snapshotPath;
+        if(snapshotPath != null && snapshotIntervalNanos > 0){
+            snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "transaction-snapshots");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshots.scheduleWithFixedDelay(this::scheduledSnapshot, snapshotIntervalNanos, snapshotIntervalNanos, TimeUnit.NANOSECONDS);
+        }else{
+            snapshots = null;
+        }
+    }
+
+    public static DurableTransactionRepository open(TransactionRepository delegate, Path path, int amountScale,
+                                                    WriteAheadLog.SyncMode syncMode, long groupDelayNanos) throws IOException {
+        return open(delegate, path, amountScale, syncMode, groupDelayNanos, null, 0);
+    }
+
+    /*
+        Con snapshotPath, el arranque carga el último snapshot y reproduce sólo
+        la cola del log: cada snapshot descarta del log lo que ya tiene. Si el
+        snapshot no sirve (no existe, está cortado o no pasa el crc) se
+        reproduce el log completo, salvo que ya le falte el principio: ahí no
+        hay cómo reconstruir el repositorio y el arranque falla.
+     */
+    public static DurableTransactionRepository open(TransactionRepository delegate, Path path, int amountScale,
+                                                    WriteAheadLog.SyncMode syncMode, long groupDelayNanos,
+                                                    Path snapshotPath, long snapshotIntervalNanos) throws IOException {
+        long start = System.nanoTime();
+        Replay replay = new Replay(delegate);
+        long replayFrom = 0;
+        if(snapshotPath != null && Files.exists(snapshotPath)){
+            try{
+                replayFrom = RepositorySnapshot.load(snapshotPath, amountScale, replay::load);
+                log.info("Loaded {} transactions from {} in {} ms",
+                        replay.records, snapshotPath, (System.nanoTime() - start) / 1_000_000);
+            }catch(IOException e){
+                log.warn("Ignoring snapshot {}, replaying the whole log: {}", snapshotPath, e.getMessage());
+            }
+        }
+        long snapshotRecords = replay.records;
+        long replayStart = System.nanoTime();
+        WriteAheadLog writeAheadLog = WriteAheadLog.open(path, amountScale, syncMode, groupDelayNanos, replayFrom, replay::apply);
+        if(!writeAheadLog.holdsFrom(replayFrom)){
+            writeAheadLog.close();
+            throw new IOException(path + " has discarded records that are only in a snapshot, and no snapshot up to its start could be loaded");
+        }
+        replay.finish();
+        log.info("Replayed {} transactions from {} in {} ms",
+                replay.records - snapshotRecords, path, (System.nanoTime() - replayStart) / 1_000_000);
+
+        DurableTransactionRepository repository = new DurableTransactionRepository(delegate, writeAheadLog, amountScale, snapshotPath, snapshotIntervalNanos);
+        if(replayFrom > writeAheadLog.size()){
+            // Sin un snapshot nuevo, las próximas escrituras quedarían antes de replayFrom y no se reproducirían
+            log.warn("{} ends before the position recorded in {}, taking a new snapshot", path, snapshotPath);
+            repository.snapshot();
+        }else if(snapshotPath != null){
+            repository.snapshotPosition = replayFrom;
+        }
+        return repository;
+    }
+
+    /*
+        La posición se lee antes de recorrer el repositorio y sin escrituras a
+        medias (con publishing exclusivo): lo que ya es durable en el log ya se
+        aplicó en memoria, así que queda en el snapshot. Con el snapshot ya
+        durable, el log descarta todo lo anterior a esa posición.
+     */
+    public void snapshot() throws IOException {
+        if(snapshotPath == null){
+            throw new IllegalStateException("Snapshots are not configured");
+        }
+        snapshotLock.lock();
+        try{
+            long position;
+            publishing.writeLock().lock();
+            try{
+                position = writeAheadLog.size();
+            }finally{
+                publishing.writeLock().unlock();
+            }
+            if(position == snapshotPosition){
+                return;
+            }
+            long start = System.nanoTime();
+            long rows = RepositorySnapshot.write(snapshotPath, delegate, amountScale, position);
+            snapshotPosition = position;
+            log.info("Wrote snapshot of {} transactions to {} in {} ms",
+                    rows, snapshotPath, (System.nanoTime() - start) / 1_000_000);
+            writeAheadLog.discardBefore(position);
+        }finally{
+            snapshotLock.unlock();
+        }
+    }
+
+    private void scheduledSnapshot(){
+        try{
+            snapshot();
+        }catch(IOException | RuntimeException e){
+            log.error("Could not write snapshot {}", snapshotPath, e);
+        }
+    }
+
+    /*
+        save no valida el padre: se registra todo lo que no es un id repetido,
+        y en el replay se guarda igual que entonces.
+     */
+    public void save(Transaction transaction){
+        write(transaction, false);
+    }
+
+    public InsertResult insertIfAbsent(Transaction transaction){
+        return write(transaction, true);
+    }
+
+    // Lo que se carga acá tiene que ir al log como cualquier save; la suma se vuelve a calcular
+    public void load(Transaction transaction, long subtreeSum){
+        save(transaction);
+    }
+
+    private InsertResult write(Transaction transaction, boolean requireParent){
+        WriteAheadLog.requireEncodable(transaction);
+        long id = transaction.getId();
+        CountDownLatch reservation = reserve(id);
+        try{
+            if(delegate.amountOf(id) != ABSENT){
+                return InsertResult.DUPLICATE_ID;
+            }
+            Long parentId = transaction.getParentId();
+            if(requireParent && parentId != null && delegate.amountOf(parentId) == ABSENT){
+                return InsertResult.PARENT_NOT_FOUND;
+            }
+            publishing.readLock().lock();
+            try{
+                writeAheadLog.append(List.of(transaction));
+                if(requireParent){
+                    return delegate.insertIfAbsent(transaction);
+                }
+                delegate.save(transaction);
+                return InsertResult.INSERTED;
+            }finally{
+                publishing.readLock().unlock();
+            }
+        }finally{
+            pendingIds.remove(id, reservation);
+            reservation.countDown();
+        }
+    }
+
+    /*
+        Los resultados se deciden en orden contra lo ya aplicado y lo aceptado
+        antes en el lote; lo aceptado va al log en un solo append y después al
+        repositorio con un solo saveAll.
+     */
+    public List<InsertResult> saveAll(List<Transaction> transactions){
+        transactions.forEach(WriteAheadLog::requireEncodable);
+        Set<Long> ids = new LinkedHashSet<>();
+        for(Transaction transaction : transactions){
+            ids.add(transaction.getId());
+        }
+        CountDownLatch reservation = reserveAll(ids);
+        try{
+            List<InsertResult> results = new ArrayList<>(transactions.size());
+            List<Transaction> accepted = new ArrayList<>(transactions.size());
+            Set<Long> acceptedIds = new HashSet<>();
+            for(Transaction transaction : transactions){
+                Long parentId = transaction.getParentId();
+                if(acceptedIds.contains(transaction.getId()) || delegate.amountOf(transaction.getId()) != ABSENT){
+                    results.add(InsertResult.DUPLICATE_ID);
+                }else if(parentId != null && !acceptedIds.contains(parentId) && delegate.amountOf(parentId) == ABSENT){
+                    results.add(InsertResult.PARENT_NOT_FOUND);
+                }else{
+                    accepted.add(transaction);
+                    acceptedIds.add(transaction.getId());
+                    results.add(InsertResult.INSERTED);
+                }
+            }
+            if(!accepted.isEmpty()){
+                publishing.readLock().lock();
+                try{
+                    writeAheadLog.append(accepted);
+                    delegate.saveAll(accepted);
+                }finally{
+                    publishing.readLock().unlock();
+                }
+            }
+            return results;
+        }finally{
+            for(Long id : ids){
+                pendingIds.remove(id, reservation);
+            }
+            reservation.countDown();
+        }
+    }
+
+    private CountDownLatch reserve(long id){
+        while(true){
+            CountDownLatch reservation = new CountDownLatch(1);
+            CountDownLatch other = pendingIds.putIfAbsent(id, reservation);
+            if(other == null){
+                return reservation;
+            }
+            await(other);
+        }
+    }
+
+    /*
+        Nadie espera teniendo ids reservados: si uno del lote ya está tomado se
+        sueltan los reservados (despertando a quien los esperaba) y se vuelve a
+        empezar cuando el otro termina, así dos lotes cruzados no se bloquean.
+     */
+    private CountDownLatch reserveAll(Set<Long> ids){
+        List<Long> reserved = new ArrayList<>(ids.size());
+        while(true){
+            CountDownLatch reservation = new CountDownLatch(1);
+            CountDownLatch conflict = null;
+            for(Long id : ids){
+                conflict = pendingIds.putIfAbsent(id, reservation);
+                if(conflict != null){
+                    break;
+                }
+                reserved.add(id);
+            }
+            if(conflict == null){
+                return reservation;
+            }
+            for(Long id : reserved){
+                pendingIds.remove(id, reservation);
+            }
+            reserved.clear();
+            reservation.countDown();
+            await(conflict);
+        }
+    }
+
+    // La espera es corta (un append): una interrupción no corta la escritura, sólo queda marcada
+    private static void await(CountDownLatch latch){
+        boolean interrupted = false;
+        while(true){
+            try{
+                latch.await();
+                break;
+            }catch(InterruptedException e){
+                interrupted = true;
+            }
+        }
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Para los tests, que lo rompen para simular un fallo de escritura
+    WriteAheadLog writeAheadLog(){
+        return writeAheadLog;
+    }
+
+    /*
+        Un cierre ordenado deja un snapshot al día, así el próximo arranque no
+        reproduce nada del log.
+     */
+    public void close() throws IOException {
+        try{
+            if(snapshots != null){
+                snapshots.shutdownNow();
+            }
+            if(snapshotPath != null){
+                snapshot();
+            }
+        }finally{
+            try{
+                writeAheadLog.close();
+            }finally{
+                super.close();
+            }
+        }
+    }
+
+    /*
+        Se aplica en lotes con saveAll (un lock por lote en vez de uno por fila).
+        Un hijo cuyo padre todavía no se reprodujo queda esperando por parentId
+        y se inserta apenas llega el padre. Los que quedan al final vienen de
+        save con un padre que nunca existió, y se guardan igual que entonces.
+     */
+    private static final class Replay {
+
+        private static final int BATCH_SIZE = 10_000;
+
+        private final TransactionRepository repository;
+        private final List<Transaction> batch = new ArrayList<>(BATCH_SIZE);
+        private final Map<Long, List<Transaction>> waitingByParentId = new HashMap<>();
+        private long records;
+
+        private Replay(TransactionRepository repository){
+            this.repository = repository;
+        }
+
+        // Las filas de un snapshot traen la suma de su subárbol y cada padre antes que sus hijos
+        private void load(Transaction transaction, long subtreeSum){
+            records++;
+            repository.load(transaction, subtreeSum);
+        }
+
+        private void apply(Transaction transaction){
+            records++;
+            batch.add(transaction);
+            if(batch.size() == BATCH_SIZE){
+                flush();
+            }
+        }
+
+        private void flush(){
+            List<Transaction> pending = batch;
+            while(!pending.isEmpty()){
+                List<InsertResult> results = repository.saveAll(pending);
+                List<Transaction> released = new ArrayList<>();
+                for(int i = 0; i < results.size(); i++){
+                    Transaction transaction = pending.get(i);
+                    if(results.get(i) == InsertResult.PARENT_NOT_FOUND){
+                        waitingByParentId.computeIfAbsent(transaction.getParentId(), k -> new ArrayList<>()).add(transaction);
+                    }else if(results.get(i) == InsertResult.INSERTED && !waitingByParentId.isEmpty()){
+                        List<Transaction> children = waitingByParentId.remove(transaction.getId());
+                        if(children != null){
+                            released.addAll(children);
+                        }
+                    }
+                }
+                pending = released;
+            }
+            batch.clear();
+        }
+
+        private void finish(){
+            flush();
+            waitingByParentId.values().forEach(orphans -> orphans.forEach(repository::save));
+            waitingByParentId.clear();
+        }
+    }
+}
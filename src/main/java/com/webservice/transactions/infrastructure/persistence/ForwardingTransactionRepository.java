@@ -0,0 +1,146 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.domain.TypeAggregate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/*
+    Base para decoradores de un repositorio: delega todo, y cada subclase
+    sobreescribe sólo lo que cambia (por ejemplo, la escritura durable).
+    close cierra el delegado, así un decorador puede envolver a otro que
+    tiene recursos (como el log) sin que se pierda su cierre.
+ */
+public abstract class ForwardingTransactionRepository implements TransactionRepository, Closeable {
+
+    protected final TransactionRepository delegate;
+
+    protected ForwardingTransactionRepository(TransactionRepository delegate){
+        this.delegate = delegate;
+    }
+
+    /*
+        Busca en la cadena de decoradores el primero del tipo pedido.
+     */
+    public static <T extends TransactionRepository> Optional<T> unwrap(TransactionRepository repository, Class<T> type){
+        TransactionRepository current = repository;
+        while(!type.isInstance(current)){
+            if(!(current instanceof ForwardingTransactionRepository forwarding)){
+                return Optional.empty();
+            }
+            current = forwarding.delegate;
+        }
+        return Optional.of(type.cast(current));
+    }
+
+    public void save(Transaction transaction){
+        delegate.save(transaction);
+    }
+
+    public InsertResult insertIfAbsent(Transaction transaction){
+        return delegate.insertIfAbsent(transaction);
+    }
+
+    public List<InsertResult> saveAll(List<Transaction> transactions){
+        return delegate.saveAll(transactions);
+    }
+
+    public void load(Transaction transaction, long subtreeSum){
+        delegate.load(transaction, subtreeSum);
+    }
+
+    public Optional<Transaction> findById(Long id){
+        return delegate.findById(id);
+    }
+
+    public List<Long> findIdsByType(String type){
+        return delegate.findIdsByType(type);
+    }
+
+    public List<Long> findIdsByType(String type, int from, int limit){
+        return delegate.findIdsByType(type, from, limit);
+    }
+
+    public void forEachIdByType(String type, LongConsumer action){
+        delegate.forEachIdByType(type, action);
+    }
+
+    public List<String> findTypes(){
+        return delegate.findTypes();
+    }
+
+    public List<String> findTypes(String prefix){
+        return delegate.findTypes(prefix);
+    }
+
+    public int countIdsByType(String type){
+        return delegate.countIdsByType(type);
+    }
+
+    public Optional<TypeAggregate> findTypeAggregate(String type){
+        return delegate.findTypeAggregate(type);
+    }
+
+    public List<Transaction> findByTypeAndAmount(String type, long minAmount, long maxAmount, int limit){
+        return delegate.findByTypeAndAmount(type, minAmount, maxAmount, limit);
+    }
+
+    public List<Long> findChildrenIds(Long parentId){
+        return delegate.findChildrenIds(parentId);
+    }
+
+    public List<Long> findAncestorIds(Long id){
+        return delegate.findAncestorIds(id);
+    }
+
+    public OptionalLong findRootId(Long id){
+        return delegate.findRootId(id);
+    }
+
+    public OptionalInt findDepth(Long id){
+        return delegate.findDepth(id);
+    }
+
+    public List<Long> findDescendantIdsAtDepth(Long id, int depth){
+        return delegate.findDescendantIdsAtDepth(id, depth);
+    }
+
+    public void forEachTransaction(Consumer<Transaction> action){
+        delegate.forEachTransaction(action);
+    }
+
+    public OptionalLong findSubtreeSum(Long id){
+        return delegate.findSubtreeSum(id);
+    }
+
+    public long amountOf(long id){
+        return delegate.amountOf(id);
+    }
+
+    public long visit(long id, LongConsumer childIds){
+        return delegate.visit(id, childIds);
+    }
+
+    public long subtreeSumOf(long id){
+        return delegate.subtreeSumOf(id);
+    }
+
+    public void close() throws IOException {
+        if(delegate instanceof Closeable closeable){
+            closeable.close();
+        }
+    }
+
+    public boolean blocking(){
+        return delegate.blocking();
+    }
+}
@@ -1,55 +1,432 @@
 package com.webservice.transactions.infrastructure.persistence;
 
-import org.springframework.stereotype.Repository;
-
+import com.webservice.transactions.domain.InsertResult;
 import com.webservice.transactions.domain.Transaction;
 import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.domain.TypeAggregate;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
 
-@Repository
 public class InMemoryTransactionRepository implements TransactionRepository {
-    
-    private final Map<Long, Transaction> transactionsById = new ConcurrentHashMap<>();
-    private final Map<String, List<Long>> transactionsByType = new ConcurrentHashMap<>();
-    private final Map<Long, List<Long>> transactionsByParentId = new ConcurrentHashMap<>();
-    private final Object lock = new Object();
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final Map<Long, Node> transactionsById = new ConcurrentHashMap<>();
+    private final TypeDictionary<TypeIndex> types = new TypeDictionary<>(TypeIndex::new);
+    private final Map<Long, LongSegmentList> transactionsByParentId = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[LOCK_STRIPES];
+    private final AtomicLong sequence = new AtomicLong();
+    private final LockWaitStats lockWaits;
     /*
-        Aunque ya este usando colecciones thread safe, uso un lock para siumular
-        atomicidad entre las 3 operaciones de guardado en fin de simular una BD.
+        No hay un lock global: el putIfAbsent en transactionsById es el punto de
+        commit. Si dos saves compiten por el mismo id sólo uno gana, y recién
+        después la transacción se agrega a los índices por tipo y por padre, así
+        un id que aparece en un índice siempre se encuentra por findById. Cuando
+        save retorna, la transacción es visible en los tres.
+
+        Cada LongSegmentList admite un solo escritor, así que los agregados se
+        serializan con locks por stripe (por tipo y por parentId): transacciones
+        independientes se escriben en paralelo y nunca se toma más de un lock a
+        la vez, por lo que no hay deadlocks.
 
-        Mantengo las otras colecciones concurrentes para mantener thread safe las 
+        Los índices por tipo se buscan por el código del TypeDictionary, y el
+        stripe de un tipo sale de su código: hasta LOCK_STRIPES tipos nunca
+        comparten lock. Cada transacción guardada comparte el string del tipo
+        que tiene el diccionario en vez de retener el de su request.
+
+        Mantengo las colecciones concurrentes para mantener thread safe las
         lecturas, ya que un sistema de transacciones escribe 1 vez la factura y
-        se lee multiples veces. Un sistema así tiende a ser tener muchas mas 
-        lecturas por escritura.
-     */ 
-    
+        se lee multiples veces. Un sistema así tiende a ser tener muchas mas
+        lecturas por escritura. Los índices son LongSegmentList: agregar es O(1)
+        amortizado (no copia la lista entera como CopyOnWriteArrayList) y los
+        lectores iteran un snapshot estable sin lock.
+
+        Por la misma razón, la suma de cada subárbol se mantiene materializada:
+        cada save suma el monto a la transacción y a todos sus ancestros
+        (O(profundidad) por escritura) y getSum pasa a ser una sola lectura.
+        Lo mismo con el agregado de cada tipo, que se actualiza bajo el lock
+        del tipo al mismo tiempo que se agrega el id a su índice, y con el
+        índice por monto de cada tipo (AmountIndex) para los rangos de montos.
+
+        Cada nodo guarda una referencia a su padre, su raíz y su profundidad,
+        fijadas al insertarse (un padre que todavía no existía no cuenta, igual
+        que para las sumas). Raíz y profundidad son una lectura, y los ancestros
+        se recorren siguiendo referencias, sin buscar cada paso en el mapa.
+     */
+
+    public InMemoryTransactionRepository(){
+        this(new LockWaitStats());
+    }
+
+    public InMemoryTransactionRepository(LockWaitStats lockWaits){
+        this.lockWaits = lockWaits;
+        for(int i = 0; i < stripes.length; i++){
+            stripes[i] = new ReentrantLock();
+        }
+    }
 
     public void save(Transaction transaction){
-        synchronized(lock){
-            transactionsById.put(transaction.getId(), transaction);
-            transactionsByType.computeIfAbsent(transaction.getType(), k -> new java.util.concurrent.CopyOnWriteArrayList<>()).add(transaction.getId());
-            if(transaction.getParentId() != null){
-                transactionsByParentId.computeIfAbsent(transaction.getParentId(), k -> new java.util.concurrent.CopyOnWriteArrayList<>()).add(transaction.getId());
+        // Las transacciones son inmutables: volver a guardar un id duplicaría su monto en las sumas
+        Node parent = transaction.getParentId() != null ? transactionsById.get(transaction.getParentId()) : null;
+        if(transactionsById.putIfAbsent(transaction.getId(), new Node(withCanonicalType(transaction), sequence.getAndIncrement(), parent)) != null){
+            return;
+        }
+        index(transaction, parent != null);
+        addToAncestorSums(transaction);
+    }
+
+    // La suma ya incluye a los descendientes del snapshot: no se suma nada a los ancestros
+    public void load(Transaction transaction, long subtreeSum){
+        Node parent = transaction.getParentId() != null ? transactionsById.get(transaction.getParentId()) : null;
+        Node node = new Node(withCanonicalType(transaction), sequence.getAndIncrement(), parent, subtreeSum);
+        if(transactionsById.putIfAbsent(transaction.getId(), node) != null){
+            return;
+        }
+        index(transaction, parent != null);
+    }
+
+    /*
+        Como nunca se borran transacciones, un padre que existe sigue existiendo:
+        alcanza con verificarlo antes del putIfAbsent, que decide el id.
+     */
+    public InsertResult insertIfAbsent(Transaction transaction){
+        InsertResult result = commit(transaction);
+        if(result == InsertResult.INSERTED){
+            index(transaction, transaction.getParentId() != null);
+            addToAncestorSums(transaction);
+        }
+        return result;
+    }
+
+    /*
+        Cada transacción del lote se commitea en orden (así un hijo ve a su padre
+        del mismo lote), pero los agregados a los índices se agrupan por lista y
+        se hacen al final: un lock por tipo y por padre distinto, no dos por ítem.
+     */
+    public List<InsertResult> saveAll(List<Transaction> transactions){
+        List<InsertResult> results = new ArrayList<>(transactions.size());
+        Map<String, List<Transaction>> insertedByType = new LinkedHashMap<>();
+        Map<String, TypeAggregate> aggregatesAdded = new LinkedHashMap<>();
+        Map<Long, List<Long>> idsByParentId = new LinkedHashMap<>();
+
+        for(Transaction transaction : transactions){
+            InsertResult result = commit(transaction);
+            if(result == InsertResult.INSERTED){
+                insertedByType.computeIfAbsent(transaction.getType(), k -> new ArrayList<>()).add(transaction);
+                aggregatesAdded.merge(transaction.getType(), TypeAggregate.of(transaction.getAmount()), TypeAggregate::combine);
+                if(transaction.getParentId() != null){
+                    idsByParentId.computeIfAbsent(transaction.getParentId(), k -> new ArrayList<>()).add(transaction.getId());
+                }
+                addToAncestorSums(transaction);
             }
+            results.add(result);
+        }
+
+        insertedByType.forEach((type, inserted) -> appendAllToType(type, inserted, aggregatesAdded.get(type)));
+        idsByParentId.forEach((parentId, ids) ->
+            appendAll(transactionsByParentId.computeIfAbsent(parentId, k -> new LongSegmentList()), parentId, ids));
+        return results;
+    }
+
+    private InsertResult commit(Transaction transaction){
+        Long parentId = transaction.getParentId();
+        Node parent = parentId != null ? transactionsById.get(parentId) : null;
+        if(parentId != null && parent == null){
+            return transactionsById.containsKey(transaction.getId()) ? InsertResult.DUPLICATE_ID : InsertResult.PARENT_NOT_FOUND;
+        }
+        if(transactionsById.putIfAbsent(transaction.getId(), new Node(withCanonicalType(transaction), sequence.getAndIncrement(), parent)) != null){
+            return InsertResult.DUPLICATE_ID;
+        }
+        return InsertResult.INSERTED;
+    }
+
+    /*
+        El primer save de un tipo guarda el string de su request, que es el que
+        después registra el diccionario; los siguientes guardan ese mismo.
+     */
+    private Transaction withCanonicalType(Transaction transaction){
+        String type = types.canonical(transaction.getType());
+        if(type == transaction.getType()){
+            return transaction;
+        }
+        return new Transaction(transaction.getId(), transaction.getAmount(), type, transaction.getParentId());
+    }
+
+    /*
+        Un hijo guardado antes que su padre queda como raíz (sin ancestros ni
+        suma en el padre), así que tampoco entra en la lista de hijos del padre.
+     */
+    private void index(Transaction transaction, boolean parentExists){
+        appendToType(transaction);
+        if(parentExists){
+            append(transactionsByParentId.computeIfAbsent(transaction.getParentId(), k -> new LongSegmentList()), transaction.getParentId(), transaction.getId());
+        }
+    }
+
+    private void append(LongSegmentList list, Object key, long id){
+        ReentrantLock stripe = stripeFor(key);
+        lockWaits.lock(stripe);
+        try{
+            list.add(id);
+        }finally{
+            stripe.unlock();
+        }
+    }
+
+    private void appendAll(LongSegmentList list, Object key, List<Long> ids){
+        ReentrantLock stripe = stripeFor(key);
+        lockWaits.lock(stripe);
+        try{
+            for(Long id : ids){
+                list.add(id);
+            }
+        }finally{
+            stripe.unlock();
+        }
+    }
+
+    private void appendToType(Transaction transaction){
+        int code = types.add(transaction.getType());
+        TypeIndex index = types.entry(code);
+        ReentrantLock stripe = stripes[code & (LOCK_STRIPES - 1)];
+        lockWaits.lock(stripe);
+        try{
+            index.ids.add(transaction.getId());
+            index.aggregate.add(transaction.getAmount());
+            index.amounts.add(transaction.getAmount(), transaction.getId());
+        }finally{
+            stripe.unlock();
+        }
+    }
+
+    private void appendAllToType(String type, List<Transaction> inserted, TypeAggregate added){
+        int code = types.add(type);
+        TypeIndex index = types.entry(code);
+        ReentrantLock stripe = stripes[code & (LOCK_STRIPES - 1)];
+        lockWaits.lock(stripe);
+        try{
+            for(Transaction transaction : inserted){
+                index.ids.add(transaction.getId());
+                index.amounts.add(transaction.getAmount(), transaction.getId());
+            }
+            index.aggregate.add(added);
+        }finally{
+            stripe.unlock();
+        }
+    }
+
+    private ReentrantLock stripeFor(Object key){
+        return stripes[(key.hashCode() * 0x9E3779B9 >>> 16) & (LOCK_STRIPES - 1)];
+    }
+
+    private void addToAncestorSums(Transaction transaction){
+        long amount = transaction.getAmount();
+        for(Node ancestor = transactionsById.get(transaction.getId()).parent; ancestor != null; ancestor = ancestor.parent){
+            ancestor.addToSubtreeSum(amount);
         }
     }
 
     public Optional<Transaction> findById(Long id){
-        Optional<Transaction> transaction = Optional.ofNullable(transactionsById.get(id));
+        Node node = transactionsById.get(id);
+        Optional<Transaction> transaction = Optional.ofNullable(node != null ? node.transaction : null);
         return transaction;
     }
 
     public List<Long> findIdsByType(String type){
-        List<Long> ids = transactionsByType.get(type);
-        return ids != null ? ids : java.util.Collections.emptyList();
+        TypeIndex index = types.get(type);
+        return index != null ? index.ids.snapshot() : java.util.Collections.emptyList();
+    }
+
+    public void forEachIdByType(String type, LongConsumer action){
+        TypeIndex index = types.get(type);
+        if(index != null){
+            index.ids.forEach(action);
+        }
+    }
+
+    public List<String> findTypes(){
+        return types.names();
+    }
+
+    public List<String> findTypes(String prefix){
+        return types.namesWithPrefix(prefix);
+    }
+
+    public int countIdsByType(String type){
+        TypeIndex index = types.get(type);
+        return index != null ? index.ids.size() : 0;
+    }
+
+    public Optional<TypeAggregate> findTypeAggregate(String type){
+        TypeIndex index = types.get(type);
+        return index != null ? Optional.ofNullable(index.aggregate.snapshot()) : Optional.empty();
+    }
+
+    public List<Transaction> findByTypeAndAmount(String type, long minAmount, long maxAmount, int limit){
+        TypeIndex index = types.get(type);
+        if(index == null){
+            return java.util.Collections.emptyList();
+        }
+        List<Transaction> found = new ArrayList<>();
+        index.amounts.forEachId(minAmount, maxAmount, limit, id -> found.add(transactionsById.get(id).transaction));
+        return found;
     }
 
     public List<Long> findChildrenIds(Long parentId){
-        List<Long> childIds = transactionsByParentId.get(parentId);
-        return childIds != null ? childIds : java.util.Collections.emptyList();
+        LongSegmentList childIds = transactionsByParentId.get(parentId);
+        return childIds != null ? childIds.snapshot() : java.util.Collections.emptyList();
+    }
+
+    // Cada ancestro va en la posición de su profundidad: la raíz primero, el padre último
+    public List<Long> findAncestorIds(Long id){
+        Node node = transactionsById.get(id);
+        if(node == null){
+            return java.util.Collections.emptyList();
+        }
+        Long[] ancestorIds = new Long[node.depth];
+        for(Node ancestor = node.parent; ancestor != null; ancestor = ancestor.parent){
+            ancestorIds[ancestor.depth] = ancestor.transaction.getId();
+        }
+        return List.of(ancestorIds);
+    }
+
+    public OptionalLong findRootId(Long id){
+        Node node = transactionsById.get(id);
+        return node != null ? OptionalLong.of(node.root.transaction.getId()) : OptionalLong.empty();
+    }
+
+    public OptionalInt findDepth(Long id){
+        Node node = transactionsById.get(id);
+        return node != null ? OptionalInt.of(node.depth) : OptionalInt.empty();
+    }
+
+    public List<Long> findDescendantIdsAtDepth(Long id, int depth){
+        if(!transactionsById.containsKey(id)){
+            return java.util.Collections.emptyList();
+        }
+        List<Long> level = List.of(id);
+        for(int i = 0; i < depth && !level.isEmpty(); i++){
+            List<Long> next = new ArrayList<>();
+            for(Long parentId : level){
+                LongSegmentList childIds = transactionsByParentId.get(parentId);
+                if(childIds != null){
+                    childIds.forEach(next::add);
+                }
+            }
+            level = next;
+        }
+        return level;
+    }
+
+    /*
+        El mapa por id no tiene orden: se ordena por la secuencia de commit, que
+        respeta el orden de inserción (y por lo tanto pone cada padre antes que
+        sus hijos), para que al recargar los índices queden igual que antes.
+     */
+    public void forEachTransaction(Consumer<Transaction> action){
+        Node[] nodes = transactionsById.values().toArray(new Node[0]);
+        Arrays.sort(nodes, Comparator.comparingLong(node -> node.sequence));
+        for(Node node : nodes){
+            action.accept(node.transaction);
+        }
+    }
+
+    public OptionalLong findSubtreeSum(Long id){
+        long sum = subtreeSumOf(id);
+        return sum != ABSENT ? OptionalLong.of(sum) : OptionalLong.empty();
+    }
+
+    /*
+        Los accesos primitivos no asignan nada más que el Long de la clave de
+        los mapas (uno por llamada), y sólo para ids fuera del rango que
+        cachea Long.valueOf.
+     */
+    public long amountOf(long id){
+        Node node = transactionsById.get(id);
+        return node != null ? node.transaction.getAmount() : ABSENT;
+    }
+
+    public long visit(long id, LongConsumer childIds){
+        Long key = id;
+        Node node = transactionsById.get(key);
+        if(node == null){
+            return ABSENT;
+        }
+        LongSegmentList children = transactionsByParentId.get(key);
+        if(children != null){
+            children.forEach(childIds);
+        }
+        return node.transaction.getAmount();
+    }
+
+    public long subtreeSumOf(long id){
+        Node node = transactionsById.get(id);
+        return node != null ? node.subtreeSum : ABSENT;
+    }
+
+    private static final class TypeIndex {
+        private final LongSegmentList ids = new LongSegmentList();
+        private final TypeAggregateCell aggregate = new TypeAggregateCell();
+        private final AmountIndex amounts = new AmountIndex();
+    }
+
+    /*
+        La suma del subárbol vive junto a la transacción, así el commit del
+        putIfAbsent publica las dos juntas y nunca se lee una suma parcial de
+        una transacción recién creada.
+     */
+    private static final class Node {
+
+        private static final VarHandle SUBTREE_SUM;
+
+        static {
+            try{
+                SUBTREE_SUM = MethodHandles.lookup().findVarHandle(Node.class, "subtreeSum", long.class);
+            }catch(ReflectiveOperationException e){
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final Transaction transaction;
+        private final long sequence;
+        private final Node parent;
+        private final Node root;
+        private final int depth;
+        private volatile long subtreeSum;
+
+        private Node(Transaction transaction, long sequence, Node parent){
+            this(transaction, sequence, parent, transaction.getAmount());
+        }
+
+        private Node(Transaction transaction, long sequence, Node parent, long subtreeSum){
+            this.transaction = transaction;
+            this.sequence = sequence;
+            this.parent = parent;
+            this.root = parent != null ? parent.root : this;
+            this.depth = parent != null ? parent.depth + 1 : 0;
+            this.subtreeSum = subtreeSum;
+        }
+
+        private void addToSubtreeSum(long amount){
+            long current;
+            do{
+                current = subtreeSum;
+            }while(!SUBTREE_SUM.compareAndSet(this, current, SubtreeSums.add(current, amount)));
+        }
     }
-}
\ No newline at end of file
+}
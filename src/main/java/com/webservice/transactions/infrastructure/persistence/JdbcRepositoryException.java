@@ -0,0 +1,16 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import java.sql.SQLException;
+
+/*
+    Un SQLException de JdbcTransactionRepository: el dominio no conoce JDBC,
+    así que sale como excepción no chequeada (y termina en un 500).
+ */
+public class JdbcRepositoryException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public JdbcRepositoryException(String message, SQLException cause) {
+        super(message, cause);
+    }
+}
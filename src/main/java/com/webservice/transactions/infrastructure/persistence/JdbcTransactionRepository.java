@@ -0,0 +1,612 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.domain.TypeAggregate;
+
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/*
+    Repositorio sobre una base de datos por JDBC: el estado deja de estar en
+    el heap y varias instancias pueden compartirlo. Por defecto es un H2
+    embebido en un archivo; los tests usan H2 en memoria.
+
+    Una sola tabla, con índices por (type, seq) para los ids de un tipo en
+    orden de inserción, por (parent_id, seq) para los hijos y los recorridos,
+    y por (type, amount, id) para los rangos de montos. seq es una identidad
+    que la base asigna al insertar y da el orden de inserción.
+
+    Hay sessionCount conexiones abiertas, cada una con sus PreparedStatement
+    ya preparados: una llamada toma una sesión libre (o espera), reusa los
+    statements y la devuelve. Las escrituras simples van en autocommit; la
+    clave primaria decide los ids duplicados, como el putIfAbsent de los
+    repositorios en memoria.
+
+    Las sumas de subárboles y la jerarquía no se materializan: son una
+    consulta recursiva (WITH RECURSIVE) que la base resuelve con el índice por
+    padre, en vez de un viaje por nodo. Un hijo sólo cuelga de su padre si se
+    insertó después (t.seq > padre.seq), igual que en memoria un padre que
+    todavía no existía no cuenta; eso además descarta ciclos.
+ */
+public class JdbcTransactionRepository implements TransactionRepository, Closeable {
+
+    private static final String DUPLICATE_KEY = "23505";
+    private static final int FETCH_SIZE = 1_000;
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS transactions ("
+                    + "id BIGINT PRIMARY KEY, "
+                    + "amount BIGINT NOT NULL, "
+                    + "type VARCHAR(255) NOT NULL, "
+                    + "parent_id BIGINT, "
+                    + "seq BIGINT GENERATED ALWAYS AS IDENTITY NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS transactions_type ON transactions (type, seq)",
+            "CREATE INDEX IF NOT EXISTS transactions_parent ON transactions (parent_id, seq)",
+            "CREATE INDEX IF NOT EXISTS transactions_type_amount ON transactions (type, amount, id)"
+    };
+
+    private static final String INSERT = "INSERT INTO transactions (id, amount, type, parent_id) VALUES (?, ?, ?, ?)";
+    // Inserta sólo si el padre existe, en la misma sentencia: 0 filas es un padre inexistente
+    private static final String INSERT_WITH_PARENT = "INSERT INTO transactions (id, amount, type, parent_id) "
+            + "SELECT ?, ?, ?, ? WHERE EXISTS (SELECT 1 FROM transactions WHERE id = ?)";
+    private static final String EXISTS = "SELECT 1 FROM transactions WHERE id = ?";
+    private static final String EXISTING_IDS = "SELECT id FROM transactions WHERE id = ANY(?)";
+    private static final String FIND_BY_ID = "SELECT id, amount, type, parent_id FROM transactions WHERE id = ?";
+    private static final String AMOUNT_OF = "SELECT amount FROM transactions WHERE id = ?";
+    private static final String IDS_BY_TYPE = "SELECT id FROM transactions WHERE type = ? ORDER BY seq";
+    private static final String IDS_BY_TYPE_PAGE = "SELECT id FROM transactions WHERE type = ? ORDER BY seq "
+            + "OFFSET ? ROWS FETCH NEXT ? ROWS ONLY";
+    private static final String COUNT_BY_TYPE = "SELECT COUNT(*) FROM transactions WHERE type = ?";
+    private static final String TYPES = "SELECT DISTINCT type FROM transactions";
+    private static final String TYPES_WITH_PREFIX = "SELECT DISTINCT type FROM transactions WHERE type LIKE ? ESCAPE '\\' ORDER BY type";
+    // Positivos y negativos por separado: ver fits
+    private static final String TYPE_AGGREGATE = "SELECT COUNT(*), MIN(amount), MAX(amount), "
+            + "SUM(CASE WHEN amount > 0 THEN amount ELSE 0 END), SUM(CASE WHEN amount < 0 THEN amount ELSE 0 END) "
+            + "FROM transactions WHERE type = ?";
+    private static final String BY_TYPE_AND_AMOUNT = "SELECT id, amount, type, parent_id FROM transactions "
+            + "WHERE type = ? AND amount BETWEEN ? AND ? ORDER BY amount, id FETCH FIRST ? ROWS ONLY";
+    private static final String CHILDREN = "SELECT c.id FROM transactions c JOIN transactions p ON p.id = c.parent_id AND p.seq < c.seq "
+            + "WHERE c.parent_id = ? ORDER BY c.seq";
+    private static final String ANCESTORS = "WITH RECURSIVE ancestors (id, parent_id, seq, depth) AS ("
+            + "SELECT id, parent_id, seq, 0 FROM transactions WHERE id = ? "
+            + "UNION ALL "
+            + "SELECT t.id, t.parent_id, t.seq, a.depth + 1 FROM transactions t JOIN ancestors a ON t.id = a.parent_id AND t.seq < a.seq) "
+            + "SELECT id FROM ancestors WHERE depth > 0 ORDER BY depth DESC";
+    private static final String SUBTREE_SUM = "WITH RECURSIVE subtree (id, seq, amount) AS ("
+            + "SELECT id, seq, amount FROM transactions WHERE id = ? "
+            + "UNION ALL "
+            + "SELECT t.id, t.seq, t.amount FROM transactions t JOIN subtree s ON t.parent_id = s.id AND t.seq > s.seq) "
+            + "SELECT COUNT(*), SUM(CASE WHEN amount > 0 THEN amount ELSE 0 END), SUM(CASE WHEN amount < 0 THEN amount ELSE 0 END) "
+            + "FROM subtree";
+    private static final String ALL = "SELECT id, amount, type, parent_id FROM transactions ORDER BY seq";
+
+    private static final BigDecimal MIN_LONG = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal MAX_LONG = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final BlockingQueue<Session> sessions;
+
+    public JdbcTransactionRepository(String url, String username, String password, int sessionCount){
+        if(sessionCount < 1){
+            throw new IllegalArgumentException("sessionCount must be at least 1");
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.sessions = new ArrayBlockingQueue<>(sessionCount);
+        try{
+            for(int i = 0; i < sessionCount; i++){
+                sessions.add(new Session(DriverManager.getConnection(url, username, password)));
+            }
+            try(Statement statement = sessions.peek().connection.createStatement()){
+                for(String sql : SCHEMA){
+                    statement.execute(sql);
+                }
+            }
+        }catch(SQLException e){
+            closeSessions();
+            throw new JdbcRepositoryException("Could not open " + url, e);
+        }
+    }
+
+    /*
+        save no informa nada: un id repetido se ignora, igual que en memoria.
+     */
+    public void save(Transaction transaction){
+        withSession(session -> {
+            try{
+                insert(session.prepare(INSERT), transaction);
+            }catch(SQLException e){
+                if(!DUPLICATE_KEY.equals(e.getSQLState())){
+                    throw e;
+                }
+            }
+            return null;
+        });
+    }
+
+    /*
+        Como nunca se borran transacciones, un padre que existe sigue
+        existiendo: alcanza con que la misma sentencia lo verifique. Sólo
+        cuando no insertó se averigua si fue por el padre o por el id, para
+        que un id repetido gane, como en memoria.
+     */
+    public InsertResult insertIfAbsent(Transaction transaction){
+        return withSession(session -> insertIfAbsent(session, transaction));
+    }
+
+    private InsertResult insertIfAbsent(Session session, Transaction transaction) throws SQLException {
+        try{
+            if(transaction.getParentId() == null){
+                insert(session.prepare(INSERT), transaction);
+                return InsertResult.INSERTED;
+            }
+            PreparedStatement statement = session.prepare(INSERT_WITH_PARENT);
+            bind(statement, transaction);
+            statement.setLong(5, transaction.getParentId());
+            if(statement.executeUpdate() == 1){
+                return InsertResult.INSERTED;
+            }
+            return exists(session, transaction.getId()) ? InsertResult.DUPLICATE_ID : InsertResult.PARENT_NOT_FOUND;
+        }catch(SQLException e){
+            if(DUPLICATE_KEY.equals(e.getSQLState())){
+                return InsertResult.DUPLICATE_ID;
+            }
+            throw e;
+        }
+    }
+
+    /*
+        Una consulta trae cuáles de los ids y padres del lote ya existen, el
+        resultado de cada ítem se decide en orden con eso (un hijo ve a su
+        padre del mismo lote) y los insertados van en un solo batch dentro de
+        una transacción. Si otro escritor insertó uno de esos ids en el medio,
+        el batch falla por la clave primaria, se deshace entero y el lote se
+        repite ítem por ítem con insertIfAbsent.
+     */
+    public List<InsertResult> saveAll(List<Transaction> transactions){
+        if(transactions.isEmpty()){
+            return List.of();
+        }
+        List<InsertResult> results = withSession(session -> batchInsert(session, transactions));
+        if(results != null){
+            return results;
+        }
+        return withSession(session -> {
+            List<InsertResult> oneByOne = new ArrayList<>(transactions.size());
+            for(Transaction transaction : transactions){
+                oneByOne.add(insertIfAbsent(session, transaction));
+            }
+            return oneByOne;
+        });
+    }
+
+    private List<InsertResult> batchInsert(Session session, List<Transaction> transactions) throws SQLException {
+        Set<Long> referenced = new LinkedHashSet<>();
+        for(Transaction transaction : transactions){
+            referenced.add(transaction.getId());
+            if(transaction.getParentId() != null){
+                referenced.add(transaction.getParentId());
+            }
+        }
+        Set<Long> present = existingIds(session, referenced);
+
+        List<InsertResult> results = new ArrayList<>(transactions.size());
+        PreparedStatement statement = session.prepare(INSERT);
+        int batched = 0;
+        for(Transaction transaction : transactions){
+            if(present.contains(transaction.getId())){
+                results.add(InsertResult.DUPLICATE_ID);
+            }else if(transaction.getParentId() != null && !present.contains(transaction.getParentId())){
+                results.add(InsertResult.PARENT_NOT_FOUND);
+            }else{
+                bind(statement, transaction);
+                statement.addBatch();
+                batched++;
+                present.add(transaction.getId());
+                results.add(InsertResult.INSERTED);
+            }
+        }
+        if(batched == 0){
+            return results;
+        }
+
+        Connection connection = session.connection;
+        connection.setAutoCommit(false);
+        try{
+            statement.executeBatch();
+            connection.commit();
+            return results;
+        }catch(SQLException e){
+            statement.clearBatch();
+            connection.rollback();
+            if(DUPLICATE_KEY.equals(e.getSQLState())){
+                return null;
+            }
+            throw e;
+        }finally{
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static Set<Long> existingIds(Session session, Set<Long> ids) throws SQLException {
+        PreparedStatement statement = session.prepare(EXISTING_IDS);
+        Array array = session.connection.createArrayOf("BIGINT", ids.toArray());
+        try{
+            statement.setArray(1, array);
+            Set<Long> existing = new HashSet<>();
+            try(ResultSet rows = statement.executeQuery()){
+                while(rows.next()){
+                    existing.add(rows.getLong(1));
+                }
+            }
+            return existing;
+        }finally{
+            array.free();
+        }
+    }
+
+    public Optional<Transaction> findById(Long id){
+        return withSession(session -> {
+            PreparedStatement statement = session.prepare(FIND_BY_ID);
+            statement.setLong(1, id);
+            try(ResultSet rows = statement.executeQuery()){
+                return rows.next() ? Optional.of(transaction(rows)) : Optional.empty();
+            }
+        });
+    }
+
+    public long amountOf(long id){
+        return withSession(session -> {
+            PreparedStatement statement = session.prepare(AMOUNT_OF);
+            statement.setLong(1, id);
+            try(ResultSet rows = statement.executeQuery()){
+                return rows.next() ? rows.getLong(1) : ABSENT;
+            }
+        });
+    }
+
+    public List<Long> findIdsByType(String type){
+        List<Long> ids = new ArrayList<>();
+        forEachIdByType(type, ids::add);
+        return ids;
+    }
+
+    /*
+        La posición se resuelve con OFFSET, que la base recorre por el índice
+        (type, seq): una página lejana cuesta O(from). El cursor es estable
+        porque seq sólo crece y no se borran filas.
+     */
+    public List<Long> findIdsByType(String type, int from, int limit){
+        return withSession(session -> {
+            PreparedStatement statement = session.prepare(IDS_BY_TYPE_PAGE);
+            statement.setString(1, type);
+            statement.setLong(2, from);
+            statement.setInt(3, limit);
+            return ids(statement);
+        });
+    }
+
+    public void forEachIdByType(String type, LongConsumer action){
+        withSession(session -> {
+            PreparedStatement statement = session.prepare(IDS_BY_TYPE);
+            statement.setString(1, type);
+            statement.setFetchSize(FETCH_SIZE);
+            try(ResultSet rows = statement.executeQuery()){
+                while(rows.next()){
+                    action.accept(rows.getLong(1));
+                }
+            }
+            return null;
+        });
+    }
+
+    public List<String> findTypes(){
+        return withSession(session -> strings(session.prepare(TYPES)));
+    }
+
+    public List<String> findTypes(String prefix){
+        return withSession(session -> {
+            PreparedStatement statement = session.prepare(TYPES_WITH_PREFIX);
+            statement.setString(1, likePrefix(prefix));
+            return strings(statement);
+        });
+    }
+
+    public int countIdsByType(String type){
+        return withSession(session -> {
+            PreparedStatement statement = session.prepare(COUNT_BY_TYPE);
+            statement.setString(1, type);
+            try(ResultSet rows = statement.executeQuery()){
+                rows.next();
+                return rows.getInt(1);
+            }
+        });
+    }
+
+    /*
+        Lo calcula la base en cada llamada recorriendo el índice del tipo (no
+        hay un agregado mantenido como en memoria).
+     */
+    public Optional<TypeAggregate> findTypeAggregate(String type){
+        return withSession(session -> {
+            PreparedStatement statement = session.prepare(TYPE_AGGREGATE);
+            statement.setString(1, type);
+            try(ResultSet rows = statement.executeQuery()){
+                rows.next();
+                long count = rows.getLong(1);
+                if(count == 0){
+                    return Optional.empty();
+                }
+                BigDecimal positive = rows.getBigDecimal(4);
+                BigDecimal negative = rows.getBigDecimal(5);
+                boolean overflowed = !fits(positive) || !fits(negative);
+                long sum = overflowed ? 0 : positive.add(negative).longValueExact();
+                return Optional.of(TypeAggregate.of(count, sum, overflowed, rows.getLong(2), rows.getLong(3)));
+            }
+        });
+    }
+
+    public List<Transaction> findByTypeAndAmount(String type, long minAmount, long maxAmount, int limit){
+        if(minAmount > maxAmount || limit <= 0){
+            return new ArrayList<>();
+        }
+        return withSession(session -> {
+            PreparedStatement statement = session.prepare(BY_TYPE_AND_AMOUNT);
+            statement.setString(1, type);
+            statement.setLong(2, minAmount);
+            statement.setLong(3, maxAmount);
+            statement.setInt(4, limit);
+            List<Transaction> found = new ArrayList<>();
+            try(ResultSet rows = statement.executeQuery()){
+                while(rows.next()){
+                    found.add(transaction(rows));
+                }
+            }
+            return found;
+        });
+    }
+
+    public List<Long> findChildrenIds(Long parentId){
+        return withSession(session -> {
+            PreparedStatement statement = session.prepare(CHILDREN);
+            statement.setLong(1, parentId);
+            return ids(statement);
+        });
+    }
+
+    public List<Long> findAncestorIds(Long id){
+        return withSession(session -> {
+            PreparedStatement statement = session.prepare(ANCESTORS);
+            statement.setLong(1, id);
+            return ids(statement);
+        });
+    }
+
+    public void forEachTransaction(Consumer<Transaction> action){
+        withSession(session -> {
+            PreparedStatement statement = session.prepare(ALL);
+            statement.setFetchSize(FETCH_SIZE);
+            try(ResultSet rows = statement.executeQuery()){
+                while(rows.next()){
+                    action.accept(transaction(rows));
+                }
+            }
+            return null;
+        });
+    }
+
+    public OptionalLong findSubtreeSum(Long id){
+        long sum = subtreeSumOf(id);
+        return sum != ABSENT ? OptionalLong.of(sum) : OptionalLong.empty();
+    }
+
+    /*
+        Una sola consulta recursiva por suma. ABSENT si la transacción no
+        existe o si la suma puede desbordar (ver fits): entonces el servicio
+        recorre el árbol y decide el desborde en su orden.
+     */
+    public long subtreeSumOf(long id){
+        return withSession(session -> {
+            PreparedStatement statement = session.prepare(SUBTREE_SUM);
+            statement.setLong(1, id);
+            try(ResultSet rows = statement.executeQuery()){
+                rows.next();
+                if(rows.getLong(1) == 0){
+                    return ABSENT;
+                }
+                BigDecimal positive = rows.getBigDecimal(2);
+                BigDecimal negative = rows.getBigDecimal(3);
+                return fits(positive) && fits(negative) ? positive.add(negative).longValueExact() : ABSENT;
+            }
+        });
+    }
+
+    /*
+        La base suma sin desbordar, pero en memoria la suma se acumula en orden
+        de inserción y queda desbordada si algún parcial no entró en un long.
+        Si la suma de los positivos y la de los negativos entran, ningún
+        parcial (en ningún orden) se sale; si no, hay un orden en que sí, y se
+        informa como desbordada.
+     */
+    private static boolean fits(BigDecimal sum){
+        return sum.compareTo(MIN_LONG) >= 0 && sum.compareTo(MAX_LONG) <= 0;
+    }
+
+    // Cada llamada espera a la base
+    public boolean blocking(){
+        return true;
+    }
+
+    public void close(){
+        closeSessions();
+    }
+
+    // Privado: el constructor también lo usa si falla, y no puede llamar a un método sobreescribible
+    private void closeSessions(){
+        Session session;
+        while((session = sessions.poll()) != null){
+            try{
+                session.connection.close();
+            }catch(SQLException e){
+                // Se cierran las demás igual
+            }
+        }
+    }
+
+    private static void insert(PreparedStatement statement, Transaction transaction) throws SQLException {
+        bind(statement, transaction);
+        statement.executeUpdate();
+    }
+
+    private static void bind(PreparedStatement statement, Transaction transaction) throws SQLException {
+        statement.setLong(1, transaction.getId());
+        statement.setLong(2, transaction.getAmount());
+        statement.setString(3, transaction.getType());
+        if(transaction.getParentId() != null){
+            statement.setLong(4, transaction.getParentId());
+        }else{
+            statement.setNull(4, Types.BIGINT);
+        }
+    }
+
+    private static boolean exists(Session session, long id) throws SQLException {
+        PreparedStatement statement = session.prepare(EXISTS);
+        statement.setLong(1, id);
+        try(ResultSet rows = statement.executeQuery()){
+            return rows.next();
+        }
+    }
+
+    private static Transaction transaction(ResultSet rows) throws SQLException {
+        long parentId = rows.getLong(4);
+        Long parent = rows.wasNull() ? null : parentId;
+        return new Transaction(rows.getLong(1), rows.getLong(2), rows.getString(3), parent);
+    }
+
+    private static List<Long> ids(PreparedStatement statement) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try(ResultSet rows = statement.executeQuery()){
+            while(rows.next()){
+                ids.add(rows.getLong(1));
+            }
+        }
+        return ids;
+    }
+
+    private static List<String> strings(PreparedStatement statement) throws SQLException {
+        List<String> strings = new ArrayList<>();
+        try(ResultSet rows = statement.executeQuery()){
+            while(rows.next()){
+                strings.add(rows.getString(1));
+            }
+        }
+        return strings;
+    }
+
+    private static String likePrefix(String prefix){
+        StringBuilder pattern = new StringBuilder(prefix.length() + 1);
+        for(int i = 0; i < prefix.length(); i++){
+            char c = prefix.charAt(i);
+            if(c == '\\' || c == '%' || c == '_'){
+                pattern.append('\\');
+            }
+            pattern.append(c);
+        }
+        return pattern.append('%').toString();
+    }
+
+    /*
+        Toma una sesión libre y la devuelve al terminar. Si la llamada falló y
+        la conexión ya no sirve, se reemplaza por una nueva.
+     */
+    private <T> T withSession(SessionCall<T> call){
+        Session session;
+        try{
+            session = sessions.take();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a connection", e);
+        }
+        boolean failed = true;
+        try{
+            T result = call.apply(session);
+            failed = false;
+            return result;
+        }catch(SQLException e){
+            throw new JdbcRepositoryException("Query failed on " + url, e);
+        }finally{
+            sessions.add(failed ? checked(session) : session);
+        }
+    }
+
+    private Session checked(Session session){
+        try{
+            if(session.connection.isValid(1)){
+                return session;
+            }
+            session.connection.close();
+        }catch(SQLException e){
+            // Se abre una nueva
+        }
+        try{
+            return new Session(DriverManager.getConnection(url, username, password));
+        }catch(SQLException e){
+            // Queda la rota: la próxima llamada que la use falla y vuelve a intentar
+            return session;
+        }
+    }
+
+    @FunctionalInterface
+    private interface SessionCall<T> {
+        T apply(Session session) throws SQLException;
+    }
+
+    /*
+        Una conexión con sus PreparedStatement: se preparan la primera vez que
+        se usan y después se reusan. Sólo la usa quien la tomó de sessions.
+     */
+    private static final class Session {
+
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private Session(Connection connection){
+            this.connection = connection;
+        }
+
+        private PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if(statement == null){
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+    }
+}
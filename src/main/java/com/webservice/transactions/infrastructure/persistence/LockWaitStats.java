@@ -0,0 +1,34 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+/*
+    Tiempo que los escritores esperan por los locks del repositorio. Sólo se
+    mide cuando el lock está tomado: el caso sin contención es un tryLock y no
+    llama a nanoTime.
+ */
+public final class LockWaitStats {
+
+    private final LongAdder contendedAcquisitions = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    void lock(Lock lock){
+        if(lock.tryLock()){
+            return;
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        waitNanos.add(System.nanoTime() - start);
+        contendedAcquisitions.increment();
+    }
+
+    public long contendedAcquisitions(){
+        return contendedAcquisitions.sum();
+    }
+
+    public double waitTime(TimeUnit unit){
+        return (double) waitNanos.sum() / unit.toNanos(1);
+    }
+}
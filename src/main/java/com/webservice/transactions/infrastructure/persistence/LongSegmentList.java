@@ -0,0 +1,103 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.LongConsumer;
+
+/*
+    Lista de longs sólo de agregado, partida en segmentos que duplican su tamaño
+    (4, 8, 16, ...). Agregar nunca copia los elementos existentes, sólo el
+    directorio de segmentos (a lo sumo ~30 referencias), así que es O(1) amortizado.
+
+    Admite un único escritor a la vez (el llamador sincroniza los add) y lectores
+    sin lock: size es el punto de publicación, y snapshot() devuelve una vista
+    inmutable de los elementos publicados hasta ese momento.
+ */
+public final class LongSegmentList {
+
+    private static final int FIRST_SEGMENT_SHIFT = 2;
+
+    private volatile long[][] segments = new long[0][];
+    private volatile int size;
+
+    public void add(long value) {
+        int index = size;
+        int segment = segmentOf(index);
+        long[][] current = segments;
+        if (segment == current.length) {
+            current = Arrays.copyOf(current, segment + 1);
+            current[segment] = new long[segmentCapacity(segment)];
+            segments = current;
+        }
+        current[segment][offsetOf(index, segment)] = value;
+        size = index + 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // index tiene que ser menor que un size() ya leído
+    public long get(int index) {
+        int segment = segmentOf(index);
+        return segments[segment][offsetOf(index, segment)];
+    }
+
+    public void forEach(LongConsumer action) {
+        int visible = size;
+        long[][] current = segments;
+        int remaining = visible;
+        for (int segment = 0; remaining > 0; segment++) {
+            long[] values = current[segment];
+            int count = Math.min(values.length, remaining);
+            for (int i = 0; i < count; i++) {
+                action.accept(values[i]);
+            }
+            remaining -= count;
+        }
+    }
+
+    public List<Long> snapshot() {
+        int visible = size;
+        return new Snapshot(segments, visible);
+    }
+
+    private static int segmentOf(int index) {
+        return 31 - Integer.numberOfLeadingZeros((index >>> FIRST_SEGMENT_SHIFT) + 1);
+    }
+
+    private static int offsetOf(int index, int segment) {
+        return index - (((1 << segment) - 1) << FIRST_SEGMENT_SHIFT);
+    }
+
+    private static int segmentCapacity(int segment) {
+        return 1 << (segment + FIRST_SEGMENT_SHIFT);
+    }
+
+    private static final class Snapshot extends AbstractList<Long> implements RandomAccess {
+
+        private final long[][] segments;
+        private final int size;
+
+        private Snapshot(long[][] segments, int size) {
+            this.segments = segments;
+            this.size = size;
+        }
+
+        @Override
+        public Long get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+            }
+            int segment = segmentOf(index);
+            return segments[segment][offsetOf(index, segment)];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
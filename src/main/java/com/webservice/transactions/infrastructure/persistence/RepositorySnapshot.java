@@ -0,0 +1,353 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32;
+
+/*
+    Foto binaria del repositorio, asociada a una posición del WriteAheadLog:
+    al arrancar se carga el snapshot y después sólo el log desde esa posición.
+
+    Formato: un header fijo [MAGIC][VERSION][amountScale][logPosition][rows][typesOffset][crc32],
+    las filas de ancho fijo [id][amount][typeCode][flags][parentId], la suma
+    del subárbol de cada fila en el mismo orden y al final el diccionario de
+    tipos [cantidad]([largo][UTF-8])*. El crc cubre filas, sumas, tipos y los
+    campos del header, así un snapshot cortado o mezclado se rechaza entero
+    antes de aplicar nada.
+
+    Las sumas no se leen del repositorio, que sigue recibiendo escrituras
+    mientras se recorre: se calculan con las filas escritas (cada padre está
+    antes que sus hijos), así incluyen exactamente lo que el snapshot tiene y
+    lo que se reproduce del log después se suma una sola vez. Al cargar, el
+    repositorio las toma tal cual, sin recorrer los ancestros de cada fila.
+
+    Se escribe a un archivo temporal que reemplaza al anterior con un move
+    atómico, y se lee con memory-mapping: las filas se decodifican directo de
+    las páginas mapeadas, sin copiarlas a buffers intermedios.
+ */
+public final class RepositorySnapshot {
+
+    private static final int MAGIC = 0x5458534E;
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8 + 8 + 8 + 4;
+    // Lo que cubre el crc del header: de amountScale a typesOffset
+    private static final int HEADER_CRC_OFFSET = 8;
+    private static final int HEADER_CRC_BYTES = 4 + 8 + 8 + 8;
+    private static final int ROW_BYTES = 8 + 8 + 4 + 1 + 8;
+    private static final int SUM_BYTES = 8;
+    private static final int HAS_PARENT = 1;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+    // Ventanas de mapeo de un número entero de filas, cada una < 2 GB
+    private static final long MAP_WINDOW_BYTES = (Integer.MAX_VALUE / ROW_BYTES) * (long) ROW_BYTES;
+    private static final long SUM_WINDOW_BYTES = (Integer.MAX_VALUE / SUM_BYTES) * (long) SUM_BYTES;
+
+    private RepositorySnapshot(){
+    }
+
+    /*
+        Escribe todas las transacciones del repositorio. logPosition tiene que
+        haberse leído antes de empezar a recorrer: todo lo que el log tiene
+        hasta ahí ya está en memoria, y lo que se cuele después se vuelve a
+        reproducir desde el log (los ids repetidos se ignoran).
+     */
+    public static long write(Path path, TransactionRepository repository, int amountScale, long logPosition) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if(parent != null){
+            Files.createDirectories(parent);
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+            RowWriter rows = new RowWriter(channel);
+            try{
+                repository.forEachTransaction(rows::write);
+            }catch(UncheckedIOException e){
+                throw e.getCause();
+            }
+            rows.finishRows();
+            long typesOffset = rows.writeSubtreeSums();
+            rows.writeTypes();
+
+            CRC32 crc = rows.crc;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(amountScale).putLong(logPosition).putLong(rows.count).putLong(typesOffset);
+            crc.update(header.array(), HEADER_CRC_OFFSET, HEADER_CRC_BYTES);
+            header.putInt((int) crc.getValue()).flip();
+            rows.writeAt(header, 0);
+            channel.force(true);
+
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // El rename es durable recién cuando lo es el directorio
+            WriteAheadLog.forceDirectory(path.toAbsolutePath().getParent());
+            return rows.count;
+        }catch(IOException | RuntimeException e){
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    /*
+        Valida el snapshot completo y recién entonces pasa cada transacción, con
+        la suma de su subárbol, a load, en el orden en que se escribieron.
+        Retorna la posición del log desde la que hay que seguir reproduciendo.
+     */
+    public static long load(Path path, int amountScale, ObjLongConsumer<Transaction> load) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            long fileSize = channel.size();
+            if(fileSize < HEADER_BYTES){
+                throw new IOException(path + " is not a transaction snapshot");
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            if(header.getInt(0) != MAGIC){
+                throw new IOException(path + " is not a transaction snapshot");
+            }
+            int version = header.getInt(4);
+            if(version != VERSION){
+                throw new IOException(path + " has unsupported snapshot version " + version);
+            }
+            int scale = header.getInt(8);
+            long logPosition = header.getLong(12);
+            long rowCount = header.getLong(20);
+            long typesOffset = header.getLong(28);
+            int checksum = header.getInt(36);
+            if(rowCount < 0 || typesOffset != HEADER_BYTES + rowCount * (ROW_BYTES + SUM_BYTES) || typesOffset > fileSize){
+                throw new IOException(path + " is truncated");
+            }
+
+            CRC32 crc = new CRC32();
+            long sumsOffset = HEADER_BYTES + rowCount * ROW_BYTES;
+            List<MappedByteBuffer> windows = map(channel, HEADER_BYTES, sumsOffset, MAP_WINDOW_BYTES, crc);
+            List<MappedByteBuffer> sumWindows = map(channel, sumsOffset, typesOffset, SUM_WINDOW_BYTES, crc);
+            MappedByteBuffer types = channel.map(FileChannel.MapMode.READ_ONLY, typesOffset, fileSize - typesOffset);
+            crc.update(types.duplicate());
+            crc.update(header.array(), HEADER_CRC_OFFSET, HEADER_CRC_BYTES);
+            if((int) crc.getValue() != checksum){
+                throw new IOException(path + " failed its checksum");
+            }
+            if(scale != amountScale){
+                throw new IOException(path + " stores amounts with scale " + scale + " but the configured scale is " + amountScale);
+            }
+
+            String[] typeNames = readTypes(types);
+            int sumWindow = 0;
+            for(MappedByteBuffer window : windows){
+                while(window.hasRemaining()){
+                    long id = window.getLong();
+                    long amount = window.getLong();
+                    String type = typeNames[window.getInt()];
+                    byte flags = window.get();
+                    long parentId = window.getLong();
+                    if(!sumWindows.get(sumWindow).hasRemaining()){
+                        sumWindow++;
+                    }
+                    long subtreeSum = sumWindows.get(sumWindow).getLong();
+                    load.accept(new Transaction(id, amount, type, (flags & HAS_PARENT) != 0 ? parentId : null), subtreeSum);
+                }
+            }
+            return logPosition;
+        }
+    }
+
+    // Ventanas de a lo sumo windowBytes entre from y to, sumadas al crc en orden
+    private static List<MappedByteBuffer> map(FileChannel channel, long from, long to, long windowBytes, CRC32 crc) throws IOException {
+        List<MappedByteBuffer> windows = new ArrayList<>();
+        for(long offset = from; offset < to; offset += windowBytes){
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(windowBytes, to - offset));
+            crc.update(window.duplicate());
+            windows.add(window);
+        }
+        return windows;
+    }
+
+    private static String[] readTypes(ByteBuffer types){
+        String[] names = new String[types.getInt()];
+        for(int i = 0; i < names.length; i++){
+            byte[] name = new byte[types.getShort() & 0xFFFF];
+            types.get(name);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+        }
+        return names;
+    }
+
+    private static final class RowWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+        private final Map<String, Integer> typeCodes = new HashMap<>();
+        private final List<String> typeNames = new ArrayList<>();
+        private final CRC32 crc = new CRC32();
+        // Para calcular las sumas: la fila de cada id, la del padre de cada fila y la suma de cada una
+        private final RowIndex rowsById = new RowIndex();
+        private int[] parentRows = new int[1024];
+        private long[] subtreeSums = new long[1024];
+        private long position = HEADER_BYTES;
+        private int count;
+
+        private RowWriter(FileChannel channel){
+            this.channel = channel;
+        }
+
+        private void write(Transaction transaction){
+            if(buffer.remaining() < ROW_BYTES){
+                flushUnchecked();
+            }
+            Integer typeCode = typeCodes.get(transaction.getType());
+            if(typeCode == null){
+                typeCode = typeNames.size();
+                typeCodes.put(transaction.getType(), typeCode);
+                typeNames.add(transaction.getType());
+            }
+            boolean hasParent = transaction.getParentId() != null;
+            buffer.putLong(transaction.getId());
+            buffer.putLong(transaction.getAmount());
+            buffer.putInt(typeCode);
+            buffer.put((byte) (hasParent ? HAS_PARENT : 0));
+            buffer.putLong(hasParent ? transaction.getParentId() : 0L);
+
+            if(count == parentRows.length){
+                parentRows = Arrays.copyOf(parentRows, count * 2);
+                subtreeSums = Arrays.copyOf(subtreeSums, count * 2);
+            }
+            // Un padre que no está antes en el snapshot tampoco lo estará al cargarlo: el hijo queda como raíz
+            parentRows[count] = hasParent ? rowsById.get(transaction.getParentId()) : -1;
+            subtreeSums[count] = transaction.getAmount();
+            rowsById.put(transaction.getId(), count);
+            count++;
+        }
+
+        private void finishRows() throws IOException {
+            flush();
+        }
+
+        // De la última fila a la primera: cada fila ya tiene la suma de sus hijos cuando se la pasa a su padre
+        private long writeSubtreeSums() throws IOException {
+            for(int row = count - 1; row >= 0; row--){
+                int parentRow = parentRows[row];
+                if(parentRow >= 0){
+                    subtreeSums[parentRow] = SubtreeSums.addSubtree(subtreeSums[parentRow], subtreeSums[row]);
+                }
+            }
+            for(int row = 0; row < count; row++){
+                if(buffer.remaining() < SUM_BYTES){
+                    flush();
+                }
+                buffer.putLong(subtreeSums[row]);
+            }
+            flush();
+            return position;
+        }
+
+        private void writeTypes() throws IOException {
+            buffer.putInt(typeNames.size());
+            for(String type : typeNames){
+                byte[] name = type.getBytes(StandardCharsets.UTF_8);
+                if(buffer.remaining() < Short.BYTES + name.length){
+                    flush();
+                }
+                buffer.putShort((short) name.length);
+                buffer.put(name);
+            }
+            flush();
+        }
+
+        private void flushUnchecked(){
+            try{
+                flush();
+            }catch(IOException e){
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            position += writeAt(buffer, position);
+            buffer.clear();
+        }
+
+        private int writeAt(ByteBuffer source, long at) throws IOException {
+            int written = 0;
+            while(source.hasRemaining()){
+                written += channel.write(source, at + written);
+            }
+            return written;
+        }
+    }
+
+    /*
+        Open addressing id -> fila + 1 (0 = libre) sobre arrays primitivos: un
+        HashMap<Long, Integer> costaría un objeto por fila durante todo el snapshot.
+     */
+    private static final class RowIndex {
+
+        private long[] keys = new long[1024];
+        private int[] rows = new int[1024];
+        private int size;
+
+        private int get(long id){
+            int mask = keys.length - 1;
+            for(int i = hash(id) & mask; rows[i] != 0; i = (i + 1) & mask){
+                if(keys[i] == id){
+                    return rows[i] - 1;
+                }
+            }
+            return -1;
+        }
+
+        private void put(long id, int row){
+            if(size * 2 >= keys.length){
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = hash(id) & mask;
+            while(rows[i] != 0){
+                i = (i + 1) & mask;
+            }
+            keys[i] = id;
+            rows[i] = row + 1;
+            size++;
+        }
+
+        private void resize(){
+            long[] oldKeys = keys;
+            int[] oldRows = rows;
+            keys = new long[oldKeys.length * 2];
+            rows = new int[oldRows.length * 2];
+            int mask = keys.length - 1;
+            for(int j = 0; j < oldKeys.length; j++){
+                if(oldRows[j] != 0){
+                    int i = hash(oldKeys[j]) & mask;
+                    while(rows[i] != 0){
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    rows[i] = oldRows[j];
+                }
+            }
+        }
+
+        private static int hash(long id){
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.domain.TypeAggregate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+public class ShardedTransactionRepository implements TransactionRepository {
+
+    private static final int LOCK_STRIPES = 64;
+    private static final int ID_STRIPES = 1024;
+    private static final int MAX_SHARDS = 256;
+
+    /*
+        Reparte las transacciones en N repositorios independientes según la
+        raíz de su árbol: una raíz va al shard que indica el hash de su id y
+        cada hijo va al shard de su padre. Así un árbol entero, su suma y su
+        jerarquía viven en un solo shard, y escritores de árboles distintos no
+        comparten mapas ni (con columnar) el lock de escritura.
+
+        No se guarda nada por id: el shard de una raíz sale del hash, y un id
+        cualquiera se busca preguntándole a los shards, empezando por el de su
+        hash (el de una raíz lo encuentra a la primera). El punto de commit entre
+        shards es un lock por stripe de ids: quien escribe un id toma el de ese
+        id y el de su padre, y recién ahí mira si el id ya está en algún shard.
+        Como el padre se escribe con su propio stripe tomado hasta terminar, un
+        hijo nunca ve a medias a un padre que está entrando.
+
+        El índice por tipo también va por shard (mismo esquema que el repositorio
+        de mapas: un TypeDictionary con LongSegmentLists y locks por stripe), y
+        cada id guarda dos números más:
+        - su posición en el tipo, de un contador por tipo compartido por los
+          shards. Leer es intercalar los shards por posición, y se corta en el
+          primer hueco (una posición tomada que todavía no se agregó), así que
+          lo que ya se vio nunca cambia de lugar y una posición sigue siendo un
+          cursor estable.
+        - una secuencia global, para recorrer todo en el orden en que se
+          escribió: cada padre antes que sus hijos, y al recargar un snapshot
+          cada tipo queda en el mismo orden que antes.
+        Son 24 bytes por id, todos primitivos. Los agregados y los rangos de
+        montos se arman a partir de los shards.
+     */
+    private final TransactionRepository[] shards;
+    private final TypeDictionary<TypeIds>[] typesByShard;
+    private final ReentrantLock[][] stripesByShard;
+    // El próximo número de posición de cada tipo
+    private final TypeDictionary<AtomicLong> positions = new TypeDictionary<>(AtomicLong::new);
+    private final AtomicLong sequence = new AtomicLong();
+    private final ReentrantLock[] idStripes = new ReentrantLock[ID_STRIPES];
+    private final LockWaitStats lockWaits;
+
+    public ShardedTransactionRepository(int shardCount, Supplier<TransactionRepository> shardFactory){
+        this(shardCount, shardFactory, new LockWaitStats());
+    }
+
+    @SuppressWarnings("unchecked")
+    public ShardedTransactionRepository(int shardCount, Supplier<TransactionRepository> shardFactory, LockWaitStats lockWaits){
+        if(shardCount < 1 || shardCount > MAX_SHARDS){
+            throw new IllegalArgumentException("Shard count must be between 1 and " + MAX_SHARDS);
+        }
+        this.shards = new TransactionRepository[shardCount];
+        this.typesByShard = new TypeDictionary[shardCount];
+        this.stripesByShard = new ReentrantLock[shardCount][LOCK_STRIPES];
+        for(int i = 0; i < shardCount; i++){
+            shards[i] = shardFactory.get();
+            typesByShard[i] = new TypeDictionary<>(TypeIds::new);
+            for(int j = 0; j < LOCK_STRIPES; j++){
+                stripesByShard[i][j] = new ReentrantLock();
+            }
+        }
+        for(int i = 0; i < idStripes.length; i++){
+            idStripes[i] = new ReentrantLock();
+        }
+        this.lockWaits = lockWaits;
+    }
+
+    // Los ids de un tipo en un shard, con su posición en el tipo y su secuencia global
+    private static final class TypeIds {
+        final LongSegmentList ids = new LongSegmentList();
+        final LongSegmentList positions = new LongSegmentList();
+        final LongSegmentList sequences = new LongSegmentList();
+    }
+
+    // save no valida el padre: sin él, la transacción va al shard de su hash
+    public void save(Transaction transaction){
+        write(transaction, false, shard -> {
+            shard.save(transaction);
+            return InsertResult.INSERTED;
+        });
+    }
+
+    // Un subárbol nunca cruza shards: la suma del snapshot es la del shard
+    public void load(Transaction transaction, long subtreeSum){
+        write(transaction, false, shard -> {
+            shard.load(transaction, subtreeSum);
+            return InsertResult.INSERTED;
+        });
+    }
+
+    public InsertResult insertIfAbsent(Transaction transaction){
+        return write(transaction, true, shard -> shard.insertIfAbsent(transaction));
+    }
+
+    private InsertResult write(Transaction transaction, boolean requireParent, Function<TransactionRepository, InsertResult> insert){
+        long id = transaction.getId();
+        Long parentId = transaction.getParentId();
+        int idStripe = idStripeOf(id);
+        int parentStripe = parentId != null ? idStripeOf(parentId) : idStripe;
+        ReentrantLock first = idStripes[Math.min(idStripe, parentStripe)];
+        ReentrantLock second = idStripes[Math.max(idStripe, parentStripe)];
+        lockWaits.lock(first);
+        if(second != first){
+            lockWaits.lock(second);
+        }
+        try{
+            if(shardOf(id) >= 0){
+                return InsertResult.DUPLICATE_ID;
+            }
+            int shard = parentId != null ? shardOf(parentId) : -1;
+            if(shard < 0){
+                if(requireParent && parentId != null){
+                    return InsertResult.PARENT_NOT_FOUND;
+                }
+                shard = rootShard(id);
+            }
+            InsertResult result = insert.apply(shards[shard]);
+            if(result == InsertResult.INSERTED){
+                append(shard, transaction.getType(), id);
+            }
+            return result;
+        }finally{
+            if(second != first){
+                second.unlock();
+            }
+            first.unlock();
+        }
+    }
+
+    /*
+        Se toman de una vez, en orden, los stripes de todos los ids del lote y
+        de sus padres. Un hijo encuentra el shard de un padre que viene antes en
+        el mismo lote en pending. Después cada shard recibe su parte en un solo
+        saveAll: un árbol nunca cruza shards, así que cada padre sigue llegando
+        antes que sus hijos. Un lote grande toma todos los stripes, igual que
+        con columnar toma el lock de escritura.
+     */
+    public List<InsertResult> saveAll(List<Transaction> transactions){
+        boolean[] needed = new boolean[ID_STRIPES];
+        for(Transaction transaction : transactions){
+            needed[idStripeOf(transaction.getId())] = true;
+            if(transaction.getParentId() != null){
+                needed[idStripeOf(transaction.getParentId())] = true;
+            }
+        }
+        for(int i = 0; i < ID_STRIPES; i++){
+            if(needed[i]){
+                lockWaits.lock(idStripes[i]);
+            }
+        }
+        try{
+            return saveAllLocked(transactions);
+        }finally{
+            for(int i = ID_STRIPES - 1; i >= 0; i--){
+                if(needed[i]){
+                    idStripes[i].unlock();
+                }
+            }
+        }
+    }
+
+    private List<InsertResult> saveAllLocked(List<Transaction> transactions){
+        InsertResult[] results = new InsertResult[transactions.size()];
+        int[] shardByPosition = new int[transactions.size()];
+        Map<Long, Integer> pending = new HashMap<>();
+        List<List<Integer>> positionsByShard = new ArrayList<>(shards.length);
+        for(int i = 0; i < shards.length; i++){
+            positionsByShard.add(new ArrayList<>());
+        }
+
+        for(int i = 0; i < transactions.size(); i++){
+            Transaction transaction = transactions.get(i);
+            if(pending.containsKey(transaction.getId()) || shardOf(transaction.getId()) >= 0){
+                results[i] = InsertResult.DUPLICATE_ID;
+                continue;
+            }
+            Long parentId = transaction.getParentId();
+            int shard;
+            if(parentId != null){
+                Integer pendingShard = pending.get(parentId);
+                shard = pendingShard != null ? pendingShard : shardOf(parentId);
+                if(shard < 0){
+                    results[i] = InsertResult.PARENT_NOT_FOUND;
+                    continue;
+                }
+            }else{
+                shard = rootShard(transaction.getId());
+            }
+            pending.put(transaction.getId(), shard);
+            shardByPosition[i] = shard;
+            positionsByShard.get(shard).add(i);
+        }
+
+        for(int shard = 0; shard < shards.length; shard++){
+            List<Integer> positions = positionsByShard.get(shard);
+            if(positions.isEmpty()){
+                continue;
+            }
+            List<Transaction> batch = new ArrayList<>(positions.size());
+            for(int position : positions){
+                batch.add(transactions.get(position));
+            }
+            List<InsertResult> shardResults = shards[shard].saveAll(batch);
+            for(int i = 0; i < positions.size(); i++){
+                results[positions.get(i)] = shardResults.get(i);
+            }
+        }
+
+        // Al índice por tipo en el orden del lote, no en el de los shards
+        for(int i = 0; i < results.length; i++){
+            if(results[i] == InsertResult.INSERTED){
+                Transaction transaction = transactions.get(i);
+                append(shardByPosition[i], transaction.getType(), transaction.getId());
+            }
+        }
+        return List.of(results);
+    }
+
+    /*
+        La posición y la secuencia se toman con el stripe del tipo en el shard,
+        así en cada lista quedan crecientes. positions y sequences se agregan
+        después de ids: quien lee el size de una ve lo anterior de las demás.
+     */
+    private void append(int shard, String type, long id){
+        TypeDictionary<TypeIds> types = typesByShard[shard];
+        int code = types.add(type);
+        TypeIds entry = types.entry(code);
+        AtomicLong nextPosition = positions.entry(positions.add(type));
+        ReentrantLock stripe = stripesByShard[shard][code & (LOCK_STRIPES - 1)];
+        lockWaits.lock(stripe);
+        try{
+            entry.ids.add(id);
+            entry.positions.add(nextPosition.getAndIncrement());
+            entry.sequences.add(sequence.getAndIncrement());
+        }finally{
+            stripe.unlock();
+        }
+    }
+
+    private static int mix(long id){
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int idStripeOf(long id){
+        return mix(id) & (ID_STRIPES - 1);
+    }
+
+    private int rootShard(long id){
+        return Math.floorMod(mix(id), shards.length);
+    }
+
+    // -1 si el id no existe
+    private int shardOf(long id){
+        int start = rootShard(id);
+        for(int i = 0; i < shards.length; i++){
+            int shard = (start + i) % shards.length;
+            if(shards[shard].amountOf(id) != ABSENT){
+                return shard;
+            }
+        }
+        return -1;
+    }
+
+    // null si el id no existe
+    private TransactionRepository repositoryOf(Long id){
+        int shard = shardOf(id);
+        return shard >= 0 ? shards[shard] : null;
+    }
+
+    public Optional<Transaction> findById(Long id){
+        TransactionRepository shard = repositoryOf(id);
+        return shard != null ? shard.findById(id) : Optional.empty();
+    }
+
+    public List<Long> findIdsByType(String type){
+        List<Long> ids = new ArrayList<>();
+        forEachIdByType(type, 0, Integer.MAX_VALUE, ids::add);
+        return ids;
+    }
+
+    public List<Long> findIdsByType(String type, int from, int limit){
+        List<Long> ids = new ArrayList<>(Math.min(limit, 1024));
+        forEachIdByType(type, from, limit, ids::add);
+        return ids;
+    }
+
+    public void forEachIdByType(String type, LongConsumer action){
+        forEachIdByType(type, 0, Integer.MAX_VALUE, action);
+    }
+
+    /*
+        Intercala los shards por posición a partir de from: en cada paso la
+        siguiente posición está en la cabeza de exactamente un shard, o todavía
+        no se agregó y ahí se corta.
+     */
+    private void forEachIdByType(String type, long from, int limit, LongConsumer action){
+        TypeIds[] entries = new TypeIds[shards.length];
+        int[] sizes = new int[shards.length];
+        int[] cursors = new int[shards.length];
+        for(int shard = 0; shard < shards.length; shard++){
+            TypeIds entry = typesByShard[shard].get(type);
+            if(entry != null){
+                entries[shard] = entry;
+                sizes[shard] = entry.positions.size();
+                cursors[shard] = firstAtOrAfter(entry.positions, sizes[shard], from);
+            }
+        }
+        long next = from;
+        for(int found = 0; found < limit; found++){
+            int shard = 0;
+            while(shard < shards.length
+                    && (cursors[shard] == sizes[shard] || entries[shard].positions.get(cursors[shard]) != next)){
+                shard++;
+            }
+            if(shard == shards.length){
+                return;
+            }
+            action.accept(entries[shard].ids.get(cursors[shard]++));
+            next++;
+        }
+    }
+
+    // El primer índice con una posición >= from, en una lista creciente
+    private static int firstAtOrAfter(LongSegmentList positions, int size, long from){
+        int low = 0;
+        int high = size;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(positions.get(middle) < from){
+                low = middle + 1;
+            }else{
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public List<String> findTypes(){
+        return positions.names();
+    }
+
+    public List<String> findTypes(String prefix){
+        return positions.namesWithPrefix(prefix);
+    }
+
+    public int countIdsByType(String type){
+        int count = 0;
+        for(TypeDictionary<TypeIds> types : typesByShard){
+            TypeIds entry = types.get(type);
+            if(entry != null){
+                count += entry.positions.size();
+            }
+        }
+        return count;
+    }
+
+    public Optional<TypeAggregate> findTypeAggregate(String type){
+        TypeAggregate aggregate = null;
+        for(TransactionRepository shard : shards){
+            Optional<TypeAggregate> shardAggregate = shard.findTypeAggregate(type);
+            if(shardAggregate.isPresent()){
+                aggregate = aggregate != null ? aggregate.combine(shardAggregate.get()) : shardAggregate.get();
+            }
+        }
+        return Optional.ofNullable(aggregate);
+    }
+
+    /*
+        Los primeros limit de cada shard, intercalados: ningún shard puede
+        aportar más de limit al resultado.
+     */
+    public List<Transaction> findByTypeAndAmount(String type, long minAmount, long maxAmount, int limit){
+        List<Transaction> found = new ArrayList<>();
+        for(TransactionRepository shard : shards){
+            found.addAll(shard.findByTypeAndAmount(type, minAmount, maxAmount, limit));
+        }
+        found.sort(BY_AMOUNT_AND_ID);
+        return found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+    }
+
+    public List<Long> findChildrenIds(Long parentId){
+        TransactionRepository shard = repositoryOf(parentId);
+        return shard != null ? shard.findChildrenIds(parentId) : Collections.emptyList();
+    }
+
+    public List<Long> findAncestorIds(Long id){
+        TransactionRepository shard = repositoryOf(id);
+        return shard != null ? shard.findAncestorIds(id) : Collections.emptyList();
+    }
+
+    public OptionalLong findRootId(Long id){
+        TransactionRepository shard = repositoryOf(id);
+        return shard != null ? shard.findRootId(id) : OptionalLong.empty();
+    }
+
+    public OptionalInt findDepth(Long id){
+        TransactionRepository shard = repositoryOf(id);
+        return shard != null ? shard.findDepth(id) : OptionalInt.empty();
+    }
+
+    public List<Long> findDescendantIdsAtDepth(Long id, int depth){
+        TransactionRepository shard = repositoryOf(id);
+        return shard != null ? shard.findDescendantIdsAtDepth(id, depth) : Collections.emptyList();
+    }
+
+    /*
+        Todas las listas de todos los shards intercaladas por secuencia. Un
+        padre terminó de agregarse antes de que su hijo pudiera escribirse, así
+        que lo que se recorre está cerrado por padres aunque haya escrituras
+        en curso.
+     */
+    public void forEachTransaction(Consumer<Transaction> action){
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator.comparingLong(Cursor::sequence));
+        for(int shard = 0; shard < shards.length; shard++){
+            TypeDictionary<TypeIds> types = typesByShard[shard];
+            for(int code = 0; code < types.size(); code++){
+                Cursor cursor = new Cursor(shards[shard], types.entry(code));
+                if(cursor.index < cursor.size){
+                    cursors.add(cursor);
+                }
+            }
+        }
+        while(!cursors.isEmpty()){
+            Cursor cursor = cursors.poll();
+            cursor.shard.findById(cursor.entry.ids.get(cursor.index)).ifPresent(action);
+            cursor.index++;
+            if(cursor.index < cursor.size){
+                cursors.add(cursor);
+            }
+        }
+    }
+
+    private static final class Cursor {
+        final TransactionRepository shard;
+        final TypeIds entry;
+        final int size;
+        int index;
+
+        Cursor(TransactionRepository shard, TypeIds entry){
+            this.shard = shard;
+            this.entry = entry;
+            this.size = entry.sequences.size();
+        }
+
+        long sequence(){
+            return entry.sequences.get(index);
+        }
+    }
+
+    public OptionalLong findSubtreeSum(Long id){
+        TransactionRepository shard = repositoryOf(id);
+        return shard != null ? shard.findSubtreeSum(id) : OptionalLong.empty();
+    }
+
+    // Un shard que no tiene el id responde ABSENT: se sigue con el próximo
+    public long amountOf(long id){
+        int start = rootShard(id);
+        for(int i = 0; i < shards.length; i++){
+            long amount = shards[(start + i) % shards.length].amountOf(id);
+            if(amount != ABSENT){
+                return amount;
+            }
+        }
+        return ABSENT;
+    }
+
+    public long visit(long id, LongConsumer childIds){
+        int start = rootShard(id);
+        for(int i = 0; i < shards.length; i++){
+            long amount = shards[(start + i) % shards.length].visit(id, childIds);
+            if(amount != ABSENT){
+                return amount;
+            }
+        }
+        return ABSENT;
+    }
+
+    public long subtreeSumOf(long id){
+        TransactionRepository shard = repositoryOf(id);
+        return shard != null ? shard.subtreeSumOf(id) : ABSENT;
+    }
+
+    // Todos los shards son del mismo tipo
+    public boolean blocking(){
+        return shards[0].blocking();
+    }
+}
@@ -0,0 +1,35 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.TransactionRepository;
+
+/*
+    Sumas de subárbol materializadas, en unidades mínimas. Si una suma se
+    desborda queda marcada como OVERFLOWED para siempre (aunque después bajen
+    los montos) y el repositorio deja de informarla: el servicio la recorre y
+    ahí el desborde se reporta. Es el mismo valor que
+    TransactionRepository.ABSENT, así subtreeSumOf lo devuelve tal cual.
+ */
+final class SubtreeSums {
+
+    static final long OVERFLOWED = TransactionRepository.ABSENT;
+
+    private SubtreeSums(){
+    }
+
+    static long add(long sum, long amount){
+        if(sum == OVERFLOWED){
+            return OVERFLOWED;
+        }
+        long result = sum + amount;
+        if(AmountScale.sumOverflows(sum, amount, result)){
+            return OVERFLOWED;
+        }
+        return result;
+    }
+
+    // Suma de un subárbol hijo: si el hijo se desbordó, el padre también queda marcado
+    static long addSubtree(long sum, long childSum){
+        return childSum == OVERFLOWED ? OVERFLOWED : add(sum, childSum);
+    }
+}
@@ -0,0 +1,94 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.infrastructure.metrics.MeteredTransactionRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+public class TransactionRepositoryConfiguration {
+
+    /*
+        "map" guarda objetos Transaction en mapas concurrentes, "columnar" guarda
+        columnas primitivas (mucho menos memoria por transacción con millones de filas),
+        "jdbc" guarda todo en una base de datos (transactions.jdbc.url) fuera del heap.
+        Con transactions.repository.shards > 1 se crean varios, repartidos por raíz.
+        Con transactions.wal.enabled "map" y "columnar" se vuelven durables, con
+        snapshots periódicos para no reproducir el log entero al arrancar.
+        Por fuera queda el decorador de métricas, que así mide también el log.
+     */
+    @Bean
+    public TransactionRepository transactionRepository(@Value("${transactions.repository.type:map}") String type,
+                                                       @Value("${transactions.repository.shards:1}") int shards,
+                                                       @Value("${transactions.wal.enabled:false}") boolean walEnabled,
+                                                       @Value("${transactions.wal.path:data/transactions.wal}") Path walPath,
+                                                       @Value("${transactions.wal.sync:group}") String walSync,
+                                                       @Value("${transactions.wal.group-delay-micros:0}") long groupDelayMicros,
+                                                       @Value("${transactions.snapshot.path:data/transactions.snapshot}") Path snapshotPath,
+                                                       @Value("${transactions.snapshot.interval:PT10M}") Duration snapshotInterval,
+                                                       @Value("${transactions.metrics.max-type-gauges:100}") int maxTypeGauges,
+                                                       @Value("${transactions.jdbc.url:jdbc:h2:file:./data/transactions}") String jdbcUrl,
+                                                       @Value("${transactions.jdbc.username:sa}") String jdbcUsername,
+                                                       @Value("${transactions.jdbc.password:}") String jdbcPassword,
+                                                       @Value("${transactions.jdbc.connections:8}") int jdbcConnections,
+                                                       AmountScale amountScale,
+                                                       LockWaitStats lockWaits,
+                                                       MeterRegistry meterRegistry) throws IOException {
+        Supplier<TransactionRepository> factory = switch (type) {
+            case "map" -> () -> new InMemoryTransactionRepository(lockWaits);
+            case "columnar" -> () -> new ColumnarTransactionRepository(lockWaits);
+            case "jdbc" -> () -> new JdbcTransactionRepository(jdbcUrl, jdbcUsername, jdbcPassword, jdbcConnections);
+            default -> throw new IllegalStateException("Unknown transactions.repository.type: " + type);
+        };
+        if (shards < 1) {
+            throw new IllegalStateException("transactions.repository.shards must be at least 1");
+        }
+        if (shards > 1 && type.equals("jdbc")) {
+            // Todos los shards abrirían la misma base
+            throw new IllegalStateException("transactions.repository.shards is not supported with jdbc");
+        }
+        if (walEnabled && type.equals("jdbc")) {
+            // La base ya es durable: el log duplicaría cada escritura y al arrancar la reinsertaría
+            throw new IllegalStateException("transactions.wal.enabled is not supported with jdbc");
+        }
+        TransactionRepository repository = shards > 1
+                ? new ShardedTransactionRepository(shards, factory, lockWaits)
+                : factory.get();
+        if (walEnabled) {
+            repository = durable(repository, walPath, amountScale.getScale(), walSync, groupDelayMicros, snapshotPath, snapshotInterval);
+        }
+        return new MeteredTransactionRepository(repository, meterRegistry, maxTypeGauges);
+    }
+
+    @Bean
+    public AmountScale amountScale(@Value("${transactions.amount.scale:2}") int scale) {
+        return new AmountScale(scale);
+    }
+
+    @Bean
+    public LockWaitStats repositoryLockWaits() {
+        return new LockWaitStats();
+    }
+
+    private static TransactionRepository durable(TransactionRepository repository, Path walPath, int amountScale, String walSync, long groupDelayMicros,
+                                                 Path snapshotPath, Duration snapshotInterval) throws IOException {
+        WriteAheadLog.SyncMode syncMode = switch (walSync) {
+            case "per-write" -> WriteAheadLog.SyncMode.PER_WRITE;
+            case "group" -> WriteAheadLog.SyncMode.GROUP;
+            default -> throw new IllegalStateException("Unknown transactions.wal.sync: " + walSync);
+        };
+        return DurableTransactionRepository.open(repository, walPath, amountScale, syncMode, TimeUnit.MICROSECONDS.toNanos(groupDelayMicros),
+                snapshotPath, snapshotInterval.toNanos());
+    }
+}
@@ -0,0 +1,76 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.TypeAggregate;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/*
+    Cantidad, suma, mínimo y máximo de un tipo, actualizados en el lugar: un
+    TypeAggregate nuevo por inserción era basura en cada PUT. Admite un solo
+    escritor a la vez (el que tiene el lock del tipo).
+
+    Los lectores no toman el lock, leen con un seqlock: version es impar
+    mientras se escribe, y si cambió durante la lectura se vuelve a leer.
+    Así nunca se ve una mezcla de dos inserciones.
+ */
+final class TypeAggregateCell {
+
+    private static final VarHandle VERSION;
+
+    static {
+        try{
+            VERSION = MethodHandles.lookup().findVarHandle(TypeAggregateCell.class, "version", long.class);
+        }catch(ReflectiveOperationException e){
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private long version;
+    private long count;
+    private long sum;
+    private boolean sumOverflowed;
+    private long min;
+    private long max;
+
+    void add(long amount){
+        add(1, amount, false, amount, amount);
+    }
+
+    void add(TypeAggregate added){
+        add(added.getCount(), added.getSum(), added.isSumOverflowed(), added.getMin(), added.getMax());
+    }
+
+    private void add(long addedCount, long addedSum, boolean addedOverflowed, long addedMin, long addedMax){
+        long current = version;
+        VERSION.setOpaque(this, current + 1);
+        VarHandle.storeStoreFence();
+
+        long combinedSum = sum + addedSum;
+        sumOverflowed = sumOverflowed || addedOverflowed || AmountScale.sumOverflows(sum, addedSum, combinedSum);
+        sum = sumOverflowed ? 0 : combinedSum;
+        min = count == 0 ? addedMin : Math.min(min, addedMin);
+        max = count == 0 ? addedMax : Math.max(max, addedMax);
+        count += addedCount;
+
+        VERSION.setRelease(this, current + 2);
+    }
+
+    // null si todavía no se agregó nada
+    TypeAggregate snapshot(){
+        while(true){
+            long before = (long) VERSION.getAcquire(this);
+            long readCount = count;
+            long readSum = sum;
+            boolean readOverflowed = sumOverflowed;
+            long readMin = min;
+            long readMax = max;
+            VarHandle.loadLoadFence();
+            if((before & 1) == 0 && (long) VERSION.getOpaque(this) == before){
+                return readCount == 0 ? null : TypeAggregate.of(readCount, readSum, readOverflowed, readMin, readMax);
+            }
+            Thread.onSpinWait();
+        }
+    }
+}
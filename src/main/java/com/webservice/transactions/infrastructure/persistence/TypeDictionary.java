@@ -0,0 +1,120 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/*
+    Diccionario de tipos: cada tipo distinto recibe un código int denso (0, 1,
+    2, ...) la primera vez que se inserta, y junto con el código un valor
+    propio del repositorio (sus índices del tipo), que se busca por código sin
+    volver a hashear el string. Hay pocos cientos de tipos repetidos en
+    millones de transacciones, así que el string de cada tipo se guarda una
+    sola vez: canonical devuelve esa instancia para que las transacciones la
+    compartan en vez de retener la del request.
+
+    Sólo crece. Los lectores no toman lock: add publica los arrays antes de
+    poner el código en el mapa, así quien ve un código ve su nombre y su valor.
+    Los nombres también se guardan ordenados, para los prefijos.
+ */
+public final class TypeDictionary<T> {
+
+    private final Supplier<T> newEntry;
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[0];
+    private volatile Object[] entries = new Object[0];
+    private volatile String[] sortedNames = new String[0];
+
+    public TypeDictionary(Supplier<T> newEntry) {
+        this.newEntry = newEntry;
+    }
+
+    // -1 si el tipo nunca se agregó
+    public int codeOf(String type) {
+        Integer code = codes.get(type);
+        return code != null ? code : -1;
+    }
+
+    /*
+        El código del tipo, agregándolo si es nuevo. Los tipos nuevos son raros
+        y se serializan; los que ya existen son una lectura del mapa.
+     */
+    public int add(String type) {
+        Integer code = codes.get(type);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(type);
+            if (code != null) {
+                return code;
+            }
+            int newCode = names.length;
+            String[] newNames = Arrays.copyOf(names, newCode + 1);
+            newNames[newCode] = type;
+            Object[] newEntries = Arrays.copyOf(entries, newCode + 1);
+            newEntries[newCode] = newEntry.get();
+            String[] sorted = sortedNames;
+            int position = -Arrays.binarySearch(sorted, type) - 1;
+            String[] newSorted = new String[sorted.length + 1];
+            System.arraycopy(sorted, 0, newSorted, 0, position);
+            newSorted[position] = type;
+            System.arraycopy(sorted, position, newSorted, position + 1, sorted.length - position);
+
+            names = newNames;
+            entries = newEntries;
+            sortedNames = newSorted;
+            codes.put(type, newCode);
+            return newCode;
+        }
+    }
+
+    public String name(int code) {
+        return names[code];
+    }
+
+    @SuppressWarnings("unchecked")
+    public T entry(int code) {
+        return (T) entries[code];
+    }
+
+    // null si el tipo nunca se agregó
+    public T get(String type) {
+        int code = codeOf(type);
+        return code >= 0 ? entry(code) : null;
+    }
+
+    // La instancia que guarda el diccionario, o type si todavía no está
+    public String canonical(String type) {
+        int code = codeOf(type);
+        return code >= 0 ? names[code] : type;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    // En orden de código, que es el orden en que aparecieron
+    public List<String> names() {
+        return List.of(names);
+    }
+
+    /*
+        Los tipos que empiezan con prefix, ordenados: los que tienen el prefijo
+        son un rango contiguo del array ordenado, que empieza donde iría prefix.
+     */
+    public List<String> namesWithPrefix(String prefix) {
+        String[] sorted = sortedNames;
+        int from = Arrays.binarySearch(sorted, prefix);
+        if (from < 0) {
+            from = -from - 1;
+        }
+        int to = from;
+        while (to < sorted.length && sorted[to].startsWith(prefix)) {
+            to++;
+        }
+        return List.of(Arrays.copyOfRange(sorted, from, to));
+    }
+}
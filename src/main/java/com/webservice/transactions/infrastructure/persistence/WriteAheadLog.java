@@ -0,0 +1,501 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import com.webservice.transactions.domain.Transaction;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/*
+    Log binario sólo de agregado. El archivo empieza con MAGIC, VERSION, la
+    escala de los montos y la posición del primer registro, y sigue con
+    registros [largo][crc32][payload], donde el payload es [flags][id][amount
+    en unidades mínimas][parentId si flags & HAS_PARENT][largo del tipo][tipo
+    UTF-8]. Un log escrito con otra escala no se abre: sus montos
+    significarían otra cosa.
+
+    Las posiciones son lógicas: discardBefore reemplaza el archivo por uno
+    que sólo tiene la cola, y el header dice en qué posición empieza, así una
+    posición guardada en un snapshot sigue apuntando al mismo registro. En un
+    log que nunca se recortó coinciden con el offset en el archivo.
+
+    Group commit: los escritores copian su registro a un buffer en memoria
+    (lock corto) y después esperan a que su posición sea durable. El primero
+    que llega a sync hace de líder: vacía el buffer entero al archivo y hace un
+    solo fsync para todos los que se sumaron mientras tanto. Con groupDelay > 0
+    el líder espera ese tiempo antes de vaciar, para juntar lotes más grandes.
+    PER_WRITE es la referencia sin batching: write + fsync por cada llamada.
+
+    Los locks son ReentrantLock y no synchronized: con threads virtuales, un
+    thread que espera (o hace fsync) dentro de un monitor retiene su carrier.
+
+    Si un fsync falla no se reintenta (el kernel puede haber descartado las
+    páginas sucias): el log queda roto y todas las escrituras siguientes fallan.
+ */
+public final class WriteAheadLog implements Closeable {
+
+    public enum SyncMode { PER_WRITE, GROUP }
+
+    private static final int MAGIC = 0x54584C47;
+    private static final int VERSION = 3;
+    private static final int FILE_HEADER_BYTES = 20;
+    // La versión 2 no guardaba la posición del primer registro: nunca se recortaba
+    private static final int V2_FILE_HEADER_BYTES = 12;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int MAX_PAYLOAD_BYTES = 1 << 20;
+    private static final int HAS_PARENT = 1;
+    private static final int MAX_TYPE_BYTES = 0xFFFF;
+
+    private final Path path;
+    private final int amountScale;
+    private final SyncMode syncMode;
+    private final long groupDelayNanos;
+    // Los reemplaza discardBefore con syncLock tomado, que es con el que se escribe
+    private FileChannel channel;
+    private long offset;
+    private volatile long start;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private long appendedPosition;
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final AtomicBoolean syncing = new AtomicBoolean();
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    private volatile long durablePosition;
+    private volatile IOException failure;
+
+    private WriteAheadLog(Path path, int amountScale, FileChannel channel, long start, long offset, long end,
+                          SyncMode syncMode, long groupDelayNanos){
+        this.path = path;
+        this.amountScale = amountScale;
+        this.channel = channel;
+        this.start = start;
+        this.offset = offset;
+        this.syncMode = syncMode;
+        this.groupDelayNanos = groupDelayNanos;
+        this.appendedPosition = end;
+        this.durablePosition = end;
+    }
+
+    /*
+        Abre (o crea) el log y pasa cada registro válido a replay, en orden.
+        Un registro incompleto o con crc inválido al final es una escritura que
+        no llegó a ser durable: se descarta y el archivo se trunca ahí.
+     */
+    public static WriteAheadLog open(Path path, int amountScale, SyncMode syncMode, long groupDelayNanos,
+                                     Consumer<Transaction> replay) throws IOException {
+        return open(path, amountScale, syncMode, groupDelayNanos, 0, replay);
+    }
+
+    /*
+        Igual, pero sólo reproduce los registros desde replayFrom (una posición
+        que devolvió size(), por ejemplo la guardada en un snapshot).
+     */
+    public static WriteAheadLog open(Path path, int amountScale, SyncMode syncMode, long groupDelayNanos,
+                                     long replayFrom, Consumer<Transaction> replay) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if(parent != null){
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try{
+            if(channel.size() == 0){
+                writeFully(channel, header(amountScale, FILE_HEADER_BYTES), 0);
+                channel.force(true);
+                if(parent != null){
+                    forceDirectory(parent);
+                }
+                return new WriteAheadLog(path, amountScale, channel, FILE_HEADER_BYTES, 0, FILE_HEADER_BYTES, syncMode, groupDelayNanos);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+            channel.read(header, 0);
+            if(header.position() < V2_FILE_HEADER_BYTES || header.getInt(0) != MAGIC){
+                throw new IOException(path + " is not a transaction log");
+            }
+            int version = header.getInt(Integer.BYTES);
+            if(version != VERSION && version != 2){
+                throw new IOException(path + " has unsupported log version " + version);
+            }
+            if(version == VERSION && header.hasRemaining()){
+                throw new IOException(path + " is not a transaction log");
+            }
+            int scale = header.getInt(2 * Integer.BYTES);
+            if(scale != amountScale){
+                throw new IOException(path + " stores amounts with scale " + scale + " but the configured scale is " + amountScale);
+            }
+            long start = version == VERSION ? header.getLong(3 * Integer.BYTES) : V2_FILE_HEADER_BYTES;
+            long offset = start - (version == VERSION ? FILE_HEADER_BYTES : V2_FILE_HEADER_BYTES);
+
+            long end = replay(channel, offset, start, replayFrom, replay);
+            if(end - offset < channel.size()){
+                channel.truncate(end - offset);
+                channel.force(true);
+            }
+            return new WriteAheadLog(path, amountScale, channel, start, offset, end, syncMode, groupDelayNanos);
+        }catch(IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer header(int amountScale, long start){
+        return ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putInt(amountScale).putLong(start).flip();
+    }
+
+    // position y el resultado son posiciones lógicas; en el archivo están offset bytes antes
+    private static long replay(FileChannel channel, long offset, long start, long replayFrom, Consumer<Transaction> replay) throws IOException {
+        // Si replayFrom queda fuera del log, el log se recorre entero sólo para validarlo
+        long position = replayFrom > start && replayFrom - offset <= channel.size() ? replayFrom : start;
+        channel.position(position - offset);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+        CRC32 crc = new CRC32();
+        byte[] payload = new byte[256];
+        while(true){
+            int length;
+            int checksum;
+            try{
+                length = in.readInt();
+                checksum = in.readInt();
+                if(length <= 0 || length > MAX_PAYLOAD_BYTES){
+                    return position;
+                }
+                if(payload.length < length){
+                    payload = new byte[Math.max(length, payload.length * 2)];
+                }
+                in.readFully(payload, 0, length);
+            }catch(EOFException e){
+                return position;
+            }
+            crc.reset();
+            crc.update(payload, 0, length);
+            if((int) crc.getValue() != checksum){
+                return position;
+            }
+            if(position >= replayFrom){
+                replay.accept(decode(ByteBuffer.wrap(payload, 0, length)));
+            }
+            position += RECORD_HEADER_BYTES + length;
+        }
+    }
+
+    /*
+        Agrega las transacciones al log y retorna cuando son durables.
+     */
+    public void append(List<Transaction> transactions){
+        if(transactions.isEmpty()){
+            return;
+        }
+        try{
+            if(syncMode == SyncMode.PER_WRITE){
+                appendAndForce(transactions);
+            }else{
+                sync(appendToBuffer(transactions));
+            }
+        }catch(IOException e){
+            throw new UncheckedIOException("Could not write the transaction log", e);
+        }
+    }
+
+    private void appendAndForce(List<Transaction> transactions) throws IOException {
+        syncLock.lock();
+        try{
+            checkNotFailed();
+            ByteBuffer buffer;
+            long end;
+            appendLock.lock();
+            try{
+                pending.clear();
+                for(Transaction transaction : transactions){
+                    encode(transaction);
+                }
+                buffer = pending.flip();
+                end = appendedPosition + buffer.remaining();
+                flush(buffer, appendedPosition);
+                appendedPosition = end;
+                pending.clear();
+            }finally{
+                appendLock.unlock();
+            }
+            durablePosition = end;
+        }finally{
+            syncLock.unlock();
+        }
+    }
+
+    private long appendToBuffer(List<Transaction> transactions) throws IOException {
+        appendLock.lock();
+        try{
+            checkNotFailed();
+            int start = pending.position();
+            for(Transaction transaction : transactions){
+                encode(transaction);
+            }
+            appendedPosition += pending.position() - start;
+            return appendedPosition;
+        }finally{
+            appendLock.unlock();
+        }
+    }
+
+    /*
+        Ni el append al buffer ni este fsync toman locks del repositorio: el
+        líder sólo toma appendLock para cambiar de buffer, y escribe y hace
+        fsync mientras los demás siguen agregando al buffer nuevo. Los que
+        esperan no compiten por un monitor: quedan parkeados hasta que el líder
+        termina y se despiertan todos juntos; si su posición todavía no es
+        durable, uno de ellos pasa a ser el próximo líder.
+     */
+    private void sync(long position) throws IOException {
+        while(durablePosition < position){
+            checkNotFailed();
+            if(syncing.compareAndSet(false, true)){
+                try{
+                    if(durablePosition < position){
+                        flushPending();
+                    }
+                }finally{
+                    syncing.set(false);
+                    Thread waiter;
+                    while((waiter = waiters.poll()) != null){
+                        LockSupport.unpark(waiter);
+                    }
+                }
+            }else{
+                waiters.add(Thread.currentThread());
+                if(syncing.get() && durablePosition < position){
+                    LockSupport.park(this);
+                }
+            }
+        }
+    }
+
+    private void flushPending() throws IOException {
+        syncLock.lock();
+        try{
+            if(groupDelayNanos > 0){
+                LockSupport.parkNanos(groupDelayNanos);
+            }
+
+            ByteBuffer batch;
+            long start;
+            long end;
+            appendLock.lock();
+            try{
+                batch = pending;
+                pending = spare;
+                end = appendedPosition;
+                start = end - batch.position();
+            }finally{
+                appendLock.unlock();
+            }
+            try{
+                flush(batch.flip(), start);
+            }finally{
+                batch.clear();
+                spare = batch;
+            }
+            durablePosition = end;
+        }finally{
+            syncLock.unlock();
+        }
+    }
+
+    private void flush(ByteBuffer buffer, long position) throws IOException {
+        try{
+            writeFully(channel, buffer, position - offset);
+            channel.force(false);
+        }catch(IOException e){
+            failure = e;
+            throw e;
+        }
+    }
+
+    private void checkNotFailed() throws IOException {
+        IOException current = failure;
+        if(current != null){
+            throw new IOException("Transaction log is unusable after a failed write", current);
+        }
+    }
+
+    /*
+        El decorador lo llama antes de aplicar la transacción, así nunca queda
+        en memoria algo que después no se puede escribir al log.
+     */
+    static void requireEncodable(Transaction transaction){
+        if(transaction.getType().length() * 3 > MAX_TYPE_BYTES
+                && transaction.getType().getBytes(StandardCharsets.UTF_8).length > MAX_TYPE_BYTES){
+            throw new IllegalArgumentException("Transaction type is too long");
+        }
+    }
+
+    private void encode(Transaction transaction){
+        byte[] type = transaction.getType().getBytes(StandardCharsets.UTF_8);
+        boolean hasParent = transaction.getParentId() != null;
+        int length = 1 + Long.BYTES + Long.BYTES + (hasParent ? Long.BYTES : 0) + Short.BYTES + type.length;
+        ensureRemaining(RECORD_HEADER_BYTES + length);
+
+        int start = pending.position();
+        pending.position(start + RECORD_HEADER_BYTES);
+        pending.put((byte) (hasParent ? HAS_PARENT : 0));
+        pending.putLong(transaction.getId());
+        pending.putLong(transaction.getAmount());
+        if(hasParent){
+            pending.putLong(transaction.getParentId());
+        }
+        pending.putShort((short) type.length);
+        pending.put(type);
+
+        CRC32 crc = new CRC32();
+        crc.update(pending.array(), start + RECORD_HEADER_BYTES, length);
+        pending.putInt(start, length);
+        pending.putInt(start + Integer.BYTES, (int) crc.getValue());
+    }
+
+    private static Transaction decode(ByteBuffer payload){
+        byte flags = payload.get();
+        long id = payload.getLong();
+        long amount = payload.getLong();
+        Long parentId = (flags & HAS_PARENT) != 0 ? payload.getLong() : null;
+        byte[] type = new byte[payload.getShort() & 0xFFFF];
+        payload.get(type);
+        return new Transaction(id, amount, new String(type, StandardCharsets.UTF_8), parentId);
+    }
+
+    private void ensureRemaining(int bytes){
+        if(pending.remaining() < bytes){
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            grown.put(pending.flip());
+            pending = grown;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()){
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /*
+        Fuerza la entrada de un archivo recién creado o renombrado: sin esto,
+        después de una caída el archivo puede tener sus datos en disco pero no
+        aparecer en el directorio. Algunos sistemas (Windows) no abren un
+        directorio como canal; ahí no hay cómo forzarlo y se sigue.
+     */
+    static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try{
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        }catch(IOException e){
+            return;
+        }
+        try(channel){
+            channel.force(true);
+        }
+    }
+
+    /*
+        Descarta los registros anteriores a position, que ya están en un
+        snapshot durable: copia la cola a un archivo nuevo cuyo header dice que
+        empieza en position y lo renombra sobre el log. Casi toda la cola se
+        copia mientras se sigue escribiendo; sólo lo que se hizo durable
+        durante esa copia se copia con syncLock tomado, justo antes del rename.
+        Si algo falla después del rename, el log queda roto como con un fsync
+        fallido: las escrituras siguientes irían a un archivo que ya no está.
+     */
+    public void discardBefore(long position) throws IOException {
+        if(position <= start || position > durablePosition){
+            return;
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        FileChannel tail = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        boolean renamed = false;
+        try{
+            writeFully(tail, header(amountScale, position), 0);
+            tail.position(FILE_HEADER_BYTES);
+            long copied = copyTail(tail, position, durablePosition);
+            syncLock.lock();
+            try{
+                checkNotFailed();
+                copyTail(tail, copied, durablePosition);
+                tail.force(true);
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                renamed = true;
+                FileChannel discarded = channel;
+                channel = tail;
+                offset = position - FILE_HEADER_BYTES;
+                start = position;
+                discarded.close();
+                Path parent = path.toAbsolutePath().getParent();
+                if(parent != null){
+                    forceDirectory(parent);
+                }
+            }catch(IOException e){
+                if(renamed){
+                    failure = e;
+                }
+                throw e;
+            }finally{
+                syncLock.unlock();
+            }
+        }finally{
+            if(!renamed){
+                tail.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+
+    // Copia [from, to) del log actual al final de target; retorna to
+    private long copyTail(FileChannel target, long from, long to) throws IOException {
+        long position = from - offset;
+        long end = to - offset;
+        while(position < end){
+            position += channel.transferTo(position, end - position, target);
+        }
+        return to;
+    }
+
+    /*
+        Si el log tiene todos los registros desde position. Después de un
+        discardBefore, reproducirlo desde antes de su primer registro no
+        alcanza para reconstruir el repositorio: falta lo que quedó en el snapshot.
+     */
+    public boolean holdsFrom(long position){
+        return position >= start || start <= FILE_HEADER_BYTES;
+    }
+
+    public long size(){
+        return durablePosition;
+    }
+
+    public void close() throws IOException {
+        syncLock.lock();
+        try{
+            channel.close();
+        }finally{
+            syncLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.webservice.transactions.infrastructure.web;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.webservice.transactions.application.TypeSummary;
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.infrastructure.cluster.ClusteredTransactionService;
+import com.webservice.transactions.infrastructure.web.dto.BatchItemResponseDTO;
+import com.webservice.transactions.infrastructure.web.dto.TransactionAmountDTO;
+import com.webservice.transactions.infrastructure.web.dto.TransactionRequestDTO;
+import com.webservice.transactions.infrastructure.web.dto.TypeSummaryDTO;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+/*
+    Endpoints que usan los nodos entre sí: responden sólo con lo que tiene
+    este nodo, sin volver a preguntarle a los demás.
+ */
+@RestController
+@RequestMapping("/cluster")
+@Validated
+@ConditionalOnProperty("transactions.cluster.nodes")
+public class ClusterController {
+
+    private final ClusteredTransactionService clusteredService;
+    private final AmountScale amountScale;
+
+    public ClusterController(ClusteredTransactionService clusteredService, AmountScale amountScale) {
+        this.clusteredService = clusteredService;
+        this.amountScale = amountScale;
+    }
+
+    @PutMapping("/transactions/{transactionId}")
+    public ResponseEntity<BatchItemResponseDTO> insert(@PathVariable @NotNull Long transactionId, @Valid @RequestBody TransactionRequestDTO request) {
+        Transaction transaction = new Transaction(transactionId, amountScale.toMinorUnits(request.getAmount()),
+                request.getType(), request.getParentId());
+        InsertResult result = clusteredService.insertOwned(transaction);
+        return ResponseEntity.ok(new BatchItemResponseDTO(transactionId, TransactionController.batchStatus(result)));
+    }
+
+    @PutMapping("/children/{parentId}/{childId}")
+    public ResponseEntity<String> link(@PathVariable @NotNull Long parentId, @PathVariable @NotNull Long childId) {
+        clusteredService.link(parentId, childId);
+        return ResponseEntity.ok("{\"status\":\"ok\"}");
+    }
+
+    @DeleteMapping("/children/{parentId}/{childId}")
+    public ResponseEntity<String> unlink(@PathVariable @NotNull Long parentId, @PathVariable @NotNull Long childId) {
+        clusteredService.unlink(parentId, childId);
+        return ResponseEntity.ok("{\"status\":\"ok\"}");
+    }
+
+    @GetMapping("/links")
+    public ResponseEntity<List<List<Long>>> getLinks(@RequestParam int owner) {
+        return ResponseEntity.ok(clusteredService.getLinksTo(owner));
+    }
+
+    @GetMapping("/children/{transactionId}")
+    public ResponseEntity<List<Long>> getChildren(@PathVariable @NotNull Long transactionId) {
+        return ResponseEntity.ok(clusteredService.getChildrenIds(transactionId));
+    }
+
+    @GetMapping("/types")
+    public ResponseEntity<List<TypeSummaryDTO>> getTypeSummaries(@RequestParam(defaultValue = "") String prefix) {
+        List<TypeSummary> summaries = clusteredService.getLocalTypeSummaries(prefix);
+
+        List<TypeSummaryDTO> response = new ArrayList<>(summaries.size());
+        for (TypeSummary summary : summaries) {
+            response.add(new TypeSummaryDTO(summary));
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/types/{type}/summary")
+    public ResponseEntity<TypeSummaryDTO> getTypeSummary(@PathVariable @NotBlank String type) {
+        return ResponseEntity.ok(new TypeSummaryDTO(clusteredService.getLocalTypeSummary(type)));
+    }
+
+    @GetMapping("/types/{type}/amounts")
+    public ResponseEntity<List<TransactionAmountDTO>> getByAmount(@PathVariable @NotBlank String type,
+                                                                  @RequestParam(required = false) BigDecimal min,
+                                                                  @RequestParam(required = false) BigDecimal max,
+                                                                  @RequestParam int limit) {
+        return ResponseEntity.ok(TransactionController.toAmountDTOs(clusteredService.getLocalTransactionsByAmount(type, min, max, limit)));
+    }
+
+    @GetMapping("/types/{type}")
+    public ResponseEntity<List<Long>> getByType(@PathVariable @NotBlank String type,
+                                                @RequestParam(defaultValue = "0") long after,
+                                                @RequestParam int limit) {
+        return ResponseEntity.ok(clusteredService.getLocalTransactionIdsByType(type, after, limit));
+    }
+
+}
@@ -0,0 +1,234 @@
+package com.webservice.transactions.infrastructure.web;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.webservice.transactions.application.TransactionService;
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.infrastructure.web.dto.ImportErrorDTO;
+import com.webservice.transactions.infrastructure.web.dto.ImportSummaryDTO;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.ObjectMapper;
+
+/*
+    Lee el body como NDJSON (o como un array JSON) con el parser de streaming
+    de Jackson, sin materializar el request: junta filas en chunks acotados y
+    cada chunk se aplica con createTransactions antes de seguir leyendo. Mientras
+    se aplica un chunk no se lee más del socket, así que el cliente queda frenado
+    por TCP (backpressure) y la memoria usada no depende del tamaño del import.
+ */
+@Component
+public class NdjsonTransactionImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(NdjsonTransactionImporter.class);
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final ObjectMapper objectMapper;
+    private final TransactionService transactionService;
+    private final AmountScale amountScale;
+    private final int chunkSize;
+    private final long progressInterval;
+
+    public NdjsonTransactionImporter(ObjectMapper objectMapper,
+                                     TransactionService transactionService,
+                                     AmountScale amountScale,
+                                     @Value("${transactions.import.chunk-size:1000}") int chunkSize,
+                                     @Value("${transactions.import.progress-interval:100000}") long progressInterval) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("transactions.import.chunk-size must be at least 1");
+        }
+        if (progressInterval < 1) {
+            throw new IllegalArgumentException("transactions.import.progress-interval must be at least 1");
+        }
+        this.objectMapper = objectMapper;
+        this.transactionService = transactionService;
+        this.amountScale = amountScale;
+        this.chunkSize = chunkSize;
+        this.progressInterval = progressInterval;
+    }
+
+    public ImportSummaryDTO importFrom(InputStream body) {
+        Progress progress = new Progress();
+        List<Transaction> chunk = new ArrayList<>(chunkSize);
+        List<Long> chunkLines = new ArrayList<>(chunkSize);
+
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+
+            while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+                long line = parser.currentLocation().getLineNr();
+                Transaction transaction = readRow(parser, token);
+                if (transaction == null) {
+                    progress.rejected(line, null, "invalid");
+                } else {
+                    chunk.add(transaction);
+                    chunkLines.add(line);
+                    if (chunk.size() == chunkSize) {
+                        apply(chunk, chunkLines, progress);
+                    }
+                }
+                token = parser.nextToken();
+            }
+            apply(chunk, chunkLines, progress);
+        } catch (JacksonException e) {
+            throw new IllegalArgumentException("Malformed import body after " + progress.rows + " rows: " + e.getOriginalMessage());
+        }
+
+        ImportSummaryDTO summary = progress.summary();
+        log.info("Import finished: {} rows, {} inserted, {} rejected in {} ms ({} rows/s)",
+                summary.getRows(), summary.getInserted(),
+                summary.getRows() - summary.getInserted(), summary.getElapsedMillis(), summary.getRowsPerSecond());
+        return summary;
+    }
+
+    private void apply(List<Transaction> chunk, List<Long> chunkLines, Progress progress) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<InsertResult> results = transactionService.createTransactions(chunk);
+        for (int i = 0; i < results.size(); i++) {
+            InsertResult result = results.get(i);
+            if (result == InsertResult.INSERTED) {
+                progress.inserted();
+            } else {
+                progress.rejected(chunkLines.get(i), chunk.get(i).getId(), TransactionController.batchStatus(result));
+            }
+        }
+        chunk.clear();
+        chunkLines.clear();
+    }
+
+    /*
+        Devuelve null si la fila no es un objeto con id, amount y type válidos
+        (un amount con más decimales que la escala también es inválido); en ese
+        caso deja el parser al final de la fila para seguir con la próxima.
+     */
+    private Transaction readRow(JsonParser parser, JsonToken token) {
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+
+        Long id = null;
+        BigDecimal amount = null;
+        String type = null;
+        Long parentId = null;
+        boolean valid = true;
+
+        while (parser.nextToken() == JsonToken.PROPERTY_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id" -> {
+                    if (fitsInLong(parser, value)) {
+                        id = parser.getLongValue();
+                    } else {
+                        valid = false;
+                    }
+                }
+                case "amount" -> {
+                    if (value == JsonToken.VALUE_NUMBER_INT || value == JsonToken.VALUE_NUMBER_FLOAT) {
+                        amount = parser.getDecimalValue();
+                    } else {
+                        valid = false;
+                    }
+                }
+                case "type" -> {
+                    if (value == JsonToken.VALUE_STRING) {
+                        type = parser.getString();
+                    } else {
+                        valid = false;
+                    }
+                }
+                case "parent_id" -> {
+                    if (fitsInLong(parser, value)) {
+                        parentId = parser.getLongValue();
+                    } else if (value != JsonToken.VALUE_NULL) {
+                        valid = false;
+                    }
+                }
+                default -> { }
+            }
+            parser.skipChildren();
+        }
+
+        if (!valid || id == null || amount == null || type == null || type.isBlank() || id.equals(parentId)) {
+            return null;
+        }
+        try {
+            return new Transaction(id, amountScale.toMinorUnits(amount), type, parentId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Un entero que no entra en un long hace que getLongValue lance: la fila es inválida, no el import
+    private static boolean fitsInLong(JsonParser parser, JsonToken value) {
+        return value == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER;
+    }
+
+    private final class Progress {
+
+        private final long startNanos = System.nanoTime();
+        private long rows;
+        private long inserted;
+        private long alreadyExists;
+        private long parentNotFound;
+        private long invalid;
+        private final List<ImportErrorDTO> errors = new ArrayList<>();
+
+        void inserted() {
+            inserted++;
+            row();
+        }
+
+        void rejected(long line, Long id, String status) {
+            switch (status) {
+                case "already_exists" -> alreadyExists++;
+                case "parent_not_found" -> parentNotFound++;
+                default -> invalid++;
+            }
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportErrorDTO(line, id, status));
+            }
+            row();
+        }
+
+        private void row() {
+            rows++;
+            if (rows % progressInterval == 0) {
+                log.info("Import progress: {} rows, {} inserted ({} rows/s)", rows, inserted, rowsPerSecond());
+            }
+        }
+
+        private long elapsedMillis() {
+            return (System.nanoTime() - startNanos) / 1_000_000;
+        }
+
+        private long rowsPerSecond() {
+            long elapsedNanos = Math.max(1, System.nanoTime() - startNanos);
+            return rows * 1_000_000_000L / elapsedNanos;
+        }
+
+        ImportSummaryDTO summary() {
+            return new ImportSummaryDTO(rows, inserted, alreadyExists, parentNotFound, invalid,
+                    elapsedMillis(), rowsPerSecond(), errors);
+        }
+    }
+}
@@ -3,8 +3,20 @@ package com.webservice.transactions.infrastructure.web;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.webservice.transactions.application.TransactionAmount;
+import com.webservice.transactions.application.TransactionIdPage;
 import com.webservice.transactions.application.TransactionService;
+import com.webservice.transactions.application.TypeSummary;
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.infrastructure.web.dto.BatchItemResponseDTO;
+import com.webservice.transactions.infrastructure.web.dto.BatchTransactionRequestDTO;
+import com.webservice.transactions.infrastructure.web.dto.DepthResponseDTO;
+import com.webservice.transactions.infrastructure.web.dto.RootResponseDTO;
+import com.webservice.transactions.infrastructure.web.dto.TransactionAmountDTO;
 import com.webservice.transactions.infrastructure.web.dto.TransactionRequestDTO;
+import com.webservice.transactions.infrastructure.web.dto.TypeSummaryDTO;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
@@ -12,25 +24,44 @@ import jakarta.validation.constraints.NotNull;
 
 import com.webservice.transactions.infrastructure.web.dto.SumResponseDTO;
 
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.TreeSet;
 
 @RestController
 @RequestMapping("/transactions")
 @Validated
 public class TransactionController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    // Un lote se responde entero en memoria: las cargas grandes van por /transactions/import
+    public static final int MAX_BATCH_SIZE = 10_000;
+    // ResponseEntity es inmutable: todos los PUT devuelven la misma
+    private static final ResponseEntity<String> OK_RESPONSE = ResponseEntity.ok("{\"status\":\"ok\"}");
+
     private final TransactionService transactionService;
+    private final AmountScale amountScale;
 
-    public TransactionController(TransactionService transactionService) {
+    public TransactionController(TransactionService transactionService, AmountScale amountScale) {
         this.transactionService = transactionService;
+        this.amountScale = amountScale;
     }
 
     @PutMapping("/{transactionId}")
@@ -43,7 +74,75 @@ public class TransactionController {
             request.getParentId()
         );
         
-        return ResponseEntity.ok("{\"status\":\"ok\"}");
+        return OK_RESPONSE;
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchItemResponseDTO>> createBatch(@RequestBody List<BatchTransactionRequestDTO> requests) {
+        checkBatchSize(requests.size());
+
+        List<Transaction> transactions = new ArrayList<>(requests.size());
+        for (BatchTransactionRequestDTO request : requests) {
+            if (request == null || request.getAmount() == null) {
+                throw new IllegalArgumentException("Transaction properties cannot be null");
+            }
+            long amount = amountScale.toMinorUnits(request.getAmount());
+            transactions.add(new Transaction(request.getId(), amount, request.getType(), request.getParentId()));
+        }
+
+        List<InsertResult> results = transactionService.createTransactions(transactions);
+
+        List<BatchItemResponseDTO> response = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            response.add(new BatchItemResponseDTO(transactions.get(i).getId(), batchStatus(results.get(i))));
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    public static void checkBatchSize(int size) {
+        if (size > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch cannot have more than " + MAX_BATCH_SIZE + " transactions; use POST /transactions/import for bulk loads");
+        }
+    }
+
+    public static String batchStatus(InsertResult result) {
+        return switch (result) {
+            case INSERTED -> "ok";
+            case DUPLICATE_ID -> "already_exists";
+            case PARENT_NOT_FOUND -> "parent_not_found";
+        };
+    }
+
+    /*
+        Todos los tipos, los que empiezan con prefix, o los pedidos con
+        ?type=a&type=b (uno por tipo distinto, aunque no tenga transacciones).
+        Siempre ordenados por nombre.
+     */
+    @GetMapping("/types")
+    public ResponseEntity<List<TypeSummaryDTO>> getTypeSummaries(@RequestParam(defaultValue = "") String prefix,
+                                                                 @RequestParam(name = "type", required = false) List<String> types) {
+        List<TypeSummary> summaries;
+        if (types == null) {
+            summaries = transactionService.getTypeSummaries(prefix);
+        } else {
+            summaries = new ArrayList<>();
+            for (String type : new TreeSet<>(types)) {
+                if (!type.isBlank() && type.startsWith(prefix)) {
+                    summaries.add(transactionService.getTypeSummary(type));
+                }
+            }
+        }
+
+        List<TypeSummaryDTO> response = new ArrayList<>(summaries.size());
+        for (TypeSummary summary : summaries) {
+            response.add(new TypeSummaryDTO(summary));
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/types/{type}/summary")
+    public ResponseEntity<TypeSummaryDTO> getTypeSummary(@PathVariable @NotBlank String type) {
+        return ResponseEntity.ok(new TypeSummaryDTO(transactionService.getTypeSummary(type)));
     }
 
     @GetMapping("/types/{type}")
@@ -51,11 +150,87 @@ public class TransactionController {
         return ResponseEntity.ok(transactionService.getTransactionIdsByType(type));
     }
 
+    @GetMapping(value = "/types/{type}", params = "limit")
+    public ResponseEntity<List<Long>> getPageByType(@PathVariable @NotBlank String type,
+                                                    @RequestParam int limit,
+                                                    @RequestParam(defaultValue = "0") long after) {
+        TransactionIdPage page = transactionService.getTransactionIdsByType(type, after, limit);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+        }
+        return response.body(page.getIds());
+    }
+
+    /*
+        Las transacciones del tipo con monto en [min, max], por monto y después
+        por id, hasta limit. Sin min o sin max el rango no tiene ese límite.
+     */
+    @GetMapping("/types/{type}/amounts")
+    public ResponseEntity<List<TransactionAmountDTO>> getByAmount(@PathVariable @NotBlank String type,
+                                                                  @RequestParam(required = false) BigDecimal min,
+                                                                  @RequestParam(required = false) BigDecimal max,
+                                                                  @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(toAmountDTOs(transactionService.getTransactionsByAmount(type, min, max, limit)));
+    }
+
+    public static List<TransactionAmountDTO> toAmountDTOs(List<TransactionAmount> transactions) {
+        List<TransactionAmountDTO> response = new ArrayList<>(transactions.size());
+        for (TransactionAmount transaction : transactions) {
+            response.add(new TransactionAmountDTO(transaction));
+        }
+        return response;
+    }
+
+    @GetMapping(value = "/types/{type}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamByType(@PathVariable @NotBlank String type) {
+        StreamingResponseBody body = outputStream -> {
+            // Un id por línea, escrito a medida que se recorre el índice
+            BufferedOutputStream out = new BufferedOutputStream(outputStream, 64 * 1024);
+            try {
+                transactionService.forEachTransactionIdByType(type, id -> {
+                    try {
+                        out.write(Long.toString(id).getBytes(StandardCharsets.US_ASCII));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     
     @GetMapping("/sum/{transactionId}")
     public ResponseEntity<SumResponseDTO> getSum(@PathVariable @NotNull Long transactionId) {
-        double sum = transactionService.getSum(transactionId);
+        BigDecimal sum = transactionService.getSum(transactionId);
         return ResponseEntity.ok(new SumResponseDTO(sum));
     }
 
+    @GetMapping("/ancestors/{transactionId}")
+    public ResponseEntity<List<Long>> getAncestors(@PathVariable @NotNull Long transactionId) {
+        return ResponseEntity.ok(transactionService.getAncestorIds(transactionId));
+    }
+
+    @GetMapping("/root/{transactionId}")
+    public ResponseEntity<RootResponseDTO> getRoot(@PathVariable @NotNull Long transactionId) {
+        return ResponseEntity.ok(new RootResponseDTO(transactionService.getRootId(transactionId)));
+    }
+
+    @GetMapping("/depth/{transactionId}")
+    public ResponseEntity<DepthResponseDTO> getDepth(@PathVariable @NotNull Long transactionId) {
+        return ResponseEntity.ok(new DepthResponseDTO(transactionService.getDepth(transactionId)));
+    }
+
+    @GetMapping("/descendants/{transactionId}")
+    public ResponseEntity<List<Long>> getDescendants(@PathVariable @NotNull Long transactionId,
+                                                     @RequestParam(defaultValue = "1") int depth) {
+        return ResponseEntity.ok(transactionService.getDescendantIdsAtDepth(transactionId, depth));
+    }
+
 }
@@ -0,0 +1,27 @@
+package com.webservice.transactions.infrastructure.web;
+
+import java.io.InputStream;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.webservice.transactions.infrastructure.web.dto.ImportSummaryDTO;
+
+@RestController
+@RequestMapping("/transactions")
+public class TransactionImportController {
+    private final NdjsonTransactionImporter importer;
+
+    public TransactionImportController(NdjsonTransactionImporter importer) {
+        this.importer = importer;
+    }
+
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<ImportSummaryDTO> importTransactions(InputStream body) {
+        return ResponseEntity.ok(importer.importFrom(body));
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.webservice.transactions.infrastructure.web.dto;
+
+public class BatchItemResponseDTO {
+
+    private final Long id;
+    private final String status;
+
+    public BatchItemResponseDTO(Long id, String status) {
+        this.id = id;
+        this.status = status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+}
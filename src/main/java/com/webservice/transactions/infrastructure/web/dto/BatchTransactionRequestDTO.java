@@ -0,0 +1,35 @@
+package com.webservice.transactions.infrastructure.web.dto;
+
+import java.math.BigDecimal;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class BatchTransactionRequestDTO {
+
+    private Long id;
+
+    private BigDecimal amount;
+
+    private String type;
+
+    @JsonProperty("parent_id")
+    private Long parentId;
+
+
+    public Long getId() {
+        return id;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Long getParentId() {
+        return parentId;
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.webservice.transactions.infrastructure.web.dto;
+
+public class DepthResponseDTO {
+
+    private final int depth;
+
+    public DepthResponseDTO(int depth) {
+        this.depth = depth;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+}
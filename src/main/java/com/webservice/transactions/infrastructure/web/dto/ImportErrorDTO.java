@@ -0,0 +1,27 @@
+package com.webservice.transactions.infrastructure.web.dto;
+
+public class ImportErrorDTO {
+
+    private final long line;
+    private final Long id;
+    private final String status;
+
+    public ImportErrorDTO(long line, Long id, String status) {
+        this.line = line;
+        this.id = id;
+        this.status = status;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.webservice.transactions.infrastructure.web.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class ImportSummaryDTO {
+
+    private final long rows;
+    private final long inserted;
+    @JsonProperty("already_exists")
+    private final long alreadyExists;
+    @JsonProperty("parent_not_found")
+    private final long parentNotFound;
+    private final long invalid;
+    @JsonProperty("elapsed_ms")
+    private final long elapsedMillis;
+    @JsonProperty("rows_per_second")
+    private final long rowsPerSecond;
+    private final List<ImportErrorDTO> errors;
+
+    public ImportSummaryDTO(long rows, long inserted, long alreadyExists, long parentNotFound, long invalid,
+                            long elapsedMillis, long rowsPerSecond, List<ImportErrorDTO> errors) {
+        this.rows = rows;
+        this.inserted = inserted;
+        this.alreadyExists = alreadyExists;
+        this.parentNotFound = parentNotFound;
+        this.invalid = invalid;
+        this.elapsedMillis = elapsedMillis;
+        this.rowsPerSecond = rowsPerSecond;
+        this.errors = errors;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getInserted() {
+        return inserted;
+    }
+
+    public long getAlreadyExists() {
+        return alreadyExists;
+    }
+
+    public long getParentNotFound() {
+        return parentNotFound;
+    }
+
+    public long getInvalid() {
+        return invalid;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public long getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public List<ImportErrorDTO> getErrors() {
+        return errors;
+    }
+
+}
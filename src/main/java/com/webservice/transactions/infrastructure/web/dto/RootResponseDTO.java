@@ -0,0 +1,18 @@
+package com.webservice.transactions.infrastructure.web.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class RootResponseDTO {
+
+    @JsonProperty("root_id")
+    private final long rootId;
+
+    public RootResponseDTO(long rootId) {
+        this.rootId = rootId;
+    }
+
+    public long getRootId() {
+        return rootId;
+    }
+
+}
@@ -1,14 +1,16 @@
 package com.webservice.transactions.infrastructure.web.dto;
 
+import java.math.BigDecimal;
+
 public class SumResponseDTO {
     
-    private final Double sum;
+    private final BigDecimal sum;
 
-    public SumResponseDTO(double sum) {
+    public SumResponseDTO(BigDecimal sum) {
         this.sum = sum;
     }
 
-    public double getSum() {
+    public BigDecimal getSum() {
         return sum;
     }
 
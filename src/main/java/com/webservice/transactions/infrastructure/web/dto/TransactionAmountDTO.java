@@ -0,0 +1,25 @@
+package com.webservice.transactions.infrastructure.web.dto;
+
+import java.math.BigDecimal;
+
+import com.webservice.transactions.application.TransactionAmount;
+
+public class TransactionAmountDTO {
+
+    private final long id;
+    private final BigDecimal amount;
+
+    public TransactionAmountDTO(TransactionAmount transaction) {
+        this.id = transaction.getId();
+        this.amount = transaction.getAmount();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+}
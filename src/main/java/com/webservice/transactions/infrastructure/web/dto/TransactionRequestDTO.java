@@ -1,5 +1,7 @@
 package com.webservice.transactions.infrastructure.web.dto;
 
+import java.math.BigDecimal;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import jakarta.validation.constraints.NotBlank;
@@ -8,7 +10,7 @@ import jakarta.validation.constraints.NotNull;
 public class TransactionRequestDTO {
     
     @NotNull
-    private Double amount;
+    private BigDecimal amount;
     
     @NotBlank
     private String type;
@@ -17,7 +19,7 @@ public class TransactionRequestDTO {
     private Long parentId;
 
     
-    public Double getAmount() {
+    public BigDecimal getAmount() {
         return amount;
     }
 
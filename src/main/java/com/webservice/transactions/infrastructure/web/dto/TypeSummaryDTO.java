@@ -0,0 +1,43 @@
+package com.webservice.transactions.infrastructure.web.dto;
+
+import java.math.BigDecimal;
+
+import com.webservice.transactions.application.TypeSummary;
+
+public class TypeSummaryDTO {
+
+    private final String type;
+    private final long count;
+    private final BigDecimal sum;
+    private final BigDecimal min;
+    private final BigDecimal max;
+
+    public TypeSummaryDTO(TypeSummary summary) {
+        this.type = summary.getType();
+        this.count = summary.getCount();
+        this.sum = summary.getSum();
+        this.min = summary.getMin();
+        this.max = summary.getMax();
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public BigDecimal getSum() {
+        return sum;
+    }
+
+    public BigDecimal getMin() {
+        return min;
+    }
+
+    public BigDecimal getMax() {
+        return max;
+    }
+
+}
@@ -10,8 +10,10 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import com.webservice.transactions.application.exception.ParentTransactionNotFoundException;
+import com.webservice.transactions.application.exception.SumOverflowException;
 import com.webservice.transactions.application.exception.TransactionAlreadyExistsException;
 import com.webservice.transactions.application.exception.TransactionNotFoundException;
+import com.webservice.transactions.infrastructure.cluster.ClusterPeerException;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
@@ -61,4 +63,20 @@ public class GlobalExceptionHandler {
                 .body(Map.of("message", ex.getMessage()));
     }
 
+    @ExceptionHandler(SumOverflowException.class)
+    public ResponseEntity<Map<String, String>> handleSumOverflow(
+            SumOverflowException ex) {
+
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_CONTENT)
+                .body(Map.of("message", ex.getMessage()));
+    }
+
+    @ExceptionHandler(ClusterPeerException.class)
+    public ResponseEntity<Map<String, String>> handleClusterPeer(
+            ClusterPeerException ex) {
+
+        return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                .body(Map.of("message", ex.getMessage()));
+    }
+
 }
@@ -0,0 +1,52 @@
+package com.webservice.transactions.infrastructure.web.reactive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.JacksonJsonDecoder;
+import org.springframework.http.codec.json.JacksonJsonEncoder;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+
+import com.webservice.transactions.application.ReactiveTransactionService;
+import com.webservice.transactions.application.TransactionService;
+import com.webservice.transactions.domain.AmountScale;
+
+import jakarta.validation.Validator;
+import reactor.core.scheduler.Schedulers;
+import tools.jackson.databind.json.JsonMapper;
+
+@Configuration
+@ConditionalOnProperty("transactions.reactive.port")
+public class ReactiveConfiguration {
+
+    /*
+        Con transactions.reactive.port la misma API se sirve también con WebFlux
+        en ese puerto, sobre el mismo servicio y los mismos datos. Las lecturas
+        corren en el event loop salvo que esperen E/S (jdbc, o en modo cluster
+        otros nodos); las escrituras y las sumas que recorren el árbol, en
+        boundedElastic.
+     */
+    @Bean
+    public ReactiveTransactionService reactiveTransactionService(TransactionService transactionService) {
+        return new ReactiveTransactionService(transactionService, Schedulers.boundedElastic(),
+                transactionService.readsBlock() ? Schedulers.boundedElastic() : Schedulers.immediate(),
+                Schedulers.boundedElastic());
+    }
+
+    @Bean
+    public ReactiveTransactionServer reactiveTransactionServer(@Value("${transactions.reactive.port}") int port,
+                                                               ReactiveTransactionService reactiveTransactionService,
+                                                               AmountScale amountScale, Validator validator, JsonMapper jsonMapper) {
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().maxInMemorySize(TransactionRouter.MAX_BODY_BYTES);
+                    codecs.defaultCodecs().jacksonJsonEncoder(new JacksonJsonEncoder(jsonMapper));
+                    codecs.defaultCodecs().jacksonJsonDecoder(new JacksonJsonDecoder(jsonMapper));
+                })
+                .build();
+        TransactionRouter router = new TransactionRouter(reactiveTransactionService, amountScale, validator);
+        return new ReactiveTransactionServer(RouterFunctions.toHttpHandler(router.routes(), strategies), port);
+    }
+}
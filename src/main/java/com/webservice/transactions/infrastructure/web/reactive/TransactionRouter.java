@@ -0,0 +1,273 @@
+package com.webservice.transactions.infrastructure.web.reactive;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.queryParam;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+
+import com.webservice.transactions.application.ReactiveTransactionService;
+import com.webservice.transactions.application.TypeSummary;
+import com.webservice.transactions.application.exception.ParentTransactionNotFoundException;
+import com.webservice.transactions.application.exception.SumOverflowException;
+import com.webservice.transactions.application.exception.TransactionAlreadyExistsException;
+import com.webservice.transactions.application.exception.TransactionNotFoundException;
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.infrastructure.cluster.ClusterPeerException;
+import com.webservice.transactions.infrastructure.web.TransactionController;
+import com.webservice.transactions.infrastructure.web.dto.BatchItemResponseDTO;
+import com.webservice.transactions.infrastructure.web.dto.BatchTransactionRequestDTO;
+import com.webservice.transactions.infrastructure.web.dto.DepthResponseDTO;
+import com.webservice.transactions.infrastructure.web.dto.RootResponseDTO;
+import com.webservice.transactions.infrastructure.web.dto.SumResponseDTO;
+import com.webservice.transactions.infrastructure.web.dto.TransactionRequestDTO;
+import com.webservice.transactions.infrastructure.web.dto.TypeSummaryDTO;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+    Los mismos endpoints que TransactionController (rutas, cuerpos, estados y
+    mensajes de error de GlobalExceptionHandler) sobre WebFlux.
+ */
+public class TransactionRouter {
+
+    private static final byte[] OK_BODY = "{\"status\":\"ok\"}".getBytes(StandardCharsets.US_ASCII);
+    private static final int STREAM_CHUNK = 4096;
+    // Los cuerpos se decodifican enteros en memoria: alcanza para un lote de MAX_BATCH_SIZE ítems
+    public static final int MAX_BODY_BYTES = 4 * 1024 * 1024;
+    private static final ParameterizedTypeReference<List<BatchTransactionRequestDTO>> BATCH_REQUEST = new ParameterizedTypeReference<>() {};
+
+    private final ReactiveTransactionService transactionService;
+    private final AmountScale amountScale;
+    private final Validator validator;
+
+    public TransactionRouter(ReactiveTransactionService transactionService, AmountScale amountScale, Validator validator) {
+        this.transactionService = transactionService;
+        this.amountScale = amountScale;
+        this.validator = validator;
+    }
+
+    public RouterFunction<ServerResponse> routes() {
+        return RouterFunctions.route()
+                .path("/transactions", builder -> builder
+                        .PUT("/{transactionId}", this::create)
+                        .POST("/batch", this::createBatch)
+                        .GET("/types", this::getTypeSummaries)
+                        .GET("/types/{type}/summary", this::getTypeSummary)
+                        .GET("/types/{type}/stream", this::streamByType)
+                        .GET("/types/{type}/amounts", this::getByAmount)
+                        .GET("/types/{type}", queryParam("limit", limit -> true), this::getPageByType)
+                        .GET("/types/{type}", this::getByType)
+                        .GET("/sum/{transactionId}", this::getSum)
+                        .GET("/ancestors/{transactionId}", this::getAncestors)
+                        .GET("/root/{transactionId}", this::getRoot)
+                        .GET("/depth/{transactionId}", this::getDepth)
+                        .GET("/descendants/{transactionId}", this::getDescendants))
+                // defer: lo que un handler lanza antes de armar su Mono también llega a error()
+                .filter((request, next) -> Mono.defer(() -> next.handle(request)).onErrorResume(TransactionRouter::error))
+                .build();
+    }
+
+    private Mono<ServerResponse> create(ServerRequest request) {
+        Long transactionId = longPath(request, "transactionId");
+        return request.bodyToMono(TransactionRequestDTO.class)
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("Transaction properties cannot be null")))
+                .flatMap(body -> {
+                    Map<String, String> errors = validate(body);
+                    if (!errors.isEmpty()) {
+                        return ServerResponse.badRequest().bodyValue(errors);
+                    }
+                    return transactionService.createTransaction(transactionId, body.getAmount(), body.getType(), body.getParentId())
+                            .then(ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(OK_BODY));
+                });
+    }
+
+    private Mono<ServerResponse> createBatch(ServerRequest request) {
+        return request.bodyToMono(BATCH_REQUEST).flatMap(requests -> {
+            TransactionController.checkBatchSize(requests.size());
+            List<Transaction> transactions = new ArrayList<>(requests.size());
+            for (BatchTransactionRequestDTO item : requests) {
+                if (item == null || item.getAmount() == null) {
+                    return Mono.error(new IllegalArgumentException("Transaction properties cannot be null"));
+                }
+                long amount = amountScale.toMinorUnits(item.getAmount());
+                transactions.add(new Transaction(item.getId(), amount, item.getType(), item.getParentId()));
+            }
+
+            return transactionService.createTransactions(transactions).flatMap(results -> {
+                List<BatchItemResponseDTO> response = new ArrayList<>(results.size());
+                for (int i = 0; i < results.size(); i++) {
+                    response.add(new BatchItemResponseDTO(transactions.get(i).getId(), TransactionController.batchStatus(results.get(i))));
+                }
+                return ServerResponse.ok().bodyValue(response);
+            });
+        });
+    }
+
+    // Igual que TransactionController: todos, por prefijo o los de ?type=a&type=b
+    private Mono<ServerResponse> getTypeSummaries(ServerRequest request) {
+        String prefix = request.queryParam("prefix").orElse("");
+        List<String> types = request.queryParams().get("type");
+        Mono<List<TypeSummary>> summaries;
+        if (types == null) {
+            summaries = transactionService.getTypeSummaries(prefix);
+        } else {
+            summaries = Flux.fromIterable(new TreeSet<>(types))
+                    .filter(type -> !type.isBlank() && type.startsWith(prefix))
+                    .concatMap(transactionService::getTypeSummary)
+                    .collectList();
+        }
+        return summaries.flatMap(found -> {
+            List<TypeSummaryDTO> response = new ArrayList<>(found.size());
+            for (TypeSummary summary : found) {
+                response.add(new TypeSummaryDTO(summary));
+            }
+            return ServerResponse.ok().bodyValue(response);
+        });
+    }
+
+    private Mono<ServerResponse> getTypeSummary(ServerRequest request) {
+        return transactionService.getTypeSummary(type(request))
+                .flatMap(summary -> ServerResponse.ok().bodyValue(new TypeSummaryDTO(summary)));
+    }
+
+    private Mono<ServerResponse> getByType(ServerRequest request) {
+        return transactionService.getTransactionIdsByType(type(request))
+                .flatMap(ids -> ServerResponse.ok().bodyValue(ids));
+    }
+
+    private Mono<ServerResponse> getPageByType(ServerRequest request) {
+        int limit = intParam(request, "limit", 0);
+        long after = request.queryParam("after").map(Long::parseLong).orElse(0L);
+        return transactionService.getTransactionIdsByType(type(request), after, limit).flatMap(page -> {
+            ServerResponse.BodyBuilder response = ServerResponse.ok();
+            if (page.getNextCursor() != null) {
+                response.header(TransactionController.NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+            }
+            return response.bodyValue(page.getIds());
+        });
+    }
+
+    private Mono<ServerResponse> getByAmount(ServerRequest request) {
+        BigDecimal min = request.queryParam("min").map(BigDecimal::new).orElse(null);
+        BigDecimal max = request.queryParam("max").map(BigDecimal::new).orElse(null);
+        return transactionService.getTransactionsByAmount(type(request), min, max, intParam(request, "limit", 100))
+                .flatMap(found -> ServerResponse.ok().bodyValue(TransactionController.toAmountDTOs(found)));
+    }
+
+    /*
+        Un id por línea, en bloques de STREAM_CHUNK ids por buffer.
+     */
+    private Mono<ServerResponse> streamByType(ServerRequest request) {
+        DataBufferFactory buffers = request.exchange().getResponse().bufferFactory();
+        Flux<DataBuffer> body = transactionService.streamTransactionIdsByType(type(request))
+                .buffer(STREAM_CHUNK)
+                .map(ids -> {
+                    StringBuilder lines = new StringBuilder(ids.size() * 8);
+                    for (Long id : ids) {
+                        lines.append(id).append('\n');
+                    }
+                    return buffers.wrap(lines.toString().getBytes(StandardCharsets.US_ASCII));
+                });
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON).body(BodyInserters.fromDataBuffers(body));
+    }
+
+    private Mono<ServerResponse> getSum(ServerRequest request) {
+        return transactionService.getSum(longPath(request, "transactionId"))
+                .flatMap(sum -> ServerResponse.ok().bodyValue(new SumResponseDTO(sum)));
+    }
+
+    private Mono<ServerResponse> getAncestors(ServerRequest request) {
+        return transactionService.getAncestorIds(longPath(request, "transactionId"))
+                .flatMap(ids -> ServerResponse.ok().bodyValue(ids));
+    }
+
+    private Mono<ServerResponse> getRoot(ServerRequest request) {
+        return transactionService.getRootId(longPath(request, "transactionId"))
+                .flatMap(rootId -> ServerResponse.ok().bodyValue(new RootResponseDTO(rootId)));
+    }
+
+    private Mono<ServerResponse> getDepth(ServerRequest request) {
+        return transactionService.getDepth(longPath(request, "transactionId"))
+                .flatMap(depth -> ServerResponse.ok().bodyValue(new DepthResponseDTO(depth)));
+    }
+
+    private Mono<ServerResponse> getDescendants(ServerRequest request) {
+        return transactionService.getDescendantIdsAtDepth(longPath(request, "transactionId"), intParam(request, "depth", 1))
+                .flatMap(ids -> ServerResponse.ok().bodyValue(ids));
+    }
+
+    private Map<String, String> validate(TransactionRequestDTO body) {
+        Map<String, String> errors = new HashMap<>();
+        Set<ConstraintViolation<TransactionRequestDTO>> violations = validator.validate(body);
+        for (ConstraintViolation<TransactionRequestDTO> violation : violations) {
+            errors.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        return errors;
+    }
+
+    private static String type(ServerRequest request) {
+        String type = request.pathVariable("type");
+        if (type.isBlank()) {
+            throw new IllegalArgumentException("Type cannot be blank");
+        }
+        return type;
+    }
+
+    // NumberFormatException es un IllegalArgumentException: termina en 400
+    private static Long longPath(ServerRequest request, String name) {
+        return Long.valueOf(request.pathVariable(name));
+    }
+
+    private static int intParam(ServerRequest request, String name, int defaultValue) {
+        return request.queryParam(name).map(Integer::parseInt).orElse(defaultValue);
+    }
+
+    private static Mono<ServerResponse> error(Throwable error) {
+        HttpStatus status;
+        String message = error.getMessage();
+        if (error instanceof TransactionNotFoundException) {
+            status = HttpStatus.NOT_FOUND;
+        } else if (error instanceof TransactionAlreadyExistsException) {
+            status = HttpStatus.CONFLICT;
+        } else if (error instanceof ParentTransactionNotFoundException || error instanceof IllegalArgumentException) {
+            status = HttpStatus.BAD_REQUEST;
+        } else if (error instanceof ServerWebInputException input) {
+            status = HttpStatus.BAD_REQUEST;
+            message = input.getReason();
+        } else if (error instanceof DataBufferLimitException) {
+            status = HttpStatus.BAD_REQUEST;
+            message = "Request body cannot be larger than " + MAX_BODY_BYTES + " bytes";
+        } else if (error instanceof SumOverflowException) {
+            status = HttpStatus.UNPROCESSABLE_CONTENT;
+        } else if (error instanceof ClusterPeerException) {
+            status = HttpStatus.BAD_GATEWAY;
+        } else {
+            return Mono.error(error);
+        }
+        return ServerResponse.status(status).bodyValue(Map.of("message", String.valueOf(message)));
+    }
+
+}
@@ -0,0 +1,243 @@
+package com.webservice.transactions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.server.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.webservice.transactions.infrastructure.web.reactive.ReactiveTransactionServer;
+
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/*
+    API servlet (Tomcat) vs router reactivo (Netty), los dos en el mismo
+    contexto y sobre los mismos datos:
+    - idle connections: IDLE_CONNECTIONS clientes que hacen un request y dejan
+      la conexión abierta (keep-alive). Se mide heap (después de un GC),
+      memoria directa de Netty y threads por conexión; el heap incluye el lado
+      cliente de los sockets, que es el mismo para los dos.
+    - sums: clientes que piden sumas sin pausa, con esas conexiones abiertas.
+    Sólo imprime los números: mvn test -Dgroups=benchmark -DexcludedGroups= -Dtest=ReactiveLoadTest
+    Tomcat acepta hasta 8192 conexiones (server.tomcat.max-connections); con
+    más, las que sobran esperan en el backlog.
+ */
+class ReactiveLoadTest {
+
+    private static final long WARMUP_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(3);
+    private static final int SUM_CLIENTS = 8;
+    private static final int IDLE_CONNECTIONS = Integer.getInteger("load.connections", 4_000);
+    private static final int TREE_SIZE = 1_000;
+
+    @Test
+    void reactivePort_servesTheSameDataAsTheServletApi() throws Exception {
+        try (ConfigurableApplicationContext context = start()) {
+            HttpClient client = HttpClient.newHttpClient();
+            String servlet = servletUri(context);
+            String reactive = reactiveUri(context);
+
+            assertEquals(200, client.send(put(servlet, 1L, null), HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(200, client.send(put(reactive, 2L, 1L), HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(409, client.send(put(reactive, 1L, null), HttpResponse.BodyHandlers.discarding()).statusCode());
+
+            for (String base : List.of(servlet, reactive)) {
+                HttpResponse<String> sum = client.send(HttpRequest.newBuilder(URI.create(base + "/transactions/sum/1")).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                assertEquals("{\"sum\":2.00}", sum.body());
+            }
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void servletVsReactive() throws Exception {
+        try (ConfigurableApplicationContext context = start()) {
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            String servlet = servletUri(context);
+            assertEquals(200, client.send(put(servlet, 1L, null), HttpResponse.BodyHandlers.discarding()).statusCode());
+            for (long id = 2; id <= TREE_SIZE; id++) {
+                assertEquals(200, client.send(put(servlet, id, id / 2), HttpResponse.BodyHandlers.discarding()).statusCode());
+            }
+
+            for (String base : List.of(servlet, reactiveUri(context))) {
+                String mode = base.equals(servlet) ? "servlet " : "reactive";
+                HttpRequest sum = HttpRequest.newBuilder(URI.create(base + "/transactions/sum/1")).build();
+                measure(SUM_CLIENTS, WARMUP_NANOS, () -> send(client, sum));
+                System.out.printf("%s sums                %s%n", mode, measure(SUM_CLIENTS, WINDOW_NANOS, () -> send(client, sum)));
+
+                long heapBefore = usedHeapAfterGc();
+                long directBefore = nettyDirectMemory();
+                int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+                List<Socket> idle = openIdleConnections(URI.create(base).getPort());
+                try {
+                    long heap = usedHeapAfterGc() - heapBefore;
+                    long direct = nettyDirectMemory() - directBefore;
+                    int threads = ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore;
+                    System.out.printf("%s %,d idle connections  heap %6.1f KB/conn  netty direct %6.1f KB/conn  %+d threads%n",
+                            mode, idle.size(), heap / 1024.0 / idle.size(), direct / 1024.0 / idle.size(), threads);
+                    System.out.printf("%s sums + idle         %s%n", mode, measure(SUM_CLIENTS, WINDOW_NANOS, () -> send(client, sum)));
+                } finally {
+                    for (Socket socket : idle) {
+                        socket.close();
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+        Cada conexión manda un GET con keep-alive, lee la respuesta entera y
+        queda abierta sin hacer nada más.
+     */
+    private static List<Socket> openIdleConnections(int port) throws IOException {
+        byte[] request = ("GET /transactions/depth/1 HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        List<Socket> sockets = new ArrayList<>(IDLE_CONNECTIONS);
+        for (int i = 0; i < IDLE_CONNECTIONS; i++) {
+            Socket socket = new Socket("localhost", port);
+            sockets.add(socket);
+            socket.getOutputStream().write(request);
+            readResponse(socket.getInputStream());
+        }
+        return sockets;
+    }
+
+    // Headers hasta la línea vacía y después el body, con Content-Length o en chunks (Tomcat)
+    private static void readResponse(InputStream in) throws IOException {
+        List<String> headers = new ArrayList<>();
+        for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+            headers.add(line.toLowerCase());
+        }
+        assertTrue(headers.get(0).startsWith("http/1.1 200"), headers.get(0));
+        for (String header : headers) {
+            if (header.startsWith("content-length:")) {
+                in.readNBytes(Integer.parseInt(header.substring("content-length:".length()).trim()));
+                return;
+            }
+        }
+        for (int size = Integer.parseInt(readLine(in), 16); size > 0; size = Integer.parseInt(readLine(in), 16)) {
+            in.readNBytes(size);
+            readLine(in);
+        }
+        readLine(in);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < 0) {
+                throw new IOException("Connection closed before the response ended");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long nettyDirectMemory() {
+        return PooledByteBufAllocator.DEFAULT.metric().usedDirectMemory();
+    }
+
+    /*
+        clients threads virtuales mandando requests sin pausa durante nanos;
+        retorna requests por segundo y percentiles de latencia.
+     */
+    private static String measure(int clients, long nanos, ThrowingRunnable request) throws Exception {
+        long deadline = System.nanoTime() + nanos;
+        List<Future<long[]>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                results.add(executor.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        request.run();
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - start;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+        }
+        List<long[]> perClient = new ArrayList<>();
+        for (Future<long[]> result : results) {
+            perClient.add(result.get());
+        }
+        long[] latencies = perClient.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return String.format("%,7d req/s  p50 %7.2f ms  p99 %8.2f ms  max %8.2f ms",
+                latencies.length * TimeUnit.SECONDS.toNanos(1) / nanos,
+                millis(latencies, 0.5), millis(latencies, 0.99), millis(latencies, 1.0));
+    }
+
+    private static void send(HttpClient client, HttpRequest request) throws Exception {
+        assertEquals(200, client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+    }
+
+    private static HttpRequest put(String base, long id, Long parentId) {
+        String body = parentId != null
+                ? "{\"amount\":1.0,\"type\":\"cars\",\"parent_id\":" + parentId + "}"
+                : "{\"amount\":1.0,\"type\":\"cars\"}";
+        return HttpRequest.newBuilder(URI.create(base + "/transactions/" + id))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    private static String servletUri(ConfigurableApplicationContext context) {
+        return "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    private static String reactiveUri(ConfigurableApplicationContext context) {
+        return "http://localhost:" + context.getBean(ReactiveTransactionServer.class).getPort();
+    }
+
+    private static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(TransactionsApplication.class).run(
+                "--server.port=0",
+                "--transactions.reactive.port=0");
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
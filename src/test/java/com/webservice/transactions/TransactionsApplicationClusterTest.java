@@ -0,0 +1,228 @@
+package com.webservice.transactions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+
+/*
+    Dos nodos en localhost, con rangos de 100 ids: 0-99 son del nodo 0,
+    100-199 del nodo 1, 200-299 otra vez del nodo 0. Cada request se manda a
+    un nodo que no es el dueño de lo que toca, o que tiene sólo una parte.
+ */
+class TransactionsApplicationClusterTest {
+
+    private static final String SECRET = "test-secret";
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final int[] ports = {freePort(), freePort()};
+    private ConfigurableApplicationContext node0;
+    private ConfigurableApplicationContext node1;
+    @TempDir
+    Path data;
+
+    @BeforeEach
+    void startNodes() {
+        node0 = start(0);
+        node1 = start(1);
+    }
+
+    @AfterEach
+    void stopNodes() {
+        node1.close();
+        node0.close();
+    }
+
+    @Test
+    void cluster_treeAcrossNodes_sumsAndWalksFromAnyNode() throws Exception {
+        // 1 (nodo 0) -> 100 (nodo 1) -> 2 (nodo 0); 1 -> 3 (nodo 0) -> 101 (nodo 1)
+        assertEquals(200, put(1, 1, "{\"amount\":100.00,\"type\":\"cars\"}"));
+        assertEquals(200, put(0, 100, "{\"amount\":50.00,\"type\":\"shopping\",\"parent_id\":1}"));
+        assertEquals(200, put(1, 2, "{\"amount\":25.00,\"type\":\"cars\",\"parent_id\":100}"));
+        assertEquals(200, put(1, 3, "{\"amount\":10.00,\"type\":\"cars\",\"parent_id\":1}"));
+        assertEquals(200, put(0, 101, "{\"amount\":5.00,\"type\":\"cars\",\"parent_id\":3}"));
+
+        for (int node = 0; node < 2; node++) {
+            assertEquals("{\"sum\":190.00}", get(node, "/transactions/sum/1"));
+            assertEquals("{\"sum\":75.00}", get(node, "/transactions/sum/100"));
+            assertEquals("{\"sum\":15.00}", get(node, "/transactions/sum/3"));
+            assertEquals("[1,100]", get(node, "/transactions/ancestors/2"));
+            assertEquals("{\"root_id\":1}", get(node, "/transactions/root/101"));
+            assertEquals("{\"depth\":2}", get(node, "/transactions/depth/2"));
+            assertEquals("[101,2]", get(node, "/transactions/descendants/1?depth=2"));
+            assertEquals("[1,2,3,101]", get(node, "/transactions/types/cars"));
+            assertEquals("{\"count\":4,\"max\":100.00,\"min\":5.00,\"sum\":140.00,\"type\":\"cars\"}",
+                    get(node, "/transactions/types/cars/summary"));
+            assertEquals("[{\"amount\":5.00,\"id\":101},{\"amount\":10.00,\"id\":3}]",
+                    get(node, "/transactions/types/cars/amounts?max=25.00&limit=2"));
+        }
+    }
+
+    @Test
+    void cluster_pagesAcrossNodes_stayStableWhileNodesGrow() throws Exception {
+        for (long id : new long[]{1, 2, 3, 100, 101}) {
+            assertEquals(200, put(0, id, "{\"amount\":1.00,\"type\":\"cars\"}"));
+        }
+
+        HttpResponse<String> first = getPage(1, "/transactions/types/cars?limit=2");
+        assertEquals("[1,2]", first.body());
+        String cursor = first.headers().firstValue("X-Next-Cursor").orElseThrow();
+
+        // Un id nuevo en el nodo 0 no corre las páginas que siguen
+        assertEquals(200, put(1, 4, "{\"amount\":1.00,\"type\":\"cars\"}"));
+        HttpResponse<String> second = getPage(0, "/transactions/types/cars?limit=2&after=" + cursor);
+        assertEquals("[3,4]", second.body());
+        cursor = second.headers().firstValue("X-Next-Cursor").orElseThrow();
+
+        HttpResponse<String> third = getPage(1, "/transactions/types/cars?limit=2&after=" + cursor);
+        assertEquals("[100,101]", third.body());
+        cursor = third.headers().firstValue("X-Next-Cursor").orElseThrow();
+
+        HttpResponse<String> last = getPage(0, "/transactions/types/cars?limit=2&after=" + cursor);
+        assertEquals("[]", last.body());
+        assertTrue(last.headers().firstValue("X-Next-Cursor").isEmpty());
+    }
+
+    @Test
+    void cluster_restartedNodes_rebuildLinksAcrossNodes() throws Exception {
+        // 1 (nodo 0) -> 100 (nodo 1) -> 2 (nodo 0)
+        assertEquals(200, put(0, 1, "{\"amount\":100.00,\"type\":\"cars\"}"));
+        assertEquals(200, put(0, 100, "{\"amount\":50.00,\"type\":\"cars\",\"parent_id\":1}"));
+        assertEquals(200, put(0, 2, "{\"amount\":25.00,\"type\":\"cars\",\"parent_id\":100}"));
+
+        // El nodo del padre vuelve a pedir sus aristas; el del hijo las vuelve a anunciar
+        node0.close();
+        node0 = start(0);
+        assertEquals("{\"sum\":175.00}", get(1, "/transactions/sum/1"));
+        node1.close();
+        node1 = start(1);
+        assertEquals("{\"sum\":175.00}", get(0, "/transactions/sum/1"));
+        assertEquals("[1,100]", get(1, "/transactions/ancestors/2"));
+        assertEquals(409, put(1, 100, "{\"amount\":50.00,\"type\":\"cars\",\"parent_id\":1}"));
+    }
+
+    @Test
+    void cluster_parentNodeDown_leavesNothingBehind() throws Exception {
+        assertEquals(200, put(0, 1, "{\"amount\":100.00,\"type\":\"cars\"}"));
+        node0.close();
+
+        assertEquals(502, put(1, 100, "{\"amount\":50.00,\"type\":\"cars\",\"parent_id\":1}"));
+        assertEquals(404, status(1, "/transactions/sum/100"));
+
+        node0 = start(0);
+        assertEquals(200, put(1, 100, "{\"amount\":50.00,\"type\":\"cars\",\"parent_id\":1}"));
+        assertEquals("{\"sum\":150.00}", get(0, "/transactions/sum/1"));
+    }
+
+    @Test
+    void cluster_internalEndpoints_needTheSecretAndAnOwnedId() throws Exception {
+        String body = "{\"amount\":50.00,\"type\":\"cars\"}";
+        assertEquals(403, internalPut(0, "/cluster/transactions/1", body, null));
+        assertEquals(403, internalPut(0, "/cluster/transactions/1", body, "wrong"));
+        assertEquals(403, internalPut(0, "/cluster/children/1/100", "", null));
+
+        assertEquals(400, internalPut(0, "/cluster/transactions/100", body, SECRET));
+        assertEquals(200, put(0, 1, body));
+        assertEquals(400, internalPut(0, "/cluster/children/1/2", "", SECRET));
+        assertEquals(400, internalPut(1, "/cluster/children/1/100", "", SECRET));
+        assertEquals(200, internalPut(0, "/cluster/transactions/2", body, SECRET));
+        assertEquals("[2]", get(0, "/transactions/types/cars?limit=1&after=1"));
+    }
+
+    @Test
+    void cluster_parentOnOtherNodeMissing_returnsBadRequest() throws Exception {
+        assertEquals(400, put(0, 100, "{\"amount\":50.00,\"type\":\"cars\",\"parent_id\":1}"));
+        assertEquals(404, status(1, "/transactions/sum/100"));
+    }
+
+    @Test
+    void cluster_duplicateSentToOtherNode_returnsConflict() throws Exception {
+        assertEquals(200, put(0, 100, "{\"amount\":50.00,\"type\":\"cars\"}"));
+        assertEquals(409, put(0, 100, "{\"amount\":50.00,\"type\":\"cars\"}"));
+        assertEquals(409, put(1, 100, "{\"amount\":50.00,\"type\":\"cars\"}"));
+    }
+
+    @Test
+    void cluster_batchAcrossNodes_insertsEachItemOnItsOwner() throws Exception {
+        String body = "[{\"id\":1,\"amount\":10.00,\"type\":\"cars\"},"
+                + "{\"id\":150,\"amount\":20.00,\"type\":\"cars\",\"parent_id\":1},"
+                + "{\"id\":150,\"amount\":20.00,\"type\":\"cars\"},"
+                + "{\"id\":250,\"amount\":30.00,\"type\":\"cars\",\"parent_id\":999}]";
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri(1, "/transactions/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals("[{\"id\":1,\"status\":\"ok\"},{\"id\":150,\"status\":\"ok\"},"
+                + "{\"id\":150,\"status\":\"already_exists\"},{\"id\":250,\"status\":\"parent_not_found\"}]", response.body());
+        assertEquals("{\"sum\":30.00}", get(0, "/transactions/sum/1"));
+    }
+
+    private int put(int node, long id, String body) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(node, "/transactions/" + id))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString()).statusCode();
+    }
+
+    private int internalPut(int node, String path, String body, String secret) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(node, path))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(body));
+        if (secret != null) {
+            request.header("X-Cluster-Secret", secret);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private String get(int node, String path) throws Exception {
+        return getPage(node, path).body();
+    }
+
+    private HttpResponse<String> getPage(int node, String path) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri(node, path)).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode(), path + ": " + response.body());
+        return response;
+    }
+
+    private int status(int node, String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(node, path)).build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private URI uri(int node, String path) {
+        return URI.create("http://localhost:" + ports[node] + path);
+    }
+
+    private ConfigurableApplicationContext start(int node) {
+        return new SpringApplicationBuilder(TransactionsApplication.class).run(
+                "--server.port=" + ports[node],
+                "--transactions.cluster.nodes=http://localhost:" + ports[0] + ",http://localhost:" + ports[1],
+                "--transactions.cluster.node-index=" + node,
+                "--transactions.cluster.range-size=100",
+                "--transactions.cluster.secret=" + SECRET,
+                "--transactions.wal.enabled=true",
+                "--transactions.wal.path=" + data.resolve("node" + node + ".wal"),
+                "--transactions.snapshot.path=" + data.resolve("node" + node + ".snapshot"));
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.webservice.transactions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/*
+    Levanta la aplicación entera, hace algunos requests y lee /actuator/prometheus
+    como lo haría Prometheus.
+ */
+class TransactionsApplicationMetricsTest {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void prometheusEndpoint_exposesEndpointRepositoryAndTreeMetrics() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TransactionsApplication.class)
+                .run("--server.port=0")) {
+            String base = "http://localhost:" + context.getBean(Environment.class).getProperty("local.server.port");
+            assertEquals(200, put(base + "/transactions/1", "{\"amount\":100.0,\"type\":\"cars\"}"));
+            assertEquals(200, put(base + "/transactions/2", "{\"amount\":50.0,\"type\":\"cars\",\"parent_id\":1}"));
+            assertEquals(200, get(base + "/transactions/sum/1").statusCode());
+
+            HttpResponse<String> scrape = get(base + "/actuator/prometheus");
+
+            assertEquals(200, scrape.statusCode());
+            String metrics = scrape.body();
+            assertTrue(metrics.contains("http_server_requests_seconds_bucket{"), "endpoint latency histogram");
+            assertTrue(metrics.contains("quantile=\"0.999\""), "endpoint latency percentiles");
+            assertTrue(metrics.contains("transactions_repository_seconds_count{operation=\"insertIfAbsent\"} 2"), "repository timers");
+            assertTrue(metrics.contains("transactions_repository_lock_wait_seconds_count"), "lock wait");
+            assertTrue(metrics.contains("transactions_sum_nodes_count{"), "sum tree walk");
+            assertTrue(metrics.contains("transactions_type_size{type=\"cars\"} 2.0"), "index size per type");
+            assertTrue(metrics.contains("transactions_heap_per_transaction_bytes"), "heap per transaction");
+            assertTrue(metrics.contains("cache_gets_total{cache=\"transactions.sum\""), "sum cache hits and misses");
+            assertTrue(metrics.contains("cache_evictions_total{cache=\"transactions.sum\""), "sum cache evictions");
+        }
+    }
+
+    private int put(String uri, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private HttpResponse<String> get(String uri) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(uri)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
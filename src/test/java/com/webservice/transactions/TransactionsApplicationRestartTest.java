@@ -0,0 +1,111 @@
+package com.webservice.transactions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.webservice.transactions.application.TransactionService;
+import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.infrastructure.persistence.DurableTransactionRepository;
+import com.webservice.transactions.infrastructure.persistence.ForwardingTransactionRepository;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+    Levanta la aplicación entera con el log y los snapshots en un directorio
+    temporal, la baja (o copia sus archivos con la aplicación corriendo, como
+    quedarían si el proceso muriera) y la vuelve a levantar sobre esos archivos.
+ */
+class TransactionsApplicationRestartTest {
+
+    private final Path directory = createDirectory();
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void restart_afterShutdown_restoresTransactionsFromSnapshot() {
+        Path data = directory.resolve("data");
+        try (ConfigurableApplicationContext context = start(data, "map")) {
+            createTree(context.getBean(TransactionService.class));
+        }
+        assertTrue(Files.exists(data.resolve("transactions.snapshot")));
+
+        try (ConfigurableApplicationContext context = start(data, "map")) {
+            assertRestored(context.getBean(TransactionService.class));
+        }
+    }
+
+    @Test
+    void restart_afterKill_restoresTransactionsFromSnapshotAndLogTail() throws IOException {
+        Path data = directory.resolve("data");
+        Path crashed = directory.resolve("crashed");
+        try (ConfigurableApplicationContext context = start(data, "columnar")) {
+            TransactionService service = context.getBean(TransactionService.class);
+            service.createTransaction(1L, new BigDecimal("100.00"), "cars", null);
+            ForwardingTransactionRepository.unwrap(context.getBean(TransactionRepository.class), DurableTransactionRepository.class)
+                    .orElseThrow().snapshot();
+            service.createTransaction(2L, new BigDecimal("50.00"), "shopping", 1L);
+            service.createTransaction(3L, new BigDecimal("25.00"), "cars", 2L);
+            service.createTransaction(4L, new BigDecimal("10.00"), "cars", 1L);
+
+            // Lo que hay en disco en este momento es lo que encontraría un arranque después de un kill -9
+            Files.createDirectories(crashed);
+            for (String file : List.of("transactions.wal", "transactions.snapshot")) {
+                Files.copy(data.resolve(file), crashed.resolve(file), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        try (ConfigurableApplicationContext context = start(crashed, "columnar")) {
+            assertRestored(context.getBean(TransactionService.class));
+        }
+    }
+
+    private static void createTree(TransactionService service) {
+        service.createTransaction(1L, new BigDecimal("100.00"), "cars", null);
+        service.createTransaction(2L, new BigDecimal("50.00"), "shopping", 1L);
+        service.createTransaction(3L, new BigDecimal("25.00"), "cars", 2L);
+        service.createTransaction(4L, new BigDecimal("10.00"), "cars", 1L);
+    }
+
+    private static void assertRestored(TransactionService service) {
+        assertEquals(List.of(1L, 3L, 4L), service.getTransactionIdsByType("cars"));
+        assertEquals(new BigDecimal("185.00"), service.getSum(1L));
+        assertEquals(new BigDecimal("75.00"), service.getSum(2L));
+    }
+
+    private static ConfigurableApplicationContext start(Path data, String repositoryType) {
+        // Como argumentos, para que pisen lo que define application.properties
+        return new SpringApplicationBuilder(TransactionsApplication.class).run(
+                "--server.port=0",
+                "--transactions.repository.type=" + repositoryType,
+                "--transactions.wal.enabled=true",
+                "--transactions.wal.path=" + data.resolve("transactions.wal"),
+                "--transactions.snapshot.path=" + data.resolve("transactions.snapshot"));
+    }
+
+    private static Path createDirectory() {
+        try {
+            return Files.createTempDirectory("transactions-restart");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
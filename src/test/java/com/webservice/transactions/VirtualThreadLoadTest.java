@@ -0,0 +1,208 @@
+package com.webservice.transactions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.tomcat.TomcatWebServer;
+import org.springframework.boot.web.server.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/*
+    Pool de threads de plataforma de Tomcat (200 threads) vs
+    spring.threads.virtual.enabled, en tres escenarios:
+    - sums: clientes que piden sumas sin pausa (sólo CPU).
+    - slow uploads: además, clientes lentos que mandan los headers de un PUT y
+      tardan en mandar el body; cada uno retiene un thread de Tomcat.
+    - durable writes: muchos PUT concurrentes con el log activado, cada uno
+      bloqueado hasta el fsync del group commit.
+    Sólo imprime los números: mvn test -Dgroups=benchmark -DexcludedGroups= -Dtest=VirtualThreadLoadTest
+ */
+class VirtualThreadLoadTest {
+
+    private static final long WARMUP_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(3);
+    private static final int SUM_CLIENTS = 8;
+    /*
+        En JDK 21 Tomcat espera el body dentro de un monitor, lo que retiene el
+        carrier del thread virtual; el scheduler agrega carriers hasta 256 y
+        después todo se frena. Por eso hay menos clientes lentos que eso.
+     */
+    private static final int SLOW_CLIENTS = 200;
+    private static final long SLOW_BODY_DELAY_MILLIS = 4_000;
+    private static final int DURABLE_WRITERS = 400;
+
+    private final AtomicLong ids = new AtomicLong(1);
+
+    @Test
+    void virtualThreadsEnabled_tomcatUsesVirtualThreadExecutor() {
+        try (ConfigurableApplicationContext context = start(true)) {
+            TomcatWebServer server = (TomcatWebServer) ((WebServerApplicationContext) context).getWebServer();
+            assertInstanceOf(VirtualThreadExecutor.class, server.getTomcat().getConnector().getProtocolHandler().getExecutor());
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void platformPoolVsVirtualThreads() throws Exception {
+        for (boolean virtualThreads : new boolean[] {false, true}) {
+            String mode = virtualThreads ? "virtual " : "platform";
+            try (ConfigurableApplicationContext context = start(virtualThreads)) {
+                String base = baseUri(context);
+                HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+                assertEquals(200, client.send(put(base, 1L), HttpResponse.BodyHandlers.discarding()).statusCode());
+                HttpRequest sum = HttpRequest.newBuilder(URI.create(base + "/transactions/sum/1")).build();
+
+                measure(SUM_CLIENTS, WARMUP_NANOS, () -> send(client, sum));
+                System.out.printf("%s sums            %s%n", mode, measure(SUM_CLIENTS, WINDOW_NANOS, () -> send(client, sum)));
+
+                try (ExecutorService slowClients = Executors.newVirtualThreadPerTaskExecutor()) {
+                    int port = URI.create(base).getPort();
+                    List<Future<Integer>> uploads = new ArrayList<>();
+                    for (int i = 0; i < SLOW_CLIENTS; i++) {
+                        long id = ids.incrementAndGet();
+                        uploads.add(slowClients.submit(() -> slowPut(port, id)));
+                    }
+                    // Que los lentos ya tengan sus threads antes de empezar a medir
+                    Thread.sleep(500);
+                    System.out.printf("%s + slow uploads  %s%n", mode, measure(SUM_CLIENTS, WINDOW_NANOS, () -> send(client, sum)));
+                    for (Future<Integer> upload : uploads) {
+                        assertEquals(200, upload.get());
+                    }
+                }
+            }
+
+            Path data = Files.createTempDirectory("transactions-load");
+            try (ConfigurableApplicationContext context = start(virtualThreads,
+                    "--transactions.wal.enabled=true",
+                    "--transactions.wal.path=" + data.resolve("transactions.wal"),
+                    "--transactions.snapshot.path=" + data.resolve("transactions.snapshot"),
+                    "--transactions.snapshot.interval=PT0S")) {
+                String base = baseUri(context);
+                HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+                measure(DURABLE_WRITERS, WARMUP_NANOS, () -> send(client, put(base, ids.incrementAndGet())));
+                System.out.printf("%s durable writes  %s%n", mode,
+                        measure(DURABLE_WRITERS, WINDOW_NANOS, () -> send(client, put(base, ids.incrementAndGet()))));
+            } finally {
+                delete(data);
+            }
+        }
+    }
+
+    /*
+        clients threads virtuales mandando requests sin pausa durante nanos;
+        retorna requests por segundo y percentiles de latencia.
+     */
+    private static String measure(int clients, long nanos, ThrowingRunnable request) throws Exception {
+        long deadline = System.nanoTime() + nanos;
+        List<Future<long[]>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                results.add(executor.submit(() -> {
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        request.run();
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - start;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+        }
+        List<long[]> perClient = new ArrayList<>();
+        for (Future<long[]> result : results) {
+            perClient.add(result.get());
+        }
+        long[] latencies = perClient.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return String.format("%,7d req/s  p50 %7.2f ms  p99 %8.2f ms  max %8.2f ms",
+                latencies.length * TimeUnit.SECONDS.toNanos(1) / nanos,
+                millis(latencies, 0.5), millis(latencies, 0.99), millis(latencies, 1.0));
+    }
+
+    private static void send(HttpClient client, HttpRequest request) throws Exception {
+        assertEquals(200, client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+    }
+
+    private static int slowPut(int port, long id) throws Exception {
+        byte[] body = "{\"amount\":1.0,\"type\":\"slow\",\"parent_id\":1}".getBytes(StandardCharsets.UTF_8);
+        String headers = "PUT /transactions/" + id + " HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n"
+                + "Content-Length: " + body.length + "\r\nConnection: close\r\n\r\n";
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(headers.getBytes(StandardCharsets.US_ASCII));
+            out.write(body, 0, 1);
+            out.flush();
+            Thread.sleep(SLOW_BODY_DELAY_MILLIS);
+            out.write(body, 1, body.length - 1);
+            out.flush();
+            String statusLine = new String(socket.getInputStream().readNBytes(12), StandardCharsets.US_ASCII);
+            return Integer.parseInt(statusLine.substring(9, 12));
+        }
+    }
+
+    private static HttpRequest put(String base, long id) {
+        return HttpRequest.newBuilder(URI.create(base + "/transactions/" + id))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString("{\"amount\":1.0,\"type\":\"cars\"}"))
+                .build();
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1_000_000.0;
+    }
+
+    private static String baseUri(ConfigurableApplicationContext context) {
+        return "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(boolean virtualThreads, String... args) {
+        String[] allArgs = Arrays.copyOf(args, args.length + 2);
+        allArgs[args.length] = "--server.port=0";
+        allArgs[args.length + 1] = "--spring.threads.virtual.enabled=" + virtualThreads;
+        return new SpringApplicationBuilder(TransactionsApplication.class).run(allArgs);
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
@@ -3,24 +3,40 @@ package com.webservice.transactions.application;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import com.webservice.transactions.application.exception.ParentTransactionNotFoundException;
+import com.webservice.transactions.application.exception.SumOverflowException;
 import com.webservice.transactions.application.exception.TransactionAlreadyExistsException;
 import com.webservice.transactions.application.exception.TransactionNotFoundException;
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.InsertResult;
 import com.webservice.transactions.domain.Transaction;
 import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.domain.TypeAggregate;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.math.BigDecimal;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
 
 @ExtendWith(MockitoExtension.class)
 class DefaultTransactionServiceTest {
@@ -28,49 +44,80 @@ class DefaultTransactionServiceTest {
     @Mock
     private TransactionRepository transactionRepository;
 
+    @Spy
+    private AmountScale amountScale = new AmountScale(2);
+
+    @Spy
+    private SubtreeTraversal subtreeTraversal = new SubtreeTraversal(10_000, 1);
+
+    @Spy
+    private SubtreeSumCache subtreeSumCache = new SubtreeSumCache(100, new SimpleMeterRegistry());
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private DefaultTransactionService transactionService;
 
     @Captor
     private ArgumentCaptor<Transaction> transactionCaptor;
 
+    /*
+        Los accesos primitivos usan sus defaults, que pasan por findById,
+        findChildrenIds y findSubtreeSum: los tests simulan esos.
+     */
+    @BeforeEach
+    void primitiveAccessorsUseDefaults() {
+        lenient().when(transactionRepository.amountOf(anyLong())).thenCallRealMethod();
+        lenient().when(transactionRepository.subtreeSumOf(anyLong())).thenCallRealMethod();
+        lenient().when(transactionRepository.visit(anyLong(), any())).thenCallRealMethod();
+    }
+
     // ── createTransaction ──────────────────────────────────────────
 
     @Test
     void createTransaction_savesSuccessfully() {
-        when(transactionRepository.findById(1L)).thenReturn(Optional.empty());
+        when(transactionRepository.insertIfAbsent(any())).thenReturn(InsertResult.INSERTED);
 
-        transactionService.createTransaction(1L, 100.0, "type1", null);
+        transactionService.createTransaction(1L, new BigDecimal("100.00"), "type1", null);
 
-        verify(transactionRepository).save(transactionCaptor.capture());
+        verify(transactionRepository).insertIfAbsent(transactionCaptor.capture());
         Transaction saved = transactionCaptor.getValue();
 
         assertEquals(1L, saved.getId());
-        assertEquals(100.0, saved.getAmount());
+        assertEquals(10_000, saved.getAmount());
         assertEquals("type1", saved.getType());
         assertNull(saved.getParentId());
     }
 
+    @Test
+    void createTransaction_doesNotLookUpBeforeInserting() {
+        when(transactionRepository.insertIfAbsent(any())).thenReturn(InsertResult.INSERTED);
+
+        transactionService.createTransaction(2L, new BigDecimal("200.00"), "type2", 1L);
+
+        verify(transactionRepository, never()).findById(any());
+        verify(transactionRepository, never()).save(any());
+    }
+
     @Test
     void createTransaction_duplicateId_throwsException() {
-        when(transactionRepository.findById(1L))
-                .thenReturn(Optional.of(new Transaction(1L, 100.0, "type1", null)));
+        when(transactionRepository.insertIfAbsent(any())).thenReturn(InsertResult.DUPLICATE_ID);
 
         TransactionAlreadyExistsException ex = assertThrows(
                 TransactionAlreadyExistsException.class,
-                () -> transactionService.createTransaction(1L, 200.0, "type2", null)
+                () -> transactionService.createTransaction(1L, new BigDecimal("200.00"), "type2", null)
         );
 
         assertTrue(ex.getMessage().contains("already exists"));
-        verify(transactionRepository, never()).save(any());
     }
 
     @Test
     void createTransaction_nullId_throwsException() {
         assertThrows(IllegalArgumentException.class,
-                () -> transactionService.createTransaction(null, 100.0, "type1", null));
+                () -> transactionService.createTransaction(null, new BigDecimal("100.00"), "type1", null));
 
-        verify(transactionRepository, never()).save(any());
+        verify(transactionRepository, never()).insertIfAbsent(any());
     }
 
     @Test
@@ -78,55 +125,96 @@ class DefaultTransactionServiceTest {
         assertThrows(IllegalArgumentException.class,
                 () -> transactionService.createTransaction(1L, null, "type1", null));
 
-        verify(transactionRepository, never()).save(any());
+        verify(transactionRepository, never()).insertIfAbsent(any());
+    }
+
+    @Test
+    void createTransaction_tooManyDecimals_throwsException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> transactionService.createTransaction(1L, new BigDecimal("10.005"), "type1", null));
+
+        assertTrue(ex.getMessage().contains("decimal places"));
+        verify(transactionRepository, never()).insertIfAbsent(any());
     }
 
     @Test
     void createTransaction_nullType_throwsException() {
         assertThrows(IllegalArgumentException.class,
-                () -> transactionService.createTransaction(1L, 100.0, null, null));
+                () -> transactionService.createTransaction(1L, new BigDecimal("100.00"), null, null));
 
-        verify(transactionRepository, never()).save(any());
+        verify(transactionRepository, never()).insertIfAbsent(any());
+    }
+
+    @Test
+    void createTransaction_ownParent_throwsException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionService.createTransaction(1L, new BigDecimal("100.00"), "type1", 1L));
+
+        verify(transactionRepository, never()).insertIfAbsent(any());
     }
 
     @Test
     void createTransaction_withValidParent_savesSuccessfully() {
-        when(transactionRepository.findById(2L)).thenReturn(Optional.empty());
-        when(transactionRepository.findById(1L))
-                .thenReturn(Optional.of(new Transaction(1L, 100.0, "type1", null)));
+        when(transactionRepository.insertIfAbsent(any())).thenReturn(InsertResult.INSERTED);
 
-        transactionService.createTransaction(2L, 200.0, "type2", 1L);
+        transactionService.createTransaction(2L, new BigDecimal("200.00"), "type2", 1L);
 
-        verify(transactionRepository).save(transactionCaptor.capture());
+        verify(transactionRepository).insertIfAbsent(transactionCaptor.capture());
         Transaction saved = transactionCaptor.getValue();
 
         assertEquals(2L, saved.getId());
-        assertEquals(200.0, saved.getAmount());
+        assertEquals(20_000, saved.getAmount());
         assertEquals("type2", saved.getType());
         assertEquals(1L, saved.getParentId());
     }
 
     @Test
     void createTransaction_withNonExistentParent_throwsException() {
-        when(transactionRepository.findById(2L)).thenReturn(Optional.empty());
-        when(transactionRepository.findById(99L)).thenReturn(Optional.empty());
+        when(transactionRepository.insertIfAbsent(any())).thenReturn(InsertResult.PARENT_NOT_FOUND);
 
         ParentTransactionNotFoundException ex = assertThrows(
                 ParentTransactionNotFoundException.class,
-                () -> transactionService.createTransaction(2L, 200.0, "type2", 99L)
+                () -> transactionService.createTransaction(2L, new BigDecimal("200.00"), "type2", 99L)
         );
 
         assertTrue(ex.getMessage().contains("Parent"));
-        verify(transactionRepository, never()).save(any());
+        assertTrue(ex.getMessage().contains("99"));
     }
 
     @Test
     void createTransaction_parentNotFound_throwsParentTransactionNotFoundException() {
-        when(transactionRepository.findById(2L)).thenReturn(Optional.empty());
-        when(transactionRepository.findById(99L)).thenReturn(Optional.empty());
+        when(transactionRepository.insertIfAbsent(any())).thenReturn(InsertResult.PARENT_NOT_FOUND);
 
         assertThrows(ParentTransactionNotFoundException.class,
-                () -> transactionService.createTransaction(2L, 100.0, "type", 99L));
+                () -> transactionService.createTransaction(2L, new BigDecimal("100.00"), "type", 99L));
+    }
+
+    // ── createTransactions ─────────────────────────────────────────
+
+    @Test
+    void createTransactions_delegatesWholeBatchToSaveAll() {
+        List<Transaction> batch = List.of(
+                new Transaction(1L, 10_000, "type1", null),
+                new Transaction(2L, 5000, "type1", 1L));
+        when(transactionRepository.saveAll(batch))
+                .thenReturn(List.of(InsertResult.INSERTED, InsertResult.PARENT_NOT_FOUND));
+
+        List<InsertResult> results = transactionService.createTransactions(batch);
+
+        assertEquals(List.of(InsertResult.INSERTED, InsertResult.PARENT_NOT_FOUND), results);
+        verify(transactionRepository, never()).insertIfAbsent(any());
+    }
+
+    @Test
+    void createTransactions_invalidItem_rejectsWholeBatch() {
+        List<Transaction> batch = List.of(
+                new Transaction(1L, 10_000, "type1", null),
+                new Transaction(2L, 5_000, null, null));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionService.createTransactions(batch));
+
+        verify(transactionRepository, never()).saveAll(any());
     }
 
     // ── getTransactionIdsByType ────────────────────────────────────
@@ -158,6 +246,36 @@ class DefaultTransactionServiceTest {
                 () -> transactionService.getTransactionIdsByType(null));
     }
 
+    @Test
+    void getTransactionIdsByTypePage_fullPage_returnsNextCursor() {
+        when(transactionRepository.findIdsByType("cars", 10, 3)).thenReturn(List.of(11L, 12L, 13L));
+
+        TransactionIdPage page = transactionService.getTransactionIdsByType("cars", 10, 3);
+
+        assertEquals(List.of(11L, 12L, 13L), page.getIds());
+        assertEquals(13, page.getNextCursor());
+    }
+
+    @Test
+    void getTransactionIdsByTypePage_lastPage_hasNoCursor() {
+        when(transactionRepository.findIdsByType("cars", 0, 3)).thenReturn(List.of(1L));
+
+        TransactionIdPage page = transactionService.getTransactionIdsByType("cars", 0, 3);
+
+        assertEquals(List.of(1L), page.getIds());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void getTransactionIdsByTypePage_invalidLimitOrCursor_throwsException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionService.getTransactionIdsByType("cars", 0, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionService.getTransactionIdsByType("cars", 0, DefaultTransactionService.MAX_PAGE_SIZE + 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionService.getTransactionIdsByType("cars", -1, 10));
+    }
+
     // ── getSum ─────────────────────────────────────────────────────
 
     @Test
@@ -166,26 +284,37 @@ class DefaultTransactionServiceTest {
                 () -> transactionService.getSum(null));
     }
 
+    @Test
+    void getSum_materializedSum_skipsTraversal() {
+        when(transactionRepository.findSubtreeSum(1L)).thenReturn(OptionalLong.of(17_500));
+
+        BigDecimal sum = transactionService.getSum(1L);
+
+        assertEquals(new BigDecimal("175.00"), sum);
+        verify(transactionRepository, never()).findById(any());
+        verify(transactionRepository, never()).findChildrenIds(any());
+    }
+
     @Test
     void getSum_singleTransaction_returnsItsAmount() {
         when(transactionRepository.findById(1L))
-                .thenReturn(Optional.of(new Transaction(1L, 100.0, "type1", null)));
+                .thenReturn(Optional.of(new Transaction(1L, 10_000, "type1", null)));
         when(transactionRepository.findChildrenIds(1L))
                 .thenReturn(Collections.emptyList());
 
-        Double sum = transactionService.getSum(1L);
+        BigDecimal sum = transactionService.getSum(1L);
 
-        assertEquals(100.0, sum);
+        assertEquals(new BigDecimal("100.00"), sum);
     }
 
     @Test
     void getSum_withDirectChildren_returnsSumOfAll() {
         when(transactionRepository.findById(1L))
-                .thenReturn(Optional.of(new Transaction(1L, 100.0, "type1", null)));
+                .thenReturn(Optional.of(new Transaction(1L, 10_000, "type1", null)));
         when(transactionRepository.findById(2L))
-                .thenReturn(Optional.of(new Transaction(2L, 50.0, "type2", 1L)));
+                .thenReturn(Optional.of(new Transaction(2L, 5000, "type2", 1L)));
         when(transactionRepository.findById(3L))
-                .thenReturn(Optional.of(new Transaction(3L, 25.0, "type1", 1L)));
+                .thenReturn(Optional.of(new Transaction(3L, 2500, "type1", 1L)));
 
         when(transactionRepository.findChildrenIds(1L))
                 .thenReturn(List.of(2L, 3L));
@@ -194,33 +323,112 @@ class DefaultTransactionServiceTest {
         when(transactionRepository.findChildrenIds(3L))
                 .thenReturn(Collections.emptyList());
 
-        Double sum = transactionService.getSum(1L);
+        BigDecimal sum = transactionService.getSum(1L);
 
-        assertEquals(175.0, sum);
+        assertEquals(new BigDecimal("175.00"), sum);
     }
 
     @Test
     void getSum_withNestedChildren_returnsSumOfAll() {
         when(transactionRepository.findById(1L))
-                .thenReturn(Optional.of(new Transaction(1L, 100.0, "type1", null)));
+                .thenReturn(Optional.of(new Transaction(1L, 10_000, "type1", null)));
         when(transactionRepository.findById(2L))
-                .thenReturn(Optional.of(new Transaction(2L, 50.0, "type2", 1L)));
+                .thenReturn(Optional.of(new Transaction(2L, 5000, "type2", 1L)));
         when(transactionRepository.findById(3L))
-                .thenReturn(Optional.of(new Transaction(3L, 25.0, "type1", 2L)));
+                .thenReturn(Optional.of(new Transaction(3L, 2500, "type1", 2L)));
 
         when(transactionRepository.findChildrenIds(1L)).thenReturn(List.of(2L));
         when(transactionRepository.findChildrenIds(2L)).thenReturn(List.of(3L));
         when(transactionRepository.findChildrenIds(3L)).thenReturn(Collections.emptyList());
 
-        Double sum = transactionService.getSum(1L);
+        BigDecimal sum = transactionService.getSum(1L);
 
-        assertEquals(175.0, sum);
+        assertEquals(new BigDecimal("175.00"), sum);
+    }
+
+    @Test
+    void getSum_decimalAmounts_areExact() {
+        when(transactionRepository.findById(1L))
+                .thenReturn(Optional.of(new Transaction(1L, 10, "type1", null)));
+        when(transactionRepository.findById(2L))
+                .thenReturn(Optional.of(new Transaction(2L, 20, "type1", 1L)));
+        when(transactionRepository.findChildrenIds(1L)).thenReturn(List.of(2L));
+        when(transactionRepository.findChildrenIds(2L)).thenReturn(Collections.emptyList());
+
+        assertEquals(new BigDecimal("0.30"), transactionService.getSum(1L));
+    }
+
+    @Test
+    void getSum_overflowingSum_throwsSumOverflowException() {
+        when(transactionRepository.findById(1L))
+                .thenReturn(Optional.of(new Transaction(1L, Long.MAX_VALUE, "type1", null)));
+        when(transactionRepository.findById(2L))
+                .thenReturn(Optional.of(new Transaction(2L, 1, "type1", 1L)));
+        when(transactionRepository.findChildrenIds(1L)).thenReturn(List.of(2L));
+        when(transactionRepository.findChildrenIds(2L)).thenReturn(Collections.emptyList());
+
+        assertThrows(SumOverflowException.class, () -> transactionService.getSum(1L));
+    }
+
+    @Test
+    void getSum_repeatedTraversal_isServedFromCache() {
+        when(transactionRepository.findById(1L))
+                .thenReturn(Optional.of(new Transaction(1L, 10_000, "type1", null)));
+        when(transactionRepository.findChildrenIds(1L)).thenReturn(Collections.emptyList());
+
+        assertEquals(new BigDecimal("100.00"), transactionService.getSum(1L));
+        assertEquals(new BigDecimal("100.00"), transactionService.getSum(1L));
+
+        verify(transactionRepository, times(1)).findChildrenIds(1L);
+    }
+
+    @Test
+    void createTransaction_invalidatesCachedSumsOfAncestors() {
+        when(transactionRepository.findById(1L))
+                .thenReturn(Optional.of(new Transaction(1L, 10_000, "type1", null)));
+        when(transactionRepository.findById(2L))
+                .thenReturn(Optional.of(new Transaction(2L, 5_000, "type1", 1L)));
+        when(transactionRepository.findChildrenIds(1L)).thenReturn(List.of(2L));
+        when(transactionRepository.findChildrenIds(2L)).thenReturn(Collections.emptyList());
+        assertEquals(new BigDecimal("150.00"), transactionService.getSum(1L));
+
+        when(transactionRepository.insertIfAbsent(any())).thenReturn(InsertResult.INSERTED);
+        when(transactionRepository.findById(3L))
+                .thenReturn(Optional.of(new Transaction(3L, 2_500, "type1", 2L)));
+        when(transactionRepository.findChildrenIds(2L)).thenReturn(List.of(3L));
+        when(transactionRepository.findChildrenIds(3L)).thenReturn(Collections.emptyList());
+        transactionService.createTransaction(3L, new BigDecimal("25.00"), "type1", 2L);
+
+        assertEquals(new BigDecimal("175.00"), transactionService.getSum(1L));
+    }
+
+    @Test
+    void getSum_recordsVisitedNodesPerPath() {
+        when(transactionRepository.findSubtreeSum(1L)).thenReturn(OptionalLong.of(17_500));
+        when(transactionRepository.findById(2L))
+                .thenReturn(Optional.of(new Transaction(2L, 5000, "type2", 1L)));
+        when(transactionRepository.findById(3L))
+                .thenReturn(Optional.of(new Transaction(3L, 2500, "type1", 2L)));
+        when(transactionRepository.findChildrenIds(2L)).thenReturn(List.of(3L));
+        when(transactionRepository.findChildrenIds(3L)).thenReturn(Collections.emptyList());
+
+        transactionService.getSum(1L);
+        transactionService.getSum(2L);
+
+        DistributionSummary materialized = meterRegistry.get(DefaultTransactionService.SUM_NODES_SUMMARY)
+                .tag("path", "materialized").summary();
+        DistributionSummary traversal = meterRegistry.get(DefaultTransactionService.SUM_NODES_SUMMARY)
+                .tag("path", "traversal").summary();
+        assertEquals(1, materialized.count());
+        assertEquals(0.0, materialized.totalAmount());
+        assertEquals(1, traversal.count());
+        assertEquals(2.0, traversal.totalAmount());
     }
 
     @Test
     void getSum_childIdWithoutEntity_throwsException() {
         when(transactionRepository.findById(1L))
-                .thenReturn(Optional.of(new Transaction(1L, 100.0, "type1", null)));
+                .thenReturn(Optional.of(new Transaction(1L, 10_000, "type1", null)));
         when(transactionRepository.findChildrenIds(1L))
                 .thenReturn(List.of(2L));
         when(transactionRepository.findById(2L))
@@ -237,4 +445,166 @@ class DefaultTransactionServiceTest {
         assertThrows(TransactionNotFoundException.class,
                 () -> transactionService.getSum(99L));
     }
+
+    // ── jerarquía ──────────────────────────────────────────────────
+
+    @Test
+    void getAncestorIds_returnsPathFromRoot() {
+        when(transactionRepository.findAncestorIds(3L)).thenReturn(List.of(1L, 2L));
+
+        assertEquals(List.of(1L, 2L), transactionService.getAncestorIds(3L));
+        verify(transactionRepository, never()).findDepth(any());
+    }
+
+    @Test
+    void getAncestorIds_root_returnsEmptyList() {
+        when(transactionRepository.findAncestorIds(1L)).thenReturn(List.of());
+        when(transactionRepository.findDepth(1L)).thenReturn(OptionalInt.of(0));
+
+        assertEquals(List.of(), transactionService.getAncestorIds(1L));
+    }
+
+    @Test
+    void getAncestorIds_nonExistentTransaction_throwsException() {
+        when(transactionRepository.findAncestorIds(99L)).thenReturn(List.of());
+        when(transactionRepository.findDepth(99L)).thenReturn(OptionalInt.empty());
+
+        assertThrows(TransactionNotFoundException.class, () -> transactionService.getAncestorIds(99L));
+    }
+
+    @Test
+    void getRootIdAndDepth_delegateToRepository() {
+        when(transactionRepository.findRootId(3L)).thenReturn(OptionalLong.of(1L));
+        when(transactionRepository.findDepth(3L)).thenReturn(OptionalInt.of(2));
+
+        assertEquals(1L, transactionService.getRootId(3L));
+        assertEquals(2, transactionService.getDepth(3L));
+    }
+
+    @Test
+    void getRootIdAndDepth_nonExistentTransaction_throwsException() {
+        when(transactionRepository.findRootId(99L)).thenReturn(OptionalLong.empty());
+        when(transactionRepository.findDepth(99L)).thenReturn(OptionalInt.empty());
+
+        assertThrows(TransactionNotFoundException.class, () -> transactionService.getRootId(99L));
+        assertThrows(TransactionNotFoundException.class, () -> transactionService.getDepth(99L));
+    }
+
+    @Test
+    void getDescendantIdsAtDepth_leafOfExistingTransaction_returnsEmptyList() {
+        when(transactionRepository.findDescendantIdsAtDepth(1L, 2)).thenReturn(List.of());
+        when(transactionRepository.findDepth(1L)).thenReturn(OptionalInt.of(0));
+
+        assertEquals(List.of(), transactionService.getDescendantIdsAtDepth(1L, 2));
+    }
+
+    @Test
+    void getDescendantIdsAtDepth_invalidArguments_throwException() {
+        assertThrows(IllegalArgumentException.class, () -> transactionService.getDescendantIdsAtDepth(null, 1));
+        assertThrows(IllegalArgumentException.class, () -> transactionService.getDescendantIdsAtDepth(1L, -1));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    // ── getTypeSummary ─────────────────────────────────────────────
+
+    @Test
+    void getTypeSummary_convertsAggregateToDecimals() {
+        when(transactionRepository.findTypeAggregate("cars"))
+                .thenReturn(Optional.of(TypeAggregate.of(10_000).plus(-2_550).plus(5)));
+
+        TypeSummary summary = transactionService.getTypeSummary("cars");
+
+        assertEquals("cars", summary.getType());
+        assertEquals(3, summary.getCount());
+        assertEquals(new BigDecimal("74.55"), summary.getSum());
+        assertEquals(new BigDecimal("-25.50"), summary.getMin());
+        assertEquals(new BigDecimal("100.00"), summary.getMax());
+        verify(transactionRepository, never()).findIdsByType(any());
+    }
+
+    @Test
+    void getTypeSummary_unknownType_isEmptySummary() {
+        when(transactionRepository.findTypeAggregate("cars")).thenReturn(Optional.empty());
+
+        TypeSummary summary = transactionService.getTypeSummary("cars");
+
+        assertEquals(0, summary.getCount());
+        assertEquals(new BigDecimal("0.00"), summary.getSum());
+        assertNull(summary.getMin());
+        assertNull(summary.getMax());
+    }
+
+    @Test
+    void getTypeSummary_nullType_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> transactionService.getTypeSummary(null));
+    }
+
+    @Test
+    void getTypeSummary_overflowedSum_throwsSumOverflowException() {
+        when(transactionRepository.findTypeAggregate("cars"))
+                .thenReturn(Optional.of(TypeAggregate.of(Long.MAX_VALUE).plus(1)));
+
+        assertThrows(SumOverflowException.class, () -> transactionService.getTypeSummary("cars"));
+    }
+
+    @Test
+    void getTypeSummaries_oneSummaryPerTypeSortedByName() {
+        when(transactionRepository.findTypes("")).thenReturn(List.of("cars", "shopping"));
+        when(transactionRepository.findTypeAggregate("cars")).thenReturn(Optional.of(TypeAggregate.of(100)));
+        when(transactionRepository.findTypeAggregate("shopping")).thenReturn(Optional.of(TypeAggregate.of(250).plus(50)));
+
+        List<TypeSummary> summaries = transactionService.getTypeSummaries("");
+
+        assertEquals(List.of("cars", "shopping"), summaries.stream().map(TypeSummary::getType).toList());
+        assertEquals(new BigDecimal("1.00"), summaries.get(0).getSum());
+        assertEquals(2, summaries.get(1).getCount());
+        assertEquals(new BigDecimal("3.00"), summaries.get(1).getSum());
+    }
+
+    @Test
+    void getTypeSummaries_withPrefix_onlyAsksForMatchingTypes() {
+        when(transactionRepository.findTypes("car")).thenReturn(List.of("cars"));
+        when(transactionRepository.findTypeAggregate("cars")).thenReturn(Optional.of(TypeAggregate.of(100)));
+
+        List<TypeSummary> summaries = transactionService.getTypeSummaries("car");
+
+        assertEquals(List.of("cars"), summaries.stream().map(TypeSummary::getType).toList());
+        verify(transactionRepository, never()).findTypes();
+    }
+
+    @Test
+    void getTransactionsByAmount_passesBoundsInMinorUnitsAndConvertsAmounts() {
+        when(transactionRepository.findByTypeAndAmount("cars", 1_000, 2_550, 50)).thenReturn(List.of(
+                new Transaction(7L, 1_000, "cars", null), new Transaction(3L, 2_550, "cars", 7L)));
+
+        List<TransactionAmount> found = transactionService.getTransactionsByAmount("cars", new BigDecimal("10"), new BigDecimal("25.50"), 50);
+
+        assertEquals(List.of(7L, 3L), found.stream().map(TransactionAmount::getId).toList());
+        assertEquals(new BigDecimal("10.00"), found.get(0).getAmount());
+        assertEquals(new BigDecimal("25.50"), found.get(1).getAmount());
+    }
+
+    @Test
+    void getTransactionsByAmount_missingBounds_areUnbounded() {
+        when(transactionRepository.findByTypeAndAmount("cars", Long.MIN_VALUE, Long.MAX_VALUE, 10)).thenReturn(List.of());
+
+        assertTrue(transactionService.getTransactionsByAmount("cars", null, null, 10).isEmpty());
+    }
+
+    @Test
+    void getTransactionsByAmount_invalidArguments_throwIllegalArgumentException() {
+        BigDecimal one = BigDecimal.ONE;
+        assertThrows(IllegalArgumentException.class, () -> transactionService.getTransactionsByAmount(null, one, one, 10));
+        assertThrows(IllegalArgumentException.class, () -> transactionService.getTransactionsByAmount("cars", one, one, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionService.getTransactionsByAmount("cars", one, one, DefaultTransactionService.MAX_PAGE_SIZE + 1));
+        assertThrows(IllegalArgumentException.class, () -> transactionService.getTransactionsByAmount("cars", BigDecimal.TEN, one, 10));
+        assertThrows(IllegalArgumentException.class, () -> transactionService.getTransactionsByAmount("cars", new BigDecimal("0.001"), one, 10));
+        verify(transactionRepository, never()).findByTypeAndAmount(anyString(), anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    void getTypeSummaries_nullPrefix_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> transactionService.getTypeSummaries(null));
+    }
 }
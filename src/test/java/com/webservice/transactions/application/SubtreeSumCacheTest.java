@@ -0,0 +1,77 @@
+package com.webservice.transactions.application;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.infrastructure.persistence.InMemoryTransactionRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.OptionalLong;
+
+class SubtreeSumCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SubtreeSumCache cache = new SubtreeSumCache(100, meterRegistry);
+    private final TransactionRepository repository = new InMemoryTransactionRepository();
+
+    @Test
+    void invalidateAncestors_dropsTheWholeChainButNotSiblings() {
+        repository.save(new Transaction(1L, 1, "cars", null));
+        repository.save(new Transaction(2L, 1, "cars", 1L));
+        repository.save(new Transaction(3L, 1, "cars", 2L));
+        repository.save(new Transaction(4L, 1, "cars", 1L));
+        for (long id = 1; id <= 4; id++) {
+            cache.put(id, id * 10, cache.writes());
+        }
+
+        repository.save(new Transaction(5L, 1, "cars", 3L));
+        cache.invalidateAncestors(repository, 3L);
+
+        assertTrue(cache.get(1L).isEmpty());
+        assertTrue(cache.get(2L).isEmpty());
+        assertTrue(cache.get(3L).isEmpty());
+        assertEquals(OptionalLong.of(40), cache.get(4L));
+        assertEquals(3.0, meterRegistry.get(SubtreeSumCache.INVALIDATIONS_COUNTER).counter().count());
+    }
+
+    @Test
+    void put_afterAnInsertDuringTheTraversal_isDiscarded() {
+        repository.save(new Transaction(1L, 1, "cars", null));
+        long writesBeforeTraversal = cache.writes();
+
+        repository.save(new Transaction(2L, 1, "cars", 1L));
+        cache.invalidateAncestors(repository, 1L);
+        cache.put(1L, 1, writesBeforeTraversal);
+
+        assertTrue(cache.get(1L).isEmpty());
+    }
+
+    @Test
+    void put_beyondMaxEntries_evicts() {
+        for (long id = 0; id < 1_000; id++) {
+            cache.put(id, id, cache.writes());
+            cache.get(id);
+        }
+        cache.cleanUp();
+
+        double size = meterRegistry.get("cache.size").tag("cache", SubtreeSumCache.CACHE_NAME).gauge().value();
+        assertTrue(size <= 100, "size " + size);
+        assertTrue(meterRegistry.get("cache.evictions").tag("cache", SubtreeSumCache.CACHE_NAME).functionCounter().count() > 0);
+        assertEquals(1_000, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()
+                + meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void maxEntriesZero_disablesTheCache() {
+        SubtreeSumCache disabled = new SubtreeSumCache(0, meterRegistry);
+
+        disabled.put(1L, 10, disabled.writes());
+
+        assertTrue(disabled.get(1L).isEmpty());
+    }
+}
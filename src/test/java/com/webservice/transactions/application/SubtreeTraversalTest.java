@@ -0,0 +1,153 @@
+package com.webservice.transactions.application;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.webservice.transactions.application.exception.TransactionNotFoundException;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.infrastructure.persistence.InMemoryTransactionRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+
+/*
+    El recorrido paralelo tiene que dar exactamente lo mismo que el secuencial:
+    los montos son longs, así la suma es exacta en cualquier orden.
+ */
+class SubtreeTraversalTest {
+
+    private final SubtreeTraversal sequential = new SubtreeTraversal(10_000, 1);
+    private final List<SubtreeTraversal> parallel = List.of(
+            new SubtreeTraversal(1, 4), new SubtreeTraversal(7, 2), new SubtreeTraversal(64, 4));
+
+    @AfterEach
+    void shutDown() {
+        parallel.forEach(SubtreeTraversal::destroy);
+    }
+
+    @Test
+    void sum_wideTree_matchesSequentialWalk() {
+        TransactionRepository repository = new InMemoryTransactionRepository();
+        repository.save(new Transaction(1L, 1, "root", null));
+        for (long id = 2; id <= 20_000; id++) {
+            repository.save(new Transaction(id, id % 100, "leaf", 1L));
+        }
+
+        assertMatchesSequential(repository, 1L);
+    }
+
+    @Test
+    void sum_deepChain_matchesSequentialWalk() {
+        TransactionRepository repository = new InMemoryTransactionRepository();
+        repository.save(new Transaction(1L, 1, "root", null));
+        for (long id = 2; id <= 20_000; id++) {
+            repository.save(new Transaction(id, id % 100, "link", id - 1));
+        }
+
+        assertMatchesSequential(repository, 1L);
+        assertMatchesSequential(repository, 10_000L);
+    }
+
+    @Test
+    void sum_randomForest_matchesSequentialWalkFromEveryRoot() {
+        Random random = new Random(42);
+        TransactionRepository repository = new InMemoryTransactionRepository();
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 20_000; id++) {
+            Long parentId = ids.isEmpty() || random.nextInt(50) == 0 ? null : ids.get(random.nextInt(ids.size()));
+            repository.save(new Transaction(id, random.nextInt(1_000) - 500, "random", parentId));
+            ids.add(id);
+        }
+
+        for (long id = 1; id <= 20_000; id += 997) {
+            assertMatchesSequential(repository, id);
+        }
+    }
+
+    @Test
+    void sum_matchesMaterializedSum() {
+        TransactionRepository repository = new InMemoryTransactionRepository();
+        repository.save(new Transaction(1L, 100, "cars", null));
+        for (long id = 2; id <= 5_000; id++) {
+            repository.save(new Transaction(id, 3, "cars", id / 2));
+        }
+
+        for (SubtreeTraversal traversal : parallel) {
+            assertEquals(repository.findSubtreeSum(1L).orElseThrow(), traversal.sum(repository, 1L).getSum());
+        }
+    }
+
+    @Test
+    void sum_concurrentQueries_shareThePool() throws Exception {
+        TransactionRepository repository = new InMemoryTransactionRepository();
+        repository.save(new Transaction(1L, 1, "root", null));
+        for (long id = 2; id <= 10_000; id++) {
+            repository.save(new Transaction(id, 2, "leaf", id / 3 + 1));
+        }
+        SubtreeTraversal traversal = parallel.get(0);
+
+        try (ExecutorService requests = Executors.newFixedThreadPool(8)) {
+            List<Future<SubtreeTotal>> totals = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                totals.add(requests.submit(() -> traversal.sum(repository, 1L)));
+            }
+            for (Future<SubtreeTotal> total : totals) {
+                assertEquals(19_999, total.get().getSum());
+                assertEquals(10_000, total.get().getNodes());
+            }
+        }
+    }
+
+    @Test
+    void sum_childWithoutEntity_throwsNotFound() {
+        TransactionRepository repository = new InMemoryTransactionRepository() {
+            public long visit(long id, LongConsumer childIds) {
+                return id == 4_000L ? ABSENT : super.visit(id, childIds);
+            }
+        };
+        repository.save(new Transaction(1L, 1, "root", null));
+        for (long id = 2; id <= 5_000; id++) {
+            repository.save(new Transaction(id, 1, "leaf", id - 1));
+        }
+
+        for (SubtreeTraversal traversal : parallel) {
+            assertThrows(TransactionNotFoundException.class, () -> traversal.sum(repository, 1L));
+        }
+    }
+
+    @Test
+    void sum_overflowingTotal_throwsArithmeticException() {
+        TransactionRepository repository = new InMemoryTransactionRepository();
+        repository.save(new Transaction(1L, 1, "root", null));
+        for (long id = 2; id <= 5_000; id++) {
+            repository.save(new Transaction(id, id == 4_000L ? Long.MAX_VALUE : 1, "leaf", id - 1));
+        }
+
+        assertThrows(ArithmeticException.class, () -> sequential.sum(repository, 1L));
+        for (SubtreeTraversal traversal : parallel) {
+            assertThrows(ArithmeticException.class, () -> traversal.sum(repository, 1L));
+        }
+    }
+
+    @Test
+    void constructor_nonPositiveThreshold_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> new SubtreeTraversal(0, 4));
+    }
+
+    private void assertMatchesSequential(TransactionRepository repository, Long rootId) {
+        SubtreeTotal expected = sequential.sum(repository, rootId);
+        for (SubtreeTraversal traversal : parallel) {
+            SubtreeTotal total = traversal.sum(repository, rootId);
+            assertEquals(expected.getSum(), total.getSum());
+            assertEquals(expected.getNodes(), total.getNodes());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.webservice.transactions.domain;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+class AmountScaleTest {
+
+    private final AmountScale cents = new AmountScale(2);
+
+    @Test
+    void toMinorUnits_scalesExactly() {
+        assertEquals(1234, cents.toMinorUnits(new BigDecimal("12.34")));
+        assertEquals(1200, cents.toMinorUnits(new BigDecimal("12")));
+        assertEquals(1230, cents.toMinorUnits(new BigDecimal("12.300")));
+        assertEquals(-5, cents.toMinorUnits(new BigDecimal("-0.05")));
+        assertEquals(120_000, cents.toMinorUnits(new BigDecimal("1.2E3")));
+    }
+
+    @Test
+    void toMinorUnits_decimalsThatDoNotAddUpInDouble_areExact() {
+        long sum = cents.toMinorUnits(new BigDecimal("0.1")) + cents.toMinorUnits(new BigDecimal("0.2"));
+
+        assertEquals(new BigDecimal("0.30"), cents.toDecimal(sum));
+    }
+
+    @Test
+    void toMinorUnits_tooManyDecimals_throwsException() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> cents.toMinorUnits(new BigDecimal("0.001")));
+
+        assertEquals("Amount cannot have more than 2 decimal places", ex.getMessage());
+    }
+
+    @Test
+    void toMinorUnits_outOfRange_throwsException() {
+        assertEquals(Long.MAX_VALUE, cents.toMinorUnits(new BigDecimal("92233720368547758.07")));
+        assertThrows(IllegalArgumentException.class, () -> cents.toMinorUnits(new BigDecimal("92233720368547758.08")));
+        assertThrows(IllegalArgumentException.class, () -> cents.toMinorUnits(new BigDecimal("-92233720368547758.08")));
+        assertThrows(IllegalArgumentException.class, () -> cents.toMinorUnits(new BigDecimal("1E+1000000")));
+        assertThrows(IllegalArgumentException.class, () -> cents.toMinorUnits(null));
+    }
+
+    @Test
+    void toDecimal_keepsTheScale() {
+        assertEquals(new BigDecimal("185.00"), cents.toDecimal(18_500));
+        assertEquals(new BigDecimal("0.00"), cents.toDecimal(0));
+        assertEquals(new BigDecimal("7"), new AmountScale(0).toDecimal(7));
+    }
+
+    @Test
+    void constructor_invalidScale_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> new AmountScale(-1));
+        assertThrows(IllegalArgumentException.class, () -> new AmountScale(AmountScale.MAX_SCALE + 1));
+    }
+}
@@ -0,0 +1,127 @@
+package com.webservice.transactions.infrastructure.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.infrastructure.persistence.ForwardingTransactionRepository;
+import com.webservice.transactions.infrastructure.persistence.InMemoryTransactionRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class MeteredTransactionRepositoryTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final InMemoryTransactionRepository delegate = new InMemoryTransactionRepository();
+
+    @Test
+    void calls_areTimedPerOperation() {
+        MeteredTransactionRepository repository = new MeteredTransactionRepository(delegate, registry, 100);
+
+        repository.insertIfAbsent(new Transaction(1L, 100, "cars", null));
+        repository.saveAll(List.of(new Transaction(2L, 50, "cars", 1L), new Transaction(3L, 25, "cars", 1L)));
+        repository.findById(1L);
+        repository.findById(2L);
+
+        assertEquals(1, timerCount("insertIfAbsent"));
+        assertEquals(1, timerCount("saveAll"));
+        assertEquals(2, timerCount("findById"));
+        assertEquals(0, timerCount("findChildrenIds"));
+    }
+
+    @Test
+    void perNodeCalls_areNotTimed() {
+        MeteredTransactionRepository repository = new MeteredTransactionRepository(delegate, registry, 100);
+        repository.saveAll(List.of(new Transaction(1L, 100, "cars", null), new Transaction(2L, 50, "cars", 1L)));
+
+        assertEquals(100, repository.amountOf(1L));
+        assertEquals(100, repository.visit(1L, childId -> {}));
+
+        assertNull(registry.find(MeteredTransactionRepository.OPERATION_TIMER).tag("operation", "amountOf").timer());
+        assertNull(registry.find(MeteredTransactionRepository.OPERATION_TIMER).tag("operation", "visit").timer());
+    }
+
+    @Test
+    void typeGauges_trackIndexSizesIncludingExistingTypes() {
+        delegate.save(new Transaction(1L, 100, "cars", null));
+        MeteredTransactionRepository repository = new MeteredTransactionRepository(delegate, registry, 100);
+
+        repository.save(new Transaction(2L, 50, "cars", 1L));
+        repository.insertIfAbsent(new Transaction(3L, 25, "shopping", 1L));
+
+        assertEquals(2, typeSize("cars"));
+        assertEquals(1, typeSize("shopping"));
+    }
+
+    @Test
+    void typeGauges_rejectedInsert_registersNothing() {
+        MeteredTransactionRepository repository = new MeteredTransactionRepository(delegate, registry, 100);
+
+        assertEquals(InsertResult.PARENT_NOT_FOUND, repository.insertIfAbsent(new Transaction(1L, 100, "cars", 99L)));
+
+        assertNull(registry.find(MeteredTransactionRepository.TYPE_SIZE_GAUGE).gauge());
+    }
+
+    @Test
+    void typeGauges_areCapped() {
+        MeteredTransactionRepository repository = new MeteredTransactionRepository(delegate, registry, 2);
+
+        for (long id = 1; id <= 5; id++) {
+            repository.save(new Transaction(id, 1, "type" + id, null));
+        }
+
+        assertEquals(2, registry.find(MeteredTransactionRepository.TYPE_SIZE_GAUGE).gauges().size());
+    }
+
+    @Test
+    void typeGauges_concurrentNewTypes_stayCapped() throws Exception {
+        MeteredTransactionRepository repository = new MeteredTransactionRepository(delegate, registry, 10);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long base = t * 1_000L;
+            writers.add(executor.submit(() -> {
+                start.await();
+                // Tipos nuevos de cada hilo mezclados con uno que insertan todos
+                for (long id = base; id < base + 200; id++) {
+                    repository.save(new Transaction(id, 1, id % 2 == 0 ? "shared" : "type" + id, null));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        executor.shutdown();
+
+        assertEquals(10, registry.find(MeteredTransactionRepository.TYPE_SIZE_GAUGE).gauges().size());
+    }
+
+    @Test
+    void unwrap_findsTheDecoratedRepository() {
+        MeteredTransactionRepository repository = new MeteredTransactionRepository(delegate, registry, 100);
+
+        assertSame(delegate, ForwardingTransactionRepository.unwrap(repository, InMemoryTransactionRepository.class).orElseThrow());
+        assertSame(repository, ForwardingTransactionRepository.unwrap(repository, MeteredTransactionRepository.class).orElseThrow());
+    }
+
+    private long timerCount(String operation) {
+        return registry.get(MeteredTransactionRepository.OPERATION_TIMER).tag("operation", operation).timer().count();
+    }
+
+    private double typeSize(String type) {
+        return registry.get(MeteredTransactionRepository.TYPE_SIZE_GAUGE).tag("type", type).gauge().value();
+    }
+}
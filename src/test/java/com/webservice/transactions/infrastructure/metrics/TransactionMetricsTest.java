@@ -0,0 +1,52 @@
+package com.webservice.transactions.infrastructure.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.infrastructure.persistence.ForwardingTransactionRepository;
+import com.webservice.transactions.infrastructure.persistence.InMemoryTransactionRepository;
+import com.webservice.transactions.infrastructure.persistence.LockWaitStats;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class TransactionMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger counts = new AtomicInteger();
+    private final InMemoryTransactionRepository delegate = new InMemoryTransactionRepository();
+    private final ForwardingTransactionRepository repository = new ForwardingTransactionRepository(delegate) {
+        @Override
+        public List<String> findTypes() {
+            counts.incrementAndGet();
+            return super.findTypes();
+        }
+    };
+
+    @Test
+    void scrape_countsOnceForBothGauges() {
+        delegate.save(new Transaction(1L, 100, "cars", null));
+        delegate.save(new Transaction(2L, 50, "shopping", 1L));
+        new TransactionMetrics(repository, new LockWaitStats(), Duration.ofHours(1)).bindTo(registry);
+
+        assertEquals(2, registry.get("transactions.count").gauge().value());
+        assertTrue(registry.get("transactions.heap.per.transaction").gauge().value() > 0);
+        assertEquals(1, counts.get());
+    }
+
+    @Test
+    void scrape_afterTheRefresh_recounts() {
+        new TransactionMetrics(repository, new LockWaitStats(), Duration.ZERO).bindTo(registry);
+
+        assertEquals(0, registry.get("transactions.count").gauge().value());
+        delegate.save(new Transaction(1L, 100, "cars", null));
+
+        assertEquals(1, registry.get("transactions.count").gauge().value());
+        assertEquals(2, counts.get());
+    }
+}
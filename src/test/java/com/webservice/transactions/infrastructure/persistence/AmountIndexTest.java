@@ -0,0 +1,113 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+class AmountIndexTest {
+
+    private final AmountIndex index = new AmountIndex();
+
+    @Test
+    void forEachId_randomInsertsAcrossChunks_matchesSortedRange() {
+        Random random = new Random(3);
+        List<long[]> entries = new ArrayList<>();
+        for (long id = 0; id < 20_000; id++) {
+            long amount = random.nextInt(1_000) - 500;
+            index.add(amount, id);
+            entries.add(new long[] {amount, id});
+        }
+        entries.sort(Comparator.<long[]>comparingLong(entry -> entry[0]).thenComparingLong(entry -> entry[1]));
+
+        for (int i = 0; i < 50; i++) {
+            long min = random.nextInt(1_200) - 600;
+            long max = min + random.nextInt(300);
+            int limit = 1 + random.nextInt(2_000);
+            List<Long> expected = new ArrayList<>();
+            for (long[] entry : entries) {
+                if (entry[0] >= min && entry[0] <= max && expected.size() < limit) {
+                    expected.add(entry[1]);
+                }
+            }
+            assertEquals(expected, ids(min, max, limit));
+        }
+    }
+
+    @Test
+    void forEachId_increasingAmounts_keepsInsertionOrder() {
+        for (long id = 0; id < 1_000; id++) {
+            index.add(id * 10, id);
+        }
+
+        assertEquals(List.of(10L, 11L, 12L), ids(100, 120, 10));
+        assertEquals(List.of(999L), ids(9_990, Long.MAX_VALUE, 10));
+        assertEquals(1_000, ids(Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void forEachId_emptyOrInvertedRange_visitsNothing() {
+        assertTrue(ids(Long.MIN_VALUE, Long.MAX_VALUE, 10).isEmpty());
+        index.add(5, 1);
+
+        assertTrue(ids(6, 4, 10).isEmpty());
+        assertTrue(ids(5, 5, 0).isEmpty());
+        assertEquals(List.of(1L), ids(5, 5, 1));
+    }
+
+    @Test
+    void forEachId_concurrentWithWriter_neverRepeatsOrMissesEarlierEntries() throws Exception {
+        int total = 200_000;
+        AtomicLong written = new AtomicLong();
+        AtomicBoolean failed = new AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            while (written.get() < total && !failed.get()) {
+                // Lo que ya estaba escrito antes de empezar tiene que aparecer, en orden y una sola vez
+                long before = written.get();
+                List<Long> ids = ids(Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+                long[] seen = new long[(int) written.get() + 1];
+                long previousAmount = Long.MIN_VALUE;
+                long previousId = -1;
+                for (Long id : ids) {
+                    long amount = amountOf(id);
+                    if (seen[(int) (long) id]++ != 0 || amount < previousAmount || (amount == previousAmount && id <= previousId)) {
+                        failed.set(true);
+                    }
+                    previousAmount = amount;
+                    previousId = id;
+                }
+                for (int id = 0; id < before; id++) {
+                    if (seen[id] == 0) {
+                        failed.set(true);
+                    }
+                }
+            }
+        });
+        reader.start();
+
+        for (long id = 0; id < total; id++) {
+            index.add(amountOf(id), id);
+            written.set(id + 1);
+        }
+        reader.join();
+
+        assertFalse(failed.get());
+    }
+
+    // Montos repetidos y desordenados, para partir chunks por el medio
+    private static long amountOf(long id) {
+        return (id * 7919) % 1_000;
+    }
+
+    private List<Long> ids(long min, long max, int limit) {
+        List<Long> ids = new ArrayList<>();
+        index.forEachId(min, max, limit, ids::add);
+        return ids;
+    }
+}
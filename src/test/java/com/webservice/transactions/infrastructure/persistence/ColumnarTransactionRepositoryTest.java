@@ -0,0 +1,11 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import com.webservice.transactions.domain.TransactionRepository;
+
+class ColumnarTransactionRepositoryTest extends TransactionRepositoryContractTest {
+
+    @Override
+    protected TransactionRepository createRepository() {
+        return new ColumnarTransactionRepository();
+    }
+}
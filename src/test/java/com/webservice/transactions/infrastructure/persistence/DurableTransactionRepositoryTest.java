@@ -0,0 +1,434 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+class DurableTransactionRepositoryTest extends TransactionRepositoryContractTest {
+
+    private static final int AMOUNT_SCALE = 2;
+
+    private Path directory;
+    private DurableTransactionRepository reopened;
+    private DurableTransactionRepository crashed;
+
+    @Override
+    protected TransactionRepository createRepository() {
+        try {
+            directory = Files.createTempDirectory("transactions-wal");
+            return open(WriteAheadLog.SyncMode.GROUP);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @AfterEach
+    void deleteLog() throws IOException {
+        ((DurableTransactionRepository) repository).close();
+        if (reopened != null) {
+            reopened.close();
+        }
+        if (crashed != null) {
+            crashed.close();
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private DurableTransactionRepository open(WriteAheadLog.SyncMode syncMode) throws IOException {
+        return DurableTransactionRepository.open(new InMemoryTransactionRepository(), logPath(), AMOUNT_SCALE, syncMode, 0);
+    }
+
+    private DurableTransactionRepository openWithSnapshots() throws IOException {
+        return DurableTransactionRepository.open(new ColumnarTransactionRepository(), logPath(), AMOUNT_SCALE,
+                WriteAheadLog.SyncMode.GROUP, 0, snapshotPath(), 0);
+    }
+
+    private Path logPath() {
+        return directory.resolve("transactions.wal");
+    }
+
+    private Path snapshotPath() {
+        return directory.resolve("transactions.snapshot");
+    }
+
+    private TransactionRepository reopen() throws IOException {
+        ((DurableTransactionRepository) repository).close();
+        reopened = open(WriteAheadLog.SyncMode.GROUP);
+        return reopened;
+    }
+
+    // ── replay ─────────────────────────────────────────────────────
+
+    @Test
+    void reopen_replaysEveryInsertedTransaction() throws IOException {
+        repository.save(new Transaction(1L, 100, "cars", null));
+        repository.insertIfAbsent(new Transaction(2L, 5050, "shopping", 1L));
+        repository.saveAll(List.of(
+                new Transaction(3L, 25, "cars", 2L),
+                new Transaction(4L, 10, "cars", 1L)));
+
+        TransactionRepository restarted = reopen();
+
+        assertEquals(1L, restarted.findById(2L).orElseThrow().getParentId());
+        assertEquals(5050, restarted.findById(2L).orElseThrow().getAmount());
+        assertEquals(List.of(1L, 3L, 4L), restarted.findIdsByType("cars"));
+        assertEquals(List.of(2L, 4L), restarted.findChildrenIds(1L));
+        assertEquals(5185, restarted.findSubtreeSum(1L).orElseThrow());
+    }
+
+    @Test
+    void rejectedInserts_areNotLogged() throws IOException {
+        repository.insertIfAbsent(new Transaction(1L, 100, "cars", null));
+        long size = Files.size(logPath());
+
+        assertEquals(InsertResult.DUPLICATE_ID, repository.insertIfAbsent(new Transaction(1L, 5, "cars", null)));
+        assertEquals(InsertResult.PARENT_NOT_FOUND, repository.insertIfAbsent(new Transaction(2L, 5, "cars", 99L)));
+
+        assertEquals(size, Files.size(logPath()));
+        assertEquals(100, reopen().findSubtreeSum(1L).orElseThrow());
+    }
+
+    @Test
+    void reopen_childLoggedBeforeParent_waitsForParent() throws IOException {
+        ((DurableTransactionRepository) repository).close();
+        try (WriteAheadLog log = WriteAheadLog.open(logPath(), AMOUNT_SCALE, WriteAheadLog.SyncMode.GROUP, 0, t -> { })) {
+            log.append(List.of(new Transaction(3L, 1, "cars", 2L)));
+            log.append(List.of(new Transaction(2L, 10, "cars", 1L)));
+            log.append(List.of(new Transaction(1L, 100, "cars", null)));
+        }
+
+        reopened = open(WriteAheadLog.SyncMode.GROUP);
+
+        assertEquals(111, reopened.findSubtreeSum(1L).orElseThrow());
+        assertEquals(List.of(2L), reopened.findChildrenIds(1L));
+        assertEquals(List.of(3L), reopened.findChildrenIds(2L));
+    }
+
+    @Test
+    void failedAppend_leavesNothingVisibleAndChildrenAreRejected() throws IOException {
+        DurableTransactionRepository durable = (DurableTransactionRepository) repository;
+        durable.save(new Transaction(1L, 100, "cars", null));
+        durable.writeAheadLog().close();
+
+        assertThrows(UncheckedIOException.class, () -> durable.insertIfAbsent(new Transaction(2L, 50, "cars", 1L)));
+        assertThrows(UncheckedIOException.class, () -> durable.saveAll(List.of(new Transaction(3L, 5, "cars", 1L))));
+
+        assertTrue(durable.findById(2L).isEmpty());
+        assertTrue(durable.findById(3L).isEmpty());
+        assertEquals(100, durable.findSubtreeSum(1L).orElseThrow());
+        assertEquals(InsertResult.PARENT_NOT_FOUND, durable.insertIfAbsent(new Transaction(4L, 1, "cars", 2L)));
+        assertEquals(List.of(InsertResult.PARENT_NOT_FOUND), durable.saveAll(List.of(new Transaction(5L, 1, "cars", 3L))));
+
+        reopened = open(WriteAheadLog.SyncMode.GROUP);
+        assertEquals(List.of(1L), reopened.findIdsByType("cars"));
+        assertEquals(100, reopened.findSubtreeSum(1L).orElseThrow());
+    }
+
+    @Test
+    void concurrentParentsAndChildren_everyAcknowledgedChildIsReplayedUnderItsParent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Long> acknowledgedChildren = new CopyOnWriteArrayList<>();
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < 4; w++) {
+                long first = w * 1_000L;
+                // Un hilo inserta padres y otro, sin esperarlo, hijos que los referencian
+                writers.add(executor.submit(() -> {
+                    for (long id = first; id < first + 500; id++) {
+                        repository.insertIfAbsent(new Transaction(id, 1, "parents", null));
+                    }
+                }));
+                writers.add(executor.submit(() -> {
+                    for (long id = first; id < first + 500; id++) {
+                        long childId = id + 500;
+                        if (repository.insertIfAbsent(new Transaction(childId, 1, "children", id)) == InsertResult.INSERTED) {
+                            acknowledgedChildren.add(childId);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        ((DurableTransactionRepository) repository).close();
+
+        // Se reproduce a mano para ver el orden del log: cada hijo tiene que aparecer después de su padre
+        Set<Long> logged = new HashSet<>();
+        WriteAheadLog.open(logPath(), AMOUNT_SCALE, WriteAheadLog.SyncMode.GROUP, 0, transaction -> {
+            if (transaction.getParentId() != null) {
+                assertTrue(logged.contains(transaction.getParentId()), "child " + transaction.getId() + " logged before its parent");
+            }
+            logged.add(transaction.getId());
+        }).close();
+        assertTrue(logged.containsAll(acknowledgedChildren));
+        reopened = open(WriteAheadLog.SyncMode.GROUP);
+        for (Long childId : acknowledgedChildren) {
+            assertEquals(2, reopened.findSubtreeSum(childId - 500).orElseThrow(), "sum of parent of " + childId);
+        }
+    }
+
+    @Test
+    void reopen_tornLastRecord_isDiscardedAndLogStaysWritable() throws IOException {
+        repository.save(new Transaction(1L, 100, "cars", null));
+        repository.save(new Transaction(2L, 50, "cars", 1L));
+        ((DurableTransactionRepository) repository).close();
+        long size = Files.size(logPath());
+        try (FileChannel channel = FileChannel.open(logPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        reopened = open(WriteAheadLog.SyncMode.GROUP);
+        assertTrue(reopened.findById(2L).isEmpty());
+        reopened.save(new Transaction(3L, 7, "cars", 1L));
+        reopened.close();
+
+        reopened = open(WriteAheadLog.SyncMode.GROUP);
+        assertEquals(List.of(1L, 3L), reopened.findIdsByType("cars"));
+        assertEquals(107, reopened.findSubtreeSum(1L).orElseThrow());
+    }
+
+    @Test
+    void reopen_corruptedRecord_stopsReplayThere() throws IOException {
+        repository.save(new Transaction(1L, 100, "cars", null));
+        long firstRecordEnd = Files.size(logPath());
+        repository.save(new Transaction(2L, 50, "cars", 1L));
+        repository.save(new Transaction(3L, 25, "cars", 1L));
+        ((DurableTransactionRepository) repository).close();
+        try (FileChannel channel = FileChannel.open(logPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7F}), firstRecordEnd + 12);
+        }
+
+        reopened = open(WriteAheadLog.SyncMode.GROUP);
+
+        assertEquals(List.of(1L), reopened.findIdsByType("cars"));
+        assertEquals(firstRecordEnd, Files.size(logPath()));
+    }
+
+    @Test
+    void reopen_concurrentGroupCommits_keepEveryAcknowledgedWrite() throws Exception {
+        repository.save(new Transaction(0L, 0, "root", null));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < 8; w++) {
+                long first = 1 + w * 500L;
+                writers.add(executor.submit(() -> {
+                    for (long id = first; id < first + 500; id++) {
+                        assertEquals(InsertResult.INSERTED, repository.insertIfAbsent(new Transaction(id, 1, "cars", 0L)));
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        TransactionRepository restarted = reopen();
+
+        assertEquals(4000, restarted.findIdsByType("cars").size());
+        assertEquals(4000, restarted.findSubtreeSum(0L).orElseThrow());
+    }
+
+    @Test
+    void perWriteMode_isDurableToo() throws IOException {
+        ((DurableTransactionRepository) repository).close();
+        reopened = open(WriteAheadLog.SyncMode.PER_WRITE);
+        reopened.save(new Transaction(1L, 100, "cars", null));
+        reopened.saveAll(List.of(new Transaction(2L, 1, "cars", 1L), new Transaction(3L, 2, "cars", 2L)));
+        reopened.close();
+
+        reopened = open(WriteAheadLog.SyncMode.GROUP);
+
+        assertEquals(103, reopened.findSubtreeSum(1L).orElseThrow());
+    }
+
+    // ── snapshots ──────────────────────────────────────────────────
+
+    @Test
+    void snapshot_discardsTheLogBeforeItAndReplaysOnlyTheTail() throws IOException {
+        ((DurableTransactionRepository) repository).close();
+        crashed = openWithSnapshots();
+        crashed.save(new Transaction(1L, 100, "cars", null));
+        crashed.save(new Transaction(2L, 50, "cars", 1L));
+        long logged = Files.size(logPath());
+        crashed.snapshot();
+        long afterSnapshot = Files.size(logPath());
+        crashed.save(new Transaction(3L, 25, "shopping", 2L));
+
+        reopened = openWithSnapshots();
+
+        assertTrue(afterSnapshot < logged, "log of " + afterSnapshot + " bytes after the snapshot");
+        assertEquals(List.of(1L, 2L), reopened.findIdsByType("cars"));
+        assertEquals(List.of(3L), reopened.findIdsByType("shopping"));
+        assertEquals(175, reopened.findSubtreeSum(1L).orElseThrow());
+    }
+
+    @Test
+    void snapshot_storesSubtreeSumsComputedFromItsRows() throws IOException {
+        ((DurableTransactionRepository) repository).close();
+        crashed = openWithSnapshots();
+        crashed.save(new Transaction(1L, Long.MAX_VALUE, "cars", null));
+        crashed.save(new Transaction(2L, 1, "cars", 1L));
+        crashed.save(new Transaction(3L, -1, "cars", 1L));
+        crashed.save(new Transaction(4L, 5, "cars", 2L));
+        crashed.snapshot();
+        List<String> rows = new ArrayList<>();
+
+        RepositorySnapshot.load(snapshotPath(), AMOUNT_SCALE, (transaction, sum) -> rows.add(transaction.getId() + "=" + sum));
+        reopened = openWithSnapshots();
+        reopened.save(new Transaction(5L, 1, "cars", 4L));
+
+        assertEquals(List.of("1=" + TransactionRepository.ABSENT, "2=6", "3=-1", "4=5"), rows);
+        assertTrue(reopened.findSubtreeSum(1L).isEmpty());
+        assertEquals(7, reopened.findSubtreeSum(2L).orElseThrow());
+        assertEquals(List.of(1L, 2L, 4L), reopened.findAncestorIds(5L));
+    }
+
+    @Test
+    void snapshot_keepsTypeAndChildrenOrder() throws IOException {
+        ((DurableTransactionRepository) repository).close();
+        crashed = openWithSnapshots();
+        crashed.save(new Transaction(10L, 1, "cars", null));
+        crashed.save(new Transaction(5L, 2, "shopping", 10L));
+        crashed.save(new Transaction(7L, 3, "cars", 10L));
+        crashed.save(new Transaction(1L, 4, "cars", 5L));
+        crashed.close();
+
+        reopened = openWithSnapshots();
+
+        assertEquals(List.of(10L, 7L, 1L), reopened.findIdsByType("cars"));
+        assertEquals(List.of(5L, 7L), reopened.findChildrenIds(10L));
+        assertEquals(10, reopened.findSubtreeSum(10L).orElseThrow());
+        assertEquals(10L, reopened.findById(5L).orElseThrow().getParentId());
+    }
+
+    @Test
+    void snapshot_corruptedBeforeTheLogWasCut_fallsBackToWholeLog() throws IOException {
+        ((DurableTransactionRepository) repository).close();
+        crashed = openWithSnapshots();
+        crashed.save(new Transaction(1L, 100, "cars", null));
+        // Escrito a mano, sin el discardBefore que sigue a DurableTransactionRepository.snapshot
+        RepositorySnapshot.write(snapshotPath(), crashed, AMOUNT_SCALE, Files.size(logPath()));
+        crashed.save(new Transaction(2L, 50, "cars", 1L));
+        corruptLastByte(snapshotPath());
+
+        reopened = openWithSnapshots();
+
+        assertEquals(150, reopened.findSubtreeSum(1L).orElseThrow());
+    }
+
+    @Test
+    void snapshot_corruptedAfterTheLogWasCut_failsInsteadOfLosingTransactions() throws IOException {
+        ((DurableTransactionRepository) repository).close();
+        crashed = openWithSnapshots();
+        crashed.save(new Transaction(1L, 100, "cars", null));
+        crashed.snapshot();
+        crashed.save(new Transaction(2L, 50, "cars", 1L));
+        corruptLastByte(snapshotPath());
+
+        IOException ex = assertThrows(IOException.class, this::openWithSnapshots);
+
+        assertTrue(ex.getMessage().contains("discarded records"));
+    }
+
+    private static void corruptLastByte(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7F}), Files.size(file) - 1);
+        }
+    }
+
+    @Test
+    void snapshot_coversMoreThanTheLog_isRetakenSoNewWritesSurvive() throws IOException {
+        ((DurableTransactionRepository) repository).close();
+        crashed = openWithSnapshots();
+        crashed.save(new Transaction(1L, 100, "cars", null));
+        crashed.close();
+        crashed = null;
+        Files.delete(logPath());
+
+        crashed = openWithSnapshots();
+        crashed.save(new Transaction(2L, 50, "cars", 1L));
+        reopened = openWithSnapshots();
+
+        assertEquals(List.of(1L, 2L), reopened.findIdsByType("cars"));
+        assertEquals(150, reopened.findSubtreeSum(1L).orElseThrow());
+    }
+
+    // ── amount scale ───────────────────────────────────────────────
+
+    @Test
+    void reopen_logFromVersion2_isReplayedAndKeepsGrowing() throws IOException {
+        repository.save(new Transaction(1L, 100, "cars", null));
+        repository.save(new Transaction(2L, 50, "cars", 1L));
+        ((DurableTransactionRepository) repository).close();
+        // Mismos registros detrás del header de 12 bytes de la versión 2, sin la posición de inicio
+        byte[] current = Files.readAllBytes(logPath());
+        ByteBuffer version2 = ByteBuffer.allocate(current.length - 8);
+        version2.put(current, 0, 12).putInt(4, 2).put(current, 20, current.length - 20);
+        Files.write(logPath(), version2.array());
+
+        DurableTransactionRepository first = open(WriteAheadLog.SyncMode.GROUP);
+        first.save(new Transaction(3L, 25, "cars", 2L));
+        first.close();
+        reopened = open(WriteAheadLog.SyncMode.GROUP);
+
+        assertEquals(175, reopened.findSubtreeSum(1L).orElseThrow());
+    }
+
+
+    @Test
+    void reopen_withAnotherAmountScale_isRejected() throws IOException {
+        repository.save(new Transaction(1L, 100, "cars", null));
+        ((DurableTransactionRepository) repository).close();
+
+        IOException ex = assertThrows(IOException.class, () ->
+                DurableTransactionRepository.open(new InMemoryTransactionRepository(), logPath(), 4, WriteAheadLog.SyncMode.GROUP, 0));
+
+        assertTrue(ex.getMessage().contains("scale 2"));
+    }
+
+    @Test
+    void snapshot_withAnotherAmountScale_isRejected() throws IOException {
+        ((DurableTransactionRepository) repository).close();
+        crashed = openWithSnapshots();
+        crashed.save(new Transaction(1L, 100, "cars", null));
+        crashed.snapshot();
+
+        IOException ex = assertThrows(IOException.class, () ->
+                RepositorySnapshot.load(snapshotPath(), 4, (transaction, sum) -> { }));
+
+        assertTrue(ex.getMessage().contains("scale 2"));
+    }
+}
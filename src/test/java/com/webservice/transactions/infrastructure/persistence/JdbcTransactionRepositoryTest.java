@@ -0,0 +1,60 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+class JdbcTransactionRepositoryTest extends TransactionRepositoryContractTest {
+
+    // Sin inicializador: createRepository corre desde el constructor de la clase base
+    private String url;
+    private JdbcTransactionRepository other;
+
+    @Override
+    protected TransactionRepository createRepository() {
+        // Una base en memoria por test, que desaparece al cerrar la última conexión
+        url = "jdbc:h2:mem:transactions-" + UUID.randomUUID();
+        return new JdbcTransactionRepository(url, "sa", "", 8);
+    }
+
+    @AfterEach
+    void closeConnections() {
+        if (other != null) {
+            other.close();
+        }
+        ((JdbcTransactionRepository) repository).close();
+    }
+
+    @Test
+    void twoInstancesOnTheSameDatabase_shareTransactions() {
+        other = new JdbcTransactionRepository(url, "sa", "", 2);
+        repository.save(new Transaction(1L, 100, "cars", null));
+
+        assertEquals(InsertResult.DUPLICATE_ID, other.insertIfAbsent(new Transaction(1L, 5, "cars", null)));
+        assertEquals(InsertResult.INSERTED, other.insertIfAbsent(new Transaction(2L, 50, "cars", 1L)));
+        assertEquals(List.of(InsertResult.DUPLICATE_ID, InsertResult.INSERTED),
+                other.saveAll(List.of(new Transaction(2L, 1, "cars", 1L), new Transaction(3L, 25, "cars", 2L))));
+
+        assertEquals(175, repository.findSubtreeSum(1L).orElseThrow());
+        assertEquals(List.of(1L, 2L, 3L), repository.findIdsByType("cars"));
+    }
+
+    @Test
+    void findTypes_prefixWithLikeWildcards_matchesLiterally() {
+        repository.save(new Transaction(1L, 1, "a_b", null));
+        repository.save(new Transaction(2L, 1, "axb", null));
+        repository.save(new Transaction(3L, 1, "100%", null));
+        repository.save(new Transaction(4L, 1, "1000", null));
+
+        assertEquals(List.of("a_b"), repository.findTypes("a_"));
+        assertEquals(List.of("100%"), repository.findTypes("100%"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class LongSegmentListTest {
+
+    private final LongSegmentList list = new LongSegmentList();
+
+    @Test
+    void add_acrossSegmentBoundaries_keepsInsertionOrder() {
+        for (long value = 0; value < 10_000; value++) {
+            list.add(value * 3);
+        }
+
+        List<Long> snapshot = list.snapshot();
+
+        assertEquals(10_000, snapshot.size());
+        for (int i = 0; i < snapshot.size(); i++) {
+            assertEquals(i * 3L, snapshot.get(i));
+        }
+    }
+
+    @Test
+    void snapshot_doesNotSeeLaterAppends() {
+        list.add(1L);
+        list.add(2L);
+
+        List<Long> snapshot = list.snapshot();
+        list.add(3L);
+
+        assertEquals(List.of(1L, 2L), snapshot);
+        assertEquals(List.of(1L, 2L, 3L), list.snapshot());
+    }
+
+    @Test
+    void snapshot_isImmutable() {
+        list.add(1L);
+
+        assertThrows(UnsupportedOperationException.class, () -> list.snapshot().add(2L));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.snapshot().get(1));
+    }
+
+    @Test
+    void snapshot_concurrentWithWriter_alwaysSeesCompletePrefix() throws Exception {
+        int total = 200_000;
+        AtomicBoolean failed = new AtomicBoolean();
+        Thread reader = new Thread(() -> {
+            int seen = 0;
+            while (seen < total) {
+                List<Long> snapshot = list.snapshot();
+                for (int i = 0; i < snapshot.size(); i++) {
+                    if (snapshot.get(i) != i) {
+                        failed.set(true);
+                        return;
+                    }
+                }
+                seen = snapshot.size();
+            }
+        });
+        reader.start();
+
+        for (long value = 0; value < total; value++) {
+            list.add(value);
+        }
+        reader.join();
+
+        assertFalse(failed.get());
+    }
+}
@@ -0,0 +1,72 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.webservice.transactions.domain.Transaction;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Tiempo de arranque con 2M transacciones: reproduciendo el log entero vs
+    cargando el snapshot mapeado (que después recorta el log). Fuera del build normal:
+    mvn test -Dgroups=benchmark -DexcludedGroups=
+ */
+@Tag("benchmark")
+class RestartTimeTest {
+
+    private static final int TRANSACTIONS = 2_000_000;
+    private static final String[] TYPES = {"cars", "shopping", "groceries", "travel", "rent"};
+
+    @Test
+    void restartFromSnapshotVsFullLogReplay() throws IOException {
+        Path directory = Files.createTempDirectory("transactions-restart-bench");
+        Path log = directory.resolve("transactions.wal");
+        Path snapshot = directory.resolve("transactions.snapshot");
+        try {
+            // Sin snapshots, para que el log quede entero
+            try (DurableTransactionRepository repository = open(log, null)) {
+                List<Transaction> batch = new ArrayList<>();
+                for (long id = 1; id <= TRANSACTIONS; id++) {
+                    Long parentId = id % 10 == 1 ? null : id - 1;
+                    batch.add(new Transaction(id, (id % 1_000), TYPES[(int) (id % TYPES.length)], parentId));
+                    if (batch.size() == 10_000) {
+                        repository.saveAll(batch);
+                        batch.clear();
+                    }
+                }
+            }
+
+            long fromLog = restartMillis(log, null);
+            // El primer arranque con snapshots reproduce el log y escribe el snapshot al cerrar
+            open(log, snapshot).close();
+            long fromSnapshot = restartMillis(log, snapshot);
+
+            System.out.printf("restart with snapshot: %d ms, full log replay: %d ms%n", fromSnapshot, fromLog);
+        } finally {
+            for (Path file : List.of(log, snapshot, directory)) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static long restartMillis(Path log, Path snapshot) throws IOException {
+        long start = System.nanoTime();
+        DurableTransactionRepository repository = open(log, snapshot);
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        assertEquals(55, repository.findSubtreeSum(1L).orElseThrow());
+        repository.close();
+        return elapsed;
+    }
+
+    private static DurableTransactionRepository open(Path log, Path snapshot) throws IOException {
+        return DurableTransactionRepository.open(new ColumnarTransactionRepository(), log, 2,
+                WriteAheadLog.SyncMode.GROUP, 0, snapshot, 0);
+    }
+}
@@ -0,0 +1,143 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class ShardedTransactionRepositoryTest extends TransactionRepositoryContractTest {
+
+    // Sin inicializador: createRepository corre desde el constructor de la clase base
+    private List<InMemoryTransactionRepository> shards;
+
+    @Override
+    protected TransactionRepository createRepository() {
+        shards = new ArrayList<>();
+        return new ShardedTransactionRepository(4, () -> {
+            InMemoryTransactionRepository shard = new InMemoryTransactionRepository();
+            shards.add(shard);
+            return shard;
+        });
+    }
+
+    @Test
+    void save_keepsEachTreeInOneShard() {
+        for (long root = 1; root <= 40; root++) {
+            repository.save(new Transaction(root, 1, "cars", null));
+            repository.save(new Transaction(1_000 + root, 1, "cars", root));
+            repository.save(new Transaction(2_000 + root, 1, "cars", 1_000 + root));
+        }
+
+        int shardsUsed = 0;
+        for (InMemoryTransactionRepository shard : shards) {
+            for (long root = 1; root <= 40; root++) {
+                boolean hasRoot = shard.findById(root).isPresent();
+                assertEquals(hasRoot, shard.findById(1_000 + root).isPresent());
+                assertEquals(hasRoot, shard.findById(2_000 + root).isPresent());
+            }
+            if (!shard.findTypes().isEmpty()) {
+                shardsUsed++;
+            }
+        }
+        assertEquals(4, shardsUsed);
+    }
+
+    @Test
+    void insertIfAbsent_sameIdUnderRootsOfDifferentShards_isDuplicate() {
+        for (long root = 1; root <= 8; root++) {
+            repository.save(new Transaction(root, 1, "cars", null));
+        }
+
+        int inserted = 0;
+        for (long root = 1; root <= 8; root++) {
+            if (repository.insertIfAbsent(new Transaction(100L, 1, "cars", root)) == InsertResult.INSERTED) {
+                inserted++;
+            }
+        }
+        assertEquals(1, inserted);
+        assertEquals(1, repository.countIdsByType("cars") - 8);
+    }
+
+    @Test
+    void saveAll_rejectedParent_releasesChildId() {
+        repository.save(new Transaction(1L, 1, "cars", null));
+
+        List<InsertResult> results = repository.saveAll(List.of(
+                new Transaction(2L, 1, "cars", 99L),
+                new Transaction(3L, 1, "cars", 2L)
+        ));
+
+        assertEquals(List.of(InsertResult.PARENT_NOT_FOUND, InsertResult.PARENT_NOT_FOUND), results);
+        assertEquals(InsertResult.INSERTED, repository.insertIfAbsent(new Transaction(3L, 1, "cars", 1L)));
+    }
+
+    @Test
+    void concurrentWritersOnAllShards_readsSeeAPrefixAndParentsComeFirst() throws Exception {
+        int writers = 4;
+        int perWriter = 5_000;
+        String[] types = {"cars", "shopping"};
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<List<Long>> pages = new CopyOnWriteArrayList<>();
+        List<String> violations = new CopyOnWriteArrayList<>();
+
+        Future<?> reader = executor.submit(() -> {
+            start.await();
+            while (writing.get()) {
+                pages.add(repository.findIdsByType("cars"));
+                Set<Long> seen = new HashSet<>();
+                repository.forEachTransaction(transaction -> {
+                    if (transaction.getParentId() != null && !seen.contains(transaction.getParentId())) {
+                        violations.add(transaction.getId() + " before its parent " + transaction.getParentId());
+                    }
+                    seen.add(transaction.getId());
+                });
+            }
+            return null;
+        });
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            long base = (long) w * perWriter;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (long id = base; id < base + perWriter; id++) {
+                    // Árboles cortos de tipos alternados, así cada hilo escribe en todos los shards
+                    Long parentId = id % 4 == 0 ? null : id - 1;
+                    repository.insertIfAbsent(new Transaction(id, 1, types[(int) (id % types.length)], parentId));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        writing.set(false);
+        reader.get();
+        executor.shutdown();
+
+        assertTrue(violations.isEmpty(), () -> violations.subList(0, Math.min(5, violations.size())).toString());
+        List<Long> all = repository.findIdsByType("cars");
+        assertEquals(writers * perWriter / 2, all.size());
+        for (List<Long> page : pages) {
+            assertEquals(all.subList(0, page.size()), page);
+        }
+    }
+}
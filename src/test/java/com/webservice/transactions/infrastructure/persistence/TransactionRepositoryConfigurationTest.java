@@ -0,0 +1,38 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.webservice.transactions.domain.AmountScale;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+class TransactionRepositoryConfigurationTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void jdbcWithWriteAheadLog_isRejected() {
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> create("jdbc", 1, true));
+
+        assertEquals("transactions.wal.enabled is not supported with jdbc", e.getMessage());
+        assertFalse(dir.resolve("transactions.wal").toFile().exists());
+    }
+
+    @Test
+    void jdbcWithShards_isRejected() {
+        assertThrows(IllegalStateException.class, () -> create("jdbc", 2, false));
+    }
+
+    private void create(String type, int shards, boolean walEnabled) throws Exception {
+        new TransactionRepositoryConfiguration().transactionRepository(type, shards, walEnabled,
+                dir.resolve("transactions.wal"), "group", 0, dir.resolve("transactions.snapshot"), Duration.ZERO, 100,
+                "jdbc:h2:mem:configuration", "sa", "", 1, new AmountScale(2), new LockWaitStats(), new SimpleMeterRegistry());
+    }
+}
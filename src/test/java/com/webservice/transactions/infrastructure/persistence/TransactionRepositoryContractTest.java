@@ -0,0 +1,743 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.domain.TypeAggregate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+abstract class TransactionRepositoryContractTest {
+
+    protected final TransactionRepository repository = createRepository();
+
+    protected abstract TransactionRepository createRepository();
+
+    // ── save / find ────────────────────────────────────────────────
+
+    @Test
+    void findById_savedTransaction_returnsAllFields() {
+        repository.save(new Transaction(1L, 100, "cars", null));
+        repository.save(new Transaction(2L, 5050, "shopping", 1L));
+
+        Transaction saved = repository.findById(2L).orElseThrow();
+
+        assertEquals(2L, saved.getId());
+        assertEquals(5050, saved.getAmount());
+        assertEquals("shopping", saved.getType());
+        assertEquals(1L, saved.getParentId());
+        assertNull(repository.findById(1L).orElseThrow().getParentId());
+        assertTrue(repository.findById(3L).isEmpty());
+    }
+
+    @Test
+    void findIdsByType_returnsIdsInInsertionOrder() {
+        repository.save(new Transaction(5L, 1, "cars", null));
+        repository.save(new Transaction(3L, 1, "shopping", null));
+        repository.save(new Transaction(1L, 1, "cars", null));
+
+        assertEquals(List.of(5L, 1L), repository.findIdsByType("cars"));
+        assertEquals(List.of(3L), repository.findIdsByType("shopping"));
+        assertTrue(repository.findIdsByType("unknown").isEmpty());
+    }
+
+    @Test
+    void findIdsByType_pages_coverAllIdsInOrderWithoutGaps() {
+        for (long id = 1; id <= 25; id++) {
+            repository.save(new Transaction(id, 1, id % 2 == 0 ? "even" : "odd", null));
+        }
+
+        assertEquals(List.of(2L, 4L, 6L, 8L, 10L), repository.findIdsByType("even", 0, 5));
+        assertEquals(List.of(12L, 14L, 16L, 18L, 20L), repository.findIdsByType("even", 5, 5));
+        assertEquals(List.of(22L, 24L), repository.findIdsByType("even", 10, 5));
+        assertTrue(repository.findIdsByType("even", 12, 5).isEmpty());
+        assertTrue(repository.findIdsByType("unknown", 0, 5).isEmpty());
+    }
+
+    @Test
+    void findIdsByType_pageCursor_isStableWhileAppending() {
+        for (long id = 1; id <= 4; id++) {
+            repository.save(new Transaction(id, 1, "cars", null));
+        }
+        List<Long> firstPage = repository.findIdsByType("cars", 0, 3);
+        repository.save(new Transaction(5L, 1, "cars", null));
+
+        assertEquals(List.of(1L, 2L, 3L), firstPage);
+        assertEquals(List.of(4L, 5L), repository.findIdsByType("cars", 3, 3));
+    }
+
+    @Test
+    void forEachIdByType_visitsIdsInInsertionOrder() {
+        for (long id = 100; id > 0; id--) {
+            repository.save(new Transaction(id, 1, "cars", null));
+        }
+        List<Long> visited = new ArrayList<>();
+
+        repository.forEachIdByType("cars", visited::add);
+        repository.forEachIdByType("unknown", visited::add);
+
+        assertEquals(repository.findIdsByType("cars"), visited);
+        assertEquals(100L, visited.get(0));
+    }
+
+    @Test
+    void findTypes_andCountIdsByType_reflectEveryInsert() {
+        assertTrue(repository.findTypes().isEmpty());
+        repository.save(new Transaction(1L, 100, "cars", null));
+        repository.save(new Transaction(2L, 50, "shopping", 1L));
+        repository.save(new Transaction(3L, 25, "cars", 1L));
+
+        assertEquals(Set.of("cars", "shopping"), new HashSet<>(repository.findTypes()));
+        assertEquals(2, repository.countIdsByType("cars"));
+        assertEquals(1, repository.countIdsByType("shopping"));
+        assertEquals(0, repository.countIdsByType("unknown"));
+    }
+
+    @Test
+    void findTypes_withPrefix_returnsMatchingTypesSortedByName() {
+        repository.save(new Transaction(1L, 100, "cars", null));
+        repository.save(new Transaction(2L, 50, "shopping", null));
+        repository.save(new Transaction(3L, 25, "car", null));
+        repository.save(new Transaction(4L, 25, "carpets", null));
+        repository.save(new Transaction(5L, 25, "ca", null));
+
+        assertEquals(List.of("car", "carpets", "cars"), repository.findTypes("car"));
+        assertEquals(List.of("ca", "car", "carpets", "cars", "shopping"), repository.findTypes(""));
+        assertTrue(repository.findTypes("cart").isEmpty());
+        assertTrue(repository.findTypes("z").isEmpty());
+    }
+
+    @Test
+    void save_sameTypeFromDifferentStrings_isIndexedOnce() {
+        repository.save(new Transaction(1L, 100, new String("cars"), null));
+        repository.save(new Transaction(2L, 50, new String("cars"), 1L));
+
+        assertEquals(List.of("cars"), repository.findTypes());
+        assertEquals(List.of(1L, 2L), repository.findIdsByType("cars"));
+        assertEquals("cars", repository.findById(2L).orElseThrow().getType());
+    }
+
+    @Test
+    void findChildrenIds_returnsDirectChildrenOnly() {
+        repository.save(new Transaction(1L, 1, "cars", null));
+        repository.save(new Transaction(2L, 1, "cars", 1L));
+        repository.save(new Transaction(3L, 1, "cars", 2L));
+        repository.save(new Transaction(4L, 1, "cars", 1L));
+
+        assertEquals(List.of(2L, 4L), repository.findChildrenIds(1L));
+        assertEquals(List.of(3L), repository.findChildrenIds(2L));
+        assertTrue(repository.findChildrenIds(4L).isEmpty());
+        assertTrue(repository.findChildrenIds(99L).isEmpty());
+    }
+
+    @Test
+    void save_childBeforeItsParent_isNotPartOfTheParentsHierarchy() {
+        // El padre no existía cuando se guardó el hijo: todas las vistas lo tratan como raíz
+        repository.save(new Transaction(2L, 50, "cars", 1L));
+        repository.save(new Transaction(1L, 100, "cars", null));
+
+        assertEquals(100, repository.findSubtreeSum(1L).orElseThrow());
+        assertEquals(List.of(), repository.findAncestorIds(2L));
+        assertEquals(OptionalLong.of(2L), repository.findRootId(2L));
+        assertTrue(repository.findChildrenIds(1L).isEmpty());
+        assertTrue(repository.findDescendantIdsAtDepth(1L, 1).isEmpty());
+    }
+
+    @Test
+    void forEachTransaction_visitsEveryTransactionInInsertionOrder() {
+        repository.save(new Transaction(10L, 1, "cars", null));
+        repository.save(new Transaction(5L, 2, "shopping", 10L));
+        repository.save(new Transaction(7L, 3, "cars", null));
+        repository.save(new Transaction(1L, 4, "cars", 5L));
+        List<Long> visited = new ArrayList<>();
+
+        repository.forEachTransaction(transaction -> visited.add(transaction.getId()));
+
+        assertEquals(List.of(10L, 5L, 7L, 1L), visited);
+    }
+
+    // ── insertIfAbsent ─────────────────────────────────────────────
+
+    @Test
+    void insertIfAbsent_newTransaction_isInserted() {
+        assertEquals(InsertResult.INSERTED, repository.insertIfAbsent(new Transaction(1L, 100, "cars", null)));
+        assertEquals(InsertResult.INSERTED, repository.insertIfAbsent(new Transaction(2L, 50, "cars", 1L)));
+
+        assertEquals(List.of(1L, 2L), repository.findIdsByType("cars"));
+        assertEquals(List.of(2L), repository.findChildrenIds(1L));
+        assertEquals(150, repository.findSubtreeSum(1L).orElseThrow());
+    }
+
+    @Test
+    void insertIfAbsent_duplicateId_leavesExistingUntouched() {
+        repository.insertIfAbsent(new Transaction(1L, 100, "cars", null));
+
+        assertEquals(InsertResult.DUPLICATE_ID, repository.insertIfAbsent(new Transaction(1L, 999, "shopping", null)));
+
+        assertEquals(100, repository.findById(1L).orElseThrow().getAmount());
+        assertTrue(repository.findIdsByType("shopping").isEmpty());
+    }
+
+    @Test
+    void insertIfAbsent_missingParent_insertsNothing() {
+        assertEquals(InsertResult.PARENT_NOT_FOUND, repository.insertIfAbsent(new Transaction(2L, 50, "cars", 99L)));
+
+        assertTrue(repository.findById(2L).isEmpty());
+        assertTrue(repository.findIdsByType("cars").isEmpty());
+        assertTrue(repository.findChildrenIds(99L).isEmpty());
+    }
+
+    @Test
+    void insertIfAbsent_duplicateIdWithMissingParent_reportsDuplicate() {
+        repository.insertIfAbsent(new Transaction(1L, 100, "cars", null));
+
+        assertEquals(InsertResult.DUPLICATE_ID, repository.insertIfAbsent(new Transaction(1L, 50, "cars", 99L)));
+    }
+
+    @Test
+    void insertIfAbsent_racingSameId_exactlyOneWins() throws Exception {
+        int threads = 8;
+        for (long id = 0; id < 500; id++) {
+            long contendedId = id;
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<InsertResult>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long amount = t;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return repository.insertIfAbsent(new Transaction(contendedId, amount, "cars", null));
+                }));
+            }
+            start.countDown();
+            int inserted = 0;
+            for (Future<InsertResult> result : results) {
+                inserted += result.get() == InsertResult.INSERTED ? 1 : 0;
+            }
+            executor.shutdown();
+
+            assertEquals(1, inserted, "winners for id " + contendedId);
+        }
+        assertEquals(500, repository.findIdsByType("cars").size());
+    }
+
+    // ── saveAll ────────────────────────────────────────────────────
+
+    @Test
+    void saveAll_returnsOneResultPerItemInOrder() {
+        repository.insertIfAbsent(new Transaction(1L, 100, "cars", null));
+
+        List<InsertResult> results = repository.saveAll(List.of(
+                new Transaction(1L, 5, "cars", null),
+                new Transaction(2L, 50, "cars", 1L),
+                new Transaction(3L, 25, "shopping", 2L),
+                new Transaction(4L, 10, "shopping", 99L),
+                new Transaction(3L, 1, "shopping", null)
+        ));
+
+        assertEquals(List.of(
+                InsertResult.DUPLICATE_ID,
+                InsertResult.INSERTED,
+                InsertResult.INSERTED,
+                InsertResult.PARENT_NOT_FOUND,
+                InsertResult.DUPLICATE_ID
+        ), results);
+        assertEquals(List.of(1L, 2L), repository.findIdsByType("cars"));
+        assertEquals(List.of(3L), repository.findIdsByType("shopping"));
+        assertEquals(List.of(3L), repository.findChildrenIds(2L));
+        assertEquals(175, repository.findSubtreeSum(1L).orElseThrow());
+        assertTrue(repository.findById(4L).isEmpty());
+    }
+
+    @Test
+    void saveAll_largeBatch_matchesTraversal() {
+        List<Transaction> batch = new ArrayList<>();
+        for (long id = 1; id <= 10_000; id++) {
+            batch.add(new Transaction(id, 1, "type" + id % 7, id % 100 == 1 ? null : id - 1));
+        }
+
+        List<InsertResult> results = repository.saveAll(batch);
+
+        assertTrue(results.stream().allMatch(result -> result == InsertResult.INSERTED));
+        for (long id = 1; id <= 10_000; id += 37) {
+            assertEquals(traversalSum(id), repository.findSubtreeSum(id).orElseThrow(), "sum of " + id);
+        }
+    }
+
+    // ── findSubtreeSum ─────────────────────────────────────────────
+
+    @Test
+    void findSubtreeSum_unknownId_returnsEmpty() {
+        assertTrue(repository.findSubtreeSum(99L).isEmpty());
+    }
+
+    @Test
+    void findSubtreeSum_nestedChildren_includesAllDescendants() {
+        repository.save(new Transaction(1L, 100, "cars", null));
+        repository.save(new Transaction(2L, 50, "shopping", 1L));
+        repository.save(new Transaction(3L, 25, "shopping", 2L));
+        repository.save(new Transaction(4L, 10, "cars", 1L));
+
+        assertEquals(185, repository.findSubtreeSum(1L).orElseThrow());
+        assertEquals(75, repository.findSubtreeSum(2L).orElseThrow());
+        assertEquals(25, repository.findSubtreeSum(3L).orElseThrow());
+        assertEquals(10, repository.findSubtreeSum(4L).orElseThrow());
+    }
+
+    @Test
+    void findSubtreeSum_duplicateSave_doesNotCountTwice() {
+        repository.save(new Transaction(1L, 100, "cars", null));
+        repository.save(new Transaction(2L, 50, "cars", 1L));
+        repository.save(new Transaction(2L, 50, "cars", 1L));
+
+        assertEquals(150, repository.findSubtreeSum(1L).orElseThrow());
+        assertEquals(List.of(2L), repository.findChildrenIds(1L));
+    }
+
+    @Test
+    void findSubtreeSum_overflowingSum_staysEmptyAfterwards() {
+        repository.save(new Transaction(1L, Long.MAX_VALUE, "cars", null));
+        repository.save(new Transaction(2L, 1, "cars", 1L));
+        repository.save(new Transaction(3L, -1, "cars", 1L));
+
+        assertTrue(repository.findSubtreeSum(1L).isEmpty());
+        assertEquals(1, repository.findSubtreeSum(2L).orElseThrow());
+        assertEquals(-1, repository.findSubtreeSum(3L).orElseThrow());
+    }
+
+    @Test
+    void load_rowsWithTheirSubtreeSums_matchSavingThem() {
+        // Como al cargar un snapshot: cada padre antes que sus hijos y con la suma del subárbol ya calculada
+        repository.load(new Transaction(1L, 100, "cars", null), 175);
+        repository.load(new Transaction(2L, 50, "shopping", 1L), 75);
+        repository.load(new Transaction(3L, 25, "cars", 2L), 25);
+        repository.save(new Transaction(4L, 10, "cars", 3L));
+
+        assertEquals(185, repository.findSubtreeSum(1L).orElseThrow());
+        assertEquals(85, repository.findSubtreeSum(2L).orElseThrow());
+        assertEquals(List.of(1L, 3L, 4L), repository.findIdsByType("cars"));
+        assertEquals(List.of(2L), repository.findChildrenIds(1L));
+        assertEquals(List.of(1L, 2L), repository.findAncestorIds(3L));
+        assertEquals(OptionalLong.of(1L), repository.findRootId(4L));
+        assertEquals(3, repository.findTypeAggregate("cars").orElseThrow().getCount());
+    }
+
+    @Test
+    void primitiveAccessors_matchFindByIdChildrenAndSubtreeSum() {
+        repository.save(new Transaction(1L, Long.MAX_VALUE, "cars", null));
+        repository.save(new Transaction(200L, 1, "cars", 1L));
+        repository.save(new Transaction(300L, -5, "cars", 200L));
+        repository.save(new Transaction(400L, 7, "cars", 1L));
+
+        for (long id : new long[]{1L, 200L, 300L, 400L, 99L}) {
+            assertEquals(repository.findById(id).map(Transaction::getAmount).orElse(TransactionRepository.ABSENT),
+                    repository.amountOf(id));
+            assertEquals(repository.findSubtreeSum(id).orElse(TransactionRepository.ABSENT), repository.subtreeSumOf(id));
+            List<Long> childIds = new ArrayList<>();
+            assertEquals(repository.amountOf(id), repository.visit(id, childIds::add));
+            assertEquals(repository.findChildrenIds(id), childIds);
+        }
+        assertEquals(TransactionRepository.ABSENT, repository.subtreeSumOf(1L));
+    }
+
+    @Test
+    void findSubtreeSum_randomForest_matchesTraversal() {
+        Random random = new Random(42);
+        List<Long> ids = new ArrayList<>();
+
+        for (long id = 1; id <= 5_000; id++) {
+            Long parentId = ids.isEmpty() || random.nextInt(10) == 0
+                    ? null
+                    : ids.get(random.nextInt(ids.size()));
+            repository.save(new Transaction(id, random.nextInt(1_000), "type" + random.nextInt(5), parentId));
+            ids.add(id);
+        }
+
+        for (Long id : ids) {
+            assertEquals(traversalSum(id), repository.findSubtreeSum(id).orElseThrow(), "sum of " + id);
+        }
+    }
+
+    @Test
+    void findSubtreeSum_concurrentWriters_matchesTraversal() throws Exception {
+        int threads = 8;
+        int perThread = 2_000;
+        repository.save(new Transaction(0L, 1, "root", null));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long base = 1 + (long) t * perThread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                Random random = new Random(base);
+                for (long id = base; id < base + perThread; id++) {
+                    // Cada hilo cuelga su propia cadena de la raíz compartida
+                    long parentId = id == base ? 0L : base + random.nextInt((int) (id - base));
+                    repository.save(new Transaction(id, 2, "type", parentId));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(1 + 2 * threads * perThread, repository.findSubtreeSum(0L).orElseThrow());
+        for (long id = 0; id <= (long) threads * perThread; id++) {
+            assertEquals(traversalSum(id), repository.findSubtreeSum(id).orElseThrow(), "sum of " + id);
+        }
+    }
+
+    // ── jerarquía ──────────────────────────────────────────────────
+
+    @Test
+    void hierarchy_unknownId_isEmpty() {
+        assertEquals(List.of(), repository.findAncestorIds(99L));
+        assertTrue(repository.findRootId(99L).isEmpty());
+        assertTrue(repository.findDepth(99L).isEmpty());
+        assertEquals(List.of(), repository.findDescendantIdsAtDepth(99L, 1));
+    }
+
+    @Test
+    void hierarchy_nestedChildren_reportsAncestorsRootAndDepth() {
+        repository.save(new Transaction(1L, 100, "cars", null));
+        repository.insertIfAbsent(new Transaction(2L, 50, "cars", 1L));
+        repository.saveAll(List.of(
+                new Transaction(3L, 25, "shopping", 2L),
+                new Transaction(4L, 10, "cars", 1L),
+                new Transaction(5L, 5, "cars", 3L)
+        ));
+
+        assertEquals(List.of(), repository.findAncestorIds(1L));
+        assertEquals(List.of(1L, 2L, 3L), repository.findAncestorIds(5L));
+        assertEquals(List.of(1L), repository.findAncestorIds(4L));
+        assertEquals(1L, repository.findRootId(1L).orElseThrow());
+        assertEquals(1L, repository.findRootId(5L).orElseThrow());
+        assertEquals(0, repository.findDepth(1L).orElseThrow());
+        assertEquals(3, repository.findDepth(5L).orElseThrow());
+    }
+
+    @Test
+    void findDescendantIdsAtDepth_returnsOneLevelInChildOrder() {
+        repository.save(new Transaction(1L, 100, "cars", null));
+        repository.save(new Transaction(2L, 50, "cars", 1L));
+        repository.save(new Transaction(3L, 25, "cars", 1L));
+        repository.save(new Transaction(4L, 10, "cars", 2L));
+        repository.save(new Transaction(5L, 10, "cars", 3L));
+        repository.save(new Transaction(6L, 10, "cars", 2L));
+        repository.save(new Transaction(7L, 10, "cars", 4L));
+
+        assertEquals(List.of(1L), repository.findDescendantIdsAtDepth(1L, 0));
+        assertEquals(List.of(2L, 3L), repository.findDescendantIdsAtDepth(1L, 1));
+        assertEquals(List.of(4L, 6L, 5L), repository.findDescendantIdsAtDepth(1L, 2));
+        assertEquals(List.of(7L), repository.findDescendantIdsAtDepth(1L, 3));
+        assertEquals(List.of(), repository.findDescendantIdsAtDepth(1L, 4));
+        assertEquals(List.of(7L), repository.findDescendantIdsAtDepth(2L, 2));
+    }
+
+    @Test
+    void hierarchy_randomForest_matchesParentWalk() {
+        Random random = new Random(11);
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 2_000; id++) {
+            Long parentId = ids.isEmpty() || random.nextInt(8) == 0
+                    ? null
+                    : ids.get(random.nextInt(ids.size()));
+            repository.save(new Transaction(id, 1, "type", parentId));
+            ids.add(id);
+        }
+
+        for (Long id : ids) {
+            List<Long> expected = new ArrayList<>();
+            Long parentId = repository.findById(id).orElseThrow().getParentId();
+            while (parentId != null) {
+                expected.add(0, parentId);
+                parentId = repository.findById(parentId).orElseThrow().getParentId();
+            }
+            assertEquals(expected, repository.findAncestorIds(id), "ancestors of " + id);
+            assertEquals(expected.size(), repository.findDepth(id).orElseThrow(), "depth of " + id);
+            assertEquals((long) (expected.isEmpty() ? id : expected.get(0)), repository.findRootId(id).orElseThrow(), "root of " + id);
+        }
+    }
+
+    // ── findTypeAggregate ──────────────────────────────────────────
+
+    @Test
+    void findTypeAggregate_unknownType_returnsEmpty() {
+        repository.save(new Transaction(1L, 100, "cars", null));
+
+        assertTrue(repository.findTypeAggregate("shopping").isEmpty());
+    }
+
+    @Test
+    void findTypeAggregate_reflectsEveryInsertPath() {
+        repository.save(new Transaction(1L, 100, "cars", null));
+        repository.insertIfAbsent(new Transaction(2L, -40, "cars", 1L));
+        repository.insertIfAbsent(new Transaction(2L, 999, "cars", 1L));
+        repository.saveAll(List.of(
+                new Transaction(3L, 250, "cars", 1L),
+                new Transaction(4L, 7, "shopping", 3L),
+                new Transaction(5L, 1_000, "cars", 99L)
+        ));
+
+        TypeAggregate cars = repository.findTypeAggregate("cars").orElseThrow();
+        assertEquals(3, cars.getCount());
+        assertEquals(310, cars.getSum());
+        assertEquals(-40, cars.getMin());
+        assertEquals(250, cars.getMax());
+        assertFalse(cars.isSumOverflowed());
+
+        TypeAggregate shopping = repository.findTypeAggregate("shopping").orElseThrow();
+        assertEquals(1, shopping.getCount());
+        assertEquals(7, shopping.getSum());
+        assertEquals(7, shopping.getMin());
+        assertEquals(7, shopping.getMax());
+    }
+
+    @Test
+    void findTypeAggregate_overflowingSum_keepsCountMinAndMax() {
+        repository.save(new Transaction(1L, Long.MAX_VALUE, "cars", null));
+        repository.save(new Transaction(2L, 1, "cars", null));
+        repository.save(new Transaction(3L, -1, "cars", null));
+
+        TypeAggregate cars = repository.findTypeAggregate("cars").orElseThrow();
+        assertTrue(cars.isSumOverflowed());
+        assertEquals(3, cars.getCount());
+        assertEquals(-1, cars.getMin());
+        assertEquals(Long.MAX_VALUE, cars.getMax());
+    }
+
+    @Test
+    void findTypeAggregate_randomInserts_matchesIndexScan() {
+        Random random = new Random(7);
+        List<Transaction> batch = new ArrayList<>();
+        for (long id = 1; id <= 5_000; id++) {
+            Transaction transaction = new Transaction(id, random.nextInt(2_000) - 1_000, "type" + random.nextInt(5), null);
+            if (id % 3 == 0) {
+                batch.add(transaction);
+            } else {
+                repository.save(transaction);
+            }
+        }
+        repository.saveAll(batch);
+
+        for (String type : repository.findTypes()) {
+            long count = 0;
+            long sum = 0;
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (Long id : repository.findIdsByType(type)) {
+                long amount = repository.findById(id).orElseThrow().getAmount();
+                count++;
+                sum += amount;
+                min = Math.min(min, amount);
+                max = Math.max(max, amount);
+            }
+            TypeAggregate aggregate = repository.findTypeAggregate(type).orElseThrow();
+            assertEquals(count, aggregate.getCount(), type);
+            assertEquals(sum, aggregate.getSum(), type);
+            assertEquals(min, aggregate.getMin(), type);
+            assertEquals(max, aggregate.getMax(), type);
+        }
+    }
+
+    // ── rangos de montos ───────────────────────────────────────────
+
+    @Test
+    void findByTypeAndAmount_returnsInclusiveRangeByAmountThenIdUpToLimit() {
+        repository.save(new Transaction(5L, 300, "cars", null));
+        repository.insertIfAbsent(new Transaction(2L, 100, "cars", null));
+        repository.saveAll(List.of(
+                new Transaction(4L, 100, "cars", null),
+                new Transaction(1L, 200, "cars", null),
+                new Transaction(3L, 150, "shopping", null)
+        ));
+
+        assertEquals(List.of(2L, 4L, 1L), ids(repository.findByTypeAndAmount("cars", 100, 200, 10)));
+        assertEquals(List.of(2L, 4L), ids(repository.findByTypeAndAmount("cars", Long.MIN_VALUE, Long.MAX_VALUE, 2)));
+        assertEquals(List.of(1L), ids(repository.findByTypeAndAmount("cars", 101, 299, 10)));
+        assertEquals(300, repository.findByTypeAndAmount("cars", 300, 300, 10).get(0).getAmount());
+        assertTrue(repository.findByTypeAndAmount("cars", 201, 299, 10).isEmpty());
+        assertTrue(repository.findByTypeAndAmount("unknown", Long.MIN_VALUE, Long.MAX_VALUE, 10).isEmpty());
+    }
+
+    @Test
+    void findByTypeAndAmount_randomInserts_matchesIndexScan() {
+        Random random = new Random(11);
+        List<Transaction> batch = new ArrayList<>();
+        for (long id = 1; id <= 5_000; id++) {
+            Transaction transaction = new Transaction(id, random.nextInt(200) - 100, "type" + random.nextInt(3), null);
+            if (id % 3 == 0) {
+                batch.add(transaction);
+            } else {
+                repository.save(transaction);
+            }
+        }
+        repository.saveAll(batch);
+
+        for (String type : repository.findTypes()) {
+            long min = random.nextInt(100) - 100;
+            long max = min + random.nextInt(150);
+            List<Transaction> expected = new ArrayList<>();
+            for (Long id : repository.findIdsByType(type)) {
+                Transaction transaction = repository.findById(id).orElseThrow();
+                if (transaction.getAmount() >= min && transaction.getAmount() <= max) {
+                    expected.add(transaction);
+                }
+            }
+            expected.sort(TransactionRepository.BY_AMOUNT_AND_ID);
+
+            assertEquals(ids(expected), ids(repository.findByTypeAndAmount(type, min, max, Integer.MAX_VALUE)), type);
+            assertEquals(ids(expected.subList(0, 10)), ids(repository.findByTypeAndAmount(type, min, max, 10)), type);
+        }
+    }
+
+    @Test
+    void findByTypeAndAmount_concurrentWithInserts_returnsOnlyCompleteRowsInOrder() throws Exception {
+        int total = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<String> violations = new CopyOnWriteArrayList<>();
+
+        Future<?> reader = executor.submit(() -> {
+            while (writing.get()) {
+                List<Transaction> found = repository.findByTypeAndAmount("cars", 100, 900, 1_000);
+                for (int i = 0; i < found.size(); i++) {
+                    Transaction transaction = found.get(i);
+                    if (transaction.getAmount() < 100 || transaction.getAmount() > 900
+                            || (i > 0 && TransactionRepository.BY_AMOUNT_AND_ID.compare(found.get(i - 1), transaction) >= 0)) {
+                        violations.add("out of range or order: " + transaction.getId());
+                    }
+                }
+            }
+            return null;
+        });
+        Future<?> writer = executor.submit(() -> {
+            try {
+                for (long id = 0; id < total; id++) {
+                    repository.save(new Transaction(id, (id * 7919) % 1_000, "cars", null));
+                }
+            } finally {
+                writing.set(false);
+            }
+            return null;
+        });
+        writer.get();
+        reader.get();
+        executor.shutdown();
+
+        assertTrue(violations.isEmpty(), () -> violations.subList(0, Math.min(5, violations.size())).toString());
+        assertEquals(1_000, repository.findByTypeAndAmount("cars", 100, 900, 1_000).size());
+    }
+
+    private static List<Long> ids(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getId).toList();
+    }
+
+    // ── concurrencia ───────────────────────────────────────────────
+
+    @Test
+    void save_concurrentWritersAndReaders_noLostOrHalfVisibleWrites() throws Exception {
+        int writers = 8;
+        int perWriter = 5_000;
+        String[] types = {"cars", "shopping", "travel"};
+
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<String> violations = new CopyOnWriteArrayList<>();
+
+        Future<?> reader = executor.submit(() -> {
+            start.await();
+            while (writing.get()) {
+                for (String type : types) {
+                    for (Long id : repository.findIdsByType(type)) {
+                        Optional<Transaction> transaction = repository.findById(id);
+                        if (transaction.isEmpty()) {
+                            violations.add("type index has dangling id " + id);
+                        } else if (repository.findSubtreeSum(id).isEmpty()) {
+                            violations.add("no subtree sum for visible id " + id);
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            long base = (long) w * perWriter;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (long id = base; id < base + perWriter; id++) {
+                    // Todos los hilos escriben el id compartido -1 y árboles propios
+                    repository.save(new Transaction(-1L, 1, "cars", null));
+                    Long parentId = id % 50 == 0 ? null : id - 1;
+                    repository.save(new Transaction(id, 1, types[(int) (id % types.length)], parentId));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        writing.set(false);
+        reader.get();
+        executor.shutdown();
+
+        assertTrue(violations.isEmpty(), () -> violations.subList(0, Math.min(5, violations.size())).toString());
+
+        Set<Long> indexed = new HashSet<>();
+        int indexedCount = 0;
+        for (String type : types) {
+            List<Long> ids = repository.findIdsByType(type);
+            indexed.addAll(ids);
+            indexedCount += ids.size();
+        }
+        assertEquals(writers * perWriter + 1, indexedCount);
+        assertEquals(writers * perWriter + 1, indexed.size());
+        for (long id = 0; id < (long) writers * perWriter; id++) {
+            assertTrue(repository.findById(id).isPresent(), "missing " + id);
+            assertEquals(50 - id % 50, repository.findSubtreeSum(id).orElseThrow(), "sum of " + id);
+            List<Long> children = repository.findChildrenIds(id);
+            assertEquals((id + 1) % 50 == 0 ? List.of() : List.of(id + 1), children, "children of " + id);
+        }
+    }
+
+    private long traversalSum(Long id) {
+        Deque<Long> stack = new ArrayDeque<>();
+        stack.push(id);
+        long sum = 0;
+        while (!stack.isEmpty()) {
+            Long currentId = stack.pop();
+            sum += repository.findById(currentId).orElseThrow().getAmount();
+            for (Long childId : repository.findChildrenIds(currentId)) {
+                stack.push(childId);
+            }
+        }
+        return sum;
+    }
+}
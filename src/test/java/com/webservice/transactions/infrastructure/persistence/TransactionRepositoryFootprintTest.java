@@ -0,0 +1,58 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.function.Supplier;
+
+/*
+    Compara los bytes de heap retenidos por transacción en cada repositorio.
+    Mide con el heap usado después de forzar GC, por eso queda fuera del build
+    normal: mvn test -Dgroups=benchmark -DexcludedGroups=
+ */
+@Tag("benchmark")
+class TransactionRepositoryFootprintTest {
+
+    private static final int TRANSACTIONS = 1_000_000;
+    private static final String[] TYPES = {"cars", "shopping", "groceries", "travel", "rent"};
+
+    @Test
+    void columnarRepository_retainsLessThanHalfOfMapRepository() {
+        long mapBytes = retainedBytes(InMemoryTransactionRepository::new);
+        long columnarBytes = retainedBytes(ColumnarTransactionRepository::new);
+
+        System.out.printf("map:      %d bytes/transaction%n", mapBytes / TRANSACTIONS);
+        System.out.printf("columnar: %d bytes/transaction%n", columnarBytes / TRANSACTIONS);
+
+        assertTrue(columnarBytes * 2 < mapBytes,
+                () -> "columnar " + columnarBytes + " bytes vs map " + mapBytes + " bytes");
+    }
+
+    private static long retainedBytes(Supplier<TransactionRepository> factory) {
+        long before = usedHeapAfterGc();
+        TransactionRepository repository = factory.get();
+        for (long id = 1; id <= TRANSACTIONS; id++) {
+            // Árboles de ~10 transacciones: cada décima es raíz
+            Long parentId = id % 10 == 1 ? null : id - 1;
+            repository.save(new Transaction(id, (id % 1_000), TYPES[(int) (id % TYPES.length)], parentId));
+        }
+        long after = usedHeapAfterGc();
+        assertTrue(repository.findById(1L).isPresent());
+        return after - before;
+    }
+
+    private static long usedHeapAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,128 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.domain.TransactionRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+
+/*
+    Escritores en threads virtuales contra cada repositorio, grabando con JFR
+    los eventos jdk.VirtualThreadPinned: un thread virtual que se bloquea
+    dentro de un synchronized retiene su carrier y con pocos carriers eso
+    frena a todos los demás. No tiene que haber ninguno que venga de este código.
+ */
+class VirtualThreadPinningTest {
+
+    private static final int WRITERS = 200;
+    private static final int WRITES_PER_WRITER = 50;
+
+    private final Path directory = Files.createTempDirectory("transactions-pinning");
+    private final AtomicLong ids = new AtomicLong();
+
+    VirtualThreadPinningTest() throws IOException {
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void inMemory_contendedSaves_doNotPin() throws Exception {
+        assertNoPinning(new InMemoryTransactionRepository());
+    }
+
+    @Test
+    void columnar_contendedSaves_doNotPin() throws Exception {
+        assertNoPinning(new ColumnarTransactionRepository());
+    }
+
+    @Test
+    void durable_groupCommit_doesNotPin() throws Exception {
+        try (DurableTransactionRepository repository = DurableTransactionRepository.open(new InMemoryTransactionRepository(),
+                directory.resolve("group.wal"), 2, WriteAheadLog.SyncMode.GROUP, TimeUnit.MICROSECONDS.toNanos(200),
+                directory.resolve("group.snapshot"), 0)) {
+            assertNoPinning(repository);
+            repository.snapshot();
+        }
+    }
+
+    @Test
+    void durable_perWrite_doesNotPin() throws Exception {
+        try (DurableTransactionRepository repository = DurableTransactionRepository.open(new ColumnarTransactionRepository(),
+                directory.resolve("per-write.wal"), 2, WriteAheadLog.SyncMode.PER_WRITE, 0)) {
+            assertNoPinning(repository);
+        }
+    }
+
+    private void assertNoPinning(TransactionRepository repository) throws Exception {
+        Path recordingFile = directory.resolve("pinning.jfr");
+        List<String> pinnedAt = new ArrayList<>();
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+            write(repository);
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+        for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile)) {
+            if (event.getStackTrace() == null) {
+                continue;
+            }
+            for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+                String type = frame.getMethod().getType().getName();
+                if (type.startsWith("com.webservice.transactions")) {
+                    pinnedAt.add(type + "." + frame.getMethod().getName() + " (" + event.getDuration().toNanos() / 1000 + " us)");
+                    break;
+                }
+            }
+        }
+        Files.delete(recordingFile);
+        assertEquals(List.of(), pinnedAt);
+    }
+
+    private void write(TransactionRepository repository) throws Exception {
+        long root = ids.incrementAndGet();
+        repository.save(new Transaction(root, 1, "root", null));
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < WRITERS; writer++) {
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < WRITES_PER_WRITER; i++) {
+                        repository.save(new Transaction(ids.incrementAndGet(), 1, "cars", root));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        }
+        assertEquals(1 + WRITERS * WRITES_PER_WRITER, repository.findSubtreeSum(root).orElseThrow());
+    }
+}
@@ -0,0 +1,75 @@
+package com.webservice.transactions.infrastructure.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.webservice.transactions.domain.Transaction;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    Escrituras durables por segundo con fsync por escritura vs group commit,
+    con 1 y con varios escritores. El resultado depende del disco, por eso
+    sólo imprime los números: mvn test -Dgroups=benchmark -DexcludedGroups=
+ */
+@Tag("benchmark")
+class WriteAheadLogThroughputTest {
+
+    private static final long DURATION_NANOS = TimeUnit.SECONDS.toNanos(3);
+
+    @Test
+    void perWriteVsGroupCommit() throws Exception {
+        for (int writers : new int[] {1, 16, 64}) {
+            long perWrite = writesPerSecond(WriteAheadLog.SyncMode.PER_WRITE, 0, writers);
+            long group = writesPerSecond(WriteAheadLog.SyncMode.GROUP, 0, writers);
+            long delayed = writesPerSecond(WriteAheadLog.SyncMode.GROUP, 200, writers);
+            System.out.printf("%2d writers: per-write %,8d/s  group %,8d/s  group+200us %,8d/s%n",
+                    writers, perWrite, group, delayed);
+        }
+    }
+
+    private static long writesPerSecond(WriteAheadLog.SyncMode syncMode, long delayMicros, int writers) throws Exception {
+        Path directory = Files.createTempDirectory("transactions-wal-bench");
+        Path path = directory.resolve("transactions.wal");
+        AtomicLong nextId = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        try {
+            long elapsed;
+            try (WriteAheadLog log = WriteAheadLog.open(path, 2, syncMode, TimeUnit.MICROSECONDS.toNanos(delayMicros), t -> { })) {
+                long deadline = System.nanoTime() + DURATION_NANOS;
+                long start = System.nanoTime();
+                List<Future<?>> futures = new ArrayList<>();
+                for (int w = 0; w < writers; w++) {
+                    futures.add(executor.submit(() -> {
+                        while (System.nanoTime() < deadline) {
+                            long id = nextId.incrementAndGet();
+                            log.append(List.of(new Transaction(id, 10, "cars", null)));
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                elapsed = System.nanoTime() - start;
+            }
+            long[] replayed = new long[1];
+            WriteAheadLog.open(path, 2, syncMode, 0, t -> replayed[0]++).close();
+            assertEquals(nextId.get(), replayed[0]);
+            return nextId.get() * 1_000_000_000L / elapsed;
+        } finally {
+            executor.shutdownNow();
+            Files.deleteIfExists(path);
+            Files.delete(directory);
+        }
+    }
+}
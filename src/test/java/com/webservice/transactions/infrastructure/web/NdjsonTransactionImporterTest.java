@@ -0,0 +1,156 @@
+package com.webservice.transactions.infrastructure.web;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.webservice.transactions.application.DefaultTransactionService;
+import com.webservice.transactions.application.SubtreeSumCache;
+import com.webservice.transactions.application.SubtreeTraversal;
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.TransactionRepository;
+import com.webservice.transactions.infrastructure.persistence.InMemoryTransactionRepository;
+import com.webservice.transactions.infrastructure.web.dto.ImportSummaryDTO;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class NdjsonTransactionImporterTest {
+
+    private final TransactionRepository repository = new InMemoryTransactionRepository();
+    private final AmountScale amountScale = new AmountScale(2);
+    private final NdjsonTransactionImporter importer = new NdjsonTransactionImporter(JsonMapper.builder().build(),
+            new DefaultTransactionService(repository, amountScale, new SubtreeTraversal(10_000, 1),
+                    new SubtreeSumCache(0, new SimpleMeterRegistry()), new SimpleMeterRegistry()),
+            amountScale, 2, 50_000);
+
+    @Test
+    void importFrom_ndjson_appliesRowsAcrossChunks() {
+        ImportSummaryDTO summary = importer.importFrom(body("""
+                {"id": 1, "amount": 100.0, "type": "cars"}
+                {"id": 2, "amount": 50.0, "type": "cars", "parent_id": 1}
+                {"id": 3, "amount": 25.0, "type": "shopping", "parent_id": 2, "note": {"ignored": [1, 2]}}
+                """));
+
+        assertEquals(3, summary.getRows());
+        assertEquals(3, summary.getInserted());
+        assertTrue(summary.getErrors().isEmpty());
+        assertEquals(17_500, repository.findSubtreeSum(1L).orElseThrow());
+        assertEquals(List.of(3L), repository.findChildrenIds(2L));
+    }
+
+    @Test
+    void importFrom_rejectedRows_areCountedWithTheirLine() {
+        ImportSummaryDTO summary = importer.importFrom(body("""
+                {"id": 1, "amount": 100.0, "type": "cars"}
+                {"id": 1, "amount": 100.0, "type": "cars"}
+                {"id": 2, "amount": 50.0, "type": "cars", "parent_id": 99}
+                {"id": 3, "type": "cars"}
+                {"id": 4, "amount": "abc", "type": "cars"}
+                {"id": 5, "amount": 5.0, "type": "cars", "parent_id": 1}
+                {"id": 6, "amount": 0.125, "type": "cars", "parent_id": 1}
+                """));
+
+        assertEquals(7, summary.getRows());
+        assertEquals(2, summary.getInserted());
+        assertEquals(1, summary.getAlreadyExists());
+        assertEquals(1, summary.getParentNotFound());
+        assertEquals(3, summary.getInvalid());
+        assertEquals(5, summary.getErrors().size());
+        assertEquals(2, summary.getErrors().stream()
+                .filter(error -> error.getStatus().equals("already_exists"))
+                .findFirst().orElseThrow().getLine());
+        assertEquals(10_500, repository.findSubtreeSum(1L).orElseThrow());
+    }
+
+    @Test
+    void importFrom_idsThatDoNotFitInALong_areInvalidRows() {
+        ImportSummaryDTO summary = importer.importFrom(body("""
+                {"id": 1, "amount": 1.0, "type": "cars"}
+                {"id": 92233720368547758070, "amount": 1.0, "type": "cars"}
+                {"id": 2, "amount": 1.0, "type": "cars", "parent_id": 92233720368547758070}
+                {"id": 3, "amount": 1.0, "type": "cars", "parent_id": 1}
+                """));
+
+        assertEquals(4, summary.getRows());
+        assertEquals(2, summary.getInserted());
+        assertEquals(2, summary.getInvalid());
+        assertEquals(List.of(1L, 3L), repository.findIdsByType("cars"));
+    }
+
+    @Test
+    void constructor_nonPositiveChunkSizeOrProgressInterval_isRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new NdjsonTransactionImporter(JsonMapper.builder().build(),
+                null, amountScale, 0, 50_000));
+        assertThrows(IllegalArgumentException.class, () -> new NdjsonTransactionImporter(JsonMapper.builder().build(),
+                null, amountScale, 2, 0));
+    }
+
+    @Test
+    void importFrom_jsonArray_isAccepted() {
+        ImportSummaryDTO summary = importer.importFrom(body("""
+                [{"id": 1, "amount": 1.0, "type": "cars"}, {"id": 2, "amount": 2.0, "type": "cars", "parent_id": 1}]
+                """));
+
+        assertEquals(2, summary.getInserted());
+        assertEquals(List.of(1L, 2L), repository.findIdsByType("cars"));
+    }
+
+    @Test
+    void importFrom_malformedBody_keepsRowsAlreadyAppliedAndFails() {
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> importer.importFrom(body("""
+                {"id": 1, "amount": 1.0, "type": "cars"}
+                {"id": 2, "amount": 1.0, "type": "cars"}
+                {"id": 3, "amount": 1.0, "type"
+                """)));
+
+        assertTrue(ex.getMessage().startsWith("Malformed import body after 2 rows"));
+        assertTrue(repository.findById(2L).isPresent());
+    }
+
+    @Test
+    void importFrom_largeGeneratedStream_isNotMaterialized() {
+        int rows = 200_000;
+        ImportSummaryDTO summary = importer.importFrom(new GeneratedRows(rows));
+
+        assertEquals(rows, summary.getInserted());
+        assertEquals(rows * 100L, repository.findSubtreeSum(0L).orElseThrow());
+    }
+
+    private static InputStream body(String ndjson) {
+        return new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Genera las filas a medida que se leen: un árbol binario con raíz 0
+    private static final class GeneratedRows extends InputStream {
+
+        private final int rows;
+        private int next;
+        private byte[] line = new byte[0];
+        private int position;
+
+        private GeneratedRows(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read() {
+            if (position == line.length) {
+                if (next == rows) {
+                    return -1;
+                }
+                String parent = next == 0 ? "null" : String.valueOf((next - 1) / 2);
+                line = ("{\"id\":" + next + ",\"amount\":1.0,\"type\":\"cars\",\"parent_id\":" + parent + "}\n")
+                        .getBytes(StandardCharsets.UTF_8);
+                position = 0;
+                next++;
+            }
+            return line[position++];
+        }
+    }
+}
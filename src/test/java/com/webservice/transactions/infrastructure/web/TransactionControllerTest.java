@@ -1,22 +1,35 @@
 package com.webservice.transactions.infrastructure.web;
 
+import com.webservice.transactions.application.TransactionIdPage;
 import com.webservice.transactions.application.TransactionService;
+import com.webservice.transactions.application.TransactionAmount;
+import com.webservice.transactions.application.TypeSummary;
 import com.webservice.transactions.application.exception.ParentTransactionNotFoundException;
+import com.webservice.transactions.application.exception.SumOverflowException;
 import com.webservice.transactions.application.exception.TransactionAlreadyExistsException;
 import com.webservice.transactions.application.exception.TransactionNotFoundException;
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
 import com.webservice.transactions.infrastructure.web.exception.GlobalExceptionHandler;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.math.BigDecimal;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.LongConsumer;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -24,8 +37,18 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest({TransactionController.class, GlobalExceptionHandler.class})
+@Import(TransactionControllerTest.AmountScaleConfiguration.class)
 class TransactionControllerTest {
 
+    @TestConfiguration
+    static class AmountScaleConfiguration {
+
+        @Bean
+        AmountScale amountScale() {
+            return new AmountScale(2);
+        }
+    }
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -47,7 +70,7 @@ class TransactionControllerTest {
                     .andExpect(status().isOk())
                     .andExpect(content().json("{\"status\":\"ok\"}"));
 
-            verify(transactionService).createTransaction(1L, 100.0, "cars", null);
+            verify(transactionService).createTransaction(1L, new BigDecimal("100.0"), "cars", null);
         }
 
         @Test
@@ -61,7 +84,7 @@ class TransactionControllerTest {
                     .andExpect(status().isOk())
                     .andExpect(content().json("{\"status\":\"ok\"}"));
 
-            verify(transactionService).createTransaction(2L, 250.5, "electronics", 1L);
+            verify(transactionService).createTransaction(2L, new BigDecimal("250.5"), "electronics", 1L);
         }
 
         @Test
@@ -121,7 +144,7 @@ class TransactionControllerTest {
         @DisplayName("should return 409 when transaction already exists")
         void shouldReturn409WhenTransactionAlreadyExists() throws Exception {
             doThrow(new TransactionAlreadyExistsException(1L))
-                    .when(transactionService).createTransaction(eq(1L), anyDouble(), anyString(), any());
+                    .when(transactionService).createTransaction(eq(1L), any(), anyString(), any());
 
             mockMvc.perform(put("/transactions/1")
                             .contentType(MediaType.APPLICATION_JSON)
@@ -136,7 +159,7 @@ class TransactionControllerTest {
         @DisplayName("should return 400 when parent transaction does not exist")
         void shouldReturn400WhenParentNotFound() throws Exception {
             doThrow(new ParentTransactionNotFoundException(99L))
-                    .when(transactionService).createTransaction(eq(2L), anyDouble(), anyString(), eq(99L));
+                    .when(transactionService).createTransaction(eq(2L), any(), anyString(), eq(99L));
 
             mockMvc.perform(put("/transactions/2")
                             .contentType(MediaType.APPLICATION_JSON)
@@ -148,6 +171,88 @@ class TransactionControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("POST /transactions/batch")
+    class CreateBatch {
+
+        @Test
+        @DisplayName("should return one status per item in request order")
+        void shouldReturnStatusPerItem() throws Exception {
+            when(transactionService.createTransactions(anyList())).thenReturn(List.of(
+                    InsertResult.INSERTED, InsertResult.INSERTED, InsertResult.DUPLICATE_ID, InsertResult.PARENT_NOT_FOUND));
+
+            mockMvc.perform(post("/transactions/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("""
+                                    [
+                                      {"id": 1, "amount": 100.0, "type": "cars"},
+                                      {"id": 2, "amount": 50.0, "type": "cars", "parent_id": 1},
+                                      {"id": 1, "amount": 10.0, "type": "cars"},
+                                      {"id": 3, "amount": 10.0, "type": "cars", "parent_id": 99}
+                                    ]
+                                    """))
+                    .andExpect(status().isOk())
+                    .andExpect(content().json("""
+                            [
+                              {"id": 1, "status": "ok"},
+                              {"id": 2, "status": "ok"},
+                              {"id": 1, "status": "already_exists"},
+                              {"id": 3, "status": "parent_not_found"}
+                            ]
+                            """));
+
+            verify(transactionService).createTransactions(List.of(
+                    new Transaction(1L, 10_000, "cars", null),
+                    new Transaction(2L, 5_000, "cars", 1L),
+                    new Transaction(1L, 1_000, "cars", null),
+                    new Transaction(3L, 1_000, "cars", 99L)));
+        }
+
+        @Test
+        @DisplayName("should return 400 when an item is invalid")
+        void shouldReturn400WhenItemInvalid() throws Exception {
+            when(transactionService.createTransactions(anyList()))
+                    .thenThrow(new IllegalArgumentException("Transaction properties cannot be null"));
+
+            mockMvc.perform(post("/transactions/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("""
+                                    [{"id": 1, "type": "cars"}]
+                                    """))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.message").value("Transaction properties cannot be null"));
+        }
+
+        @Test
+        @DisplayName("should return 400 when an amount has more decimals than the scale")
+        void shouldReturn400WhenAmountHasTooManyDecimals() throws Exception {
+            mockMvc.perform(post("/transactions/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("""
+                                    [{"id": 1, "amount": 0.001, "type": "cars"}]
+                                    """))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.message").value("Amount cannot have more than 2 decimal places"));
+
+            verify(transactionService, never()).createTransactions(anyList());
+        }
+
+        @Test
+        @DisplayName("should return 400 when the batch is larger than the maximum")
+        void shouldReturn400WhenBatchTooLarge() throws Exception {
+            String item = "{\"id\": 1, \"amount\": 1.0, \"type\": \"cars\"}";
+            String body = "[" + String.join(",", Collections.nCopies(TransactionController.MAX_BATCH_SIZE + 1, item)) + "]";
+
+            mockMvc.perform(post("/transactions/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(body))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.message").value("Batch cannot have more than 10000 transactions; use POST /transactions/import for bulk loads"));
+
+            verify(transactionService, never()).createTransactions(anyList());
+        }
+    }
+
     @Nested
     @DisplayName("GET /transactions/types/{type}")
     class GetByType {
@@ -172,6 +277,51 @@ class TransactionControllerTest {
                     .andExpect(content().json("[]"));
         }
 
+        @Test
+        @DisplayName("should return a page of ids with the next cursor header")
+        void shouldReturnPageWithNextCursor() throws Exception {
+            when(transactionService.getTransactionIdsByType("cars", 2, 2))
+                    .thenReturn(new TransactionIdPage(List.of(5L, 7L), 4L));
+
+            mockMvc.perform(get("/transactions/types/cars").param("limit", "2").param("after", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("X-Next-Cursor", "4"))
+                    .andExpect(content().json("[5, 7]"));
+        }
+
+        @Test
+        @DisplayName("should omit the cursor header on the last page")
+        void shouldOmitCursorOnLastPage() throws Exception {
+            when(transactionService.getTransactionIdsByType("cars", 0, 10))
+                    .thenReturn(new TransactionIdPage(List.of(1L), null));
+
+            mockMvc.perform(get("/transactions/types/cars").param("limit", "10"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist("X-Next-Cursor"))
+                    .andExpect(content().json("[1]"));
+        }
+
+        @Test
+        @DisplayName("should stream ids as ndjson")
+        void shouldStreamIds() throws Exception {
+            doAnswer(invocation -> {
+                LongConsumer action = invocation.getArgument(1);
+                action.accept(1L);
+                action.accept(3L);
+                action.accept(5L);
+                return null;
+            }).when(transactionService).forEachTransactionIdByType(eq("cars"), any());
+
+            MvcResult result = mockMvc.perform(get("/transactions/types/cars/stream"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                    .andExpect(content().string("1\n3\n5\n"));
+        }
+
         @Test
         @DisplayName("should return error when type is null literal")
         void shouldReturnErrorWhenTypeIsNull() throws Exception {
@@ -184,6 +334,131 @@ class TransactionControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("GET /transactions/types/{type}/summary")
+    class GetTypeSummary {
+
+        @Test
+        @DisplayName("should return count, sum, min and max for a type")
+        void shouldReturnSummary() throws Exception {
+            when(transactionService.getTypeSummary("cars")).thenReturn(new TypeSummary("cars", 3,
+                    new BigDecimal("74.55"), new BigDecimal("-25.50"), new BigDecimal("100.00")));
+
+            mockMvc.perform(get("/transactions/types/cars/summary"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string(
+                            "{\"count\":3,\"max\":100.00,\"min\":-25.50,\"sum\":74.55,\"type\":\"cars\"}"));
+        }
+
+        @Test
+        @DisplayName("should return null min and max for a type without transactions")
+        void shouldReturnEmptySummary() throws Exception {
+            when(transactionService.getTypeSummary("unknown"))
+                    .thenReturn(new TypeSummary("unknown", 0, new BigDecimal("0.00"), null, null));
+
+            mockMvc.perform(get("/transactions/types/unknown/summary"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().json("{\"count\":0,\"sum\":0.00,\"min\":null,\"max\":null}"));
+        }
+
+        @Test
+        @DisplayName("should return 422 when the sum of the type does not fit")
+        void shouldReturn422WhenSumOverflows() throws Exception {
+            when(transactionService.getTypeSummary("cars")).thenThrow(new SumOverflowException("cars"));
+
+            mockMvc.perform(get("/transactions/types/cars/summary"))
+                    .andExpect(status().isUnprocessableContent())
+                    .andExpect(jsonPath("$.message").value("Sum of type cars is out of range"));
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /transactions/types")
+    class GetTypeSummaries {
+
+        @Test
+        @DisplayName("should return one summary per type")
+        void shouldReturnSummaries() throws Exception {
+            when(transactionService.getTypeSummaries("")).thenReturn(List.of(
+                    new TypeSummary("cars", 1, new BigDecimal("1.00"), new BigDecimal("1.00"), new BigDecimal("1.00")),
+                    new TypeSummary("shopping", 2, new BigDecimal("3.00"), new BigDecimal("0.50"), new BigDecimal("2.50"))));
+
+            mockMvc.perform(get("/transactions/types"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].type").value("cars"))
+                    .andExpect(jsonPath("$[1].type").value("shopping"))
+                    .andExpect(jsonPath("$[1].count").value(2))
+                    .andExpect(jsonPath("$[1].sum").value(3.0));
+        }
+
+        @Test
+        @DisplayName("should pass the prefix to the service")
+        void shouldFilterByPrefix() throws Exception {
+            when(transactionService.getTypeSummaries("car")).thenReturn(List.of(
+                    new TypeSummary("cars", 1, new BigDecimal("1.00"), new BigDecimal("1.00"), new BigDecimal("1.00"))));
+
+            mockMvc.perform(get("/transactions/types").param("prefix", "car"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(1))
+                    .andExpect(jsonPath("$[0].type").value("cars"));
+        }
+
+        @Test
+        @DisplayName("should return only the requested types, sorted and without repeats")
+        void shouldReturnRequestedTypes() throws Exception {
+            when(transactionService.getTypeSummary("cars")).thenReturn(
+                    new TypeSummary("cars", 1, new BigDecimal("1.00"), new BigDecimal("1.00"), new BigDecimal("1.00")));
+            when(transactionService.getTypeSummary("food")).thenReturn(
+                    new TypeSummary("food", 0, new BigDecimal("0.00"), null, null));
+
+            mockMvc.perform(get("/transactions/types").param("type", "food", "cars", "food"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(2))
+                    .andExpect(jsonPath("$[0].type").value("cars"))
+                    .andExpect(jsonPath("$[1].type").value("food"))
+                    .andExpect(jsonPath("$[1].count").value(0));
+
+            verify(transactionService, never()).getTypeSummaries(anyString());
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /transactions/types/{type}/amounts")
+    class GetByAmount {
+
+        @Test
+        @DisplayName("should return ids and amounts in the range")
+        void shouldReturnRange() throws Exception {
+            when(transactionService.getTransactionsByAmount("cars", new BigDecimal("10.00"), new BigDecimal("50"), 2)).thenReturn(List.of(
+                    new TransactionAmount(7L, new BigDecimal("10.00")), new TransactionAmount(3L, new BigDecimal("12.50"))));
+
+            mockMvc.perform(get("/transactions/types/cars/amounts").param("min", "10.00").param("max", "50").param("limit", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().json("[{\"id\":7,\"amount\":10.00},{\"id\":3,\"amount\":12.50}]"));
+        }
+
+        @Test
+        @DisplayName("should leave missing bounds open and default the limit")
+        void shouldDefaultBoundsAndLimit() throws Exception {
+            when(transactionService.getTransactionsByAmount("cars", null, null, 100)).thenReturn(List.of());
+
+            mockMvc.perform(get("/transactions/types/cars/amounts"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().json("[]"));
+        }
+
+        @Test
+        @DisplayName("should return 400 when the range is invalid")
+        void shouldReturn400WhenRangeInvalid() throws Exception {
+            when(transactionService.getTransactionsByAmount(eq("cars"), any(), any(), anyInt()))
+                    .thenThrow(new IllegalArgumentException("Minimum amount cannot be greater than maximum amount"));
+
+            mockMvc.perform(get("/transactions/types/cars/amounts").param("min", "50").param("max", "10"))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.message").value("Minimum amount cannot be greater than maximum amount"));
+        }
+    }
+
     @Nested
     @DisplayName("GET /transactions/sum/{transactionId}")
     class GetSum {
@@ -191,17 +466,17 @@ class TransactionControllerTest {
         @Test
         @DisplayName("should return sum for a given transaction")
         void shouldReturnSum() throws Exception {
-            when(transactionService.getSum(1L)).thenReturn(350.5);
+            when(transactionService.getSum(1L)).thenReturn(new BigDecimal("350.50"));
 
             mockMvc.perform(get("/transactions/sum/1"))
                     .andExpect(status().isOk())
-                    .andExpect(jsonPath("$.sum").value(350.5));
+                    .andExpect(content().string("{\"sum\":350.50}"));
         }
 
         @Test
         @DisplayName("should return sum of zero")
         void shouldReturnZeroSum() throws Exception {
-            when(transactionService.getSum(1L)).thenReturn(0.0);
+            when(transactionService.getSum(1L)).thenReturn(new BigDecimal("0.00"));
 
             mockMvc.perform(get("/transactions/sum/1"))
                     .andExpect(status().isOk())
@@ -217,5 +492,80 @@ class TransactionControllerTest {
                     .andExpect(status().isNotFound())
                     .andExpect(jsonPath("$.message").value("Transaction with id 99 not found"));
         }
+
+        @Test
+        @DisplayName("should return 422 when the sum does not fit")
+        void shouldReturn422WhenSumOverflows() throws Exception {
+            when(transactionService.getSum(1L)).thenThrow(new SumOverflowException(1L));
+
+            mockMvc.perform(get("/transactions/sum/1"))
+                    .andExpect(status().isUnprocessableContent())
+                    .andExpect(jsonPath("$.message").value("Sum of transaction 1 is out of range"));
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /transactions/{ancestors,root,depth,descendants}/{transactionId}")
+    class Hierarchy {
+
+        @Test
+        @DisplayName("should return ancestor ids from the root")
+        void shouldReturnAncestors() throws Exception {
+            when(transactionService.getAncestorIds(3L)).thenReturn(List.of(1L, 2L));
+
+            mockMvc.perform(get("/transactions/ancestors/3"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().json("[1, 2]"));
+        }
+
+        @Test
+        @DisplayName("should return the root id")
+        void shouldReturnRoot() throws Exception {
+            when(transactionService.getRootId(3L)).thenReturn(1L);
+
+            mockMvc.perform(get("/transactions/root/3"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string("{\"root_id\":1}"));
+        }
+
+        @Test
+        @DisplayName("should return the depth")
+        void shouldReturnDepth() throws Exception {
+            when(transactionService.getDepth(3L)).thenReturn(2);
+
+            mockMvc.perform(get("/transactions/depth/3"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string("{\"depth\":2}"));
+        }
+
+        @Test
+        @DisplayName("should return descendants one level down by default")
+        void shouldReturnChildrenByDefault() throws Exception {
+            when(transactionService.getDescendantIdsAtDepth(1L, 1)).thenReturn(List.of(2L, 3L));
+
+            mockMvc.perform(get("/transactions/descendants/1"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().json("[2, 3]"));
+        }
+
+        @Test
+        @DisplayName("should return descendants at the requested depth")
+        void shouldReturnDescendantsAtDepth() throws Exception {
+            when(transactionService.getDescendantIdsAtDepth(1L, 3)).thenReturn(List.of(7L));
+
+            mockMvc.perform(get("/transactions/descendants/1").param("depth", "3"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().json("[7]"));
+        }
+
+        @Test
+        @DisplayName("should return 404 when transaction not found")
+        void shouldReturn404WhenTransactionNotFound() throws Exception {
+            when(transactionService.getRootId(99L)).thenThrow(new TransactionNotFoundException(99L));
+
+            mockMvc.perform(get("/transactions/root/99"))
+                    .andExpect(status().isNotFound())
+                    .andExpect(jsonPath("$.message").value("Transaction with id 99 not found"));
+        }
     }
 }
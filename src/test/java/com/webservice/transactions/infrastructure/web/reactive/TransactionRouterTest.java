@@ -0,0 +1,374 @@
+package com.webservice.transactions.infrastructure.web.reactive;
+
+import com.webservice.transactions.application.ReactiveTransactionService;
+import com.webservice.transactions.application.TransactionAmount;
+import com.webservice.transactions.application.TransactionIdPage;
+import com.webservice.transactions.application.TransactionService;
+import com.webservice.transactions.application.TypeSummary;
+import com.webservice.transactions.application.exception.ParentTransactionNotFoundException;
+import com.webservice.transactions.application.exception.SumOverflowException;
+import com.webservice.transactions.application.exception.TransactionAlreadyExistsException;
+import com.webservice.transactions.application.exception.TransactionNotFoundException;
+import com.webservice.transactions.domain.AmountScale;
+import com.webservice.transactions.domain.InsertResult;
+import com.webservice.transactions.domain.Transaction;
+import com.webservice.transactions.infrastructure.web.TransactionController;
+
+import jakarta.validation.Validation;
+import reactor.core.scheduler.Schedulers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/*
+    Los mismos contratos que TransactionControllerTest, contra el router
+    reactivo y con el servicio simulado.
+ */
+class TransactionRouterTest {
+
+    private final TransactionService transactionService = mock(TransactionService.class);
+    private WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        ReactiveTransactionService reactiveService = new ReactiveTransactionService(transactionService, Schedulers.immediate(), Schedulers.immediate(),
+                Schedulers.immediate());
+        TransactionRouter router = new TransactionRouter(reactiveService, new AmountScale(2),
+                Validation.buildDefaultValidatorFactory().getValidator());
+        client = WebTestClient.bindToRouterFunction(router.routes()).build();
+    }
+
+    @Nested
+    @DisplayName("PUT /transactions/{transactionId}")
+    class CreateTransaction {
+
+        @Test
+        @DisplayName("should create transaction and return status ok")
+        void shouldCreateTransaction() {
+            client.put().uri("/transactions/2")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("""
+                            {"amount": 250.5, "type": "electronics", "parent_id": 1}
+                            """)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody().json("{\"status\":\"ok\"}");
+
+            verify(transactionService).createTransaction(2L, new BigDecimal("250.5"), "electronics", 1L);
+        }
+
+        @Test
+        @DisplayName("should return 400 with the invalid fields when amount and type are missing")
+        void shouldReturn400WhenFieldsMissing() {
+            client.put().uri("/transactions/1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("{}")
+                    .exchange()
+                    .expectStatus().isBadRequest()
+                    .expectBody()
+                    .jsonPath("$.amount").exists()
+                    .jsonPath("$.type").exists();
+
+            verify(transactionService, never()).createTransaction(anyLong(), any(), anyString(), any());
+        }
+
+        @Test
+        @DisplayName("should return 409 when transaction already exists")
+        void shouldReturn409WhenTransactionAlreadyExists() {
+            doThrow(new TransactionAlreadyExistsException(1L))
+                    .when(transactionService).createTransaction(eq(1L), any(), anyString(), any());
+
+            client.put().uri("/transactions/1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("""
+                            {"amount": 100.0, "type": "cars"}
+                            """)
+                    .exchange()
+                    .expectStatus().isEqualTo(409)
+                    .expectBody().jsonPath("$.message").isEqualTo("Transaction with id 1 already exists");
+        }
+
+        @Test
+        @DisplayName("should return 400 when parent transaction does not exist")
+        void shouldReturn400WhenParentNotFound() {
+            doThrow(new ParentTransactionNotFoundException(99L))
+                    .when(transactionService).createTransaction(eq(2L), any(), anyString(), eq(99L));
+
+            client.put().uri("/transactions/2")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("""
+                            {"amount": 50.0, "type": "cars", "parent_id": 99}
+                            """)
+                    .exchange()
+                    .expectStatus().isBadRequest()
+                    .expectBody().jsonPath("$.message").isEqualTo("Parent transaction with id 99 does not exist");
+        }
+    }
+
+    @Nested
+    @DisplayName("POST /transactions/batch")
+    class CreateBatch {
+
+        @Test
+        @DisplayName("should return one status per item in request order")
+        void shouldReturnStatusPerItem() {
+            when(transactionService.createTransactions(anyList())).thenReturn(List.of(
+                    InsertResult.INSERTED, InsertResult.DUPLICATE_ID, InsertResult.PARENT_NOT_FOUND));
+
+            client.post().uri("/transactions/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("""
+                            [
+                              {"id": 1, "amount": 100.0, "type": "cars"},
+                              {"id": 1, "amount": 10.0, "type": "cars"},
+                              {"id": 3, "amount": 10.0, "type": "cars", "parent_id": 99}
+                            ]
+                            """)
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody().json("""
+                            [
+                              {"id": 1, "status": "ok"},
+                              {"id": 1, "status": "already_exists"},
+                              {"id": 3, "status": "parent_not_found"}
+                            ]
+                            """);
+
+            verify(transactionService).createTransactions(List.of(
+                    new Transaction(1L, 10_000, "cars", null),
+                    new Transaction(1L, 1_000, "cars", null),
+                    new Transaction(3L, 1_000, "cars", 99L)));
+        }
+
+        @Test
+        @DisplayName("should return 400 when an amount has more decimals than the scale")
+        void shouldReturn400WhenAmountHasTooManyDecimals() {
+            client.post().uri("/transactions/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("""
+                            [{"id": 1, "amount": 0.001, "type": "cars"}]
+                            """)
+                    .exchange()
+                    .expectStatus().isBadRequest()
+                    .expectBody().jsonPath("$.message").isEqualTo("Amount cannot have more than 2 decimal places");
+
+            verify(transactionService, never()).createTransactions(anyList());
+        }
+
+        @Test
+        @DisplayName("should return 400 when the batch is larger than the maximum")
+        void shouldReturn400WhenBatchTooLarge() {
+            // Ítems mínimos: el lote entra en el límite de cuerpo del cliente de test
+            String item = "{\"id\": 1}";
+
+            client.post().uri("/transactions/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue("[" + String.join(",", Collections.nCopies(TransactionController.MAX_BATCH_SIZE + 1, item)) + "]")
+                    .exchange()
+                    .expectStatus().isBadRequest()
+                    .expectBody().jsonPath("$.message").isEqualTo("Batch cannot have more than 10000 transactions; use POST /transactions/import for bulk loads");
+
+            verify(transactionService, never()).createTransactions(anyList());
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /transactions/types/{type}")
+    class GetByType {
+
+        @Test
+        @DisplayName("should return list of transaction ids for a given type")
+        void shouldReturnTransactionIdsByType() {
+            when(transactionService.getTransactionIdsByType("cars")).thenReturn(List.of(1L, 3L, 5L));
+
+            client.get().uri("/transactions/types/cars")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody().json("[1,3,5]");
+        }
+
+        @Test
+        @DisplayName("should return a page of ids with the next cursor header")
+        void shouldReturnPageWithNextCursor() {
+            when(transactionService.getTransactionIdsByType("cars", 2, 2)).thenReturn(new TransactionIdPage(List.of(5L, 7L), 4L));
+
+            client.get().uri("/transactions/types/cars?limit=2&after=2")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().valueEquals("X-Next-Cursor", "4")
+                    .expectBody().json("[5,7]");
+        }
+
+        @Test
+        @DisplayName("should return ids and amounts in the amount range")
+        void shouldReturnAmountRange() {
+            when(transactionService.getTransactionsByAmount("cars", new BigDecimal("10.00"), null, 100)).thenReturn(List.of(
+                    new TransactionAmount(7L, new BigDecimal("10.00"))));
+
+            client.get().uri("/transactions/types/cars/amounts?min=10.00")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody().json("[{\"id\":7,\"amount\":10.00}]");
+        }
+
+        @Test
+        @DisplayName("should return 400 when a bound is not a number")
+        void shouldReturn400WhenBoundIsNotANumber() {
+            client.get().uri("/transactions/types/cars/amounts?max=abc")
+                    .exchange()
+                    .expectStatus().isBadRequest();
+
+            verifyNoInteractions(transactionService);
+        }
+
+        @Test
+        @DisplayName("should stream ids as ndjson, reading the index page by page")
+        void shouldStreamIds() {
+            int pageSize = ReactiveTransactionService.STREAM_PAGE_SIZE;
+            when(transactionService.getTransactionIdsByType("cars", 0, pageSize))
+                    .thenReturn(new TransactionIdPage(List.of(1L, 3L), (long) pageSize));
+            when(transactionService.getTransactionIdsByType("cars", pageSize, pageSize))
+                    .thenReturn(new TransactionIdPage(List.of(5L), null));
+
+            client.get().uri("/transactions/types/cars/stream")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().contentType(MediaType.APPLICATION_NDJSON)
+                    .expectBody(String.class).isEqualTo("1\n3\n5\n");
+
+            verify(transactionService, never()).forEachTransactionIdByType(any(), any());
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /transactions/types and /types/{type}/summary")
+    class TypeSummaries {
+
+        @Test
+        @DisplayName("should return count, sum, min and max for a type")
+        void shouldReturnSummary() {
+            when(transactionService.getTypeSummary("cars")).thenReturn(
+                    new TypeSummary("cars", 2, new BigDecimal("15.00"), new BigDecimal("5.00"), new BigDecimal("10.00")));
+
+            client.get().uri("/transactions/types/cars/summary")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody().json("{\"type\":\"cars\",\"count\":2,\"sum\":15.00,\"min\":5.00,\"max\":10.00}");
+        }
+
+        @Test
+        @DisplayName("should filter by prefix or by the requested types")
+        void shouldFilterByPrefixOrTypes() {
+            TypeSummary cars = new TypeSummary("cars", 1, new BigDecimal("1.00"), new BigDecimal("1.00"), new BigDecimal("1.00"));
+            when(transactionService.getTypeSummaries("car")).thenReturn(List.of(cars));
+            when(transactionService.getTypeSummary("cars")).thenReturn(cars);
+
+            client.get().uri("/transactions/types?prefix=car")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody().jsonPath("$.length()").isEqualTo(1).jsonPath("$[0].type").isEqualTo("cars");
+            client.get().uri("/transactions/types?type=cars&type=cars&type=food&prefix=car")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody().jsonPath("$.length()").isEqualTo(1).jsonPath("$[0].type").isEqualTo("cars");
+
+            verify(transactionService, never()).getTypeSummary("food");
+        }
+
+        @Test
+        @DisplayName("should return 422 when the sum of the type does not fit")
+        void shouldReturn422WhenSumOverflows() {
+            when(transactionService.getTypeSummaries("")).thenThrow(new SumOverflowException("cars"));
+
+            client.get().uri("/transactions/types")
+                    .exchange()
+                    .expectStatus().isEqualTo(422)
+                    .expectBody().jsonPath("$.message").isEqualTo("Sum of type cars is out of range");
+        }
+    }
+
+    @Nested
+    @DisplayName("GET /transactions/{sum,ancestors,root,depth,descendants}/{transactionId}")
+    class Hierarchy {
+
+        @Test
+        @DisplayName("should return sum for a given transaction")
+        void shouldReturnSum() {
+            when(transactionService.getSum(1L)).thenReturn(new BigDecimal("150.00"));
+
+            client.get().uri("/transactions/sum/1")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody().json("{\"sum\":150.00}");
+        }
+
+        @Test
+        @DisplayName("should not traverse when the sum is materialized")
+        void shouldReturnMaterializedSumWithoutTraversal() {
+            when(transactionService.findSumWithoutTraversal(1L)).thenReturn(Optional.of(new BigDecimal("150.00")));
+
+            client.get().uri("/transactions/sum/1")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody().json("{\"sum\":150.00}");
+
+            verify(transactionService, never()).getSum(any());
+        }
+
+        @Test
+        @DisplayName("should return 404 when transaction not found")
+        void shouldReturn404WhenTransactionNotFound() {
+            when(transactionService.getSum(999L)).thenThrow(new TransactionNotFoundException(999L));
+
+            client.get().uri("/transactions/sum/999")
+                    .exchange()
+                    .expectStatus().isNotFound()
+                    .expectBody().jsonPath("$.message").isEqualTo("Transaction with id 999 not found");
+        }
+
+        @Test
+        @DisplayName("should return ancestors, root and depth")
+        void shouldReturnAncestorsRootAndDepth() {
+            when(transactionService.getAncestorIds(3L)).thenReturn(List.of(1L, 2L));
+            when(transactionService.getRootId(3L)).thenReturn(1L);
+            when(transactionService.getDepth(3L)).thenReturn(2);
+
+            client.get().uri("/transactions/ancestors/3").exchange().expectBody().json("[1,2]");
+            client.get().uri("/transactions/root/3").exchange().expectBody().json("{\"root_id\":1}");
+            client.get().uri("/transactions/depth/3").exchange().expectBody().json("{\"depth\":2}");
+        }
+
+        @Test
+        @DisplayName("should return descendants one level down by default")
+        void shouldReturnChildrenByDefault() {
+            when(transactionService.getDescendantIdsAtDepth(1L, 1)).thenReturn(List.of(2L, 4L));
+
+            client.get().uri("/transactions/descendants/1")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody().json("[2,4]");
+        }
+
+        @Test
+        @DisplayName("should return 400 when the id is not a number")
+        void shouldReturn400WhenIdIsNotANumber() {
+            client.get().uri("/transactions/sum/abc")
+                    .exchange()
+                    .expectStatus().isBadRequest();
+
+            verifyNoInteractions(transactionService);
+        }
+    }
+}